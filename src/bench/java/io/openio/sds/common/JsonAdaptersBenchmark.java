@@ -0,0 +1,92 @@
+package io.openio.sds.common;
+
+import static io.openio.sds.common.JsonUtils.gson;
+
+import java.lang.reflect.Type;
+import java.util.List;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonDeserializationContext;
+import com.google.gson.JsonDeserializer;
+import com.google.gson.JsonElement;
+import com.google.gson.reflect.TypeToken;
+
+import io.openio.sds.models.ChunkInfo;
+import io.openio.sds.models.Position;
+
+/**
+ * Times the decoding of chunk lists with the handwritten adapter of
+ * {@link JsonUtils}, against an adapter built by reflection. Run with
+ * {@code gradle benchJsonAdapters}.
+ */
+public class JsonAdaptersBenchmark {
+
+    private static final int WARMUP = 20000;
+    private static final int ROUNDS = 100000;
+    private static final int RUNS = 5;
+
+    private static final Type CHUNKS = new TypeToken<List<ChunkInfo>>() {
+    }.getType();
+
+    private static final Gson REFLECTIVE = new GsonBuilder()
+            .registerTypeAdapter(Position.class,
+                    new JsonDeserializer<Position>() {
+
+                        @Override
+                        public Position deserialize(JsonElement json,
+                                Type typeOfT,
+                                JsonDeserializationContext context) {
+                            return Position.parse(json.getAsString());
+                        }
+                    })
+            .create();
+
+    private static String chunks() {
+        StringBuilder sb = new StringBuilder("[");
+        for (int i = 0; i < 9; i++) {
+            if (0 < i)
+                sb.append(", ");
+            sb.append("{\"url\": \"http://127.0.0.1:6010/")
+                    .append("0123456789ABCDEF0123456789ABCDEF0123456789ABCDEF0")
+                    .append(i).append("\", \"real_url\": \"http://127.0.0.1:")
+                    .append(6010 + i).append("/0123456789ABCDEF\", ")
+                    .append("\"size\": 1048576, \"hash\": ")
+                    .append("\"0123456789ABCDEF0123456789ABCDEF\", \"pos\": \"0.")
+                    .append(i).append("\", \"score\": 92}");
+        }
+        return sb.append("]").toString();
+    }
+
+    private static long time(Gson gson, String json, Type type, int rounds) {
+        long start = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            if (null == gson.fromJson(json, type))
+                throw new IllegalStateException();
+        }
+        return System.nanoTime() - start;
+    }
+
+    /**
+     * Prints the best time of several alternated runs of each decoder.
+     */
+    private static void compare(String name, String json, Type type) {
+        time(REFLECTIVE, json, type, WARMUP);
+        time(gson(), json, type, WARMUP);
+        long reflective = Long.MAX_VALUE;
+        long handwritten = Long.MAX_VALUE;
+        for (int i = 0; i < RUNS; i++) {
+            reflective = Math.min(reflective,
+                    time(REFLECTIVE, json, type, ROUNDS));
+            handwritten = Math.min(handwritten,
+                    time(gson(), json, type, ROUNDS));
+        }
+        System.out.println(String.format(
+                "%-14s reflective %6d ns/op, handwritten %6d ns/op", name,
+                reflective / ROUNDS, handwritten / ROUNDS));
+    }
+
+    public static void main(String[] args) {
+        compare("ChunkInfo x9", chunks(), CHUNKS);
+    }
+}
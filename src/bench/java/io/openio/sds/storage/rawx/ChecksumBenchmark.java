@@ -0,0 +1,156 @@
+package io.openio.sds.storage.rawx;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import io.openio.sds.RequestContext;
+import io.openio.sds.common.Hash;
+import io.openio.sds.common.SocketProvider;
+import io.openio.sds.http.OioHttp;
+import io.openio.sds.http.OioHttpSettings;
+import io.openio.sds.models.ChunkInfo;
+import io.openio.sds.models.ObjectInfo;
+import io.openio.sds.models.OioUrl;
+import io.openio.sds.models.Position;
+
+/**
+ * Times the download of a whole chunk served from memory, with and without
+ * the verification of its checksum, to measure what
+ * {@link RawxSettings#verifyChecksum()} costs. Run with
+ * {@code gradle benchChecksum}.
+ */
+public class ChecksumBenchmark {
+
+	private static final int CHUNK_SIZE = 64 * 1024 * 1024;
+	private static final int WARMUP = 5;
+	private static final int RUNS = 10;
+
+	private static final byte[] RESPONSE;
+	private static final String HASH;
+
+	static {
+		byte[] data = new byte[CHUNK_SIZE];
+		new Random(0).nextBytes(data);
+		HASH = Hash.md5().hashBytes(data).toString();
+		byte[] head = ("HTTP/1.1 200 OK\r\nContent-Length: " + CHUNK_SIZE
+				+ "\r\n\r\n").getBytes();
+		RESPONSE = new byte[head.length + CHUNK_SIZE];
+		System.arraycopy(head, 0, RESPONSE, 0, head.length);
+		System.arraycopy(data, 0, RESPONSE, head.length, CHUNK_SIZE);
+	}
+
+	/**
+	 * Serves the chunk from memory, without any copy, and discards the
+	 * requests.
+	 */
+	private static final SocketProvider MEMORY = new SocketProvider() {
+
+		@Override
+		public Socket getSocket(String host, int port) {
+			return getSocket(new InetSocketAddress(host, port));
+		}
+
+		@Override
+		public Socket getSocket(InetSocketAddress addr) {
+			final InputStream in = new ByteArrayInputStream(RESPONSE);
+			return new Socket() {
+
+				@Override
+				public InputStream getInputStream() {
+					return in;
+				}
+
+				@Override
+				public OutputStream getOutputStream() {
+					return new OutputStream() {
+
+						@Override
+						public void write(int b) {
+						}
+
+						@Override
+						public void write(byte[] b, int off, int len) {
+						}
+					};
+				}
+
+				@Override
+				public void shutdownInput() {
+				}
+			};
+		}
+
+		@Override
+		public boolean reusableSocket() {
+			return false;
+		}
+	};
+
+	private static ObjectInfo objectInfo() {
+		ObjectInfo oinf = new ObjectInfo();
+		oinf.url(OioUrl.url("bench", "bench", "bench"));
+		oinf.size((long) CHUNK_SIZE);
+		oinf.version(1L);
+		oinf.oid("0123456789ABCDEF");
+		List<ChunkInfo> chunks = new ArrayList<ChunkInfo>();
+		chunks.add(new ChunkInfo().pos(Position.simple(0))
+				.size((long) CHUNK_SIZE).hash(HASH)
+				.url("http://127.0.0.1:6010/0123456789ABCDEF"));
+		oinf.chunks(chunks);
+		return oinf;
+	}
+
+	private static long time(RawxClient client, ObjectInfo oinf)
+			throws IOException {
+		byte[] buf = new byte[65536];
+		long start = System.nanoTime();
+		InputStream in = client.downloadObject(oinf, new RequestContext());
+		long total = 0;
+		int read;
+		while (-1 != (read = in.read(buf, 0, buf.length)))
+			total += read;
+		in.close();
+		if (CHUNK_SIZE != total)
+			throw new IllegalStateException();
+		return System.nanoTime() - start;
+	}
+
+	private static String throughput(long nanos) {
+		return String.format("%5d MiB/s",
+				CHUNK_SIZE * 1000000000L / nanos / (1024 * 1024));
+	}
+
+	/**
+	 * Prints the best time of several alternated downloads with each
+	 * setting.
+	 */
+	public static void main(String[] args) throws IOException {
+		OioHttp http = OioHttp.http(new OioHttpSettings(), MEMORY);
+		RawxClient off = new RawxClient(http,
+				new RawxSettings().verifyChecksum(false));
+		RawxClient on = new RawxClient(http,
+				new RawxSettings().verifyChecksum(true));
+		ObjectInfo oinf = objectInfo();
+		for (int i = 0; i < WARMUP; i++) {
+			time(off, oinf);
+			time(on, oinf);
+		}
+		long bestOff = Long.MAX_VALUE;
+		long bestOn = Long.MAX_VALUE;
+		for (int i = 0; i < RUNS; i++) {
+			bestOff = Math.min(bestOff, time(off, oinf));
+			bestOn = Math.min(bestOn, time(on, oinf));
+		}
+		System.out.println(String.format(
+				"%d MiB chunk: verify off %6.1f ms (%s), verify on %6.1f ms (%s)",
+				CHUNK_SIZE / (1024 * 1024), bestOff / 1e6, throughput(bestOff),
+				bestOn / 1e6, throughput(bestOn)));
+	}
+}
@@ -2,8 +2,13 @@ package io.openio.sds;
 
 import java.io.File;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Future;
 
 import io.openio.sds.exceptions.ContainerExistException;
 import io.openio.sds.exceptions.ContainerNotEmptyException;
@@ -15,12 +20,15 @@ import io.openio.sds.exceptions.OioSystemException;
 import io.openio.sds.models.ContainerInfo;
 import io.openio.sds.models.ListOptions;
 import io.openio.sds.models.NamespaceInfo;
+import io.openio.sds.models.ObjectData;
 import io.openio.sds.models.ObjectCreationOptions;
 import io.openio.sds.models.ObjectDeletionOptions;
 import io.openio.sds.models.ObjectInfo;
 import io.openio.sds.models.ObjectList;
+import io.openio.sds.models.ObjectList.ObjectView;
 import io.openio.sds.models.OioUrl;
 import io.openio.sds.models.Range;
+import io.openio.sds.proxy.ObjectHandler;
 
 public interface AdvancedClient extends Client {
 
@@ -146,6 +154,80 @@ public interface AdvancedClient extends Client {
     public ObjectList listObjects(OioUrl url, final ListOptions listOptions, RequestContext reqCtx)
             throws OioException;
 
+    /**
+     * List objects available in the specified container, handing them over
+     * one by one while the response is decoded, without holding the page in
+     * memory.
+     *
+     * @param url
+     *            the url of the container
+     * @param listOptions
+     *            the listing option
+     * @param handler
+     *            the receiver of the objects
+     * @param reqCtx
+     *            common parameters to all requests
+     * @return the ObjectList, without its objects
+     * @throws ContainerNotFoundException
+     *             if the specified container doesn't exist
+     * @throws OioSystemException
+     *             if any error occurs during request execution
+     */
+    public ObjectList listObjects(OioUrl url, ListOptions listOptions,
+            ObjectHandler handler, RequestContext reqCtx) throws OioException;
+
+    /**
+     * Lists all the objects of the specified container, whatever their
+     * number. The pages of the listing are requested while iterating, the
+     * next one in the background while the current one is consumed.
+     *
+     * @param url
+     *            the url of the container
+     * @param listOptions
+     *            the listing option, the limit being the size of each page
+     * @param reqCtx
+     *            common parameters to all requests
+     * @return the objects of the container
+     * @throws ContainerNotFoundException
+     *             while iterating, if the specified container doesn't exist
+     * @throws OioSystemException
+     *             while iterating, if any error occurs during request
+     *             execution
+     */
+    public Iterable<ObjectView> listAll(OioUrl url, ListOptions listOptions,
+            RequestContext reqCtx);
+
+    /**
+     * Lists all the objects of the specified container with several
+     * requests in parallel, one per range of names. The iterators of the
+     * returned listing are {@link java.io.Closeable}, and should be closed
+     * when not iterated to the end.
+     *
+     * @param url
+     *            the url of the container
+     * @param listOptions
+     *            the listing option, the limit being the size of each page,
+     *            without delimiter
+     * @param boundaries
+     *            the sorted names splitting the container in ranges listed
+     *            in parallel
+     * @param parallelism
+     *            the number of ranges listed at the same time
+     * @param ordered
+     *            should the objects be returned in the order of their names?
+     * @param reqCtx
+     *            common parameters to all requests
+     * @return the objects of the container
+     * @throws ContainerNotFoundException
+     *             while iterating, if the specified container doesn't exist
+     * @throws OioSystemException
+     *             while iterating, if any error occurs during request
+     *             execution
+     */
+    public Iterable<ObjectView> listAll(OioUrl url, ListOptions listOptions,
+            List<String> boundaries, int parallelism, boolean ordered,
+            RequestContext reqCtx);
+
     /**
      * Delete the specified container
      *
@@ -362,6 +444,30 @@ public interface AdvancedClient extends Client {
             ObjectCreationOptions options, RequestContext reqCtx)
             throws OioException;
 
+    /**
+     * Push an object into the oio namespace, from the remaining bytes of
+     * the specified buffers.
+     *
+     * @param url
+     *            the url of the object to create
+     * @param data
+     *            the buffers to read the data from, heap or direct
+     * @param options
+     *            options for the object creation
+     * @param reqCtx
+     *            Common parameters to all requests
+     * @return information about the uploaded object
+     * @throws ContainerNotFoundException
+     *             if the specified container doesn't exist
+     * @throws ObjectExistException
+     *             if the specified object already exist in the container
+     * @throws OioSystemException
+     *             if any error occurs during request execution
+     */
+    public ObjectInfo putObject(OioUrl url, ByteBuffer[] data,
+            ObjectCreationOptions options, RequestContext reqCtx)
+            throws OioException;
+
     /**
      * Push an object into the OpenIO-SDS namespace.
      *
@@ -437,6 +543,25 @@ public interface AdvancedClient extends Client {
     public ObjectInfo getObjectInfo(OioUrl url, Long version, boolean loadProperties,
             RequestContext reqCtx) throws OioException;
 
+    /**
+     * Returns the information about the latest version of the specified
+     * object, along with its data. See {@link Client#getObject(OioUrl)}.
+     *
+     * @param url
+     *            the url of the object
+     * @param reqCtx
+     *            common parameters to all requests
+     * @return an {@code ObjectData}, to be closed once read
+     * @throws ContainerNotFoundException
+     *             if the specified container doesn't exist
+     * @throws ObjectNotFoundException
+     *             if the specified object doesn't exist
+     * @throws OioSystemException
+     *             if any error occurs during request execution
+     */
+    public ObjectData getObject(OioUrl url, RequestContext reqCtx)
+            throws OioException;
+
     /**
      * Get object data from a specified range.
      *
@@ -454,6 +579,99 @@ public interface AdvancedClient extends Client {
      */
     public InputStream downloadObject(ObjectInfo oinf, Range range, RequestContext reqCtx);
 
+    /**
+     * Reads object data from a specified range into the specified buffer.
+     * At most {@code dst.remaining()} bytes are requested.
+     *
+     * @param oinf
+     *            the information about object to download
+     * @param range
+     *            the wanted data range, or {@code null} for the whole object
+     * @param dst
+     *            the buffer to fill, its position is moved forward
+     * @param reqCtx
+     *            common parameters to all requests
+     *
+     * @return the number of bytes read
+     *
+     * @throws OioSystemException
+     *             if any error occurs during request execution
+     */
+    public int downloadObject(ObjectInfo oinf, Range range, ByteBuffer dst,
+            RequestContext reqCtx);
+
+    /**
+     * Downloads the specified object to a local file.
+     *
+     * @param oinf
+     *            the information about object to download
+     * @param dst
+     *            the file to write, created or truncated
+     * @param reqCtx
+     *            common parameters to all requests
+     *
+     * @return the number of bytes written
+     *
+     * @throws OioSystemException
+     *             if any error occurs during request execution
+     */
+    public long downloadObjectToFile(ObjectInfo oinf, Path dst,
+            RequestContext reqCtx);
+
+    /**
+     * Get object data from a specified range, as a channel.
+     *
+     * @param oinf
+     *            the information about object to download
+     * @param range
+     *            the wanted data range
+     * @param reqCtx
+     *            common parameters to all requests
+     *
+     * @return the data in {@link ReadableByteChannel} format
+     *
+     * @throws OioSystemException
+     *             if any error occurs during request execution
+     */
+    public ReadableByteChannel downloadObjectChannel(ObjectInfo oinf,
+            Range range, RequestContext reqCtx);
+
+    /**
+     * Returns a read-only channel over the data of the specified object,
+     * suitable for random access.
+     *
+     * @param oinf
+     *            the information about object to read
+     * @param reqCtx
+     *            common parameters to all requests
+     *
+     * @return a {@link SeekableByteChannel} positioned at the start of the
+     *         object
+     *
+     * @throws OioSystemException
+     *             if any error occurs during request execution
+     */
+    public SeekableByteChannel downloadObjectChannel(ObjectInfo oinf,
+            RequestContext reqCtx);
+
+    /**
+     * Reads several ranges of the specified object at once.
+     *
+     * @param oinf
+     *            the information about object to read
+     * @param ranges
+     *            the ranges to read, in any order
+     * @param reqCtx
+     *            common parameters to all requests
+     *
+     * @return one future per range, in the same order as {@code ranges}
+     *
+     * @throws OioSystemException
+     *             if any error occurs during request execution
+     */
+    public List<Future<ByteBuffer>> readRanges(ObjectInfo oinf,
+            List<Range> ranges, RequestContext reqCtx);
+
     /**
      * Delete the specified object.
      *
@@ -2,8 +2,13 @@ package io.openio.sds;
 
 import java.io.File;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Future;
 
 import io.openio.sds.exceptions.ContainerExistException;
 import io.openio.sds.exceptions.ContainerNotEmptyException;
@@ -15,10 +20,12 @@ import io.openio.sds.exceptions.OioSystemException;
 import io.openio.sds.models.ContainerInfo;
 import io.openio.sds.models.ListOptions;
 import io.openio.sds.models.NamespaceInfo;
+import io.openio.sds.models.ObjectData;
 import io.openio.sds.models.ObjectCreationOptions;
 import io.openio.sds.models.ObjectDeletionOptions;
 import io.openio.sds.models.ObjectInfo;
 import io.openio.sds.models.ObjectList;
+import io.openio.sds.models.ObjectList.ObjectView;
 import io.openio.sds.models.OioUrl;
 import io.openio.sds.models.Range;
 
@@ -168,6 +175,24 @@ public interface Client {
      */
     public ObjectList listObjects(OioUrl url, final ListOptions listOptions) throws OioException;
 
+    /**
+     * Lists all the objects of the specified container, whatever their
+     * number. The pages of the listing are requested while iterating, the
+     * next one in the background while the current one is consumed.
+     *
+     * @param url
+     *            the url of the container
+     * @param listOptions
+     *            the listing option, the limit being the size of each page
+     * @return the objects of the container
+     * @throws ContainerNotFoundException
+     *             while iterating, if the specified container doesn't exist
+     * @throws OioSystemException
+     *             while iterating, if any error occurs during request
+     *             execution
+     */
+    public Iterable<ObjectView> listAll(OioUrl url, ListOptions listOptions);
+
     /**
      * Deletes the specified container
      * 
@@ -435,6 +460,26 @@ public interface Client {
     public ObjectInfo putObject(OioUrl url, Long size, InputStream data)
             throws OioException;
 
+    /**
+     * Push an object into the oio namespace, from the remaining bytes of
+     * the specified buffers. The buffers are sent to the storage services
+     * without being copied, and their positions are left untouched.
+     *
+     * @param url
+     *            the url of the object to create
+     * @param data
+     *            the buffers to read the data from, heap or direct
+     * @return information about the uploaded object
+     * @throws ContainerNotFoundException
+     *             if the specified container doesn't exist
+     * @throws ObjectExistException
+     *             if the specified object alreadeay exist in the container
+     * @throws OioSystemException
+     *             if any error occurs during request execution
+     */
+    public ObjectInfo putObject(OioUrl url, ByteBuffer... data)
+            throws OioException;
+
     /**
      * Push an object into the oio namespace
      *
@@ -606,6 +651,27 @@ public interface Client {
     public ObjectInfo getObjectInfo(OioUrl url, Long version, boolean loadProperties)
             throws OioException;
 
+    /**
+     * Returns the information about the latest version of the specified
+     * object, along with its data. Made for small objects: when the
+     * location of the chunks of the object is known from a previous call,
+     * the download starts without waiting for the metadata, and is kept
+     * only if the fresh metadata still match. The locations are remembered
+     * only if the {@code ObjectInfo} cache or the location memory of the
+     * {@code CacheSettings} is enabled.
+     *
+     * @param url
+     *            the url of the object
+     * @return an {@code ObjectData}, to be closed once read
+     * @throws ContainerNotFoundException
+     *             if the specified container doesn't exist
+     * @throws ObjectNotFoundException
+     *             if the specified object doesn't exist
+     * @throws OioSystemException
+     *             if any error occurs during request execution
+     */
+    public ObjectData getObject(OioUrl url) throws OioException;
+
     /**
      * Returns the data of the specified object
      * 
@@ -633,6 +699,89 @@ public interface Client {
      */
     public InputStream downloadObject(ObjectInfo oinf, Range range);
 
+    /**
+     * Reads object data from a specified range into the specified buffer.
+     * At most {@code dst.remaining()} bytes are requested.
+     *
+     * @param oinf
+     *            the information about object to download
+     * @param range
+     *            the wanted data range, or {@code null} for the whole object
+     * @param dst
+     *            the buffer to fill, heap or direct, its position is moved
+     *            forward
+     *
+     * @return the number of bytes read
+     *
+     * @throws OioSystemException
+     *             if any error occurs during request execution
+     */
+    public int downloadObject(ObjectInfo oinf, Range range, ByteBuffer dst);
+
+    /**
+     * Downloads the specified object to a local file. The file is
+     * preallocated and several chunks are written in parallel.
+     *
+     * @param oinf
+     *            the information about object to download
+     * @param dst
+     *            the file to write, created or truncated
+     *
+     * @return the number of bytes written
+     *
+     * @throws OioSystemException
+     *             if any error occurs during request execution
+     */
+    public long downloadObjectToFile(ObjectInfo oinf, Path dst);
+
+    /**
+     * Returns a read-only channel over the data of the specified object,
+     * suitable for random access. Each seek is turned into a ranged download,
+     * except small forward seeks which reuse the current connection.
+     *
+     * @param oinf
+     *            the information about object to read
+     * @return a {@link SeekableByteChannel} positioned at the start of the
+     *         object
+     * @throws OioSystemException
+     *             if any error occurs during request execution
+     */
+    public SeekableByteChannel downloadObjectChannel(ObjectInfo oinf);
+
+    /**
+     * Get object data from a specified range, as a channel. Reads to heap
+     * buffers are done without any intermediate copy.
+     *
+     * @param oinf
+     *            the information about object to download
+     * @param range
+     *            the wanted data range
+     *
+     * @return the data in {@link ReadableByteChannel} format
+     *
+     * @throws OioSystemException
+     *             if any error occurs during request execution
+     */
+    public ReadableByteChannel downloadObjectChannel(ObjectInfo oinf,
+            Range range);
+
+    /**
+     * Reads several ranges of the specified object at once. Ranges close to
+     * each other are fetched with a single request, and requests to
+     * different chunks run in parallel.
+     *
+     * @param oinf
+     *            the information about object to read
+     * @param ranges
+     *            the ranges to read, in any order
+     * @return one future per range, in the same order as {@code ranges},
+     *         holding the data of the range
+     * @throws OioSystemException
+     *             if any error occurs during request execution
+     */
+    public List<Future<ByteBuffer>> readRanges(ObjectInfo oinf,
+            List<Range> ranges);
+
 
     /**
      * Deletes the specified object
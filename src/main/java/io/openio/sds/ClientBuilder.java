@@ -12,6 +12,7 @@ import io.openio.sds.http.OioHttp;
 import io.openio.sds.http.OioHttpSettings;
 import io.openio.sds.pool.PoolingSettings;
 import io.openio.sds.proxy.ProxyClient;
+import io.openio.sds.storage.ec.EcClient;
 import io.openio.sds.storage.ecd.EcdClient;
 import io.openio.sds.storage.rawx.RawxClient;
 
@@ -41,7 +42,10 @@ public class ClientBuilder {
 		EcdClient ecd = null == settings.proxy().ecd() 
 				? null
 				: new EcdClient(rawxHttp, settings.rawx(), settings.proxy().allEcdHosts());
-		return new DefaultClient(proxy, rawx, ecd);
+		EcClient ec = settings.proxy().nativeEc()
+				? new EcClient(rawxHttp, rawx, settings.rawx())
+				: null;
+		return new DefaultClient(proxy, rawx, ecd, ec, settings.cache());
 	}
 
 	/**
@@ -3,22 +3,48 @@ package io.openio.sds;
 import static io.openio.sds.common.Check.checkArgument;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.SeekableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+import io.openio.sds.cache.CacheSettings;
+import io.openio.sds.cache.DiskCache;
+import io.openio.sds.cache.NotFoundCache;
+import io.openio.sds.cache.ObjectInfoCache;
+import io.openio.sds.common.ByteBuffers;
+import io.openio.sds.exceptions.ObjectNotFoundException;
 import io.openio.sds.exceptions.OioException;
 import io.openio.sds.http.OioHttp;
+import io.openio.sds.logging.SdsLogger;
+import io.openio.sds.logging.SdsLoggerFactory;
+import io.openio.sds.models.ChunkInfo;
 import io.openio.sds.models.ContainerInfo;
 import io.openio.sds.models.ListOptions;
 import io.openio.sds.models.NamespaceInfo;
+import io.openio.sds.models.ObjectData;
 import io.openio.sds.models.ObjectCreationOptions;
 import io.openio.sds.models.ObjectDeletionOptions;
 import io.openio.sds.models.ObjectInfo;
 import io.openio.sds.models.ObjectList;
+import io.openio.sds.models.ObjectList.ObjectView;
 import io.openio.sds.models.OioUrl;
 import io.openio.sds.models.Range;
+import io.openio.sds.proxy.ObjectHandler;
 import io.openio.sds.proxy.ProxyClient;
+import io.openio.sds.storage.ObjectChannel;
+import io.openio.sds.storage.StorageClient;
+import io.openio.sds.storage.ec.EcClient;
 import io.openio.sds.storage.ecd.EcdClient;
 import io.openio.sds.storage.rawx.RawxClient;
 
@@ -30,18 +56,60 @@ import io.openio.sds.storage.rawx.RawxClient;
  */
 public class DefaultClient implements AdvancedClient {
 
+    private static final SdsLogger logger = SdsLoggerFactory
+            .getLogger(DefaultClient.class);
+
+    /**
+     * Number of bytes read in advance by {@link #getObject(OioUrl)} when the
+     * location of the object is known.
+     */
+    static final int PREFETCH_SIZE = 65536;
+
     private final ProxyClient proxy;
     protected final RawxClient rawx;
     private final EcdClient ecd;
+    private final EcClient ec;
+    private final ObjectInfoCache infoCache;
+    private final NotFoundCache notFoundCache;
+    private final DiskCache diskCache;
+    private final long diskMaxObjectSize;
 
     DefaultClient(ProxyClient proxy, RawxClient rawx) {
         this(proxy, rawx, null);
     }
 
     DefaultClient(ProxyClient proxy, RawxClient rawx, EcdClient ecd) {
+        this(proxy, rawx, ecd, new CacheSettings());
+    }
+
+    DefaultClient(ProxyClient proxy, RawxClient rawx, EcdClient ecd,
+            CacheSettings cache) {
+        this(proxy, rawx, ecd, null, cache);
+    }
+
+    DefaultClient(ProxyClient proxy, RawxClient rawx, EcdClient ecd,
+            EcClient ec, CacheSettings cache) {
         this.proxy = proxy;
         this.rawx = rawx;
         this.ecd = ecd;
+        this.ec = ec;
+        // without the cache, the entries expire right away, they are only
+        // kept as the last known locations of the objects
+        if (0 < cache.objectInfoSize())
+            this.infoCache = new ObjectInfoCache(cache.objectInfoSize(),
+                    cache.objectInfoTtl());
+        else if (0 < cache.locationsSize())
+            this.infoCache = new ObjectInfoCache(cache.locationsSize(), 0L);
+        else
+            this.infoCache = null;
+        this.notFoundCache = 0 < cache.notFoundSize()
+                ? new NotFoundCache(cache.notFoundSize(), cache.notFoundTtl())
+                : null;
+        this.diskCache = null != cache.diskPath() && 0 < cache.diskSize()
+                ? new DiskCache(Paths.get(cache.diskPath()), cache.diskSize())
+                : null;
+        this.diskMaxObjectSize = Math.min(cache.diskMaxObjectSize(),
+                Integer.MAX_VALUE);
     }
 
     public ProxyClient proxy() {
@@ -130,6 +198,39 @@ public class DefaultClient implements AdvancedClient {
         return proxy.listObjects(url, listOptions, reqCtx);
     }
 
+    @Override
+    public ObjectList listObjects(OioUrl url, ListOptions listOptions,
+            ObjectHandler handler, RequestContext reqCtx) throws OioException {
+        checkArgument(url != null, "url cannot be null");
+        checkArgument(listOptions != null, "listOptions cannot be null");
+        checkArgument(handler != null, "handler cannot be null");
+        reqCtx.startTiming();
+        return proxy.listObjects(url, listOptions, handler, reqCtx);
+    }
+
+    @Override
+    public Iterable<ObjectView> listAll(OioUrl url, ListOptions listOptions) {
+        return this.listAll(url, listOptions, new RequestContext());
+    }
+
+    @Override
+    public Iterable<ObjectView> listAll(OioUrl url, ListOptions listOptions,
+            RequestContext reqCtx) {
+        checkArgument(url != null, "url cannot be null");
+        checkArgument(listOptions != null, "listOptions cannot be null");
+        return proxy.listAll(url, listOptions, reqCtx);
+    }
+
+    @Override
+    public Iterable<ObjectView> listAll(OioUrl url, ListOptions listOptions,
+            List<String> boundaries, int parallelism, boolean ordered,
+            RequestContext reqCtx) {
+        checkArgument(url != null, "url cannot be null");
+        checkArgument(listOptions != null, "listOptions cannot be null");
+        return proxy.listAll(url, listOptions, boundaries, parallelism,
+                ordered, reqCtx);
+    }
+
     @Override
     public void deleteContainer(OioUrl url) {
         this.deleteContainer(url, new RequestContext());
@@ -192,32 +293,19 @@ public class DefaultClient implements AdvancedClient {
     }
 
     @Override
-    public ObjectInfo putObject(OioUrl url, Long size, File data,
+    public ObjectInfo putObject(OioUrl url, Long size, final File data,
             ObjectCreationOptions options, RequestContext reqCtx)
             throws OioException {
-        checkArgument(url != null, "url cannot be null");
-        checkArgument(url.object() != null, "object part of URL cannot be null");
-        if (options == null)
-            options = new ObjectCreationOptions();
-        reqCtx.startTiming();
-        ObjectInfo oinf = proxy.preparePutObject(url, size, options, reqCtx);
-
-        // TODO(adu): To delete when oio-sds >= 4.4.0
-        if (options.version() != null)
-            oinf.version(options.version());
+        return putObject(url, size, options, reqCtx, new ChunksUpload() {
 
-        try {
-            if (oinf.isEC())
-                ecd.uploadChunks(oinf, data, reqCtx);
-            else
-                rawx.uploadChunks(oinf, data, reqCtx);
-            proxy.putObject(oinf, options, reqCtx);
-        } catch (OioException oioe) {
-            // TODO improve by knowing which chunk is uploaded
-            rawx.deleteChunks(oinf.chunks());
-            throw oioe;
-        }
-        return oinf;
+            @Override
+            public void upload(ObjectInfo oinf, RequestContext reqCtx) {
+                if (oinf.isEC())
+                    storage(oinf).uploadChunks(oinf, data, reqCtx);
+                else
+                    rawx.uploadChunks(oinf, data, reqCtx);
+            }
+        });
     }
 
     @Override
@@ -273,9 +361,62 @@ public class DefaultClient implements AdvancedClient {
 
 
     @Override
-    public ObjectInfo putObject(OioUrl url, Long size, InputStream data,
+    public ObjectInfo putObject(OioUrl url, Long size, final InputStream data,
+            ObjectCreationOptions options, RequestContext reqCtx)
+            throws OioException {
+        return putObject(url, size, options, reqCtx, new ChunksUpload() {
+
+            @Override
+            public void upload(ObjectInfo oinf, RequestContext reqCtx) {
+                if (oinf.isEC())
+                    storage(oinf).uploadChunks(oinf, data, reqCtx);
+                else
+                    rawx.uploadChunks(oinf, data, reqCtx);
+            }
+        });
+    }
+
+    @Override
+    public ObjectInfo putObject(OioUrl url, ByteBuffer... data)
+            throws OioException {
+        return putObject(url, data, null, new RequestContext());
+    }
+
+    @Override
+    public ObjectInfo putObject(OioUrl url, final ByteBuffer[] data,
             ObjectCreationOptions options, RequestContext reqCtx)
             throws OioException {
+        checkArgument(data != null, "data cannot be null");
+        return putObject(url, ByteBuffers.remaining(data), options, reqCtx,
+                new ChunksUpload() {
+
+                    @Override
+                    public void upload(ObjectInfo oinf,
+                            RequestContext reqCtx) {
+                        if (oinf.isEC())
+                            storage(oinf).uploadChunks(oinf,
+                                    ByteBuffers.stream(data), reqCtx);
+                        else
+                            rawx.uploadChunks(oinf, data, reqCtx);
+                    }
+                });
+    }
+
+    /**
+     * Writes the chunks of an object being created.
+     */
+    private interface ChunksUpload {
+
+        void upload(ObjectInfo oinf, RequestContext reqCtx);
+    }
+
+    /**
+     * Prepares the creation of an object, uploads its chunks and saves it.
+     * The chunks are deleted if the upload or the save fails.
+     */
+    private ObjectInfo putObject(OioUrl url, Long size,
+            ObjectCreationOptions options, RequestContext reqCtx,
+            ChunksUpload upload) {
         checkArgument(url != null, "url cannot be null");
         checkArgument(url.object() != null, "object part of URL cannot be null");
         if (options == null)
@@ -288,15 +429,14 @@ public class DefaultClient implements AdvancedClient {
             oinf.version(options.version());
 
         try {
-            if (oinf.isEC())
-                ecd.uploadChunks(oinf, data, reqCtx);
-            else
-                rawx.uploadChunks(oinf, data, reqCtx);
+            upload.upload(oinf, reqCtx);
             proxy.putObject(oinf, options, reqCtx);
         } catch (OioException oioe) {
             // TODO improve by knowing which chunk is uploaded
             rawx.deleteChunks(oinf.chunks());
             throw oioe;
+        } finally {
+            invalidate(url);
         }
         return oinf;
     }
@@ -327,7 +467,72 @@ public class DefaultClient implements AdvancedClient {
         checkArgument(url != null, "url cannot be null");
         checkArgument(url.object() != null, "url object cannot be null");
         reqCtx.startTiming();
-        return proxy.getObjectInfo(url, version, reqCtx, loadProperties);
+        ObjectInfo oinf = null == infoCache ? null
+                : infoCache.get(url, version, loadProperties);
+        if (null != oinf)
+            return oinf.withRequestContext(reqCtx);
+        oinf = fetchObjectInfo(url, version, loadProperties, reqCtx);
+        if (null != infoCache)
+            infoCache.put(url, version, loadProperties, oinf);
+        return oinf;
+    }
+
+    @Override
+    public ObjectData getObject(OioUrl url) {
+        return this.getObject(url, new RequestContext());
+    }
+
+    @Override
+    public ObjectData getObject(OioUrl url, RequestContext reqCtx)
+            throws OioException {
+        checkArgument(url != null, "url cannot be null");
+        checkArgument(url.object() != null, "url object cannot be null");
+        reqCtx.startTiming();
+        ObjectInfo cached = null == infoCache ? null
+                : infoCache.get(url, null, true);
+        if (null != cached) {
+            ObjectData res = open(url, cached.withRequestContext(reqCtx),
+                    reqCtx);
+            if (null != res)
+                return res;
+        }
+        ObjectInfo known = null == infoCache ? null : infoCache.last(url);
+        Future<InputStream> speculative = null;
+        if (null != known && !known.isEC()) {
+            try {
+                speculative = rawx.prefetch(known, PREFETCH_SIZE,
+                        new RequestContext(reqCtx));
+            } catch (RejectedExecutionException e) {
+                logger.debug("No worker available, no speculative download");
+            }
+        }
+        ObjectInfo oinf;
+        try {
+            oinf = fetchObjectInfo(url, null, true, reqCtx);
+        } catch (OioException e) {
+            if (null != infoCache)
+                infoCache.invalidate(url);
+            discard(speculative);
+            throw e;
+        }
+        if (null != infoCache)
+            infoCache.put(url, null, true, oinf);
+        if (null != speculative) {
+            if (sameData(known, oinf)) {
+                try {
+                    return new ObjectData(oinf, speculative.get());
+                } catch (InterruptedException e) {
+                    discard(speculative);
+                    throw new OioException("got interrupted", e);
+                } catch (ExecutionException e) {
+                    logger.debug("Speculative download failed", e.getCause());
+                }
+            } else {
+                discard(speculative);
+            }
+        }
+        return new ObjectData(oinf, this.downloadObject(oinf, (Range) null,
+                reqCtx));
     }
 
     @Override
@@ -335,8 +540,7 @@ public class DefaultClient implements AdvancedClient {
         checkArgument(oinf != null, "ObjectInfo cannot be null");
         RequestContext reqCtx = oinf.requestContext();
         reqCtx.startTiming();
-        return oinf.isEC() ? ecd.downloadObject(oinf, reqCtx) : rawx.downloadObject(
-                oinf, reqCtx);
+        return download(oinf, null, reqCtx);
     }
 
     @Override
@@ -350,8 +554,121 @@ public class DefaultClient implements AdvancedClient {
     public InputStream downloadObject(ObjectInfo oinf, Range range, RequestContext reqCtx) {
         checkArgument(oinf != null, "ObjectInfo cannot be null");
         reqCtx.startTiming();
-        return oinf.isEC() ? ecd.downloadObject(oinf, range, reqCtx) : rawx
-                .downloadObject(oinf, range, reqCtx);
+        return download(oinf, range, reqCtx);
+    }
+
+    @Override
+    public int downloadObject(ObjectInfo oinf, Range range, ByteBuffer dst) {
+        checkArgument(oinf != null, "ObjectInfo cannot be null");
+        RequestContext reqCtx = oinf.requestContext();
+        return this.downloadObject(oinf, range, dst,
+                new RequestContext().withRequestId(
+                        null == reqCtx ? null : reqCtx.requestId()));
+    }
+
+    @Override
+    public int downloadObject(ObjectInfo oinf, Range range, ByteBuffer dst,
+            RequestContext reqCtx) {
+        checkArgument(oinf != null, "ObjectInfo cannot be null");
+        checkArgument(dst != null, "ByteBuffer cannot be null");
+        long from = null == range ? 0 : range.from();
+        long to = null == range || range.to() < 0
+                ? oinf.size() : Math.min(range.to(), oinf.size());
+        int len = (int) Math.min(dst.remaining(), to - from);
+        if (0 >= len)
+            return 0;
+        InputStream in = this.downloadObject(oinf,
+                Range.between(from, from + len), reqCtx);
+        try {
+            int read = ByteBuffers.readFully(in, dst);
+            if (read < len)
+                throw new OioException(String.format(
+                        "Unexpected end of object data (%d bytes read, %d expected)",
+                        read, len));
+            return read;
+        } catch (IOException e) {
+            throw new OioException("Failed to read object data", e);
+        } finally {
+            try {
+                in.close();
+            } catch (IOException e) {
+                // ignore
+            }
+        }
+    }
+
+    @Override
+    public long downloadObjectToFile(ObjectInfo oinf, Path dst) {
+        checkArgument(oinf != null, "ObjectInfo cannot be null");
+        RequestContext reqCtx = oinf.requestContext();
+        return this.downloadObjectToFile(oinf, dst,
+                new RequestContext().withRequestId(
+                        null == reqCtx ? null : reqCtx.requestId()));
+    }
+
+    @Override
+    public long downloadObjectToFile(ObjectInfo oinf, Path dst,
+            RequestContext reqCtx) {
+        checkArgument(oinf != null, "ObjectInfo cannot be null");
+        reqCtx.startTiming();
+        if (!oinf.isEC())
+            return rawx.downloadObjectToFile(oinf, dst, reqCtx);
+        return decodeLocally(oinf) ? ec.downloadObjectToFile(oinf, dst, reqCtx)
+                : ecd.downloadObjectToFile(oinf, dst, reqCtx);
+    }
+
+    @Override
+    public ReadableByteChannel downloadObjectChannel(ObjectInfo oinf,
+            Range range) {
+        checkArgument(oinf != null, "ObjectInfo cannot be null");
+        RequestContext reqCtx = oinf.requestContext();
+        return this.downloadObjectChannel(oinf, range,
+                new RequestContext().withRequestId(
+                        null == reqCtx ? null : reqCtx.requestId()));
+    }
+
+    @Override
+    public ReadableByteChannel downloadObjectChannel(ObjectInfo oinf,
+            Range range, RequestContext reqCtx) {
+        return ByteBuffers.channel(this.downloadObject(oinf, range, reqCtx));
+    }
+
+    @Override
+    public SeekableByteChannel downloadObjectChannel(ObjectInfo oinf) {
+        checkArgument(oinf != null, "ObjectInfo cannot be null");
+        RequestContext reqCtx = oinf.requestContext();
+        return this.downloadObjectChannel(oinf,
+                new RequestContext().withRequestId(
+                        null == reqCtx ? null : reqCtx.requestId()));
+    }
+
+    @Override
+    public SeekableByteChannel downloadObjectChannel(ObjectInfo oinf,
+            RequestContext reqCtx) {
+        checkArgument(oinf != null, "ObjectInfo cannot be null");
+        reqCtx.startTiming();
+        return new ObjectChannel(storage(oinf), oinf, reqCtx);
+    }
+
+    @Override
+    public List<Future<ByteBuffer>> readRanges(ObjectInfo oinf,
+            List<Range> ranges) {
+        checkArgument(oinf != null, "ObjectInfo cannot be null");
+        RequestContext reqCtx = oinf.requestContext();
+        return this.readRanges(oinf, ranges,
+                new RequestContext().withRequestId(
+                        null == reqCtx ? null : reqCtx.requestId()));
+    }
+
+    @Override
+    public List<Future<ByteBuffer>> readRanges(ObjectInfo oinf,
+            List<Range> ranges, RequestContext reqCtx) {
+        checkArgument(oinf != null, "ObjectInfo cannot be null");
+        reqCtx.startTiming();
+        if (!oinf.isEC())
+            return rawx.readRanges(oinf, ranges, reqCtx);
+        return decodeLocally(oinf) ? ec.readRanges(oinf, ranges, reqCtx)
+                : ecd.readRanges(oinf, ranges, reqCtx);
     }
 
     @Override
@@ -398,7 +715,11 @@ public class DefaultClient implements AdvancedClient {
         if (options == null)
             options = new ObjectDeletionOptions();
         reqCtx.startTiming();
-        proxy.deleteObject(url, options, reqCtx);
+        try {
+            proxy.deleteObject(url, options, reqCtx);
+        } finally {
+            invalidate(url);
+        }
     }
 
     @Override
@@ -549,7 +870,11 @@ public class DefaultClient implements AdvancedClient {
             Map<String, String> props, boolean clear, RequestContext reqCtx)
             throws OioException {
         reqCtx.startTiming();
-        proxy.setObjectProperties(url, version, props, clear, reqCtx);
+        try {
+            proxy.setObjectProperties(url, version, props, clear, reqCtx);
+        } finally {
+            invalidate(url);
+        }
     }
 
     @Override
@@ -617,14 +942,160 @@ public class DefaultClient implements AdvancedClient {
     public void deleteObjectProperties(OioUrl url, Long version,
             RequestContext reqCtx, String... keys) throws OioException {
         reqCtx.startTiming();
-        proxy.deleteObjectProperties(reqCtx, url, version, keys);
+        try {
+            proxy.deleteObjectProperties(reqCtx, url, version, keys);
+        } finally {
+            invalidate(url);
+        }
     }
 
     @Override
     public void deleteObjectProperties(OioUrl url, Long version,
             List<String> keys, RequestContext reqCtx) throws OioException {
         reqCtx.startTiming();
-        proxy.deleteObjectProperties(url, version, keys, reqCtx);
+        try {
+            proxy.deleteObjectProperties(url, version, keys, reqCtx);
+        } finally {
+            invalidate(url);
+        }
+    }
+
+    /* -- INTERNALS -- */
+
+    /**
+     * Downloads an object, through the disk cache when enabled. Whole
+     * downloads of objects small enough are added to the cache, ranges are
+     * served from it only on hits.
+     */
+    private InputStream download(ObjectInfo oinf, Range range,
+            RequestContext reqCtx) {
+        String key = null;
+        if (null != diskCache && null != oinf.url() && null != oinf.hash()
+                && oinf.size() <= diskMaxObjectSize) {
+            key = DiskCache.key(oinf.url(), oinf.version(), oinf.hash());
+            ByteBuffer data = diskCache.get(key);
+            if (null != data && data.remaining() == oinf.size()) {
+                long from = null == range ? 0 : range.from();
+                long to = null == range || 0 > range.to() ? oinf.size()
+                        : Math.min(range.to(), oinf.size());
+                if (from <= to) {
+                    data.position((int) from);
+                    data.limit((int) to);
+                    return ByteBuffers.stream(data);
+                }
+            }
+        }
+        InputStream in = storage(oinf).downloadObject(oinf, range, reqCtx);
+        if (null == key || null != range)
+            return in;
+        String hash = oinf.hash();
+        return diskCache.store(key, in, oinf.size(),
+                32 == hash.length() ? hash : null);
+    }
+
+    /**
+     * @return true if the specified erasure-coded object can be decoded by
+     *         this client, instead of ecd
+     */
+    private boolean decodeLocally(ObjectInfo oinf) {
+        return null != ec && EcClient.supports(oinf);
+    }
+
+    /**
+     * @return the client reading the data of the specified object
+     */
+    private StorageClient storage(ObjectInfo oinf) {
+        if (!oinf.isEC())
+            return rawx;
+        return decodeLocally(oinf) ? ec : ecd;
+    }
+
+    private void invalidate(OioUrl url) {
+        if (null != infoCache)
+            infoCache.invalidate(url);
+        if (null != notFoundCache)
+            notFoundCache.invalidate(url);
+    }
+
+    /**
+     * Asks the proxy for the information about an object, unless it is known
+     * to be missing. Only lookups of the latest version are remembered as
+     * missing.
+     */
+    private ObjectInfo fetchObjectInfo(OioUrl url, Long version,
+            boolean loadProperties, RequestContext reqCtx) {
+        if (null == notFoundCache || null != version)
+            return proxy.getObjectInfo(url, version, reqCtx, loadProperties);
+        String missing = notFoundCache.get(url);
+        if (null != missing)
+            throw new ObjectNotFoundException(missing);
+        try {
+            return proxy.getObjectInfo(url, version, reqCtx, loadProperties);
+        } catch (ObjectNotFoundException e) {
+            notFoundCache.put(url, e.getMessage());
+            throw e;
+        }
+    }
+
+    /**
+     * Opens the data of an object described by a cached {@code ObjectInfo}.
+     * For replicated objects, the first bytes are read right away: if the
+     * chunks cannot be read, the cached entry is considered stale, it is
+     * dropped and {@code null} is returned.
+     */
+    private ObjectData open(OioUrl url, ObjectInfo cached,
+            RequestContext reqCtx) {
+        if (cached.isEC())
+            return new ObjectData(cached,
+                    storage(cached).downloadObject(cached, reqCtx));
+        try {
+            return new ObjectData(cached, rawx.readAhead(cached,
+                    PREFETCH_SIZE, new RequestContext(reqCtx)));
+        } catch (IOException e) {
+            logger.debug("Cached chunks unreadable, refreshing", e);
+        } catch (OioException e) {
+            logger.debug("Cached chunks unreadable, refreshing", e);
+        }
+        infoCache.invalidate(url);
+        return null;
+    }
+
+    /**
+     * Drops a speculative download. The request is waited for so the stream
+     * it opened gets closed: prefetches start as soon as they are submitted,
+     * and {@link Future#cancel(boolean)} would only lose that stream.
+     */
+    private void discard(Future<InputStream> speculative) {
+        if (null == speculative)
+            return;
+        try {
+            speculative.get().close();
+        } catch (Exception e) {
+            // the download failed, nothing to close
+        }
     }
 
+    /**
+     * @return true if both descriptions are about the same content, stored
+     *         on the same chunks
+     */
+    private static boolean sameData(ObjectInfo a, ObjectInfo b) {
+        if (!eq(a.oid(), b.oid()) || !eq(a.version(), b.version())
+                || !eq(a.size(), b.size()) || !eq(a.hash(), b.hash())
+                || null == a.chunks() || null == b.chunks()
+                || a.chunks().size() != b.chunks().size())
+            return false;
+        return chunkUrls(a).equals(chunkUrls(b));
+    }
+
+    private static Set<String> chunkUrls(ObjectInfo oinf) {
+        Set<String> res = new HashSet<String>();
+        for (ChunkInfo ci : oinf.chunks())
+            res.add(ci.url());
+        return res;
+    }
+
+    private static boolean eq(Object a, Object b) {
+        return null == a ? null == b : a.equals(b);
+    }
 }
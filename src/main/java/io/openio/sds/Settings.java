@@ -4,6 +4,7 @@ import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 
+import io.openio.sds.cache.CacheSettings;
 import io.openio.sds.common.IniFile;
 import io.openio.sds.proxy.ProxySettings;
 import io.openio.sds.storage.rawx.RawxSettings;
@@ -22,6 +23,7 @@ public class Settings {
 
     private ProxySettings proxy = new ProxySettings();
     private RawxSettings rawx = new RawxSettings();
+    private CacheSettings cache = new CacheSettings();
 
     /**
      * Load namespace settings from INI file.
@@ -124,4 +126,22 @@ public class Settings {
         this.rawx = rawx;
         return this;
     }
+
+    /**
+     * Returns client side caches configuration
+     * @return client side caches configuration
+     */
+    public CacheSettings cache() {
+        return cache;
+    }
+
+    /**
+     * Specifies client side caches configuration
+     * @param cache the configuration to set
+     * @return this
+     */
+    public Settings cache(CacheSettings cache) {
+        this.cache = cache;
+        return this;
+    }
 }
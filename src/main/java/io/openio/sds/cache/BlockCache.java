@@ -0,0 +1,193 @@
+package io.openio.sds.cache;
+
+import static io.openio.sds.common.Check.checkArgument;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Off-heap cache of data blocks, bounded by a number of bytes.
+ * <p>
+ * The blocks are copied to direct buffers. The cache is split in
+ * independently locked segments, chosen by the hash of the keys, so
+ * concurrent lookups of different keys rarely contend. Each segment uses a
+ * segmented LRU policy: new blocks enter a probation area, and are promoted
+ * to a protected area when read again. Blocks read once are evicted first,
+ * so a large scan does not flush the blocks read repeatedly.
+ */
+public class BlockCache {
+
+    /**
+     * Default number of independently locked segments.
+     */
+    public static final int DEFAULT_SEGMENTS = 16;
+
+    private final Segment[] segments;
+
+    /**
+     * @param capacity
+     *            the maximum number of bytes to keep
+     * @param blockSize
+     *            the size of the largest block to keep
+     */
+    public BlockCache(long capacity, int blockSize) {
+        this(capacity, blockSize, DEFAULT_SEGMENTS);
+    }
+
+    /**
+     * Builds a cache with at most {@code concurrency} segments. Fewer
+     * segments are used when needed, so that each one can hold at least one
+     * block.
+     *
+     * @param capacity
+     *            the maximum number of bytes to keep
+     * @param blockSize
+     *            the size of the largest block to keep
+     * @param concurrency
+     *            the maximum number of independently locked segments
+     */
+    public BlockCache(long capacity, int blockSize, int concurrency) {
+        checkArgument(0 < blockSize, "Invalid cache block size");
+        checkArgument(blockSize <= capacity,
+                "Cache capacity is smaller than one block");
+        checkArgument(0 < concurrency, "Invalid cache concurrency");
+        int count = (int) Math.min(concurrency, capacity / blockSize);
+        segments = new Segment[count];
+        for (int i = 0; i < count; i++)
+            segments[i] = new Segment(capacity / count);
+    }
+
+    /**
+     * @return the number of independently locked segments
+     */
+    int segments() {
+        return segments.length;
+    }
+
+    /**
+     * @param key
+     *            the key of the block
+     * @return a read-only view of the block, or {@code null} if it is not
+     *         in the cache
+     */
+    public ByteBuffer get(String key) {
+        ByteBuffer b = segment(key).get(key);
+        return null == b ? null : b.asReadOnlyBuffer();
+    }
+
+    /**
+     * Copies the remaining bytes of the specified buffer to the cache. The
+     * position of the buffer is left untouched.
+     *
+     * @param key
+     *            the key of the block
+     * @param data
+     *            the block
+     */
+    public void put(String key, ByteBuffer data) {
+        Segment s = segment(key);
+        if (data.remaining() > s.capacity)
+            return;
+        ByteBuffer copy = ByteBuffer.allocateDirect(data.remaining());
+        copy.put(data.duplicate());
+        copy.flip();
+        s.put(key, copy);
+    }
+
+    /**
+     * @return the number of bytes in the cache
+     */
+    public long size() {
+        long res = 0;
+        for (Segment s : segments)
+            res += s.size();
+        return res;
+    }
+
+    /* -- INTERNALS -- */
+
+    private Segment segment(String key) {
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return segments[(h & 0x7fffffff) % segments.length];
+    }
+
+    private static class Segment {
+
+        private final long capacity;
+        private final long protectedCapacity;
+        private final LinkedHashMap<String, ByteBuffer> probation = new LinkedHashMap<String, ByteBuffer>(
+                16, 0.75f, true);
+        private final LinkedHashMap<String, ByteBuffer> protect = new LinkedHashMap<String, ByteBuffer>(
+                16, 0.75f, true);
+        private long probationSize = 0;
+        private long protectedSize = 0;
+
+        Segment(long capacity) {
+            this.capacity = capacity;
+            this.protectedCapacity = capacity * 4 / 5;
+        }
+
+        synchronized ByteBuffer get(String key) {
+            ByteBuffer b = protect.get(key);
+            if (null != b)
+                return b;
+            b = probation.remove(key);
+            if (null == b)
+                return null;
+            probationSize -= b.capacity();
+            protect.put(key, b);
+            protectedSize += b.capacity();
+            // demote the least recently used protected blocks
+            Iterator<Map.Entry<String, ByteBuffer>> it = protect.entrySet()
+                    .iterator();
+            while (protectedSize > protectedCapacity && it.hasNext()) {
+                Map.Entry<String, ByteBuffer> e = it.next();
+                if (e.getKey().equals(key))
+                    continue;
+                it.remove();
+                protectedSize -= e.getValue().capacity();
+                probation.put(e.getKey(), e.getValue());
+                probationSize += e.getValue().capacity();
+            }
+            return b;
+        }
+
+        synchronized void put(String key, ByteBuffer b) {
+            ByteBuffer old = protect.remove(key);
+            if (null != old)
+                protectedSize -= old.capacity();
+            old = probation.put(key, b);
+            if (null != old)
+                probationSize -= old.capacity();
+            probationSize += b.capacity();
+            // probation first, the new block last
+            evict(probation, true, key);
+            evict(protect, false, null);
+            evict(probation, true, null);
+        }
+
+        synchronized long size() {
+            return probationSize + protectedSize;
+        }
+
+        private void evict(LinkedHashMap<String, ByteBuffer> area,
+                boolean isProbation, String keep) {
+            Iterator<Map.Entry<String, ByteBuffer>> it = area.entrySet()
+                    .iterator();
+            while (probationSize + protectedSize > capacity && it.hasNext()) {
+                Map.Entry<String, ByteBuffer> e = it.next();
+                if (e.getKey().equals(keep))
+                    continue;
+                long len = e.getValue().capacity();
+                it.remove();
+                if (isProbation)
+                    probationSize -= len;
+                else
+                    protectedSize -= len;
+            }
+        }
+    }
+}
@@ -0,0 +1,151 @@
+package io.openio.sds.cache;
+
+/**
+ * Client side caches configuration. All caches are disabled by default.
+ */
+public class CacheSettings {
+
+    private int objectInfoSize = 0;
+
+    private long objectInfoTtl = 10000L;
+
+    private int locationsSize = 0;
+
+    private int notFoundSize = 0;
+
+    private long notFoundTtl = 1000L;
+
+    private String diskPath = null;
+
+    private long diskSize = 0;
+
+    private long diskMaxObjectSize = 67108864L;
+
+    public CacheSettings() {
+    }
+
+    /**
+     * Maximum number of object URLs whose {@code ObjectInfo} is kept in
+     * memory. 0 disables the cache.
+     *
+     * @return the maximum number of cached URLs
+     */
+    public int objectInfoSize() {
+        return objectInfoSize;
+    }
+
+    public CacheSettings objectInfoSize(int objectInfoSize) {
+        this.objectInfoSize = objectInfoSize;
+        return this;
+    }
+
+    /**
+     * Time, in milliseconds, during which a cached {@code ObjectInfo} is
+     * returned without asking the proxy. Changes made by other clients are
+     * not seen before this delay.
+     *
+     * @return the time to live of the entries, in milliseconds
+     */
+    public long objectInfoTtl() {
+        return objectInfoTtl;
+    }
+
+    public CacheSettings objectInfoTtl(long objectInfoTtl) {
+        this.objectInfoTtl = objectInfoTtl;
+        return this;
+    }
+
+    /**
+     * Maximum number of object locations remembered when the
+     * {@code ObjectInfo} cache is disabled. Like the cache, they let
+     * {@code getObject} start downloading an object it has already read
+     * while asking the proxy for its current description. Each location
+     * holds a whole {@code ObjectInfo}, chunk list included. 0 disables the
+     * speculative downloads, unless the {@code ObjectInfo} cache is
+     * enabled.
+     *
+     * @return the maximum number of remembered URLs
+     */
+    public int locationsSize() {
+        return locationsSize;
+    }
+
+    public CacheSettings locationsSize(int locationsSize) {
+        this.locationsSize = locationsSize;
+        return this;
+    }
+
+    /**
+     * Maximum number of missing object URLs remembered. 0 disables the
+     * cache.
+     *
+     * @return the maximum number of cached URLs
+     */
+    public int notFoundSize() {
+        return notFoundSize;
+    }
+
+    public CacheSettings notFoundSize(int notFoundSize) {
+        this.notFoundSize = notFoundSize;
+        return this;
+    }
+
+    /**
+     * Time, in milliseconds, during which an object reported missing is
+     * considered missing without asking the proxy. Objects created by other
+     * clients are not seen before this delay.
+     *
+     * @return the time to live of the entries, in milliseconds
+     */
+    public long notFoundTtl() {
+        return notFoundTtl;
+    }
+
+    public CacheSettings notFoundTtl(long notFoundTtl) {
+        this.notFoundTtl = notFoundTtl;
+        return this;
+    }
+
+    /**
+     * Directory of the disk cache of whole objects. {@code null} disables
+     * the cache.
+     *
+     * @return the path of the cache directory
+     */
+    public String diskPath() {
+        return diskPath;
+    }
+
+    public CacheSettings diskPath(String diskPath) {
+        this.diskPath = diskPath;
+        return this;
+    }
+
+    /**
+     * Maximum number of bytes kept in the disk cache.
+     *
+     * @return the capacity of the disk cache, in bytes
+     */
+    public long diskSize() {
+        return diskSize;
+    }
+
+    public CacheSettings diskSize(long diskSize) {
+        this.diskSize = diskSize;
+        return this;
+    }
+
+    /**
+     * Largest object stored in the disk cache.
+     *
+     * @return the maximum size of cached objects, in bytes
+     */
+    public long diskMaxObjectSize() {
+        return diskMaxObjectSize;
+    }
+
+    public CacheSettings diskMaxObjectSize(long diskMaxObjectSize) {
+        this.diskMaxObjectSize = diskMaxObjectSize;
+        return this;
+    }
+}
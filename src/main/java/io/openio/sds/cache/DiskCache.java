@@ -0,0 +1,335 @@
+package io.openio.sds.cache;
+
+import static io.openio.sds.common.Check.checkArgument;
+import static io.openio.sds.common.OioConstants.OIO_CHARSET;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import io.openio.sds.common.Hash;
+import io.openio.sds.common.Hex;
+import io.openio.sds.exceptions.OioException;
+import io.openio.sds.logging.SdsLogger;
+import io.openio.sds.logging.SdsLoggerFactory;
+import io.openio.sds.models.OioUrl;
+
+/**
+ * Local disk cache of whole objects, bounded by a number of bytes.
+ * <p>
+ * Each object is stored in its own file, named after the url, the version
+ * and the hash of the object, so a modified object never matches the entry
+ * of a previous content. Files are written under a temporary name while the
+ * object is downloaded, then renamed once complete and checked, so a
+ * partial file is never served. Hits are read through memory-mapped files.
+ * <p>
+ * The least recently used files are deleted when the cache is full. The
+ * index is rebuilt from the directory when the cache is created, in the
+ * order of the last modification times, which are updated on each hit.
+ */
+public class DiskCache {
+
+    private static final SdsLogger logger = SdsLoggerFactory
+            .getLogger(DiskCache.class);
+
+    private static final String TMP_SUFFIX = ".tmp";
+
+    private final Path dir;
+    private final long capacity;
+    private final LinkedHashMap<String, Long> index = new LinkedHashMap<String, Long>(
+            16, 0.75f, true);
+    private long size = 0;
+
+    /**
+     * @param dir
+     *            the directory holding the cached files, created if needed
+     * @param capacity
+     *            the maximum number of bytes to keep
+     * @throws OioException
+     *             if the directory cannot be created or read
+     */
+    public DiskCache(Path dir, long capacity) {
+        checkArgument(null != dir, "Path cannot be null");
+        checkArgument(0 < capacity, "Invalid cache capacity");
+        this.dir = dir;
+        this.capacity = capacity;
+        try {
+            Files.createDirectories(dir);
+            load();
+        } catch (IOException e) {
+            throw new OioException("Unable to load disk cache from " + dir, e);
+        }
+    }
+
+    /**
+     * @param url
+     *            the url of an object
+     * @param version
+     *            the version of the object
+     * @param hash
+     *            the hash of the object
+     * @return the cache key of the object
+     */
+    public static String key(OioUrl url, Long version, String hash) {
+        return Hash.sha256()
+                .hashBytes((url.cid() + "/" + url.object() + "/" + version
+                        + "/" + hash).getBytes(OIO_CHARSET))
+                .toString();
+    }
+
+    /**
+     * @param key
+     *            the key of the object
+     * @return a read-only view of the cached object, or {@code null} if it
+     *         is not in the cache
+     */
+    public ByteBuffer get(String key) {
+        synchronized (this) {
+            if (null == index.get(key))
+                return null;
+        }
+        Path p = dir.resolve(key);
+        try {
+            FileChannel fc = FileChannel.open(p, StandardOpenOption.READ);
+            try {
+                ByteBuffer res = fc.map(FileChannel.MapMode.READ_ONLY, 0,
+                        fc.size());
+                Files.setLastModifiedTime(p,
+                        FileTime.fromMillis(System.currentTimeMillis()));
+                return res;
+            } finally {
+                fc.close();
+            }
+        } catch (IOException e) {
+            logger.warn("Unable to read cached file " + p, e);
+            remove(key);
+            return null;
+        }
+    }
+
+    /**
+     * Wraps the specified stream so the data read from it is written to the
+     * cache. The entry is added only if the stream is read up to the
+     * specified size, and the data matches the specified MD5.
+     *
+     * @param key
+     *            the key of the object
+     * @param in
+     *            the data of the object
+     * @param len
+     *            the size of the object
+     * @param md5
+     *            the expected MD5 of the object, as a hexadecimal string,
+     *            or {@code null} to check only the size
+     * @return a stream returning the data of {@code in}
+     */
+    public InputStream store(String key, InputStream in, long len, String md5) {
+        if (len > capacity)
+            return in;
+        try {
+            Path tmp = Files.createTempFile(dir, key, TMP_SUFFIX);
+            return new TeeInputStream(key, in, len, md5, tmp);
+        } catch (IOException e) {
+            logger.warn("Unable to create a file in " + dir, e);
+            return in;
+        }
+    }
+
+    /**
+     * @return the number of bytes in the cache
+     */
+    public synchronized long size() {
+        return size;
+    }
+
+    /* -- INTERNALS -- */
+
+    private void load() throws IOException {
+        final Map<Path, BasicFileAttributes> files = new LinkedHashMap<Path, BasicFileAttributes>();
+        DirectoryStream<Path> ds = Files.newDirectoryStream(dir);
+        try {
+            for (Path p : ds) {
+                if (p.getFileName().toString().endsWith(TMP_SUFFIX)) {
+                    // left by an interrupted download
+                    Files.deleteIfExists(p);
+                    continue;
+                }
+                BasicFileAttributes attrs = Files.readAttributes(p,
+                        BasicFileAttributes.class);
+                if (attrs.isRegularFile())
+                    files.put(p, attrs);
+            }
+        } finally {
+            ds.close();
+        }
+        List<Path> sorted = new ArrayList<Path>(files.keySet());
+        Collections.sort(sorted, new Comparator<Path>() {
+
+            @Override
+            public int compare(Path p1, Path p2) {
+                return files.get(p1).lastModifiedTime()
+                        .compareTo(files.get(p2).lastModifiedTime());
+            }
+        });
+        for (Path p : sorted)
+            add(p.getFileName().toString(), files.get(p).size());
+    }
+
+    private void add(String key, long len) {
+        List<String> evicted = new ArrayList<String>();
+        synchronized (this) {
+            Long old = index.put(key, len);
+            size += len - (null == old ? 0 : old);
+            Iterator<Map.Entry<String, Long>> it = index.entrySet().iterator();
+            while (size > capacity && it.hasNext()) {
+                Map.Entry<String, Long> e = it.next();
+                if (e.getKey().equals(key))
+                    continue;
+                size -= e.getValue();
+                it.remove();
+                evicted.add(e.getKey());
+            }
+        }
+        for (String k : evicted)
+            delete(dir.resolve(k));
+    }
+
+    private void remove(String key) {
+        synchronized (this) {
+            Long len = index.remove(key);
+            if (null != len)
+                size -= len;
+        }
+        delete(dir.resolve(key));
+    }
+
+    private static void delete(Path p) {
+        try {
+            Files.deleteIfExists(p);
+        } catch (IOException e) {
+            logger.warn("Unable to delete " + p, e);
+        }
+    }
+
+    private void commit(String key, Path tmp, long len) {
+        try {
+            Files.move(tmp, dir.resolve(key), StandardCopyOption.ATOMIC_MOVE,
+                    StandardCopyOption.REPLACE_EXISTING);
+            add(key, len);
+        } catch (IOException e) {
+            logger.warn("Unable to add " + key + " to the disk cache", e);
+            delete(tmp);
+        }
+    }
+
+    private class TeeInputStream extends InputStream {
+
+        private final String key;
+        private final InputStream in;
+        private final long len;
+        private final String md5;
+        private final Path tmp;
+        private OutputStream out;
+        private MessageDigest digest;
+        private long written = 0;
+        private final byte[] single = new byte[1];
+
+        TeeInputStream(String key, InputStream in, long len, String md5,
+                Path tmp) throws IOException {
+            this.key = key;
+            this.in = in;
+            this.len = len;
+            this.md5 = md5;
+            this.tmp = tmp;
+            this.out = Files.newOutputStream(tmp);
+            if (null != md5) {
+                try {
+                    this.digest = MessageDigest.getInstance("MD5");
+                } catch (NoSuchAlgorithmException e) {
+                    this.digest = null;
+                }
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            int read = read(single, 0, 1);
+            return read < 0 ? -1 : single[0] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int n) throws IOException {
+            int read = in.read(b, off, n);
+            if (null == out)
+                return read;
+            if (-1 == read) {
+                finish();
+                return read;
+            }
+            try {
+                out.write(b, off, read);
+                if (null != digest)
+                    digest.update(b, off, read);
+                written += read;
+            } catch (IOException e) {
+                logger.warn("Unable to write " + tmp, e);
+                abandon();
+            }
+            return read;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                in.close();
+            } finally {
+                if (null != out)
+                    finish();
+            }
+        }
+
+        private void finish() {
+            try {
+                out.close();
+            } catch (IOException e) {
+                abandon();
+                return;
+            }
+            out = null;
+            if (written != len || (null != digest
+                    && !md5.equalsIgnoreCase(Hex.toHex(digest.digest())))) {
+                delete(tmp);
+                return;
+            }
+            commit(key, tmp, len);
+        }
+
+        private void abandon() {
+            try {
+                out.close();
+            } catch (IOException e) {
+                // ignore
+            }
+            out = null;
+            delete(tmp);
+        }
+    }
+}
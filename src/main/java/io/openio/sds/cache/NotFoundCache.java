@@ -0,0 +1,105 @@
+package io.openio.sds.cache;
+
+import static io.openio.sds.common.Check.checkArgument;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import io.openio.sds.models.OioUrl;
+
+/**
+ * Remembers, for a short time, the object URLs which were reported missing
+ * by the proxy, so repeated lookups of the same missing object do not reach
+ * it. When the cache is full, the least recently used URL is evicted.
+ */
+public class NotFoundCache {
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LinkedHashMap<String, Entry> entries;
+
+    /**
+     * @param maxSize
+     *            the maximum number of URLs to keep
+     * @param ttl
+     *            the time to live of the entries, in milliseconds
+     */
+    public NotFoundCache(int maxSize, long ttl) {
+        checkArgument(0 < maxSize, "Invalid cache size");
+        checkArgument(0 <= ttl, "Invalid cache ttl");
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl * 1000000L;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<String, NotFoundCache.Entry> eldest) {
+                return size() > NotFoundCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * @param url
+     *            the url of an object
+     * @return the message of the error reported by the proxy if the object
+     *         is known to be missing, {@code null} otherwise
+     */
+    public synchronized String get(OioUrl url) {
+        Entry e = entries.get(key(url));
+        if (null == e)
+            return null;
+        if (System.nanoTime() - e.created >= ttlNanos) {
+            entries.remove(key(url));
+            return null;
+        }
+        return e.message;
+    }
+
+    /**
+     * Records the specified object as missing.
+     *
+     * @param url
+     *            the url of the object
+     * @param message
+     *            the message of the error reported by the proxy
+     */
+    public synchronized void put(OioUrl url, String message) {
+        entries.put(key(url), new Entry(message));
+    }
+
+    /**
+     * Forgets the specified object.
+     *
+     * @param url
+     *            the url of the object
+     */
+    public synchronized void invalidate(OioUrl url) {
+        entries.remove(key(url));
+    }
+
+    /**
+     * @return the number of URLs in the cache
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /* -- INTERNALS -- */
+
+    private static String key(OioUrl url) {
+        return url.cid() + "/" + url.object();
+    }
+
+    private static class Entry {
+
+        private final String message;
+        private final long created = System.nanoTime();
+
+        Entry(String message) {
+            this.message = message;
+        }
+    }
+}
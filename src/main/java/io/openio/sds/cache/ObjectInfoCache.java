@@ -0,0 +1,165 @@
+package io.openio.sds.cache;
+
+import static io.openio.sds.common.Check.checkArgument;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import io.openio.sds.models.ObjectInfo;
+import io.openio.sds.models.OioUrl;
+
+/**
+ * In-memory cache of {@link ObjectInfo}, chunk lists included, keyed by
+ * object URL and version.
+ * <p>
+ * Entries expire after a fixed time. Expired entries are no longer returned
+ * by {@link #get(OioUrl, Long, boolean)}, but they are kept as hints of
+ * where the data of the objects is (see {@link #last(OioUrl)}) until they
+ * are invalidated or evicted. When the cache is full, the least recently
+ * used URL is evicted with all its versions. Cached instances are never
+ * returned to the callers, they get copies.
+ */
+public class ObjectInfoCache {
+
+    private final int maxSize;
+    private final long ttlNanos;
+    private final LinkedHashMap<String, Map<Long, Entry>> entries;
+
+    /**
+     * @param maxSize
+     *            the maximum number of URLs to keep
+     * @param ttl
+     *            the time to live of the entries, in milliseconds
+     */
+    public ObjectInfoCache(final int maxSize, long ttl) {
+        checkArgument(0 < maxSize, "Invalid cache size");
+        checkArgument(0 <= ttl, "Invalid cache ttl");
+        this.maxSize = maxSize;
+        this.ttlNanos = ttl * 1000000L;
+        this.entries = new LinkedHashMap<String, Map<Long, Entry>>(16, 0.75f,
+                true) {
+
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<String, Map<Long, ObjectInfoCache.Entry>>
+                    eldest) {
+                return size() > ObjectInfoCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Returns a copy of the cached information about the specified object.
+     *
+     * @param url
+     *            the url of the object
+     * @param version
+     *            the version of the object, {@code null} for the latest one
+     * @param withProperties
+     *            true if the properties of the object are needed
+     * @return the cached information, or {@code null} if there is no valid
+     *         entry
+     */
+    public ObjectInfo get(OioUrl url, Long version, boolean withProperties) {
+        Entry e;
+        synchronized (this) {
+            Map<Long, Entry> versions = entries.get(key(url));
+            if (null == versions)
+                return null;
+            e = versions.get(version);
+            if (null == e || System.nanoTime() - e.created >= ttlNanos)
+                return null;
+        }
+        if (withProperties && !e.withProperties)
+            return null;
+        return e.oinf.copy();
+    }
+
+    /**
+     * Returns a copy of the last information cached about the latest version
+     * of the specified object, even if it expired. It tells where the data
+     * of the object probably is, it must be checked against fresh
+     * information before being trusted.
+     *
+     * @param url
+     *            the url of the object
+     * @return the last cached information, or {@code null} if there is none
+     */
+    public ObjectInfo last(OioUrl url) {
+        Entry e;
+        synchronized (this) {
+            Map<Long, Entry> versions = entries.get(key(url));
+            if (null == versions)
+                return null;
+            e = versions.get(null);
+        }
+        return null == e ? null : e.oinf.copy();
+    }
+
+    /**
+     * Caches the specified information. When {@code version} is
+     * {@code null}, the information is also cached for the version of the
+     * object.
+     *
+     * @param url
+     *            the url of the object
+     * @param version
+     *            the requested version, {@code null} for the latest one
+     * @param withProperties
+     *            true if {@code oinf} holds the properties of the object
+     * @param oinf
+     *            the information to cache
+     */
+    public void put(OioUrl url, Long version, boolean withProperties,
+            ObjectInfo oinf) {
+        Entry e = new Entry(oinf.copy(), withProperties);
+        synchronized (this) {
+            Map<Long, Entry> versions = entries.get(key(url));
+            if (null == versions) {
+                versions = new HashMap<Long, Entry>(2);
+                entries.put(key(url), versions);
+            }
+            versions.put(version, e);
+            if (null == version && null != oinf.version())
+                versions.put(oinf.version(), e);
+        }
+    }
+
+    /**
+     * Removes all the versions of the specified object from the cache.
+     *
+     * @param url
+     *            the url of the object
+     */
+    public synchronized void invalidate(OioUrl url) {
+        entries.remove(key(url));
+    }
+
+    /**
+     * @return the number of URLs in the cache
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /* -- INTERNALS -- */
+
+    private static String key(OioUrl url) {
+        return url.cid() + "/" + url.object();
+    }
+
+    private static class Entry {
+
+        private final ObjectInfo oinf;
+        private final boolean withProperties;
+        private final long created = System.nanoTime();
+
+        Entry(ObjectInfo oinf, boolean withProperties) {
+            this.oinf = oinf;
+            this.withProperties = withProperties;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package io.openio.sds.common;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Transfers data between streams and {@link ByteBuffer}s. Heap buffers are
+ * read or written in place through their backing array, direct buffers go
+ * through a small transfer array.
+ */
+public class ByteBuffers {
+
+    /**
+     * Size of the transfer arrays used to fill direct buffers.
+     */
+    public static final int TRANSFER_SIZE = 65536;
+
+    /**
+     * Reads once from the specified stream into the specified buffer.
+     *
+     * @param in
+     *            the stream to read
+     * @param dst
+     *            the buffer to fill, its position is moved forward
+     * @param tmp
+     *            the transfer array, required only when {@code dst} has no
+     *            accessible array
+     * @return the number of bytes read, or -1 at the end of the stream
+     * @throws IOException
+     *             if the stream cannot be read
+     */
+    public static int read(InputStream in, ByteBuffer dst, byte[] tmp)
+            throws IOException {
+        if (!dst.hasRemaining())
+            return 0;
+        int read;
+        if (dst.hasArray()) {
+            read = in.read(dst.array(), dst.arrayOffset() + dst.position(),
+                    dst.remaining());
+            if (0 < read)
+                dst.position(dst.position() + read);
+        } else {
+            read = in.read(tmp, 0, Math.min(tmp.length, dst.remaining()));
+            if (0 < read)
+                dst.put(tmp, 0, read);
+        }
+        return read;
+    }
+
+    /**
+     * Reads from the specified stream until the buffer is full or the stream
+     * is over.
+     *
+     * @param in
+     *            the stream to read
+     * @param dst
+     *            the buffer to fill, its position is moved forward
+     * @return the number of bytes read
+     * @throws IOException
+     *             if the stream cannot be read
+     */
+    public static int readFully(InputStream in, ByteBuffer dst)
+            throws IOException {
+        byte[] tmp = dst.hasArray() ? null
+                : new byte[Math.min(TRANSFER_SIZE, dst.remaining())];
+        int total = 0;
+        while (dst.hasRemaining()) {
+            int read = read(in, dst, tmp);
+            if (-1 == read)
+                break;
+            total += read;
+        }
+        return total;
+    }
+
+    /**
+     * @param data
+     *            some buffers
+     * @return the sum of the remaining bytes of the buffers
+     */
+    public static long remaining(ByteBuffer... data) {
+        long res = 0;
+        for (ByteBuffer b : data)
+            res += b.remaining();
+        return res;
+    }
+
+    /**
+     * Returns views of the specified range of the concatenation of the
+     * remaining bytes of the specified buffers. The data is not copied, and
+     * the positions of the source buffers are left untouched.
+     *
+     * @param data
+     *            the buffers to slice
+     * @param offset
+     *            the offset of the first byte of the range
+     * @param len
+     *            the length of the range
+     * @return the views, in order
+     */
+    public static ByteBuffer[] slice(ByteBuffer[] data, long offset, long len) {
+        List<ByteBuffer> res = new ArrayList<ByteBuffer>();
+        for (ByteBuffer b : data) {
+            if (0 >= len)
+                break;
+            if (offset >= b.remaining()) {
+                offset -= b.remaining();
+                continue;
+            }
+            ByteBuffer view = b.duplicate();
+            view.position(view.position() + (int) offset);
+            view.limit(view.position() + (int) Math.min(len, view.remaining()));
+            res.add(view.slice());
+            len -= view.remaining();
+            offset = 0;
+        }
+        return res.toArray(new ByteBuffer[res.size()]);
+    }
+
+    /**
+     * Writes the remaining bytes of the specified buffers to the specified
+     * stream, without moving their positions. Heap buffers are written from
+     * their backing array.
+     *
+     * @param out
+     *            the stream to write to
+     * @param data
+     *            the buffers to write
+     * @throws IOException
+     *             if the stream cannot be written
+     */
+    public static void write(OutputStream out, ByteBuffer... data)
+            throws IOException {
+        byte[] tmp = null;
+        for (ByteBuffer b : data) {
+            if (b.hasArray()) {
+                out.write(b.array(), b.arrayOffset() + b.position(),
+                        b.remaining());
+                continue;
+            }
+            if (null == tmp)
+                tmp = new byte[TRANSFER_SIZE];
+            ByteBuffer src = b.duplicate();
+            while (src.hasRemaining()) {
+                int len = Math.min(tmp.length, src.remaining());
+                src.get(tmp, 0, len);
+                out.write(tmp, 0, len);
+            }
+        }
+    }
+
+    /**
+     * Returns a stream over the remaining bytes of the specified buffers,
+     * without moving their positions.
+     *
+     * @param data
+     *            the buffers to read
+     * @return a new stream
+     */
+    public static InputStream stream(ByteBuffer... data) {
+        final ByteBuffer[] src = new ByteBuffer[data.length];
+        for (int i = 0; i < data.length; i++)
+            src[i] = data[i].duplicate();
+        return new InputStream() {
+
+            private final byte[] single = new byte[1];
+            private int current = 0;
+
+            @Override
+            public int read() {
+                return -1 == read(single, 0, 1) ? -1 : single[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                if (0 == len)
+                    return 0;
+                while (current < src.length && !src[current].hasRemaining())
+                    current++;
+                if (current >= src.length)
+                    return -1;
+                int res = Math.min(len, src[current].remaining());
+                src[current].get(b, off, res);
+                return res;
+            }
+        };
+    }
+
+    /**
+     * Wraps the specified stream in a channel. Unlike
+     * {@link java.nio.channels.Channels#newChannel(InputStream)}, reads to
+     * heap buffers are done without any intermediate copy.
+     *
+     * @param in
+     *            the stream to wrap
+     * @return a channel reading from {@code in}, closing it closes
+     *         {@code in}
+     */
+    public static ReadableByteChannel channel(final InputStream in) {
+        return new ReadableByteChannel() {
+
+            private boolean open = true;
+            private byte[] tmp;
+
+            @Override
+            public boolean isOpen() {
+                return open;
+            }
+
+            @Override
+            public void close() throws IOException {
+                if (open) {
+                    open = false;
+                    in.close();
+                }
+            }
+
+            @Override
+            public int read(ByteBuffer dst) throws IOException {
+                if (!open)
+                    throw new ClosedChannelException();
+                if (null == tmp && !dst.hasArray())
+                    tmp = new byte[TRANSFER_SIZE];
+                return ByteBuffers.read(in, dst, tmp);
+            }
+        };
+    }
+}
@@ -112,17 +112,15 @@ public class FeedableInputStream extends InputStream {
         int read = Math.min(current.buffer().remaining(),
                 Math.min(buf.length - offset, length));
         current.buffer().get(buf, offset, read);
-
-        int rc;
-        if (read < length) {
-            rc = read + Math.max(0, read(buf, offset + read, length - read));
-        } else {
-            rc = read;
-        }
-
-        if (current.buffer().remaining() == 0)
-            current = null;
-        return rc;
+        if (current.buffer().hasRemaining())
+            return read;
+
+        // the part is drained, release it before reading the next one
+        boolean last = current.isLast();
+        current = null;
+        if (read < length && !last)
+            return read + Math.max(0, read(buf, offset + read, length - read));
+        return read;
     }
 
     public static class DataPart {
@@ -2,6 +2,7 @@ package io.openio.sds.common;
 
 import static io.openio.sds.common.OioConstants.OIO_CHARSET;
 
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.lang.reflect.Type;
@@ -16,40 +17,61 @@ import com.google.gson.JsonParseException;
 import com.google.gson.JsonPrimitive;
 import com.google.gson.JsonSerializationContext;
 import com.google.gson.JsonSerializer;
+import com.google.gson.TypeAdapter;
 import com.google.gson.reflect.TypeToken;
 import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
 
+import io.openio.sds.models.ChunkInfo;
 import io.openio.sds.models.Position;
 
 /**
  * Gson utility class
+ * <p>
+ * The {@code Gson} instances are built once and shared, they are thread-safe.
+ * The chunks, decoded from every object description, have a handwritten
+ * adapter instead of one built by reflection: see
+ * {@code JsonAdaptersBenchmark} in the test tree.
  */
 public class JsonUtils {
 
-    private static final GsonBuilder builder = new GsonBuilder()
-            .registerTypeAdapter(Position.class, new PositionAdapter());
+    private static final Gson GSON = builder().create();
+    private static final Gson GSON_FOR_OBJECT = builder().serializeNulls()
+            .create();
     private static final ObjectMapper mapper = new ObjectMapper();
 
+    static {
+        mapper.getFactory()
+                .configure(JsonGenerator.Feature.ESCAPE_NON_ASCII, true);
+    }
+
     private static final Type MAP_TYPE = new TypeToken<Map<String, String>>() {
     }.getType();
     private static final Type MAP_MAP_TYPE = new TypeToken<Map<String, Map<String, String>>>() {
     }.getType();
 
     /**
-     * Returns a new {@code Gson} instance with OpenIO adapters
+     * Returns the {@code Gson} instance with OpenIO adapters
      *
      * @return the gson instance
      */
     public static Gson gson() {
-        return builder.create();
+        return GSON;
     }
 
+    /**
+     * Returns the {@code Gson} instance with OpenIO adapters, serializing
+     * null fields
+     *
+     * @return the gson instance
+     */
     public static Gson gsonForObject() {
-        return builder.serializeNulls().create();
+        return GSON_FOR_OBJECT;
     }
 
     public static Map<String, String> jsonToMap(String map) {
@@ -70,14 +92,92 @@ public class JsonUtils {
 
     public static String jsonFromMap(Map<String, String> map) {
         try {
-            mapper.getFactory()
-                .configure(JsonGenerator.Feature.ESCAPE_NON_ASCII, true);
             return mapper.writeValueAsString(map);
         } catch (JsonProcessingException e) {
             throw new IllegalArgumentException(e);
         }
     }
 
+    private static GsonBuilder builder() {
+        return new GsonBuilder()
+                .registerTypeAdapter(Position.class, new PositionAdapter())
+                .registerTypeAdapter(ChunkInfo.class, new ChunkInfoAdapter());
+    }
+
+    /* -- Adapters -- */
+
+    /*
+     * The adapter below is as lenient as the reflective one: numbers and
+     * booleans are accepted as strings, numeric strings as numbers, and
+     * unknown fields are ignored.
+     */
+
+    private static String readString(JsonReader in) throws IOException {
+        JsonToken t = in.peek();
+        if (JsonToken.NULL == t) {
+            in.nextNull();
+            return null;
+        }
+        if (JsonToken.BOOLEAN == t)
+            return Boolean.toString(in.nextBoolean());
+        return in.nextString();
+    }
+
+    private static Long readLong(JsonReader in) throws IOException {
+        if (JsonToken.NULL == in.peek()) {
+            in.nextNull();
+            return null;
+        }
+        return in.nextLong();
+    }
+
+    private static final class ChunkInfoAdapter extends TypeAdapter<ChunkInfo> {
+
+        @Override
+        public ChunkInfo read(JsonReader in) throws IOException {
+            if (JsonToken.NULL == in.peek()) {
+                in.nextNull();
+                return null;
+            }
+            ChunkInfo ci = new ChunkInfo();
+            in.beginObject();
+            while (in.hasNext()) {
+                String name = in.nextName();
+                if ("url".equals(name)) {
+                    ci.url(readString(in));
+                } else if ("real_url".equals(name)) {
+                    ci.real_url(readString(in));
+                } else if ("size".equals(name)) {
+                    ci.size(readLong(in));
+                } else if ("hash".equals(name)) {
+                    ci.hash(readString(in));
+                } else if ("pos".equals(name)) {
+                    String pos = readString(in);
+                    ci.pos(null == pos ? null : Position.parse(pos));
+                } else {
+                    in.skipValue();
+                }
+            }
+            in.endObject();
+            return ci;
+        }
+
+        @Override
+        public void write(JsonWriter out, ChunkInfo ci) throws IOException {
+            if (null == ci) {
+                out.nullValue();
+                return;
+            }
+            out.beginObject();
+            out.name("url").value(ci.url());
+            out.name("real_url").value(ci.real_url());
+            out.name("size").value(ci.size());
+            out.name("hash").value(ci.hash());
+            out.name("pos").value(null == ci.pos() ? null : ci.pos().toString());
+            out.endObject();
+        }
+    }
+
     private static final class PositionAdapter implements
             JsonSerializer<Position>, JsonDeserializer<Position> {
 
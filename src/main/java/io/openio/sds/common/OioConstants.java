@@ -71,6 +71,7 @@ public class OioConstants {
     public static final String SIMULATE_VERSIONING_HEADER = "X-oio-simulate-versioning";
 
     public static final String RANGE_HEADER = "Range";
+    public static final String CONTENT_RANGE_HEADER = "Content-Range";
     public static final String OIO_TIMEOUT_HEADER = "X-oio-timeout";
 
 
@@ -88,6 +89,8 @@ public class OioConstants {
     public static final String CHUNK_META_CHUNK_ID = "X-oio-chunk-meta-chunk-id";
     public static final String CHUNK_META_CHUNK_POS = "X-oio-chunk-meta-chunk-pos";
     public static final String CHUNK_META_CHUNK_HASH = "X-oio-chunk-meta-chunk-hash";
+    public static final String CHUNK_META_METACHUNK_SIZE = "X-oio-chunk-meta-metachunk-size";
+    public static final String CHUNK_META_METACHUNK_HASH = "X-oio-chunk-meta-metachunk-hash";
 
     /* -- ECD common headers -- */
 
@@ -104,6 +107,7 @@ public class OioConstants {
     public static final String PREFIX_PARAM = "prefix";
     public static final String DELIMITER_PARAM = "delimiter";
     public static final String MARKER_PARAM = "marker";
+    public static final String END_PARAM = "end";
     public static final String FLUSH_PARAM = "flush";
     public static final String DELETE_MARKER_PARAM = "delete_marker";
 
@@ -0,0 +1,117 @@
+package io.openio.sds.common;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import io.openio.sds.RequestContext;
+import io.openio.sds.exceptions.DeadlineReachedException;
+import io.openio.sds.exceptions.OioException;
+
+/**
+ * Coalesces concurrent identical calls: while a call is running for a key,
+ * other callers with the same key wait for its result instead of running
+ * their own.
+ * <p>
+ * The call runs in the thread of the first caller, with its
+ * {@link RequestContext}. The other callers wait no longer than their own
+ * deadline. If the shared call fails because the deadline of the first
+ * caller was reached, the others which still have time run the call again.
+ *
+ * @param <V>
+ *            the type of the results
+ */
+public class SingleFlight<V> {
+
+    private final ConcurrentMap<String, FutureTask<V>> calls = new ConcurrentHashMap<String, FutureTask<V>>();
+
+    /**
+     * Runs the specified call, or waits for the identical one already
+     * running.
+     *
+     * @param key
+     *            identifies the call, identical calls share the same key
+     * @param call
+     *            the call to run
+     * @param reqCtx
+     *            the context of the caller, can be {@code null}
+     * @return the result of the call, shared with all callers of the same
+     *         flight
+     * @throws OioException
+     *             if the call failed
+     */
+    public V execute(String key, Callable<V> call, RequestContext reqCtx) {
+        while (true) {
+            FutureTask<V> task = new FutureTask<V>(call);
+            FutureTask<V> running = calls.putIfAbsent(key, task);
+            if (null == running) {
+                try {
+                    task.run();
+                } finally {
+                    calls.remove(key, task);
+                }
+                return get(task);
+            }
+            try {
+                return await(running, reqCtx);
+            } catch (TimeoutException e) {
+                throw new DeadlineReachedException();
+            } catch (DeadlineReachedException e) {
+                // the deadline of the caller which ran the call was reached
+                if (!hasTime(reqCtx))
+                    throw e;
+            }
+        }
+    }
+
+    /**
+     * @return the number of calls running
+     */
+    public int running() {
+        return calls.size();
+    }
+
+    /* -- INTERNALS -- */
+
+    private V await(FutureTask<V> running, RequestContext reqCtx)
+            throws TimeoutException {
+        if (null == reqCtx || !(reqCtx.hasDeadline() || reqCtx.hasTimeout()))
+            return get(running);
+        int timeout = reqCtx.timeout();
+        if (0 >= timeout)
+            throw new DeadlineReachedException(-timeout);
+        return unwrap(running, timeout);
+    }
+
+    private static boolean hasTime(RequestContext reqCtx) {
+        return null == reqCtx || !reqCtx.hasDeadline() || 0 < reqCtx.timeout();
+    }
+
+    private V get(FutureTask<V> task) {
+        try {
+            return unwrap(task, -1);
+        } catch (TimeoutException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private V unwrap(FutureTask<V> task, int timeout) throws TimeoutException {
+        try {
+            return 0 > timeout ? task.get()
+                    : task.get(timeout, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OioException("got interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException)
+                throw (RuntimeException) e.getCause();
+            if (e.getCause() instanceof Error)
+                throw (Error) e.getCause();
+            throw new OioException("Request failed", e.getCause());
+        }
+    }
+}
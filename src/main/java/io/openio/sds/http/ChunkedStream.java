@@ -7,7 +7,7 @@ import java.io.InputStream;
 public class ChunkedStream extends InputStream {
 
 	private InputStream chunked;
-	private int currentRemaining = 0;
+	private long currentRemaining = 0;
 	private boolean first = true;
 
 	public ChunkedStream(InputStream chunked) {
@@ -31,7 +31,7 @@ public class ChunkedStream extends InputStream {
 			return -1;
 		if (0 == currentRemaining)
 			readSize();
-		int res = chunked.read(buf, 0, Math.min(buf.length, currentRemaining));
+		int res = chunked.read(buf, 0, (int) Math.min(buf.length, currentRemaining));
 		currentRemaining = currentRemaining - res;
 		return res;
 	}
@@ -43,7 +43,7 @@ public class ChunkedStream extends InputStream {
 		if (-1 == currentRemaining)
 			return -1;
 		int res = chunked.read(buf, offset,
-				Math.min(len, Math.min(buf.length - offset, currentRemaining)));
+				(int) Math.min(Math.min(len, buf.length - offset), currentRemaining));
 		currentRemaining = currentRemaining - res;
 		return res;
 	}
@@ -63,7 +63,7 @@ public class ChunkedStream extends InputStream {
 			out.write(b);
 		}
 		chunked.read(); // read \n
-		currentRemaining = Integer.parseInt(out.toString("utf-8"), 16);
+		currentRemaining = Long.parseLong(out.toString("utf-8"), 16);
 		if (0 == currentRemaining) { // EOF
 			readCRLF();
 			currentRemaining = -1;
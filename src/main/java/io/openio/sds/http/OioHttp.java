@@ -24,6 +24,7 @@ import java.net.Socket;
 import java.net.SocketException;
 import java.net.URI;
 import java.net.URLEncoder;
+import java.nio.ByteBuffer;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -32,6 +33,7 @@ import java.util.Map.Entry;
 import com.google.gson.stream.JsonReader;
 
 import io.openio.sds.RequestContext;
+import io.openio.sds.common.ByteBuffers;
 import io.openio.sds.common.Check;
 import io.openio.sds.common.SocketProvider;
 import io.openio.sds.common.DeadlineManager;
@@ -102,10 +104,12 @@ public class OioHttp {
         private HashMap<String, String> query = new HashMap<String, String>();
         private String body;
         private InputStream data;
+        private ByteBuffer[] buffers;
         private Long len;
         private URI uri;
         private OioHttpResponseVerifier verifier = null;
         private boolean chunked;
+        private Map<String, String> trailers = null;
         private List<InetSocketAddress> hosts = null;
         private RequestContext reqCtx = null;
 
@@ -139,6 +143,20 @@ public class OioHttp {
             return this;
         }
 
+        /**
+         * Sends the body with the chunked transfer encoding, followed by the
+         * specified trailers. The map is read once the whole body is sent,
+         * so its entries can be added while the body is being produced.
+         *
+         * @param trailers
+         *            the trailers to send
+         * @return {@code this}
+         */
+        public RequestBuilder trailers(Map<String, String> trailers) {
+            this.trailers = trailers;
+            return chunked();
+        }
+
         public RequestBuilder body(String body) {
             if (nullOrEmpty(body))
                 return this;
@@ -160,6 +178,27 @@ public class OioHttp {
             return this;
         }
 
+        /**
+         * Sets the remaining bytes of the specified buffers as body of the
+         * request. The buffers are not copied and their positions are left
+         * untouched, so the same buffers can be sent by several requests.
+         *
+         * @param buffers
+         *            the data to send
+         * @return {@code this}
+         */
+        public RequestBuilder body(ByteBuffer... buffers) {
+            if (null == buffers)
+                return this;
+            headers.put(CONTENT_LENGTH_HEADER,
+                    String.valueOf(ByteBuffers.remaining(buffers)));
+            if (!headers.containsKey(CONTENT_TYPE_HEADER)) {
+                headers.put(CONTENT_TYPE_HEADER, "application/octet-stream");
+            }
+            this.buffers = buffers;
+            return this;
+        }
+
         public RequestBuilder verifier(OioHttpResponseVerifier verifier) {
             this.verifier = verifier;
             return this;
@@ -239,7 +278,18 @@ public class OioHttp {
             headers.put(OIO_TIMEOUT_HEADER, timeoutMillisToStringMicros(timeout));
         }
 
-        private OioHttpResponse execute(InetSocketAddress addr) throws OioException {
+        /**
+         * Sends the request to the specified host, ignoring the hosts set
+         * with {@link #hosts(List)}.
+         *
+         * @param addr
+         *            the host to connect to
+         * @return the response
+         * @throws OioException
+         *             if the request fails, caused by an {@link IOException}
+         *             on network errors
+         */
+        public OioHttpResponse execute(InetSocketAddress addr) throws OioException {
             Socket sock = null;
             try {
                 sock = socketProvider.getSocket(addr);
@@ -305,6 +355,8 @@ public class OioHttp {
             bos.write(requestHead());
             if (null != data) {
                 stream(bos);
+            } else if (null != buffers) {
+                ByteBuffers.write(bos, buffers);
             } else if (null != body) {
                 bos.write(body.getBytes(OIO_CHARSET));
             }
@@ -330,9 +382,9 @@ public class OioHttp {
 
         private void streamChunked(OutputStream os) throws IOException {
             byte[] b = new byte[settings.sendBufferSize()];
-            int remaining = len.intValue();
+            long remaining = null == data ? 0 : len;
             while (remaining > 0) {
-                int read = data.read(b, 0, Math.min(remaining, b.length));
+                int read = data.read(b, 0, (int) Math.min(remaining, b.length));
                 if (-1 == read)
                     throw new EOFException("Unexpected end of source stream");
                 remaining -= read;
@@ -342,15 +394,21 @@ public class OioHttp {
                     os.write(CRLF_BYTES);
                 }
             }
-            os.write(("0" + CRLF + CRLF).getBytes(OIO_CHARSET));
+            os.write(("0" + CRLF).getBytes(OIO_CHARSET));
+            if (null != trailers) {
+                for (Entry<String, String> t : trailers.entrySet())
+                    os.write((t.getKey() + ": " + t.getValue() + CRLF)
+                            .getBytes(OIO_CHARSET));
+            }
+            os.write(CRLF_BYTES);
         }
 
         private void stream(OutputStream sos) throws IOException {
             byte[] b = new byte[settings.sendBufferSize()];
-            int remaining = len.intValue();
+            long remaining = len;
 
             while (remaining > 0) {
-                int read = data.read(b, 0, Math.min(remaining, b.length));
+                int read = data.read(b, 0, (int) Math.min(remaining, b.length));
                 if (-1 == read)
                     throw new EOFException("Unexpected end of source stream");
                 remaining -= read;
@@ -6,7 +6,7 @@ import java.io.InputStream;
 public class Stream extends InputStream {
 
 	private InputStream is;
-	private Long remaining;
+	private long remaining;
 
 	public Stream(InputStream is, Long size) {
 		this.is = is;
@@ -18,17 +18,14 @@ public class Stream extends InputStream {
 		if (0 == remaining)
 			return -1;
 		int res = is.read();
-		remaining--;
+		if (-1 != res)
+			remaining--;
 		return res;
 	}
 
 	@Override
 	public int read(byte[] buf) throws IOException {
-		if (0 == remaining)
-			return -1;
-		int res = is.read(buf,0, Math.min(buf.length,remaining.intValue()));
-		remaining = remaining - res;
-		return res;
+		return read(buf, 0, buf.length);
 	}
 
 	@Override
@@ -36,8 +33,10 @@ public class Stream extends InputStream {
 		if (0 == remaining) {
 			return -1;
 		}
-		int res = is.read(buf, offset,Math.min(len,Math.min(buf.length-offset,remaining.intValue())));
-		remaining = remaining - res;
+		int res = is.read(buf, offset,
+				(int) Math.min(Math.min(len, buf.length - offset), remaining));
+		if (0 < res)
+			remaining -= res;
 		return res;
 	}
 
@@ -29,6 +29,10 @@ public class ChunkInfo {
         return size;
     }
 
+    public String real_url() {
+        return real_url;
+    }
+
     public ChunkInfo url(String url) {
         this.url = url;
         return this;
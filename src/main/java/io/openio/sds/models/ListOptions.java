@@ -8,6 +8,7 @@ public class ListOptions {
     private String delimiter;
     private String prefix;
     private String marker;
+    private String end;
 
     public ListOptions() {
     }
@@ -48,12 +49,28 @@ public class ListOptions {
         return this;
     }
 
+    /**
+     * Only the objects whose name is strictly lower than this one are
+     * listed.
+     *
+     * @return the end of the listing, exclusive
+     */
+    public String end() {
+        return end;
+    }
+
+    public ListOptions end(String end) {
+        this.end = end;
+        return this;
+    }
+
     @Override
     public String toString() {
         return MoreObjects.toStringHelper(this)
                 .add("prefix", prefix)
                 .add("delimiter", delimiter)
                 .add("marker", marker)
+                .add("end", end)
                 .add("limit", limit)
                 .toString();
     }
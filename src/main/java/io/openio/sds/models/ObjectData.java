@@ -0,0 +1,39 @@
+package io.openio.sds.models;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * The metadata and the data of an object, as returned by
+ * {@link io.openio.sds.Client#getObject(io.openio.sds.models.OioUrl)}.
+ */
+public class ObjectData implements Closeable {
+
+    private final ObjectInfo info;
+    private final InputStream stream;
+
+    public ObjectData(ObjectInfo info, InputStream stream) {
+        this.info = info;
+        this.stream = stream;
+    }
+
+    /**
+     * @return the metadata of the object
+     */
+    public ObjectInfo info() {
+        return info;
+    }
+
+    /**
+     * @return the data of the object
+     */
+    public InputStream stream() {
+        return stream;
+    }
+
+    @Override
+    public void close() throws IOException {
+        stream.close();
+    }
+}
@@ -3,6 +3,7 @@ package io.openio.sds.models;
 import static io.openio.sds.common.OioConstants.OIO_CHARSET;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
@@ -33,6 +34,7 @@ public class ObjectInfo {
     private RequestContext reqCtx;
 
     private transient Map<Integer, List<ChunkInfo>> sortedChunks;
+    private transient volatile long[] chunkOffsets;
 
     private static final Comparator<ChunkInfo> comparator = new Comparator<ChunkInfo>() {
 
@@ -61,6 +63,7 @@ public class ObjectInfo {
 
     public ObjectInfo chunks(List<ChunkInfo> chunks) {
         this.sortedChunks = sortChunks(chunks);
+        this.chunkOffsets = null;
         this.chunks = chunks;
         return this;
     }
@@ -178,6 +181,41 @@ public class ObjectInfo {
         return sortedChunks.get(pos).get(0).size();
     }
 
+    /**
+     * Returns the offset, in the object, of the first byte of the chunk at
+     * the specified position (of the metachunk for EC objects). The position
+     * just after the last chunk gives the size of the object.
+     *
+     * @param pos
+     *            the position of the chunk
+     * @return the offset of the chunk in the object
+     */
+    public long chunkOffset(int pos) {
+        return chunkOffsets()[pos];
+    }
+
+    /**
+     * Returns the position of the chunk (of the metachunk for EC objects)
+     * holding the byte at the specified offset of the object.
+     *
+     * @param offset
+     *            an offset in the object
+     * @return the position of the chunk, or -1 if the offset is out of the
+     *         object
+     */
+    public int chunkAt(long offset) {
+        long[] offsets = chunkOffsets();
+        if (offset < 0 || offset >= offsets[offsets.length - 1])
+            return -1;
+        int idx = Arrays.binarySearch(offsets, offset);
+        if (idx < 0)
+            return -idx - 2;
+        // skip empty chunks starting at the same offset
+        while (offsets[idx + 1] == offset)
+            idx++;
+        return idx;
+    }
+
     public Map<String, String> properties() {
         return properties;
     }
@@ -246,6 +284,35 @@ public class ObjectInfo {
                 .toString();
     }
 
+    /**
+     * Returns a shallow copy of this object: the chunks are shared, the
+     * properties are copied.
+     *
+     * @return a new {@code ObjectInfo}
+     */
+    public ObjectInfo copy() {
+        ObjectInfo res = new ObjectInfo();
+        res.url = url;
+        res.oid = oid;
+        res.ctime = ctime;
+        res.deleted = deleted;
+        res.policy = policy;
+        res.hash = hash;
+        res.hashMethod = hashMethod;
+        res.chunkMethod = chunkMethod;
+        res.size = size;
+        res.version = version;
+        res.mimeType = mimeType;
+        res.properties = null == properties ? null
+                : new HashMap<String, String>(properties);
+        res.chunks = chunks;
+        res.sortedChunks = sortedChunks;
+        res.chunkOffsets = chunkOffsets;
+        res.ecinfo = ecinfo;
+        res.reqCtx = reqCtx;
+        return res;
+    }
+
     public RequestContext requestContext() {
         return this.reqCtx;
     }
@@ -264,6 +331,19 @@ public class ObjectInfo {
 
     /* -- INTERNAL -- */
 
+    private long[] chunkOffsets() {
+        long[] offsets = chunkOffsets;
+        if (null == offsets) {
+            int count = sortedChunks.size();
+            offsets = new long[count + 1];
+            for (int pos = 0; pos < count; pos++)
+                offsets[pos + 1] = offsets[pos]
+                        + (isEC() ? metachunksize(pos) : chunksize(pos));
+            chunkOffsets = offsets;
+        }
+        return offsets;
+    }
+
     private Map<Integer, List<ChunkInfo>> sortChunks(
             List<ChunkInfo> chunks) {
 
@@ -25,8 +25,10 @@ public class Position {
 
     public static Position parse(String pos) {
         Matcher m = POSITION_PATTERN.matcher(pos);
-        checkArgument(m.matches(),
-                String.format("Invalid position %s", pos));
+        // the message is only built on failure, positions are parsed often
+        if (!m.matches())
+            throw new IllegalArgumentException(
+                    String.format("Invalid position %s", pos));
         if (null == m.group(2))
             return simple(Integer.parseInt(m.group(1)));
         return composed(Integer.parseInt(m.group(1)),
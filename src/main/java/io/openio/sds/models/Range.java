@@ -1,7 +1,7 @@
 package io.openio.sds.models;
 
 import static io.openio.sds.common.Check.checkArgument;
-import static java.lang.Integer.parseInt;
+import static java.lang.Long.parseLong;
 import static java.lang.String.format;
 
 import java.util.regex.Matcher;
@@ -9,6 +9,15 @@ import java.util.regex.Pattern;
 
 import io.openio.sds.common.MoreObjects;
 
+/**
+ * A range of bytes of an object, from {@code from} included to {@code to}
+ * excluded. A negative {@code to} means up to the end of the object.
+ * <p>
+ * {@link #parse(String)} and {@link #rangeValue()} use the same
+ * {@code from-to} notation, so {@code "10-20"} is the 10 bytes from offset
+ * 10 to offset 19. Only {@link #headerValue()} writes the last byte
+ * position, inclusive, as the HTTP {@code Range} header requires.
+ */
 public class Range {
 
     private static final Pattern RANGE_PATTERN = Pattern
@@ -22,6 +31,11 @@ public class Range {
         this.to = to;
     }
 
+    /**
+     * @param to
+     *            the end of the range, excluded
+     * @return the range of the first {@code to} bytes
+     */
     public static Range upTo(long to) {
         checkArgument(0 < to);
         return new Range(0, to);
@@ -32,37 +46,70 @@ public class Range {
         return new Range(from, -1);
     }
 
+    /**
+     * @param from
+     *            the start of the range, included
+     * @param to
+     *            the end of the range, excluded
+     * @return the range of the {@code to - from} bytes starting at
+     *         {@code from}
+     */
     public static Range between(long from, long to) {
         checkArgument(from >= 0 && to > 0 && to >= from,
                 "Invalid range");
         return new Range(from, to);
     }
 
+    /**
+     * Parses the {@code from-to} notation of {@link #rangeValue()}. Either
+     * bound may be omitted, but not both.
+     *
+     * @param str
+     *            the range to parse, e.g. {@code "10-20"}, {@code "10-"} or
+     *            {@code "-20"}
+     * @return the range
+     */
     public static Range parse(String str) {
         Matcher m = RANGE_PATTERN.matcher(str);
         checkArgument(m.matches());
         if (null == m.group(1)) {
             checkArgument(null != m.group(2), "useless range");
-            return upTo(parseInt(m.group(2)));
+            return upTo(parseLong(m.group(2)));
         }
-        return (null == m.group(2)) ? from(parseInt(m.group(1)))
-                : between(parseInt(m.group(1)), parseInt(m.group(2)));
+        return (null == m.group(2)) ? from(parseLong(m.group(1)))
+                : between(parseLong(m.group(1)), parseLong(m.group(2)));
     }
 
     public long from() {
         return from;
     }
 
+    /**
+     * @return the end of the range, excluded, or a negative value if the
+     *         range goes up to the end of the object
+     */
     public long to() {
         return to;
     }
 
+    /**
+     * Returns the value of the HTTP {@code Range} header asking for this
+     * range. Unlike {@code to}, the last byte position of the header is
+     * included, so {@code Range.between(10, 20)} gives
+     * {@code "bytes=10-19"}.
+     *
+     * @return the header value
+     */
     public String headerValue() {
         return to < 0
                 ? format("bytes=%d-", from)
-                : format("bytes=%d-%d", from, to);
+                : format("bytes=%d-%d", from, to - 1);
     }
 
+    /**
+     * @return the {@code from-to} notation of this range, read back by
+     *         {@link #parse(String)}
+     */
     public String rangeValue() {
         return to < 0
                 ? format("%d-", from)
@@ -0,0 +1,16 @@
+package io.openio.sds.proxy;
+
+import io.openio.sds.models.ObjectList.ObjectView;
+
+/**
+ * Receives the objects of a listing, one by one, while the response of the
+ * proxy is decoded.
+ */
+public interface ObjectHandler {
+
+    /**
+     * @param object
+     *            the next object of the listing
+     */
+    void handle(ObjectView object);
+}
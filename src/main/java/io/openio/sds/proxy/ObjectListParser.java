@@ -0,0 +1,124 @@
+package io.openio.sds.proxy;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+
+import io.openio.sds.models.ObjectList;
+import io.openio.sds.models.ObjectList.ObjectView;
+
+/**
+ * Decodes the listing of a container with the streaming API of Jackson.
+ * Each object is handed over as soon as it is decoded, so a page is never
+ * held in memory unless the handler keeps it.
+ */
+class ObjectListParser {
+
+    private static final JsonFactory factory = new JsonFactory();
+
+    private ObjectListParser() {
+    }
+
+    /**
+     * @param in
+     *            the body of the response
+     * @param handler
+     *            the receiver of the objects
+     * @return the listing, without objects
+     * @throws IOException
+     *             if the body cannot be read or is not a valid listing
+     */
+    static ObjectList parse(InputStream in, ObjectHandler handler)
+            throws IOException {
+        ObjectList res = new ObjectList();
+        JsonParser p = factory.createParser(in);
+        try {
+            if (null == p.nextToken())
+                return res;
+            expect(p, JsonToken.START_OBJECT);
+            while (JsonToken.FIELD_NAME == p.nextToken()) {
+                String field = p.getCurrentName();
+                JsonToken t = p.nextToken();
+                if ("objects".equals(field) && JsonToken.START_ARRAY == t) {
+                    while (JsonToken.START_OBJECT == p.nextToken())
+                        handler.handle(object(p));
+                    expect(p, JsonToken.END_ARRAY);
+                } else if ("prefixes".equals(field)
+                        && JsonToken.START_ARRAY == t) {
+                    List<String> prefixes = new ArrayList<String>();
+                    while (JsonToken.END_ARRAY != p.nextToken())
+                        prefixes.add(p.getValueAsString());
+                    res.prefixes(prefixes);
+                } else if ("truncated".equals(field)) {
+                    res.truncated(p.getValueAsBoolean());
+                } else if ("nextMarker".equals(field)) {
+                    res.nextMarker(p.getValueAsString());
+                } else {
+                    p.skipChildren();
+                }
+            }
+            return res;
+        } finally {
+            p.close();
+        }
+    }
+
+    /**
+     * @return the listing, with all its objects
+     */
+    static ObjectList parse(InputStream in) throws IOException {
+        final List<ObjectView> objects = new ArrayList<ObjectView>();
+        return parse(in, new ObjectHandler() {
+
+            @Override
+            public void handle(ObjectView object) {
+                objects.add(object);
+            }
+        }).objects(objects);
+    }
+
+    /* -- INTERNALS -- */
+
+    private static ObjectView object(JsonParser p) throws IOException {
+        ObjectView o = new ObjectView();
+        while (JsonToken.FIELD_NAME == p.nextToken()) {
+            String field = p.getCurrentName();
+            JsonToken t = p.nextToken();
+            if (JsonToken.VALUE_NULL == t) {
+                continue;
+            } else if (t.isStructStart()) {
+                p.skipChildren();
+            } else if ("name".equals(field)) {
+                o.name(p.getValueAsString());
+            } else if ("ver".equals(field)) {
+                o.version(p.getValueAsString());
+            } else if ("ctime".equals(field)) {
+                o.ctime(p.getValueAsString());
+            } else if ("sysmd".equals(field)) {
+                o.sysmd(p.getValueAsString());
+            } else if ("deleted".equals(field)) {
+                o.deleted(p.getValueAsBoolean());
+            } else if ("policy".equals(field)) {
+                o.policy(p.getValueAsString());
+            } else if ("hash".equals(field)) {
+                o.hash(p.getValueAsString());
+            } else if ("size".equals(field)) {
+                o.size(p.getValueAsLong());
+            }
+        }
+        expect(p, JsonToken.END_OBJECT);
+        return o;
+    }
+
+    private static void expect(JsonParser p, JsonToken expected)
+            throws IOException {
+        if (expected != p.getCurrentToken())
+            throw new IOException("Invalid listing, expected " + expected
+                    + " but got " + p.getCurrentToken());
+    }
+}
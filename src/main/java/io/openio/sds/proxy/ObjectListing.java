@@ -0,0 +1,154 @@
+package io.openio.sds.proxy;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+import io.openio.sds.RequestContext;
+import io.openio.sds.exceptions.OioException;
+import io.openio.sds.logging.SdsLogger;
+import io.openio.sds.logging.SdsLoggerFactory;
+import io.openio.sds.models.ListOptions;
+import io.openio.sds.models.ObjectList;
+import io.openio.sds.models.ObjectList.ObjectView;
+import io.openio.sds.models.OioUrl;
+
+/**
+ * Iterates over all the objects of a container, requesting the pages of the
+ * listing one after the other. While a page is consumed, the next one is
+ * requested in the background, so at most two pages are held in memory.
+ * Without executor, the pages are requested only when needed.
+ */
+class ObjectListing implements Iterator<ObjectView> {
+
+    private static final SdsLogger logger = SdsLoggerFactory
+            .getLogger(ObjectListing.class);
+
+    private final ProxyClient proxy;
+    private final OioUrl url;
+    private final ListOptions options;
+    private final RequestContext reqCtx;
+    private final ExecutorService executors;
+
+    private Iterator<ObjectView> page = null;
+    private Future<ObjectList> next = null;
+    private String marker;
+    private boolean more = true;
+
+    ObjectListing(ProxyClient proxy, OioUrl url, ListOptions options,
+            RequestContext reqCtx, ExecutorService executors) {
+        this.proxy = proxy;
+        this.url = url;
+        this.options = options;
+        this.reqCtx = reqCtx;
+        this.executors = executors;
+        this.marker = options.marker();
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (null == page || !page.hasNext()) {
+            List<ObjectView> objects = nextPage();
+            if (null == objects)
+                return false;
+            page = objects.iterator();
+        }
+        return true;
+    }
+
+    @Override
+    public ObjectView next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        return page.next();
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Returns the objects of the next page, ignoring the objects of the
+     * current page not iterated yet.
+     *
+     * @return the objects of the next page, or {@code null} at the end of
+     *         the listing
+     */
+    List<ObjectView> nextPage() {
+        ObjectList l;
+        if (null != next) {
+            l = get(next);
+            next = null;
+        } else if (more) {
+            l = fetch(marker);
+        } else {
+            return null;
+        }
+        return advance(l);
+    }
+
+    /* -- INTERNALS -- */
+
+    /**
+     * Returns the objects of the specified page, and requests the following
+     * one if the listing is truncated.
+     */
+    private List<ObjectView> advance(ObjectList l) {
+        List<ObjectView> objects = null == l.objects()
+                ? Collections.<ObjectView> emptyList()
+                : l.objects();
+        String m = l.nextMarker();
+        if (null == m && !objects.isEmpty())
+            m = objects.get(objects.size() - 1).name();
+        // stop rather than loop if the marker does not move forward
+        more = l.truncated() && null != m && !m.equals(marker);
+        if (!more)
+            return objects;
+        marker = m;
+        if (null == executors)
+            return objects;
+        final String pageMarker = m;
+        try {
+            next = executors.submit(new Callable<ObjectList>() {
+
+                @Override
+                public ObjectList call() {
+                    return fetch(pageMarker);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            logger.debug("No worker available to prefetch the next page");
+        }
+        return objects;
+    }
+
+    private ObjectList fetch(String pageMarker) {
+        ListOptions pageOptions = new ListOptions()
+                .prefix(options.prefix())
+                .delimiter(options.delimiter())
+                .marker(pageMarker)
+                .end(options.end())
+                .limit(options.limit());
+        return proxy.listObjects(url, pageOptions, new RequestContext(reqCtx));
+    }
+
+    private static ObjectList get(Future<ObjectList> f) {
+        try {
+            return f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OioException("Interrupted while listing objects", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof OioException)
+                throw (OioException) e.getCause();
+            throw new OioException("Unable to list objects", e.getCause());
+        }
+    }
+}
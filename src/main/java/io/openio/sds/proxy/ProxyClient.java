@@ -32,6 +32,7 @@ import static io.openio.sds.common.OioConstants.DIR_REF_CREATE_FORMAT;
 import static io.openio.sds.common.OioConstants.DIR_REF_DELETE_FORMAT;
 import static io.openio.sds.common.OioConstants.DIR_REF_SHOW_FORMAT;
 import static io.openio.sds.common.OioConstants.DIR_UNLINK_SRV_FORMAT;
+import static io.openio.sds.common.OioConstants.END_PARAM;
 import static io.openio.sds.common.OioConstants.FLUSH_PARAM;
 import static io.openio.sds.common.OioConstants.GET_BEANS_FORMAT;
 import static io.openio.sds.common.OioConstants.GET_CONTAINER_INFO_FORMAT;
@@ -76,6 +77,7 @@ import static java.lang.String.format;
 import io.openio.sds.RequestContext;
 import io.openio.sds.common.JsonUtils;
 import io.openio.sds.common.OioConstants;
+import io.openio.sds.common.SingleFlight;
 import io.openio.sds.common.Strings;
 import io.openio.sds.exceptions.ContainerExistException;
 import io.openio.sds.exceptions.ContainerNotFoundException;
@@ -95,21 +97,32 @@ import io.openio.sds.models.ObjectCreationOptions;
 import io.openio.sds.models.ObjectDeletionOptions;
 import io.openio.sds.models.ObjectInfo;
 import io.openio.sds.models.ObjectList;
+import io.openio.sds.models.ObjectList.ObjectView;
 import io.openio.sds.models.OioUrl;
 import io.openio.sds.models.ReferenceInfo;
 import io.openio.sds.models.ServiceInfo;
+import io.openio.sds.storage.ec.EcClient;
 
+import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.UnsupportedEncodingException;
 import java.net.InetSocketAddress;
 import java.net.URLDecoder;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import com.google.gson.reflect.TypeToken;
 import com.google.gson.stream.JsonReader;
@@ -126,14 +139,36 @@ public class ProxyClient {
             "hash-method", "id", "length", "mime-type", "name", "policy",
             "size", "version");
 
+    private static final int MIN_WORKERS = 1;
+    private static final int MAX_WORKERS = 100;
+    private static final int IDLE_THREAD_KEEP_ALIVE = 30; // in seconds
+
     private OioHttp http;
     private ProxySettings settings;
     private List<InetSocketAddress> hosts = null;
+    private final SingleFlight<NamespaceInfo> nsFlights = new SingleFlight<NamespaceInfo>();
+    private final SingleFlight<ContainerInfo> containerFlights = new SingleFlight<ContainerInfo>();
+    private final SingleFlight<ObjectInfo> objectFlights = new SingleFlight<ObjectInfo>();
+    private final ExecutorService executors;
 
     public ProxyClient(OioHttp http, ProxySettings settings) {
         this.http = http;
         this.settings = settings;
         this.hosts = this.settings.allHosts();
+        this.executors = new ThreadPoolExecutor(MIN_WORKERS,
+                MAX_WORKERS,
+                IDLE_THREAD_KEEP_ALIVE,
+                TimeUnit.SECONDS,
+                new SynchronousQueue<Runnable>(),
+                new ThreadFactory() {
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r);
+                        t.setName("ProxyClient-Worker");
+                        return t;
+                    }
+                });
     }
 
     /* -- CS -- */
@@ -145,7 +180,20 @@ public class ProxyClient {
      *            common parameters to all requests
      * @return the matching {@code NamespaceInfo}
      */
-    public NamespaceInfo getNamespaceInfo(RequestContext reqCtx) throws OioException {
+    public NamespaceInfo getNamespaceInfo(final RequestContext reqCtx)
+            throws OioException {
+        if (!settings.singleFlight())
+            return fetchNamespaceInfo(reqCtx);
+        return nsFlights.execute(settings.ns(), new Callable<NamespaceInfo>() {
+
+            @Override
+            public NamespaceInfo call() {
+                return fetchNamespaceInfo(reqCtx);
+            }
+        }, reqCtx);
+    }
+
+    private NamespaceInfo fetchNamespaceInfo(RequestContext reqCtx) {
         return http.get(format(CS_NSINFO_FORMAT, settings.url(), settings.ns()))
                 .hosts(hosts).verifier(STANDALONE_VERIFIER)
                 .withRequestContext(reqCtx).execute(NamespaceInfo.class);
@@ -522,9 +570,23 @@ public class ProxyClient {
      * @throws OioException
      *             if any error occurs during request execution
      */
-    public ContainerInfo getContainerInfo(OioUrl url, RequestContext reqCtx)
-            throws OioException {
+    public ContainerInfo getContainerInfo(final OioUrl url,
+            final RequestContext reqCtx) throws OioException {
         checkArgument(null != url, INVALID_URL_MSG);
+        if (!settings.singleFlight())
+            return fetchContainerInfo(url, reqCtx);
+        return containerFlights.execute(url.cid(),
+                new Callable<ContainerInfo>() {
+
+                    @Override
+                    public ContainerInfo call() {
+                        return fetchContainerInfo(url, reqCtx);
+                    }
+                }, reqCtx);
+    }
+
+    private ContainerInfo fetchContainerInfo(OioUrl url,
+            RequestContext reqCtx) {
         OioHttpResponse resp = http.get(
                 format(GET_CONTAINER_INFO_FORMAT, settings.url(), settings.ns(),
                         Strings.urlEncode(url.account()),
@@ -584,6 +646,31 @@ public class ProxyClient {
      */
     public ObjectList listObjects(OioUrl url, ListOptions options,
             RequestContext reqCtx) throws OioException {
+        return listObjects(url, options, null, reqCtx);
+    }
+
+    /**
+     * Lists the objects available inside a container, handing them over one
+     * by one while the response is decoded. The first objects are available
+     * before the whole page is received, and the page is not held in memory.
+     *
+     * @param url
+     *            the {@code url} of the container to list
+     * @param options
+     *            the options to specified to the list request. See
+     *            {@linkplain ListOptions} documentation
+     * @param handler
+     *            the receiver of the objects, in the order of the listing
+     * @param reqCtx
+     *            common parameters to all requests
+     * @return an {@link ObjectList} matching the specified parameters,
+     *         without its objects
+     * @throws OioException
+     *             if any error occurs during request execution
+     */
+    public ObjectList listObjects(OioUrl url, ListOptions options,
+            ObjectHandler handler, RequestContext reqCtx)
+            throws OioException {
         checkArgument(null != url, INVALID_URL_MSG);
         checkArgument(null != options, "Invalid options");
         OioHttpResponse resp = http.get(
@@ -593,15 +680,15 @@ public class ProxyClient {
                 .query(MAX_PARAM, options.limit() > 0 ? String.valueOf(options.limit()) : null)
                 .query(PREFIX_PARAM, options.prefix())
                 .query(MARKER_PARAM, options.marker())
+                .query(END_PARAM, options.end())
                 .query(DELIMITER_PARAM, options.delimiter())
                 .hosts(hosts).verifier(CONTAINER_VERIFIER)
                 .withRequestContext(reqCtx).execute();
         boolean success = false;
         try {
-            ObjectList objectList = gson().fromJson(
-                    new JsonReader(new InputStreamReader(resp.body(),
-                            OIO_CHARSET)),
-                    ObjectList.class);
+            ObjectList objectList = null == handler
+                    ? ObjectListParser.parse(resp.body())
+                    : ObjectListParser.parse(resp.body(), handler);
             String truncated = resp.header(LIST_TRUNCATED_HEADER);
             if (truncated != null) {
                 objectList.truncated(Boolean.parseBoolean(truncated));
@@ -609,11 +696,118 @@ public class ProxyClient {
             }
             success = true;
             return objectList;
+        } catch (IOException e) {
+            throw new OioSystemException("Failed to read the listing", e);
         } finally {
             resp.close(success);
         }
     }
 
+    /**
+     * Lists all the objects of a container, whatever their number. The
+     * pages of the listing are requested while the objects are iterated,
+     * the next page being requested in the background while the current
+     * one is consumed. Each call to {@link Iterable#iterator()} starts a new
+     * listing.
+     * <p>
+     * The limit of the options, if any, is the size of each page. The
+     * common prefixes found with a delimiter are not returned, use
+     * {@link #listObjects(OioUrl, ListOptions, RequestContext)} to get them.
+     *
+     * @param url
+     *            the {@code url} of the container to list
+     * @param options
+     *            the options to specified to the list requests. See
+     *            {@linkplain ListOptions} documentation
+     * @param reqCtx
+     *            common parameters to all requests, copied for each page
+     * @return the objects of the container, in the order of the listing
+     * @throws OioException
+     *             while iterating, if any error occurs during request
+     *             execution
+     */
+    public Iterable<ObjectView> listAll(final OioUrl url,
+            final ListOptions options, RequestContext reqCtx) {
+        checkArgument(null != url, INVALID_URL_MSG);
+        checkArgument(null != options, "Invalid options");
+        final RequestContext ctx = null == reqCtx ? new RequestContext()
+                : reqCtx;
+        return new Iterable<ObjectView>() {
+
+            @Override
+            public Iterator<ObjectView> iterator() {
+                return new ObjectListing(ProxyClient.this, url, options, ctx,
+                        executors);
+            }
+        };
+    }
+
+    /**
+     * Lists all the objects of a container with several requests in
+     * parallel. The names of the container are split at the specified
+     * boundaries into disjoint ranges, each one listed by its own thread
+     * using the {@code marker} and {@code end} options. Good boundaries split
+     * the container into ranges of similar sizes, e.g. the first-level
+     * prefixes of the names.
+     * <p>
+     * Each call to {@link Iterable#iterator()} starts a new listing. The
+     * threads wait for the reader as long as needed, so an iterator not
+     * iterated to the end must be closed to stop them. The iterators are
+     * {@link java.io.Closeable}.
+     *
+     * @param url
+     *            the {@code url} of the container to list
+     * @param options
+     *            the options to specified to the list requests, the limit
+     *            being the size of each page. Delimiters are not supported.
+     * @param boundaries
+     *            the names splitting the container, sorted, strictly between
+     *            the marker and the end of the options, if any
+     * @param parallelism
+     *            the number of ranges listed at the same time
+     * @param ordered
+     *            should the objects be returned in the order of their names?
+     *            Otherwise they are returned as soon as their page is
+     *            received.
+     * @param reqCtx
+     *            common parameters to all requests, copied for each page
+     * @return the objects of the container
+     * @throws OioException
+     *             while iterating, if any error occurs during request
+     *             execution
+     */
+    public Iterable<ObjectView> listAll(final OioUrl url,
+            final ListOptions options, final List<String> boundaries,
+            final int parallelism, final boolean ordered,
+            RequestContext reqCtx) {
+        checkArgument(null != url, INVALID_URL_MSG);
+        checkArgument(null != options, "Invalid options");
+        checkArgument(null == options.delimiter(),
+                "Delimiters are not supported by parallel listings");
+        checkArgument(null != boundaries, "Invalid boundaries");
+        checkArgument(0 < parallelism, "Invalid parallelism");
+        String prev = options.marker();
+        for (String b : boundaries) {
+            checkArgument(!nullOrEmpty(b) && (null == prev || prev.compareTo(b) < 0),
+                    "Boundaries must be sorted and after the marker");
+            prev = b;
+        }
+        checkArgument(null == options.end() || null == prev
+                || prev.compareTo(options.end()) < 0,
+                "Boundaries must be before the end");
+        final List<String> bounds = new ArrayList<String>(boundaries);
+        final RequestContext ctx = null == reqCtx ? new RequestContext()
+                : reqCtx;
+        return new Iterable<ObjectView>() {
+
+            @Override
+            public Iterator<ObjectView> iterator() {
+                return new ShardedListing(ProxyClient.this, url, options,
+                        bounds, parallelism, ordered, ctx);
+            }
+        };
+    }
+
     /**
      * Deletes a container from the OpenIO namespace. The container should be
      * empty to be destroyed.
@@ -924,9 +1118,27 @@ public class ProxyClient {
      *            Whether or not to load properties
      * @return an {@link ObjectInfo} containing informations about the object
      */
-    public ObjectInfo getObjectInfo(OioUrl url, Long version,
-            RequestContext reqCtx, boolean loadProperties) throws OioException {
+    public ObjectInfo getObjectInfo(final OioUrl url, final Long version,
+            final RequestContext reqCtx, final boolean loadProperties)
+            throws OioException {
         checkArgument(null != url, INVALID_URL_MSG);
+        if (!settings.singleFlight())
+            return fetchObjectInfo(url, version, reqCtx, loadProperties);
+        String key = url.cid() + "/" + url.object() + "/" + version + "/"
+                + loadProperties;
+        // the result is shared between the callers, each one gets a copy
+        // bound to its own request context
+        return objectFlights.execute(key, new Callable<ObjectInfo>() {
+
+            @Override
+            public ObjectInfo call() {
+                return fetchObjectInfo(url, version, reqCtx, loadProperties);
+            }
+        }, reqCtx).copy().withRequestContext(reqCtx);
+    }
+
+    private ObjectInfo fetchObjectInfo(OioUrl url, Long version,
+            RequestContext reqCtx, boolean loadProperties) {
         RequestBuilder request = http.get(
                 format(GET_OBJECT_FORMAT, settings.url(), settings.ns(),
                         Strings.urlEncode(url.account()),
@@ -1642,13 +1854,12 @@ public class ProxyClient {
         try {
             ObjectInfo oinf = fillObjectInfo(url, resp, false);
             List<ChunkInfo> chunks = bodyChunk(resp);
-            // check if we are using EC with ec daemon
-            if (oinf.isEC()) {
+            // check if we are using EC with ec daemon, or encoding it here
+            if (oinf.isEC() && !(settings.nativeEc() && EcClient.supports(oinf))) {
                 if (settings.ecdrain()) {
                     if (Strings.nullOrEmpty(settings.ecd()))
                         throw new OioException("Missing proxy#ecd configuration");
                 } else {
-                    // TODO impl EC in java
                     throw new IllegalStateException(
                             "Invalid configuration, we cannot do EC without ecd ATM");
                 }
@@ -1668,9 +1879,10 @@ public class ProxyClient {
         try {
             ObjectInfo oinf = fillObjectInfo(url, resp, loadProperties);
             List<ChunkInfo> chunks = bodyChunk(resp);
-            // check if we are using EC with ecd
+            // check if we are using EC with ecd, or decoding it here
             if (oinf.chunkMethod().startsWith(OioConstants.EC_PREFIX)
-                    && (!settings.ecdrain() || Strings.nullOrEmpty(settings.ecd())))
+                    && (!settings.ecdrain() || Strings.nullOrEmpty(settings.ecd()))
+                    && !(settings.nativeEc() && EcClient.supports(oinf)))
                 throw new OioException("Unable to decode EC encoded object without ecd");
             oinf.chunks(chunks);
             success = true;
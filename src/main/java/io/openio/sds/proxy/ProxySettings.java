@@ -26,7 +26,9 @@ public class ProxySettings {
     private ArrayList<InetSocketAddress> ecdHosts = new ArrayList<InetSocketAddress>();
     private boolean ecdrain = true; // not configurable atm cuz we can't do
                                     // somehow else
+    private boolean nativeEc = false;
     private boolean autocreate = true;
+    private boolean singleFlight = true;
     private OioHttpSettings http = new OioHttpSettings();
     private PoolingSettings pooling = new PoolingSettings();
 
@@ -112,6 +114,21 @@ public class ProxySettings {
         return this;
     }
 
+    /**
+     * Should concurrent identical metadata reads (namespace, container and
+     * object information) share a single request to the proxy?
+     *
+     * @return true if identical reads are coalesced
+     */
+    public boolean singleFlight() {
+        return singleFlight;
+    }
+
+    public ProxySettings singleFlight(boolean singleFlight) {
+        this.singleFlight = singleFlight;
+        return this;
+    }
+
     public PoolingSettings pooling() {
         return pooling;
     }
@@ -157,6 +174,23 @@ public class ProxySettings {
         return ecdrain;
     }
 
+    /**
+     * Should erasure-coded objects be encoded and decoded by the client,
+     * reading and writing their fragments directly from and to the rawx
+     * services, instead of going through ecd? Only the ISA-L Reed-Solomon
+     * algorithms are handled this way, the other ones still need ecd.
+     *
+     * @return true if erasure-coded objects are handled by the client
+     */
+    public boolean nativeEc() {
+        return nativeEc;
+    }
+
+    public ProxySettings nativeEc(boolean nativeEc) {
+        this.nativeEc = nativeEc;
+        return this;
+    }
+
     public boolean autocreate() {
         return autocreate;
     }
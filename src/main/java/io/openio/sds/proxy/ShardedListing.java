@@ -0,0 +1,275 @@
+package io.openio.sds.proxy;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import io.openio.sds.RequestContext;
+import io.openio.sds.exceptions.OioException;
+import io.openio.sds.logging.SdsLogger;
+import io.openio.sds.logging.SdsLoggerFactory;
+import io.openio.sds.models.ListOptions;
+import io.openio.sds.models.ObjectList;
+import io.openio.sds.models.ObjectList.ObjectView;
+import io.openio.sds.models.OioUrl;
+
+/**
+ * Lists the objects of a container with several requests in parallel.
+ * <p>
+ * The names of the container are split at the specified boundaries into
+ * disjoint ranges, each one listed by its own worker with the
+ * {@code marker} and {@code end} options. The objects are returned either
+ * in the order of their names, one range after the other, or as soon as
+ * their page is received. Each worker queues at most
+ * {@link #QUEUED_PAGES} pages ahead of the reader, then waits for it
+ * without time limit: a range is never dropped, only {@link #close()}
+ * stops the workers.
+ * <p>
+ * As a listing excludes its marker, the object named after a boundary, if
+ * any, is looked up with a single-object listing by prefix.
+ */
+class ShardedListing implements Iterator<ObjectView>, Closeable {
+
+    static final int QUEUED_PAGES = 2;
+
+    private static final SdsLogger logger = SdsLoggerFactory
+            .getLogger(ShardedListing.class);
+
+    private final ProxyClient proxy;
+    private final OioUrl url;
+    private final ListOptions options;
+    private final RequestContext reqCtx;
+    private final int parallelism;
+    private final boolean ordered;
+    private final List<Shard> shards = new ArrayList<Shard>();
+    private final BlockingQueue<Message> merged;
+
+    private ThreadPoolExecutor workers = null;
+    private volatile boolean closed = false;
+    private int current = 0;
+    private Iterator<ObjectView> page = null;
+
+    /**
+     * @param boundaries
+     *            the names splitting the container, sorted, strictly
+     *            between the marker and the end of the options
+     * @param parallelism
+     *            the number of ranges listed at the same time
+     * @param ordered
+     *            should the objects be returned in the order of their
+     *            names?
+     */
+    ShardedListing(ProxyClient proxy, OioUrl url, ListOptions options,
+            List<String> boundaries, int parallelism, boolean ordered,
+            RequestContext reqCtx) {
+        this.proxy = proxy;
+        this.url = url;
+        this.options = options;
+        this.reqCtx = reqCtx;
+        this.parallelism = parallelism;
+        this.ordered = ordered;
+        this.merged = ordered ? null
+                : new LinkedBlockingQueue<Message>(QUEUED_PAGES * parallelism);
+        String lower = options.marker();
+        boolean first = true;
+        for (String b : boundaries) {
+            shards.add(new Shard(lower, b, first ? null : lower));
+            lower = b;
+            first = false;
+        }
+        shards.add(new Shard(lower, options.end(), first ? null : lower));
+    }
+
+    @Override
+    public boolean hasNext() {
+        if (closed)
+            return false;
+        start();
+        while (null == page || !page.hasNext()) {
+            if (current >= shards.size())
+                return false;
+            Message m = take(ordered ? shards.get(current).queue : merged);
+            if (null != m.error) {
+                close();
+                throw m.error;
+            }
+            if (null == m.objects) {
+                // the current range is over, or any range when unordered
+                current++;
+                continue;
+            }
+            page = m.objects.iterator();
+        }
+        return true;
+    }
+
+    @Override
+    public ObjectView next() {
+        if (!hasNext())
+            throw new NoSuchElementException();
+        return page.next();
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Stops the workers. Needed only when the listing is not iterated to
+     * the end.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        if (null != workers)
+            workers.shutdownNow();
+    }
+
+    /* -- INTERNALS -- */
+
+    private void start() {
+        if (null != workers)
+            return;
+        workers = new ThreadPoolExecutor(parallelism, parallelism, 1,
+                TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+
+                    @Override
+                    public Thread newThread(Runnable r) {
+                        Thread t = new Thread(r);
+                        t.setName("ProxyClient-Lister");
+                        t.setDaemon(true);
+                        return t;
+                    }
+                });
+        workers.allowCoreThreadTimeOut(true);
+        // ranges are started in order, the one being read first
+        for (Shard shard : shards)
+            workers.execute(shard);
+        workers.shutdown();
+    }
+
+    private static Message take(BlockingQueue<Message> queue) {
+        try {
+            return queue.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OioException("Interrupted while listing objects", e);
+        }
+    }
+
+    /**
+     * A range of names, listed by a worker.
+     */
+    private class Shard implements Runnable {
+
+        private final String marker;
+        private final String end;
+        private final String boundary;
+        private final BlockingQueue<Message> queue;
+
+        /**
+         * @param marker
+         *            the start of the range, exclusive
+         * @param end
+         *            the end of the range, exclusive
+         * @param boundary
+         *            the name to look up, as it is excluded by the marker
+         */
+        private Shard(String marker, String end, String boundary) {
+            this.marker = marker;
+            this.end = end;
+            this.boundary = boundary;
+            this.queue = ordered
+                    ? new LinkedBlockingQueue<Message>(QUEUED_PAGES)
+                    : merged;
+        }
+
+        @Override
+        public void run() {
+            try {
+                if (null != boundary) {
+                    ObjectView first = lookup(boundary);
+                    if (null != first && !put(
+                            new Message(Collections.singletonList(first))))
+                        return;
+                }
+                ObjectListing listing = new ObjectListing(proxy, url,
+                        new ListOptions()
+                                .prefix(options.prefix())
+                                .marker(marker)
+                                .end(end)
+                                .limit(options.limit()),
+                        reqCtx, null);
+                List<ObjectView> objects = listing.nextPage();
+                while (null != objects) {
+                    if (!objects.isEmpty() && !put(new Message(objects)))
+                        return;
+                    objects = listing.nextPage();
+                }
+                put(new Message((List<ObjectView>) null));
+            } catch (RuntimeException e) {
+                put(new Message(e));
+            }
+        }
+
+        private ObjectView lookup(String name) {
+            if (null != options.prefix() && !name.startsWith(options.prefix()))
+                return null;
+            ObjectList l = proxy.listObjects(url,
+                    new ListOptions().prefix(name).limit(1),
+                    new RequestContext(reqCtx));
+            if (null == l.objects() || l.objects().isEmpty())
+                return null;
+            ObjectView o = l.objects().get(0);
+            return name.equals(o.name()) ? o : null;
+        }
+
+        /**
+         * Waits until the reader makes room for the message, however long
+         * it takes.
+         *
+         * @return false if the listing was closed
+         */
+        private boolean put(Message m) {
+            try {
+                while (!closed) {
+                    if (queue.offer(m, 1, TimeUnit.SECONDS))
+                        return true;
+                }
+            } catch (InterruptedException e) {
+                logger.debug("Listing closed");
+            }
+            return false;
+        }
+    }
+
+    private static class Message {
+
+        private final List<ObjectView> objects;
+        private final RuntimeException error;
+
+        /**
+         * @param objects
+         *            a page, or {@code null} at the end of a range
+         */
+        private Message(List<ObjectView> objects) {
+            this.objects = objects;
+            this.error = null;
+        }
+
+        private Message(RuntimeException error) {
+            this.objects = null;
+            this.error = error;
+        }
+    }
+}
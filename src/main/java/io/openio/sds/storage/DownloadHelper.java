@@ -1,9 +1,9 @@
 package io.openio.sds.storage;
 
+import static io.openio.sds.common.Check.checkArgument;
 import static io.openio.sds.models.Range.between;
 
-import java.util.Collections;
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
 
 import io.openio.sds.models.ObjectInfo;
@@ -11,56 +11,35 @@ import io.openio.sds.models.Range;
 
 public class DownloadHelper {
 
+	/**
+	 * Maps a range of an object to the chunks holding it, and to the ranges
+	 * to request in each of these chunks. The end of a range is exclusive,
+	 * a negative end means the end of the object.
+	 */
 	public static List<Target> loadTargets(ObjectInfo oinf, Range range) {
-
-		LinkedList<Target> targets = new LinkedList<Target>();
-
+		int count = oinf.sortedChunks().size();
 		if (null == range) {
-			for (int i = 0; i < oinf.sortedChunks().size(); i++) {
-				targets.addFirst(new Target()
-				        .setChunk(oinf.sortedChunks().get(i)));
-			}
-		} else {
-			ObjectOffset begin = findOffset(oinf, range.from());
-			ObjectOffset end = findOffset(oinf, range.to());
-			if (end.pos() == begin.pos()) {
-				targets.addFirst(new Target()
-				        .setChunk(oinf.sortedChunks().get(begin.pos()))
-				        .setRange(between(begin.offset(), end.offset())));
-			} else {
-				targets.addFirst(new Target()
-				        .setChunk(oinf.sortedChunks().get(begin.pos()))
-				        .setRange(between(begin.offset(),
-				                oinf.chunksize(begin.pos()).intValue()
-				                        - 1)));
-				for (int extrapos = begin.pos() + 1; extrapos < end
-				        .pos(); extrapos++) {
-					targets.addFirst(new Target()
-					        .setChunk(oinf.sortedChunks().get(extrapos))
-					        .setRange(between(0,
-					                oinf.chunksize(extrapos).intValue())));
-				}
-
-				targets.addFirst(new Target()
-				        .setChunk(oinf.sortedChunks().get(end.pos()))
-				        .setRange(between(0, end.offset())));
-			}
+			List<Target> targets = new ArrayList<Target>(count);
+			for (int pos = 0; pos < count; pos++)
+				targets.add(new Target().setChunk(oinf.sortedChunks().get(pos)));
+			return targets;
 		}
-		Collections.reverse(targets);
-		return targets;
-	}
 
-	private static ObjectOffset findOffset(ObjectInfo oinf, long offset) {
-		if (-1 == offset)
-			return new ObjectOffset()
-			        .pos(oinf.nbchunks() - 1)
-			        .offset(oinf.chunksize(oinf.nbchunks() - 1).intValue() - 1);
-		for (int pos = 0; pos < oinf.nbchunks(); pos++) {
-			long size = oinf.chunksize(pos);
-			if (offset <= size)
-				return new ObjectOffset().pos(pos).offset(offset);
-			offset -= size;
+		long size = oinf.chunkOffset(count);
+		long to = range.to() < 0 ? size : range.to();
+		int first = oinf.chunkAt(range.from());
+		checkArgument(0 <= first, "Range begin out of content size");
+		checkArgument(to <= size, "Range end out of content size");
+		int last = range.from() < to ? oinf.chunkAt(to - 1) : first;
+
+		List<Target> targets = new ArrayList<Target>(last - first + 1);
+		for (int pos = first; pos <= last; pos++) {
+			long start = oinf.chunkOffset(pos);
+			targets.add(new Target()
+			        .setChunk(oinf.sortedChunks().get(pos))
+			        .setRange(between(Math.max(range.from(), start) - start,
+			                Math.min(to, oinf.chunkOffset(pos + 1)) - start)));
 		}
-		throw new IllegalArgumentException("Range begin out of content size");
+		return targets;
 	}
 }
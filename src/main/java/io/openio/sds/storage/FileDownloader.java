@@ -0,0 +1,192 @@
+package io.openio.sds.storage;
+
+import static io.openio.sds.common.Check.checkArgument;
+import static java.lang.String.format;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.openio.sds.RequestContext;
+import io.openio.sds.common.ByteBuffers;
+import io.openio.sds.exceptions.OioException;
+import io.openio.sds.logging.SdsLogger;
+import io.openio.sds.logging.SdsLoggerFactory;
+import io.openio.sds.models.ObjectInfo;
+import io.openio.sds.models.Range;
+
+/**
+ * Downloads objects to local files.
+ * <p>
+ * The file is preallocated to the size of the object, then each chunk (each
+ * metachunk for EC objects) is downloaded with a ranged request and written
+ * at its own position with positional {@link FileChannel} writes, so several
+ * chunks can be written in parallel. Each chunk goes through a single heap
+ * buffer, reused from the network read to the file write.
+ */
+public class FileDownloader {
+
+    private static final SdsLogger logger = SdsLoggerFactory
+            .getLogger(FileDownloader.class);
+
+    /**
+     * Default number of chunks downloaded at the same time.
+     */
+    public static final int DEFAULT_PARALLELISM = 4;
+
+    private final StorageClient storage;
+    private final Executor executor;
+    private final int parallelism;
+
+    public FileDownloader(StorageClient storage, Executor executor,
+            int parallelism) {
+        checkArgument(null != storage, "StorageClient cannot be null");
+        checkArgument(0 < parallelism, "Invalid parallelism");
+        this.storage = storage;
+        this.executor = executor;
+        this.parallelism = null == executor ? 1 : parallelism;
+    }
+
+    /**
+     * Downloads the specified object to the specified file, which is created
+     * or truncated.
+     *
+     * @param oinf
+     *            the object to download
+     * @param dst
+     *            the file to write
+     * @param reqCtx
+     *            common parameters to all requests
+     * @return the number of bytes written
+     * @throws OioException
+     *             if the object cannot be downloaded or the file cannot be
+     *             written
+     */
+    public long download(final ObjectInfo oinf, Path dst,
+            final RequestContext reqCtx) {
+        checkArgument(null != oinf, "ObjectInfo cannot be null");
+        checkArgument(null != dst, "Path cannot be null");
+        final FileChannel fc;
+        try {
+            fc = FileChannel.open(dst, StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING);
+        } catch (IOException e) {
+            throw new OioException("Unable to open " + dst, e);
+        }
+        try {
+            long size = oinf.size();
+            if (0 == size)
+                return 0;
+            // preallocate, so parallel writers do not grow the file
+            fc.write(ByteBuffer.allocate(1), size - 1);
+
+            final int count = oinf.sortedChunks().size();
+            final AtomicInteger next = new AtomicInteger();
+            Callable<Void> worker = new Callable<Void>() {
+
+                @Override
+                public Void call() throws IOException {
+                    int pos;
+                    while ((pos = next.getAndIncrement()) < count)
+                        transfer(oinf, pos, fc, reqCtx);
+                    return null;
+                }
+            };
+            List<FutureTask<Void>> tasks = new ArrayList<FutureTask<Void>>();
+            for (int i = 0; i < Math.min(parallelism, count); i++) {
+                FutureTask<Void> task = new FutureTask<Void>(worker);
+                tasks.add(task);
+                if (0 < i)
+                    submit(task);
+            }
+            // Tasks not started yet (the first one, rejected ones) run in
+            // the calling thread, running a started task is a no-op.
+            for (FutureTask<Void> task : tasks)
+                task.run();
+            await(tasks, dst);
+            fc.force(false);
+            return size;
+        } catch (IOException e) {
+            throw new OioException("Unable to write " + dst, e);
+        } finally {
+            try {
+                fc.close();
+            } catch (IOException e) {
+                logger.warn("Failed to close " + dst, e);
+            }
+        }
+    }
+
+    /* -- INTERNALS -- */
+
+    private void submit(FutureTask<Void> task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            logger.debug("No worker available, downloading in current thread");
+        }
+    }
+
+    private void await(List<FutureTask<Void>> tasks, Path dst) {
+        try {
+            for (FutureTask<Void> task : tasks)
+                task.get();
+        } catch (InterruptedException e) {
+            cancel(tasks);
+            throw new OioException("got interrupted", e);
+        } catch (ExecutionException e) {
+            cancel(tasks);
+            if (e.getCause() instanceof OioException)
+                throw (OioException) e.getCause();
+            throw new OioException("Unable to download to " + dst, e.getCause());
+        }
+    }
+
+    private void cancel(List<FutureTask<Void>> tasks) {
+        for (FutureTask<Void> task : tasks)
+            task.cancel(true);
+    }
+
+    private void transfer(ObjectInfo oinf, int pos, FileChannel fc,
+            RequestContext reqCtx) throws IOException {
+        long from = oinf.chunkOffset(pos);
+        long to = oinf.chunkOffset(pos + 1);
+        if (from == to)
+            return;
+        InputStream in = storage.downloadObject(oinf, Range.between(from, to),
+                null == reqCtx ? new RequestContext()
+                        : new RequestContext(reqCtx));
+        ByteBuffer buf = ByteBuffer.allocate(
+                (int) Math.min(ByteBuffers.TRANSFER_SIZE, to - from));
+        try {
+            long position = from;
+            while (position < to) {
+                int read = in.read(buf.array(), 0,
+                        (int) Math.min(buf.capacity(), to - position));
+                if (0 > read)
+                    throw new EOFException(format(
+                            "Unexpected end of chunk %d at %d (range %d-%d)",
+                            pos, position, from, to));
+                buf.clear();
+                buf.limit(read);
+                while (buf.hasRemaining())
+                    position += fc.write(buf, position);
+            }
+        } finally {
+            in.close();
+        }
+    }
+}
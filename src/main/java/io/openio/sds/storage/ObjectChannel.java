@@ -0,0 +1,166 @@
+package io.openio.sds.storage;
+
+import static io.openio.sds.common.Check.checkArgument;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.NonWritableChannelException;
+import java.nio.channels.SeekableByteChannel;
+
+import io.openio.sds.RequestContext;
+import io.openio.sds.common.ByteBuffers;
+import io.openio.sds.logging.SdsLogger;
+import io.openio.sds.logging.SdsLoggerFactory;
+import io.openio.sds.models.ObjectInfo;
+import io.openio.sds.models.Range;
+import io.openio.sds.storage.rawx.ObjectInputStream;
+
+/**
+ * Read-only {@link SeekableByteChannel} over the data of an object.
+ * <p>
+ * Nothing is downloaded until the first read. Each time the position is
+ * moved backward, or forward by more than the reuse threshold, the current
+ * download is dropped and a new ranged download starts at the new position.
+ * Smaller forward moves are done on the current connection.
+ */
+public class ObjectChannel implements SeekableByteChannel {
+
+    private static final SdsLogger logger = SdsLoggerFactory
+            .getLogger(ObjectChannel.class);
+
+    /**
+     * Default maximum forward move done on the current connection. Beyond
+     * {@link ObjectInputStream#SKIP_IN_PLACE_MAX}, the download stream would
+     * reopen its chunk anyway, so the default is that same size.
+     */
+    public static final long DEFAULT_REUSE_THRESHOLD =
+            ObjectInputStream.SKIP_IN_PLACE_MAX;
+
+    private final StorageClient storage;
+    private final ObjectInfo oinf;
+    private final RequestContext reqCtx;
+    private final long reuseThreshold;
+
+    private InputStream in;
+    private long inPosition;
+    private long position = 0;
+    private boolean open = true;
+    private byte[] buf;
+
+    public ObjectChannel(StorageClient storage, ObjectInfo oinf,
+            RequestContext reqCtx) {
+        this(storage, oinf, reqCtx, DEFAULT_REUSE_THRESHOLD);
+    }
+
+    /**
+     * @param reuseThreshold
+     *            the maximum forward move done by skipping on the current
+     *            download. The stream decides how to skip: beyond
+     *            {@link ObjectInputStream#SKIP_IN_PLACE_MAX}, a chunk
+     *            download reopens its chunk with a new range, as a new
+     *            download would.
+     */
+    public ObjectChannel(StorageClient storage, ObjectInfo oinf,
+            RequestContext reqCtx, long reuseThreshold) {
+        checkArgument(null != storage, "StorageClient cannot be null");
+        checkArgument(null != oinf, "ObjectInfo cannot be null");
+        checkArgument(0 <= reuseThreshold, "Invalid reuse threshold");
+        this.storage = storage;
+        this.oinf = oinf;
+        this.reqCtx = reqCtx;
+        this.reuseThreshold = reuseThreshold;
+    }
+
+    @Override
+    public boolean isOpen() {
+        return open;
+    }
+
+    @Override
+    public void close() throws IOException {
+        open = false;
+        drop();
+    }
+
+    @Override
+    public int read(ByteBuffer dst) throws IOException {
+        ensureOpen();
+        if (position >= size())
+            return -1;
+        if (0 == dst.remaining())
+            return 0;
+        if (null == buf && !dst.hasArray())
+            buf = new byte[ByteBuffers.TRANSFER_SIZE];
+        int read = ByteBuffers.read(stream(), dst, buf);
+        if (0 < read) {
+            position += read;
+            inPosition += read;
+        }
+        return read;
+    }
+
+    @Override
+    public int write(ByteBuffer src) throws IOException {
+        throw new NonWritableChannelException();
+    }
+
+    @Override
+    public long position() throws IOException {
+        ensureOpen();
+        return position;
+    }
+
+    @Override
+    public SeekableByteChannel position(long newPosition) throws IOException {
+        ensureOpen();
+        checkArgument(0 <= newPosition, "Invalid position");
+        this.position = newPosition;
+        return this;
+    }
+
+    @Override
+    public long size() throws IOException {
+        ensureOpen();
+        return oinf.size();
+    }
+
+    @Override
+    public SeekableByteChannel truncate(long size) throws IOException {
+        throw new NonWritableChannelException();
+    }
+
+    /* -- INTERNALS -- */
+
+    private InputStream stream() throws IOException {
+        if (null != in && position != inPosition) {
+            long gap = position - inPosition;
+            if (0 < gap && gap <= reuseThreshold && gap == in.skip(gap)) {
+                inPosition = position;
+            } else {
+                drop();
+            }
+        }
+        if (null == in) {
+            if (logger.isDebugEnabled())
+                logger.debug("open " + oinf.url() + " at " + position);
+            in = storage.downloadObject(oinf,
+                    0 == position ? null : Range.from(position), reqCtx);
+            inPosition = position;
+        }
+        return in;
+    }
+
+    private void drop() throws IOException {
+        if (null != in) {
+            in.close();
+            in = null;
+        }
+    }
+
+    private void ensureOpen() throws ClosedChannelException {
+        if (!open)
+            throw new ClosedChannelException();
+    }
+}
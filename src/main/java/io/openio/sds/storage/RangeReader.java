@@ -0,0 +1,271 @@
+package io.openio.sds.storage;
+
+import static io.openio.sds.common.Check.checkArgument;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import io.openio.sds.RequestContext;
+import io.openio.sds.logging.SdsLogger;
+import io.openio.sds.logging.SdsLoggerFactory;
+import io.openio.sds.models.ObjectInfo;
+import io.openio.sds.models.Range;
+
+/**
+ * Reads many ranges of the same object at once.
+ * <p>
+ * The ranges are sorted, ranges separated by less than {@code maxGap} bytes
+ * are merged, then the merged ranges are split at chunk boundaries so each
+ * download targets a single chunk. The downloads run in parallel on the
+ * specified executor (or in the calling thread if there is none), and each
+ * requested range gets its own {@link Future}, in the order of the request.
+ */
+public class RangeReader {
+
+    private static final SdsLogger logger = SdsLoggerFactory
+            .getLogger(RangeReader.class);
+
+    /**
+     * Default maximum number of unrequested bytes downloaded to merge two
+     * ranges.
+     */
+    public static final long DEFAULT_MAX_GAP = 65536L;
+
+    /* Largest range which fits in a heap ByteBuffer */
+    private static final long MAX_RANGE = Integer.MAX_VALUE - 8;
+
+    private final StorageClient storage;
+    private final Executor executor;
+    private final long maxGap;
+
+    public RangeReader(StorageClient storage, Executor executor, long maxGap) {
+        checkArgument(null != storage, "StorageClient cannot be null");
+        checkArgument(0 <= maxGap, "Invalid gap");
+        this.storage = storage;
+        this.executor = executor;
+        this.maxGap = maxGap;
+    }
+
+    /**
+     * Starts the download of the specified ranges.
+     *
+     * @param oinf
+     *            the object to read
+     * @param ranges
+     *            the ranges to read, in any order, possibly overlapping
+     * @param reqCtx
+     *            common parameters to all requests
+     * @return one future per requested range, in the same order as
+     *         {@code ranges}, holding the data of the range
+     */
+    public List<Future<ByteBuffer>> read(ObjectInfo oinf, List<Range> ranges,
+            RequestContext reqCtx) {
+        checkArgument(null != oinf, "ObjectInfo cannot be null");
+        checkArgument(null != ranges, "ranges cannot be null");
+        long size = oinf.size();
+
+        List<Span> wanted = new ArrayList<Span>(ranges.size());
+        for (Range r : ranges) {
+            long to = r.to() < 0 ? size : Math.min(r.to(), size);
+            checkArgument(r.from() <= to, "Range begin out of content size");
+            checkArgument(to - r.from() <= MAX_RANGE, "Range too large");
+            wanted.add(new Span(r.from(), to));
+        }
+        List<Span> sorted = new ArrayList<Span>(wanted);
+        Collections.sort(sorted, new Comparator<Span>() {
+
+            @Override
+            public int compare(Span s1, Span s2) {
+                return Long.compare(s1.from, s2.from);
+            }
+        });
+
+        List<Piece> pieces = new ArrayList<Piece>();
+        Span merged = null;
+        for (Span s : sorted) {
+            if (s.from == s.to)
+                continue;
+            if (null != merged && s.from - merged.to <= maxGap
+                    && Math.max(merged.to, s.to) - merged.from <= MAX_RANGE) {
+                merged = new Span(merged.from, Math.max(merged.to, s.to));
+            } else {
+                if (null != merged)
+                    split(oinf, merged, pieces);
+                merged = s;
+            }
+        }
+        if (null != merged)
+            split(oinf, merged, pieces);
+        if (logger.isDebugEnabled())
+            logger.debug(String.format("%d ranges of %s read with %d requests",
+                    ranges.size(), oinf.url(), pieces.size()));
+
+        for (Piece p : pieces)
+            submit(p, oinf, reqCtx);
+
+        List<Future<ByteBuffer>> res = new ArrayList<Future<ByteBuffer>>(wanted.size());
+        for (Span s : wanted)
+            res.add(new RangeFuture(s, pieces));
+        return res;
+    }
+
+    /* -- INTERNALS -- */
+
+    private void split(ObjectInfo oinf, Span span, List<Piece> pieces) {
+        if (oinf.isEC()) {
+            pieces.add(new Piece(span.from, span.to));
+            return;
+        }
+        int last = oinf.chunkAt(span.to - 1);
+        for (int pos = oinf.chunkAt(span.from); pos <= last; pos++) {
+            pieces.add(new Piece(Math.max(span.from, oinf.chunkOffset(pos)),
+                    Math.min(span.to, oinf.chunkOffset(pos + 1))));
+        }
+    }
+
+    private void submit(final Piece p, final ObjectInfo oinf,
+            final RequestContext reqCtx) {
+        p.task = new FutureTask<byte[]>(new Callable<byte[]>() {
+
+            @Override
+            public byte[] call() throws IOException {
+                RequestContext ctx = null == reqCtx
+                        ? new RequestContext() : new RequestContext(reqCtx);
+                InputStream in = storage.downloadObject(oinf,
+                        Range.between(p.from, p.to), ctx);
+                try {
+                    byte[] buf = new byte[(int) (p.to - p.from)];
+                    int done = 0;
+                    while (done < buf.length) {
+                        int read = in.read(buf, done, buf.length - done);
+                        if (-1 == read)
+                            throw new EOFException(String.format(
+                                    "Unexpected end of stream at %d (range %d-%d)",
+                                    p.from + done, p.from, p.to));
+                        done += read;
+                    }
+                    return buf;
+                } finally {
+                    in.close();
+                }
+            }
+        });
+        if (null == executor) {
+            p.task.run();
+            return;
+        }
+        try {
+            executor.execute(p.task);
+        } catch (RejectedExecutionException e) {
+            logger.debug("No worker available, reading range in current thread");
+            p.task.run();
+        }
+    }
+
+    private static class Span {
+
+        private final long from;
+        private final long to;
+
+        private Span(long from, long to) {
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    private static class Piece {
+
+        private final long from;
+        private final long to;
+        private FutureTask<byte[]> task;
+
+        private Piece(long from, long to) {
+            this.from = from;
+            this.to = to;
+        }
+    }
+
+    /**
+     * Future of a requested range, made of the pieces overlapping it.
+     */
+    private static class RangeFuture implements Future<ByteBuffer> {
+
+        private final Span span;
+        private final List<Piece> pieces = new ArrayList<Piece>();
+
+        private RangeFuture(Span span, List<Piece> all) {
+            this.span = span;
+            for (Piece p : all) {
+                if (p.from < span.to && span.from < p.to)
+                    pieces.add(p);
+            }
+        }
+
+        @Override
+        public boolean cancel(boolean mayInterruptIfRunning) {
+            boolean res = false;
+            for (Piece p : pieces)
+                res |= p.task.cancel(mayInterruptIfRunning);
+            return res;
+        }
+
+        @Override
+        public boolean isCancelled() {
+            for (Piece p : pieces)
+                if (p.task.isCancelled())
+                    return true;
+            return false;
+        }
+
+        @Override
+        public boolean isDone() {
+            for (Piece p : pieces)
+                if (!p.task.isDone())
+                    return false;
+            return true;
+        }
+
+        @Override
+        public ByteBuffer get() throws InterruptedException,
+                ExecutionException {
+            if (1 == pieces.size())
+                return slice(pieces.get(0), pieces.get(0).task.get());
+            ByteBuffer res = ByteBuffer.allocate((int) (span.to - span.from));
+            for (Piece p : pieces)
+                res.put(slice(p, p.task.get()));
+            res.flip();
+            return res;
+        }
+
+        @Override
+        public ByteBuffer get(long timeout, TimeUnit unit)
+                throws InterruptedException, ExecutionException,
+                TimeoutException {
+            long deadline = System.nanoTime() + unit.toNanos(timeout);
+            for (Piece p : pieces)
+                p.task.get(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+            return get();
+        }
+
+        private ByteBuffer slice(Piece p, byte[] data) {
+            long from = Math.max(span.from, p.from);
+            long to = Math.min(span.to, p.to);
+            return ByteBuffer.wrap(data, (int) (from - p.from), (int) (to - from))
+                    .slice();
+        }
+    }
+}
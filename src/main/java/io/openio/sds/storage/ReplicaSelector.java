@@ -0,0 +1,244 @@
+package io.openio.sds.storage;
+
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.openio.sds.models.ChunkInfo;
+import io.openio.sds.models.ServiceInfo;
+
+/**
+ * Orders the replicas of each chunk so reads go first to the rawx services
+ * which answered the fastest, failed the least and currently serve the
+ * fewest requests from this client.
+ * <p>
+ * Statistics are kept per service address ({@code host:port}) as
+ * exponentially weighted moving averages. The error rate also decays over
+ * time, halving every {@link #ERROR_HALF_LIFE_MILLIS} without new sample,
+ * so a service which failed, and is thus no longer tried, gets its share of
+ * the reads back once the errors are old enough. Services this client never talked
+ * to are considered as good as the best known one, and ties are broken
+ * randomly, so the load is spread across replicas. Scores published by the
+ * conscience (see {@code ProxyClient#getServices(String, RequestContext)})
+ * can be fed with {@link #seed(List)}.
+ */
+public class ReplicaSelector {
+
+    private static final double ALPHA = 0.3;
+    private static final double MAX_ERROR_RATE = 0.99;
+    private static final double MIN_ERROR_RATE = 0.01;
+
+    static final long ERROR_HALF_LIFE_MILLIS = 10000;
+
+    private final ConcurrentHashMap<String, HostStats> stats = new ConcurrentHashMap<String, HostStats>();
+    private final long errorHalfLifeNanos;
+
+    public ReplicaSelector() {
+        this(ERROR_HALF_LIFE_MILLIS);
+    }
+
+    /**
+     * @param errorHalfLifeMillis
+     *            the time after which the error rate of a service is halved,
+     *            if nothing happened in the meantime
+     */
+    ReplicaSelector(long errorHalfLifeMillis) {
+        this.errorHalfLifeNanos = TimeUnit.MILLISECONDS
+                .toNanos(errorHalfLifeMillis);
+    }
+
+    /**
+     * Reorders, best first, the replicas of each of the specified targets.
+     * The chunk lists are copied, the lists owned by the {@code ObjectInfo}
+     * are left untouched.
+     *
+     * @param targets
+     *            the targets to reorder
+     * @return {@code targets}
+     */
+    public List<Target> reorder(List<Target> targets) {
+        for (Target t : targets)
+            t.setChunk(reorderChunks(t.getChunk()));
+        return targets;
+    }
+
+    /**
+     * Returns a copy of the specified replicas, best first.
+     *
+     * @param replicas
+     *            the replicas of a single chunk
+     * @return a new sorted list
+     */
+    public List<ChunkInfo> reorderChunks(List<ChunkInfo> replicas) {
+        List<ChunkInfo> res = new ArrayList<ChunkInfo>(replicas);
+        if (res.size() < 2)
+            return res;
+        Collections.shuffle(res, ThreadLocalRandom.current());
+        final double fallback = bestLatency();
+        Collections.sort(res, new Comparator<ChunkInfo>() {
+
+            @Override
+            public int compare(ChunkInfo c1, ChunkInfo c2) {
+                return Double.compare(cost(c1, fallback), cost(c2, fallback));
+            }
+        });
+        return res;
+    }
+
+    /**
+     * Updates the conscience scores of the specified rawx services. A score
+     * of 0 means the service is down and it will be tried last.
+     *
+     * @param services
+     *            the services as returned by the proxy
+     * @return {@code this}
+     */
+    public ReplicaSelector seed(List<ServiceInfo> services) {
+        if (null == services)
+            return this;
+        for (ServiceInfo si : services) {
+            if (null == si.addr() || null == si.score())
+                continue;
+            statsOf(si.addr()).score = si.score();
+        }
+        return this;
+    }
+
+    /**
+     * Signals a request to the specified replica is about to be sent.
+     *
+     * @param ci
+     *            the replica
+     * @return the start time to give to {@link #success(ChunkInfo, long)}
+     */
+    public long begin(ChunkInfo ci) {
+        statsOf(ci).inFlight.incrementAndGet();
+        return System.nanoTime();
+    }
+
+    /**
+     * Signals the specified replica answered successfully.
+     *
+     * @param ci
+     *            the replica
+     * @param start
+     *            the value returned by {@link #begin(ChunkInfo)}
+     */
+    public void success(ChunkInfo ci, long start) {
+        statsOf(ci).sample(
+                TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start) / 1000.0,
+                false);
+    }
+
+    /**
+     * Signals the request to the specified replica failed, either before or
+     * during the transfer of the data.
+     *
+     * @param ci
+     *            the replica
+     */
+    public void failure(ChunkInfo ci) {
+        statsOf(ci).sample(-1, true);
+    }
+
+    /**
+     * Signals the request to the specified replica is over.
+     *
+     * @param ci
+     *            the replica
+     */
+    public void end(ChunkInfo ci) {
+        statsOf(ci).inFlight.decrementAndGet();
+    }
+
+    /* -- INTERNALS -- */
+
+    double cost(ChunkInfo ci, double fallbackLatency) {
+        HostStats s = stats.get(address(ci));
+        if (null == s)
+            return 1.0 + fallbackLatency;
+        double latency = s.latency < 0 ? fallbackLatency : s.latency;
+        double cost = (1.0 + latency) * (1 + Math.max(0, s.inFlight.get()))
+                / (1.0 - Math.min(MAX_ERROR_RATE,
+                        s.errorRate(System.nanoTime())));
+        if (s.score >= 0)
+            cost *= 100.0 / Math.max(1, s.score);
+        return cost;
+    }
+
+    private double bestLatency() {
+        double best = -1;
+        for (HostStats s : stats.values()) {
+            if (s.latency >= 0 && (best < 0 || s.latency < best))
+                best = s.latency;
+        }
+        return Math.max(0, best);
+    }
+
+    private HostStats statsOf(ChunkInfo ci) {
+        return statsOf(address(ci));
+    }
+
+    private HostStats statsOf(String addr) {
+        HostStats s = stats.get(addr);
+        if (null == s) {
+            HostStats prev = stats.putIfAbsent(addr,
+                    s = new HostStats(errorHalfLifeNanos));
+            if (null != prev)
+                s = prev;
+        }
+        return s;
+    }
+
+    static String address(ChunkInfo ci) {
+        URI uri = URI.create(ci.finalUrl());
+        return uri.getHost() + ":" + uri.getPort();
+    }
+
+    private static class HostStats {
+
+        private final AtomicInteger inFlight = new AtomicInteger();
+        private final long errorHalfLifeNanos;
+        private volatile double latency = -1;
+        private volatile double errorRate = 0;
+        private volatile long lastSample = System.nanoTime();
+        private volatile int score = -1;
+
+        private HostStats(long errorHalfLifeNanos) {
+            this.errorHalfLifeNanos = errorHalfLifeNanos;
+        }
+
+        /**
+         * Returns the error rate, decayed according to the time elapsed
+         * since the last sample. Very low rates are rounded to 0, so the
+         * service is tried again as often as the others.
+         */
+        private double errorRate(long now) {
+            double rate = errorRate;
+            if (0 == rate)
+                return 0;
+            if (0 < errorHalfLifeNanos)
+                rate *= Math.pow(0.5, (double) Math.max(0, now - lastSample)
+                        / errorHalfLifeNanos);
+            return rate < MIN_ERROR_RATE ? 0 : rate;
+        }
+
+        private synchronized void sample(double latencyMillis, boolean error) {
+            long now = System.nanoTime();
+            errorRate = ALPHA * (error ? 1.0 : 0.0)
+                    + (1 - ALPHA) * errorRate(now);
+            lastSample = now;
+            if (latencyMillis < 0)
+                return;
+            latency = latency < 0
+                    ? latencyMillis
+                    : ALPHA * latencyMillis + (1 - ALPHA) * latency;
+        }
+    }
+}
@@ -0,0 +1,322 @@
+package io.openio.sds.storage.ec;
+
+import static io.openio.sds.common.Check.checkArgument;
+import static io.openio.sds.common.OioConstants.CHUNK_META_METACHUNK_HASH;
+import static io.openio.sds.common.OioConstants.CHUNK_META_METACHUNK_SIZE;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import io.openio.sds.RequestContext;
+import io.openio.sds.common.FeedableInputStream;
+import io.openio.sds.common.Hex;
+import io.openio.sds.exceptions.OioException;
+import io.openio.sds.http.OioHttp;
+import io.openio.sds.logging.SdsLogger;
+import io.openio.sds.logging.SdsLoggerFactory;
+import io.openio.sds.models.ChunkInfo;
+import io.openio.sds.models.ECInfo;
+import io.openio.sds.models.ObjectInfo;
+import io.openio.sds.models.Range;
+import io.openio.sds.storage.DownloadHelper;
+import io.openio.sds.storage.FileDownloader;
+import io.openio.sds.storage.RangeReader;
+import io.openio.sds.storage.StorageClient;
+import io.openio.sds.storage.rawx.ChunkFeeder;
+import io.openio.sds.storage.rawx.RawxClient;
+import io.openio.sds.storage.rawx.RawxSettings;
+import io.openio.sds.storage.rawx.StreamWrapper;
+
+/**
+ * Reads and writes erasure-coded objects directly from and to the rawx
+ * services, decoding and encoding them locally, without going through ecd.
+ * <p>
+ * Only the algorithms supported by {@link ReedSolomon} can be handled, see
+ * {@link #supports(ObjectInfo)}.
+ */
+public class EcClient implements StorageClient {
+
+	private static final SdsLogger logger = SdsLoggerFactory
+			.getLogger(EcClient.class);
+
+	private static final int MIN_WORKERS = 1;
+	private static final int MAX_WORKERS = 100;
+	private static final int IDLE_THREAD_KEEP_ALIVE = 30; // in seconds
+
+	private static final String TRAILER_HEADER = "Trailer";
+	private static final String EMPTY_MD5 = "D41D8CD98F00B204E9800998ECF8427E";
+
+	final OioHttp http;
+	private final RawxClient rawx;
+	private final RawxSettings settings;
+	private final ExecutorService executors;
+
+	public EcClient(OioHttp http, RawxClient rawx, RawxSettings settings) {
+		checkArgument(null != http, "Http client cannot be null");
+		checkArgument(null != rawx, "Rawx client cannot be null");
+		checkArgument(null != settings, "Settings cannot be null");
+		this.http = http;
+		this.rawx = rawx;
+		this.settings = settings;
+		this.executors = new ThreadPoolExecutor(MIN_WORKERS,
+				MAX_WORKERS,
+				IDLE_THREAD_KEEP_ALIVE,
+				TimeUnit.SECONDS,
+				new SynchronousQueue<Runnable>(),
+				new ThreadFactory() {
+
+					@Override
+					public Thread newThread(Runnable r) {
+						Thread t = new Thread(r);
+						t.setName("EcClient-Worker");
+						return t;
+					}
+				});
+	}
+
+	/**
+	 * @param oinf
+	 *            an object
+	 * @return true if the object is erasure-coded with an algorithm this
+	 *         client can encode and decode
+	 */
+	public static boolean supports(ObjectInfo oinf) {
+		ECInfo ec = oinf.ecinfo();
+		return null != ec && ReedSolomon.supports(ec.algo())
+				&& 0 < ec.k() && 0 <= ec.m() && ec.k() + ec.m() <= 256;
+	}
+
+	@Override
+	public ObjectInfo uploadChunks(ObjectInfo oinf, InputStream data) {
+		return uploadChunks(oinf, data, new RequestContext());
+	}
+
+	/**
+	 * Encodes the specified data, and uploads the fragments to the chunks of
+	 * the specified {@code ObjectInfo}, one metachunk after the other.
+	 *
+	 * @param oinf
+	 *            the ObjectInfo to deal with
+	 * @param data
+	 *            the data to upload
+	 * @param reqCtx
+	 *            common parameters to all requests
+	 * @return {@code oinf}
+	 */
+	@Override
+	public ObjectInfo uploadChunks(ObjectInfo oinf, InputStream data,
+			RequestContext reqCtx) {
+		checkArgument(null != oinf);
+		if (!supports(oinf))
+			throw new OioException(
+					"Unsupported chunk method " + oinf.chunkMethod());
+		ECInfo ec = oinf.ecinfo();
+		EcEncoder encoder = new EcEncoder(
+				new ReedSolomon(ec.algo(), ec.k(), ec.m()),
+				settings.ecSegmentSize(), executors);
+		StreamWrapper wrapper = new StreamWrapper(data);
+		long remaining = oinf.size();
+		for (int pos = 0; pos < oinf.sortedChunks().size(); pos++) {
+			long csize = Math.min(remaining, oinf.metachunksize(pos));
+			if (csize == 0 && pos != 0)
+				throw new OioException("Too many chunks prepared");
+			String hash = uploadPosition(oinf, pos, csize, wrapper, encoder,
+					reqCtx);
+			for (ChunkInfo ci : oinf.sortedChunks().get(pos)) {
+				ci.size(csize);
+				ci.hash(hash);
+			}
+			remaining -= csize;
+		}
+		return oinf.hash(Hex.toHex(wrapper.md5()));
+	}
+
+	@Override
+	public ObjectInfo uploadChunks(ObjectInfo oinf, File data) {
+		return uploadChunks(oinf, data, new RequestContext());
+	}
+
+	@Override
+	public ObjectInfo uploadChunks(ObjectInfo oinf, File data,
+			RequestContext reqCtx) {
+		try {
+			FileInputStream fin = new FileInputStream(data);
+			try {
+				return uploadChunks(oinf, fin, reqCtx);
+			} finally {
+				try {
+					fin.close();
+				} catch (IOException e) {
+					logger.warn("Fail to close Inputstream, possible leak", e);
+				}
+			}
+		} catch (FileNotFoundException e) {
+			throw new IllegalArgumentException("File not found", e);
+		}
+	}
+
+	@Override
+	public ObjectInfo uploadChunks(ObjectInfo oinf, byte[] data) {
+		return uploadChunks(oinf, data, new RequestContext());
+	}
+
+	@Override
+	public ObjectInfo uploadChunks(ObjectInfo oinf, byte[] data,
+			RequestContext reqCtx) {
+		return uploadChunks(oinf, new ByteArrayInputStream(data), reqCtx);
+	}
+
+	@Override
+	public InputStream downloadObject(ObjectInfo oinf) {
+		return downloadObject(oinf, new RequestContext());
+	}
+
+	@Override
+	public InputStream downloadObject(ObjectInfo oinf, Range range) {
+		return downloadObject(oinf, range, new RequestContext());
+	}
+
+	@Override
+	public InputStream downloadObject(ObjectInfo oinf, RequestContext reqCtx) {
+		return downloadObject(oinf, null, reqCtx);
+	}
+
+	/**
+	 * Downloads the specified range of an object. Small ranges are read
+	 * from the data fragments only, larger ones from {@code k} fragments of
+	 * each metachunk, decoding them if some data fragments are missing.
+	 *
+	 * @param oinf
+	 *            the object to download
+	 * @param range
+	 *            the range to read, or {@code null} for the whole object
+	 * @param reqCtx
+	 *            common parameters to all requests
+	 * @return the data of the range
+	 */
+	@Override
+	public InputStream downloadObject(ObjectInfo oinf, Range range,
+			RequestContext reqCtx) {
+		checkArgument(null != oinf);
+		if (!supports(oinf))
+			throw new OioException(
+					"Unsupported chunk method " + oinf.chunkMethod());
+		long from = null == range ? 0 : range.from();
+		long to = null == range || 0 > range.to() ? oinf.size() : range.to();
+		if (0 <= from && from < to && to <= oinf.size()
+				&& to - from <= settings.ecDirectMaxRange())
+			return new SystematicInputStream(oinf, from, to,
+					settings.ecSegmentSize(), this, http, reqCtx);
+		return decode(oinf, range, reqCtx);
+	}
+
+	/**
+	 * Downloads the specified object to the specified file, several
+	 * metachunks at the same time.
+	 *
+	 * @param oinf
+	 *            the object to download
+	 * @param dst
+	 *            the file to write, created or truncated
+	 * @param reqCtx
+	 *            common parameters to all requests
+	 * @return the number of bytes written
+	 */
+	public long downloadObjectToFile(ObjectInfo oinf, Path dst,
+			RequestContext reqCtx) {
+		return new FileDownloader(this, executors,
+				settings.fileDownloadParallelism()).download(oinf, dst, reqCtx);
+	}
+
+	/**
+	 * Reads several ranges of the specified object at once. Close ranges
+	 * are merged, and the downloads run in parallel on the workers (or in
+	 * the calling thread when none is available).
+	 *
+	 * @param oinf
+	 *            the object to read
+	 * @param ranges
+	 *            the ranges to read
+	 * @param reqCtx
+	 *            common parameters to all requests
+	 * @return one future per range, in the same order as {@code ranges}
+	 */
+	public List<Future<ByteBuffer>> readRanges(ObjectInfo oinf,
+			List<Range> ranges, RequestContext reqCtx) {
+		return new RangeReader(this, executors, settings.rangeMergeGap())
+				.read(oinf, ranges, reqCtx);
+	}
+
+	/* --- INTERNALS --- */
+
+	InputStream decode(ObjectInfo oinf, Range range, RequestContext reqCtx) {
+		ECInfo ec = oinf.ecinfo();
+		return new EcInputStream(DownloadHelper.loadTargets(oinf, range),
+				new ReedSolomon(ec.algo(), ec.k(), ec.m()), http, reqCtx,
+				executors);
+	}
+
+	/**
+	 * Uploads one metachunk: each subchunk receives the fragments of the
+	 * index matching its position. The upload succeeds if at least
+	 * {@code k + 1} subchunks are written (all of them if quorum writes are
+	 * disabled). As with ecd, the size and the hash of the metachunk are
+	 * sent as trailers, once the metachunk is read.
+	 *
+	 * @return the hash of the metachunk
+	 */
+	private String uploadPosition(ObjectInfo oinf, int pos, final long size,
+			final InputStream data, final EcEncoder encoder,
+			RequestContext reqCtx) {
+		ECInfo ec = oinf.ecinfo();
+		List<ChunkInfo> cil = oinf.sortedChunks().get(pos);
+		final int[] subs = new int[cil.size()];
+		for (int i = 0; i < subs.length; i++) {
+			subs[i] = cil.get(i).pos().sub();
+			checkArgument(0 <= subs[i] && subs[i] < ec.k() + ec.m(),
+					"Invalid subchunk position " + cil.get(i).pos());
+		}
+		final int count = ec.k() + ec.m();
+		int quorum = settings.quorumWrite()
+				? Math.min(cil.size(), ec.k() + Math.min(1, ec.m()))
+				: cil.size();
+		Map<String, String> headers = new HashMap<String, String>();
+		headers.put(TRAILER_HEADER, CHUNK_META_METACHUNK_SIZE + ", "
+				+ CHUNK_META_METACHUNK_HASH);
+		// filled by the encoder, read by the uploads after the last fragment
+		final Map<String, String> trailers = new ConcurrentHashMap<String, String>();
+		if (0 == size) {
+			trailers.put(CHUNK_META_METACHUNK_SIZE, "0");
+			trailers.put(CHUNK_META_METACHUNK_HASH, EMPTY_MD5);
+		}
+		rawx.uploadPosition(oinf, pos, encoder.subchunkSize(size), quorum,
+				headers, trailers, new ChunkFeeder() {
+
+					@Override
+					public void feed(List<FeedableInputStream> bodies)
+							throws IOException {
+						FeedableInputStream[] outs = new FeedableInputStream[count];
+						for (int i = 0; i < subs.length; i++)
+							outs[subs[i]] = bodies.get(i);
+						encoder.encode(data, size, outs, trailers);
+					}
+				}, reqCtx);
+		return trailers.get(CHUNK_META_METACHUNK_HASH);
+	}
+}
@@ -0,0 +1,214 @@
+package io.openio.sds.storage.ec;
+
+import static io.openio.sds.common.OioConstants.CHUNK_META_METACHUNK_HASH;
+import static io.openio.sds.common.OioConstants.CHUNK_META_METACHUNK_SIZE;
+import static java.nio.ByteBuffer.wrap;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+import io.openio.sds.common.FeedableInputStream;
+import io.openio.sds.common.Hex;
+import io.openio.sds.logging.SdsLogger;
+import io.openio.sds.logging.SdsLoggerFactory;
+
+/**
+ * Splits a metachunk into segments, and each segment into {@code k} data
+ * fragments and {@code m} parity fragments, in the liberasurecode format.
+ * <p>
+ * The parity of several segments is computed at the same time on the
+ * workers, while the next segments are read; the fragments are written to
+ * the subchunk streams in the order of the segments.
+ */
+class EcEncoder {
+
+	private static final SdsLogger logger = SdsLoggerFactory
+			.getLogger(EcEncoder.class);
+
+	/**
+	 * Maximum number of segments being encoded at the same time.
+	 */
+	static final int MAX_PENDING = 4;
+
+	private final ReedSolomon rs;
+	private final int segmentSize;
+	private final ExecutorService executors;
+
+	EcEncoder(ReedSolomon rs, int segmentSize, ExecutorService executors) {
+		this.rs = rs;
+		this.segmentSize = segmentSize;
+		this.executors = executors;
+	}
+
+	/**
+	 * @param len
+	 *            the size of a segment
+	 * @param k
+	 *            the number of data fragments
+	 * @return the payload size of each fragment of the segment
+	 */
+	static int fragmentSize(int len, int k) {
+		return (len + k - 1) / k;
+	}
+
+	/**
+	 * @param size
+	 *            the size of a metachunk
+	 * @return the number of bytes of each subchunk of the metachunk
+	 */
+	long subchunkSize(long size) {
+		return subchunkSize(size, segmentSize, rs.k());
+	}
+
+	/**
+	 * @param size
+	 *            the size of a metachunk
+	 * @param segmentSize
+	 *            the size of the segments
+	 * @param k
+	 *            the number of data fragments
+	 * @return the number of bytes of each subchunk of the metachunk
+	 */
+	static long subchunkSize(long size, int segmentSize, int k) {
+		long full = size / segmentSize;
+		int last = (int) (size % segmentSize);
+		long res = full * (Fragment.HEADER_SIZE + fragmentSize(segmentSize, k));
+		if (0 < last)
+			res += Fragment.HEADER_SIZE + fragmentSize(last, k);
+		return res;
+	}
+
+	/**
+	 * Reads {@code size} bytes from {@code in}, and writes the fragments to
+	 * the specified streams.
+	 *
+	 * @param in
+	 *            the data of the metachunk
+	 * @param size
+	 *            the size of the metachunk
+	 * @param outs
+	 *            the {@code k + m} subchunk streams, indexed by fragment
+	 *            index
+	 * @param trailers
+	 *            receives the size and the MD5 of the metachunk once it is
+	 *            read, before its last fragments are written, or
+	 *            {@code null}
+	 * @throws IOException
+	 *             if the data cannot be read
+	 */
+	void encode(InputStream in, long size, FeedableInputStream[] outs,
+			Map<String, String> trailers) throws IOException {
+		LinkedList<Future<byte[][]>> pending = new LinkedList<Future<byte[][]>>();
+		MessageDigest md5 = null == trailers ? null : md5();
+		long remaining = size;
+		try {
+			while (0 < remaining) {
+				int len = (int) Math.min(segmentSize, remaining);
+				byte[] segment = new byte[len];
+				fill(in, segment);
+				if (null != md5)
+					md5.update(segment);
+				remaining -= len;
+				if (MAX_PENDING <= pending.size())
+					write(pending.removeFirst(), outs, false);
+				pending.add(submit(segment));
+			}
+			if (null != trailers) {
+				trailers.put(CHUNK_META_METACHUNK_SIZE, String.valueOf(size));
+				if (null != md5)
+					trailers.put(CHUNK_META_METACHUNK_HASH,
+							Hex.toHex(md5.digest()));
+			}
+			while (!pending.isEmpty())
+				write(pending.removeFirst(), outs, pending.isEmpty());
+		} finally {
+			for (Future<byte[][]> f : pending)
+				f.cancel(true);
+		}
+	}
+
+	/**
+	 * @return the {@code k + m} fragments of the segment, headers included
+	 */
+	byte[][] encode(byte[] segment) {
+		int k = rs.k();
+		int size = fragmentSize(segment.length, k);
+		byte[][] frags = new byte[k + rs.m()][Fragment.HEADER_SIZE + size];
+		for (int i = 0; i < k; i++) {
+			int from = Math.min(i * size, segment.length);
+			int to = Math.min(from + size, segment.length);
+			System.arraycopy(segment, from, frags[i], Fragment.HEADER_SIZE,
+					to - from);
+		}
+		rs.encode(frags, Fragment.HEADER_SIZE, size);
+		for (int i = 0; i < frags.length; i++)
+			Fragment.write(frags[i], i, size, segment.length, rs.backendId(),
+					rs.backendVersion());
+		return frags;
+	}
+
+	/* -- INTERNALS -- */
+
+	private Future<byte[][]> submit(final byte[] segment) {
+		Callable<byte[][]> task = new Callable<byte[][]>() {
+
+			@Override
+			public byte[][] call() {
+				return encode(segment);
+			}
+		};
+		try {
+			return executors.submit(task);
+		} catch (RejectedExecutionException e) {
+			FutureTask<byte[][]> f = new FutureTask<byte[][]>(task);
+			f.run();
+			return f;
+		}
+	}
+
+	private void write(Future<byte[][]> f, FeedableInputStream[] outs,
+			boolean last) throws IOException {
+		byte[][] frags;
+		try {
+			frags = f.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted while encoding", e);
+		} catch (ExecutionException e) {
+			throw new IOException("Unable to encode segment", e.getCause());
+		}
+		for (int i = 0; i < outs.length; i++)
+			if (null != outs[i])
+				outs[i].feed(wrap(frags[i]), last);
+	}
+
+	private static MessageDigest md5() {
+		try {
+			return MessageDigest.getInstance("MD5");
+		} catch (NoSuchAlgorithmException e) {
+			logger.warn("Unable to compute MD5", e);
+			return null;
+		}
+	}
+
+	private static void fill(InputStream in, byte[] b) throws IOException {
+		int done = 0;
+		while (done < b.length) {
+			int read = in.read(b, done, b.length - done);
+			if (-1 == read)
+				throw new EOFException("Unexpected end of stream");
+			done += read;
+		}
+	}
+}
@@ -0,0 +1,476 @@
+package io.openio.sds.storage.ec;
+
+import static io.openio.sds.http.Verifiers.RAWX_VERIFIER;
+import static java.lang.String.format;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+
+import io.openio.sds.RequestContext;
+import io.openio.sds.common.OioConstants;
+import io.openio.sds.exceptions.OioException;
+import io.openio.sds.http.OioHttp;
+import io.openio.sds.http.OioHttp.RequestBuilder;
+import io.openio.sds.http.OioHttpResponse;
+import io.openio.sds.logging.SdsLogger;
+import io.openio.sds.logging.SdsLoggerFactory;
+import io.openio.sds.models.ChunkInfo;
+import io.openio.sds.models.Range;
+import io.openio.sds.storage.Target;
+
+/**
+ * Reads an erasure-coded object from its subchunks, and decodes it locally.
+ * <p>
+ * For each metachunk, {@code k} subchunks are read at the same time,
+ * preferring the data ones. Each segment is made of one fragment of each
+ * subchunk: when all the data fragments are there, the segment is their
+ * concatenation, otherwise the missing data fragments are computed from the
+ * parity ones. If a subchunk stream breaks, the read goes on with another
+ * subchunk from the same fragment boundary.
+ * <p>
+ * Ranges are served by reading the segments which come before the range
+ * without decoding them, or by jumping over them when they are large
+ * enough.
+ */
+public class EcInputStream extends InputStream {
+
+	private static final SdsLogger logger = SdsLoggerFactory
+			.getLogger(EcInputStream.class);
+
+	/**
+	 * Skips over fewer bytes per subchunk than this are done by reading and
+	 * discarding the fragments, larger ones reopen the subchunks.
+	 */
+	static final int SKIP_IN_PLACE_MAX = 65536;
+
+	private final List<Target> targets;
+	private final OioHttp http;
+	private final RequestContext reqCtx;
+	private final ReedSolomon rs;
+	private final ExecutorService executors;
+	private final int k;
+
+	private int pos = 0;
+	private Reader[] readers;
+	private LinkedList<ChunkInfo> spares;
+	private long skip;
+	private long remaining;
+	private boolean ranged;
+	private boolean ended;
+
+	private byte[][] payloads;
+	private byte[] data = new byte[0];
+	private int dataPos = 0;
+	private int dataLen = 0;
+	private final byte[] header = new byte[Fragment.HEADER_SIZE];
+	private final byte[] single = new byte[1];
+
+	public EcInputStream(List<Target> targets, ReedSolomon rs, OioHttp http,
+			RequestContext reqCtx, ExecutorService executors) {
+		this.targets = targets;
+		this.rs = rs;
+		this.http = http;
+		this.reqCtx = reqCtx;
+		this.executors = executors;
+		this.k = rs.k();
+		this.payloads = new byte[k][0];
+	}
+
+	@Override
+	public int read() throws IOException {
+		int read = read(single, 0, 1);
+		return read < 0 ? -1 : single[0] & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] buf, int offset, int length) throws IOException {
+		if (0 >= length)
+			return 0;
+		int totRead = 0;
+		while (totRead < length) {
+			if (dataPos >= dataLen && !fill())
+				return 0 == totRead ? -1 : totRead;
+			int n = Math.min(length - totRead, dataLen - dataPos);
+			System.arraycopy(data, dataPos, buf, offset + totRead, n);
+			dataPos += n;
+			totRead += n;
+		}
+		return totRead;
+	}
+
+	@Override
+	public void close() {
+		release(false);
+		pos = targets.size();
+		dataLen = 0;
+	}
+
+	/* -- INTERNALS -- */
+
+	/**
+	 * Decodes the next segment holding requested data.
+	 *
+	 * @return false at the end of the object
+	 */
+	private boolean fill() throws IOException {
+		while (true) {
+			if (null == readers || ended || (ranged && 0 >= remaining)) {
+				release(ended);
+				if (pos >= targets.size())
+					return false;
+				open(targets.get(pos++));
+			}
+			if (segment())
+				return true;
+		}
+	}
+
+	/**
+	 * Reads the next segment of the current metachunk.
+	 *
+	 * @return true if some data of the segment must be returned
+	 */
+	private boolean segment() throws IOException {
+		Fragment[] frags = new Fragment[k];
+		int done = 0;
+		for (int i = 0; i < k; i++) {
+			frags[i] = fragment(i);
+			if (null == frags[i])
+				done++;
+		}
+		if (k == done) {
+			if (ranged && 0 < remaining)
+				throw new EOFException(format(
+						"Unexpected end of metachunk %d, %d bytes missing",
+						pos - 1, remaining));
+			this.ended = true;
+			return false;
+		}
+		if (0 != done)
+			throw new IOException(format(
+					"Subchunks of metachunk %d have different lengths",
+					pos - 1));
+		Fragment first = frags[0];
+		for (Fragment f : frags) {
+			if (f.size() != first.size()
+					|| f.origDataSize() != first.origDataSize())
+				throw new IOException(format(
+						"Inconsistent fragments in metachunk %d", pos - 1));
+		}
+		for (Reader r : readers)
+			r.commit();
+
+		long segmentSize = first.origDataSize();
+		if (0 == segmentSize)
+			return false;
+		if (skip >= segmentSize) {
+			skip -= segmentSize;
+			jump(segmentSize, first.length());
+			return false;
+		}
+		decode(frags, first.size());
+		dataLen = (int) Math.min(segmentSize, (long) k * first.size());
+		dataPos = (int) skip;
+		skip = 0;
+		if (ranged) {
+			if (remaining < dataLen - dataPos)
+				dataLen = dataPos + (int) remaining;
+			remaining -= dataLen - dataPos;
+		}
+		return true;
+	}
+
+	/**
+	 * Puts the data of the current segment in {@link #data}, computing the
+	 * missing data fragments if needed.
+	 */
+	private void decode(Fragment[] frags, int size) throws IOException {
+		if (data.length < k * size)
+			data = new byte[k * size];
+		int[] available = new int[k];
+		boolean[] present = new boolean[k];
+		int missing = 0;
+		for (int i = 0; i < k; i++) {
+			int idx = frags[i].idx();
+			if (idx >= rs.k() + rs.m())
+				throw new IOException("Invalid fragment index " + idx);
+			for (int j = 0; j < i; j++)
+				if (available[j] == idx)
+					throw new IOException("Duplicate fragment index " + idx);
+			available[i] = idx;
+			if (idx < k) {
+				present[idx] = true;
+				System.arraycopy(payloads[i], 0, data, idx * size, size);
+			}
+		}
+		for (boolean p : present)
+			if (!p)
+				missing++;
+		if (0 == missing)
+			return;
+
+		int[] wanted = new int[missing];
+		byte[][] outputs = new byte[missing][size];
+		for (int d = 0, w = 0; d < k; d++)
+			if (!present[d])
+				wanted[w++] = d;
+		rs.decode(available, payloads, wanted, outputs, size);
+		for (int w = 0; w < missing; w++)
+			System.arraycopy(outputs[w], 0, data, wanted[w] * size, size);
+	}
+
+	/**
+	 * Skips whole segments by reopening the subchunks further, when the
+	 * range starts far enough.
+	 */
+	private void jump(long segmentSize, long fragmentLength) {
+		long segments = skip / segmentSize;
+		if (segments * fragmentLength < SKIP_IN_PLACE_MAX)
+			return;
+		skip -= segments * segmentSize;
+		for (Reader r : readers) {
+			r.close(false);
+			r.offset += segments * fragmentLength;
+		}
+		for (Reader r : readers)
+			reopen(r);
+	}
+
+	/**
+	 * Reads the next fragment of the specified reader into
+	 * {@code payloads[i]}, switching to another subchunk if the stream
+	 * breaks.
+	 *
+	 * @return the header of the fragment, or {@code null} at the end of
+	 *         the subchunk
+	 */
+	private Fragment fragment(int i) throws IOException {
+		Reader r = readers[i];
+		while (true) {
+			try {
+				if (null == r.response)
+					reopen(r);
+				InputStream in = r.response.body();
+				int read = readFully(in, header, Fragment.HEADER_SIZE);
+				if (0 == read)
+					return null;
+				if (Fragment.HEADER_SIZE != read)
+					throw new EOFException("Truncated fragment header");
+				Fragment f = Fragment.parse(header);
+				if (payloads[i].length < f.size())
+					payloads[i] = new byte[f.size()];
+				if (f.size() != readFully(in, payloads[i], f.size()))
+					throw new EOFException("Truncated fragment");
+				skipFully(in, f.backendMetadataSize());
+				r.pending = f.length();
+				return f;
+			} catch (IOException e) {
+				failover(r, e);
+			} catch (OioException e) {
+				failover(r, new IOException(e.getMessage(), e));
+			}
+		}
+	}
+
+	private void failover(Reader r, IOException cause) throws IOException {
+		r.close(false);
+		if (spares.isEmpty())
+			throw new IOException(format(
+					"Not enough subchunks to decode metachunk %d", pos - 1),
+					cause);
+		logger.warn(format(
+				"Subchunk stream broken after %d bytes (url: %s), resuming on another subchunk",
+				r.offset, r.chunk.url()), cause);
+		r.chunk = spares.removeFirst();
+	}
+
+	private void reopen(Reader r) {
+		while (true) {
+			try {
+				r.response = get(r.chunk, r.offset);
+				return;
+			} catch (OioException e) {
+				if (spares.isEmpty())
+					throw new OioException(format(
+							"Not enough subchunks to decode metachunk %d",
+							pos - 1), e);
+				logger.warn("Error while trying to download "
+						+ r.chunk.url(), e);
+				r.chunk = spares.removeFirst();
+			}
+		}
+	}
+
+	/**
+	 * Opens {@code k} subchunks of the specified metachunk at the same time.
+	 */
+	private void open(Target t) {
+		Range range = t.getRange();
+		ranged = null != range;
+		ended = false;
+		skip = ranged ? range.from() : 0;
+		remaining = ranged ? range.to() - range.from() : 0;
+		spares = new LinkedList<ChunkInfo>(sorted(t.getChunk()));
+		readers = new Reader[Math.min(k, spares.size())];
+		List<Future<OioHttpResponse>> futures = new ArrayList<Future<OioHttpResponse>>(
+				readers.length);
+		for (int i = 0; i < readers.length; i++) {
+			readers[i] = new Reader(spares.removeFirst());
+			futures.add(submit(readers[i].chunk));
+		}
+		OioException failure = null;
+		for (int i = 0; i < readers.length; i++) {
+			try {
+				readers[i].response = futures.get(i).get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				failure = new OioException("Interrupted", e);
+			} catch (ExecutionException e) {
+				logger.warn("Error while trying to download "
+						+ readers[i].chunk.url(), e.getCause());
+				readers[i].chunk = null;
+			}
+		}
+		try {
+			if (null != failure)
+				throw failure;
+			if (k > readers.length)
+				throw new OioException(format(
+						"Not enough subchunks to decode metachunk %d",
+						pos - 1));
+			for (Reader r : readers) {
+				if (null == r.chunk) {
+					if (spares.isEmpty())
+						throw new OioException(format(
+								"Not enough subchunks to decode metachunk %d",
+								pos - 1));
+					r.chunk = spares.removeFirst();
+					reopen(r);
+				}
+			}
+		} catch (OioException e) {
+			release(false);
+			throw e;
+		}
+	}
+
+	private Future<OioHttpResponse> submit(final ChunkInfo ci) {
+		Callable<OioHttpResponse> task = new Callable<OioHttpResponse>() {
+
+			@Override
+			public OioHttpResponse call() {
+				return get(ci, 0);
+			}
+		};
+		try {
+			return executors.submit(task);
+		} catch (RejectedExecutionException e) {
+			FutureTask<OioHttpResponse> f = new FutureTask<OioHttpResponse>(
+					task);
+			f.run();
+			return f;
+		}
+	}
+
+	private OioHttpResponse get(ChunkInfo ci, long offset) {
+		if (logger.isDebugEnabled())
+			logger.debug("download from " + ci.finalUrl());
+		RequestBuilder builder = http.get(ci.finalUrl())
+				.verifier(RAWX_VERIFIER)
+				.withRequestContext(reqCtx);
+		if (0 < offset)
+			builder.header(OioConstants.RANGE_HEADER,
+					Range.from(offset).headerValue());
+		return builder.execute();
+	}
+
+	private void release(boolean reuse) {
+		if (null == readers)
+			return;
+		for (Reader r : readers)
+			if (null != r)
+				r.close(reuse);
+		readers = null;
+	}
+
+	/**
+	 * @return the subchunks ordered by index, data ones first
+	 */
+	private static List<ChunkInfo> sorted(List<ChunkInfo> chunks) {
+		List<ChunkInfo> res = new ArrayList<ChunkInfo>(chunks);
+		Collections.sort(res, new Comparator<ChunkInfo>() {
+
+			@Override
+			public int compare(ChunkInfo c1, ChunkInfo c2) {
+				return Integer.compare(c1.pos().sub(), c2.pos().sub());
+			}
+		});
+		return res;
+	}
+
+	private static int readFully(InputStream in, byte[] b, int len)
+			throws IOException {
+		int done = 0;
+		while (done < len) {
+			int read = in.read(b, done, len - done);
+			if (-1 == read)
+				break;
+			done += read;
+		}
+		return done;
+	}
+
+	private static void skipFully(InputStream in, long len)
+			throws IOException {
+		while (len > 0) {
+			long skipped = in.skip(len);
+			if (0 >= skipped) {
+				if (-1 == in.read())
+					throw new EOFException("Truncated fragment");
+				skipped = 1;
+			}
+			len -= skipped;
+		}
+	}
+
+	/**
+	 * A subchunk being read, and the offset of the first fragment not
+	 * consumed yet.
+	 */
+	private static class Reader {
+
+		private ChunkInfo chunk;
+		private OioHttpResponse response;
+		private long offset = 0;
+		private long pending = 0;
+
+		Reader(ChunkInfo chunk) {
+			this.chunk = chunk;
+		}
+
+		void commit() {
+			offset += pending;
+			pending = 0;
+		}
+
+		void close(boolean reuse) {
+			pending = 0;
+			if (null == response)
+				return;
+			response.close(reuse);
+			response = null;
+		}
+	}
+}
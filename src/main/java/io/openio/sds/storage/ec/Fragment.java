@@ -0,0 +1,159 @@
+package io.openio.sds.storage.ec;
+
+import static java.lang.String.format;
+
+import java.io.IOException;
+import java.util.zip.CRC32;
+
+/**
+ * Header of a fragment, as written by liberasurecode in front of each
+ * fragment of each segment of a subchunk.
+ * <p>
+ * The header is 80 bytes long, with little-endian integers:
+ * <ul>
+ * <li>{@code idx} (4 bytes), the index of the fragment in the stripe</li>
+ * <li>{@code size} (4 bytes), the size of the fragment payload</li>
+ * <li>{@code frag_backend_metadata_size} (4 bytes), the size of the backend
+ * metadata following the payload</li>
+ * <li>{@code orig_data_size} (8 bytes), the size of the segment</li>
+ * <li>{@code chksum_type} (1 byte), {@code chksum} (32 bytes) and
+ * {@code chksum_mismatch} (1 byte), the checksum of the payload</li>
+ * <li>{@code backend_id} (1 byte) and {@code backend_version} (4 bytes)</li>
+ * <li>{@code magic} (4 bytes, at offset 59)</li>
+ * <li>{@code libec_version} (4 bytes), then {@code metadata_chksum} (4
+ * bytes), the CRC32 of the first 59 bytes, then padding</li>
+ * </ul>
+ */
+class Fragment {
+
+	static final int HEADER_SIZE = 80;
+	static final int MAGIC = 0xb0c5ecc;
+
+	private static final int IDX_OFFSET = 0;
+	private static final int SIZE_OFFSET = 4;
+	private static final int BACKEND_METADATA_SIZE_OFFSET = 8;
+	private static final int ORIG_DATA_SIZE_OFFSET = 12;
+	private static final int CHKSUM_TYPE_OFFSET = 20;
+	private static final int BACKEND_ID_OFFSET = 54;
+	private static final int BACKEND_VERSION_OFFSET = 55;
+	private static final int MAGIC_OFFSET = 59;
+	private static final int LIBEC_VERSION_OFFSET = 63;
+	private static final int METADATA_CHKSUM_OFFSET = 67;
+	private static final int METADATA_SIZE = 59;
+
+	/**
+	 * Version of liberasurecode written in the headers, 1.6.2.
+	 */
+	static final int LIBEC_VERSION = 0x010602;
+
+	/**
+	 * liberasurecode {@code CHKSUM_NONE}, the payload is not checksummed.
+	 */
+	static final int CHKSUM_NONE = 1;
+
+	private final int idx;
+	private final int size;
+	private final int backendMetadataSize;
+	private final long origDataSize;
+
+	Fragment(int idx, int size, int backendMetadataSize, long origDataSize) {
+		this.idx = idx;
+		this.size = size;
+		this.backendMetadataSize = backendMetadataSize;
+		this.origDataSize = origDataSize;
+	}
+
+	/**
+	 * @param b
+	 *            at least {@link #HEADER_SIZE} bytes
+	 * @return the parsed header
+	 * @throws IOException
+	 *             if the header is not valid
+	 */
+	static Fragment parse(byte[] b) throws IOException {
+		int magic = int32(b, MAGIC_OFFSET);
+		if (MAGIC != magic)
+			throw new IOException(format("Invalid fragment magic 0x%x", magic));
+		Fragment f = new Fragment(int32(b, IDX_OFFSET), int32(b, SIZE_OFFSET),
+				int32(b, BACKEND_METADATA_SIZE_OFFSET),
+				int64(b, ORIG_DATA_SIZE_OFFSET));
+		if (0 > f.idx || 0 > f.size || 0 > f.backendMetadataSize
+				|| 0 > f.origDataSize)
+			throw new IOException("Invalid fragment header");
+		return f;
+	}
+
+	/**
+	 * Writes the header of a fragment, as liberasurecode does with the
+	 * {@code none} checksum type (the pyeclib default).
+	 *
+	 * @param b
+	 *            at least {@link #HEADER_SIZE} bytes, zeroed
+	 * @param idx
+	 *            the index of the fragment
+	 * @param size
+	 *            the size of the fragment payload
+	 * @param origDataSize
+	 *            the size of the segment
+	 * @param backendId
+	 *            the liberasurecode backend identifier
+	 * @param backendVersion
+	 *            the version of the backend library
+	 */
+	static void write(byte[] b, int idx, int size, long origDataSize,
+			int backendId, int backendVersion) {
+		putInt32(b, IDX_OFFSET, idx);
+		putInt32(b, SIZE_OFFSET, size);
+		putInt32(b, ORIG_DATA_SIZE_OFFSET, (int) origDataSize);
+		putInt32(b, ORIG_DATA_SIZE_OFFSET + 4, (int) (origDataSize >>> 32));
+		b[CHKSUM_TYPE_OFFSET] = (byte) CHKSUM_NONE;
+		b[BACKEND_ID_OFFSET] = (byte) backendId;
+		putInt32(b, BACKEND_VERSION_OFFSET, backendVersion);
+		putInt32(b, MAGIC_OFFSET, MAGIC);
+		putInt32(b, LIBEC_VERSION_OFFSET, LIBEC_VERSION);
+		CRC32 crc = new CRC32();
+		crc.update(b, 0, METADATA_SIZE);
+		putInt32(b, METADATA_CHKSUM_OFFSET, (int) crc.getValue());
+	}
+
+	int idx() {
+		return idx;
+	}
+
+	int size() {
+		return size;
+	}
+
+	int backendMetadataSize() {
+		return backendMetadataSize;
+	}
+
+	long origDataSize() {
+		return origDataSize;
+	}
+
+	/**
+	 * @return the number of bytes of the fragment in the subchunk, header
+	 *         included
+	 */
+	long length() {
+		return HEADER_SIZE + (long) size + backendMetadataSize;
+	}
+
+	private static int int32(byte[] b, int off) {
+		return (b[off] & 0xFF) | (b[off + 1] & 0xFF) << 8
+				| (b[off + 2] & 0xFF) << 16 | (b[off + 3] & 0xFF) << 24;
+	}
+
+	private static void putInt32(byte[] b, int off, int v) {
+		b[off] = (byte) v;
+		b[off + 1] = (byte) (v >>> 8);
+		b[off + 2] = (byte) (v >>> 16);
+		b[off + 3] = (byte) (v >>> 24);
+	}
+
+	private static long int64(byte[] b, int off) {
+		return (int32(b, off) & 0xFFFFFFFFL)
+				| (long) int32(b, off + 4) << 32;
+	}
+}
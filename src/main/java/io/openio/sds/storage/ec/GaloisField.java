@@ -0,0 +1,110 @@
+package io.openio.sds.storage.ec;
+
+/**
+ * Arithmetic in GF(2^8) with the polynomial 0x11d, as used by ISA-L.
+ * <p>
+ * Region operations go through a full 256x256 multiplication table: the
+ * row of the coefficient is looked up once, then each byte costs a single
+ * table access and a XOR.
+ */
+final class GaloisField {
+
+	static final int POLY = 0x11d;
+
+	private static final int[] EXP = new int[512];
+	private static final int[] LOG = new int[256];
+	private static final byte[][] MUL = new byte[256][256];
+
+	static {
+		int x = 1;
+		for (int i = 0; i < 255; i++) {
+			EXP[i] = x;
+			LOG[x] = i;
+			x <<= 1;
+			if (0 != (x & 0x100))
+				x ^= POLY;
+		}
+		for (int i = 255; i < EXP.length; i++)
+			EXP[i] = EXP[i - 255];
+		for (int a = 0; a < 256; a++)
+			for (int b = 0; b < 256; b++)
+				MUL[a][b] = (byte) mul(a, b);
+	}
+
+	private GaloisField() {
+	}
+
+	static int mul(int a, int b) {
+		if (0 == a || 0 == b)
+			return 0;
+		return EXP[LOG[a] + LOG[b]];
+	}
+
+	static int inv(int a) {
+		if (0 == a)
+			throw new ArithmeticException("0 has no inverse");
+		return EXP[255 - LOG[a]];
+	}
+
+	/**
+	 * {@code dst[dstOff..] ^= c * src[srcOff..]} on {@code len} bytes.
+	 */
+	static void mulAdd(int c, byte[] src, int srcOff, byte[] dst, int dstOff,
+			int len) {
+		if (0 == c)
+			return;
+		if (1 == c) {
+			for (int i = 0; i < len; i++)
+				dst[dstOff + i] ^= src[srcOff + i];
+			return;
+		}
+		byte[] row = MUL[c];
+		for (int i = 0; i < len; i++)
+			dst[dstOff + i] ^= row[src[srcOff + i] & 0xFF];
+	}
+
+	/**
+	 * Inverts the specified square matrix.
+	 *
+	 * @return the inverse matrix
+	 * @throws IllegalArgumentException
+	 *             if the matrix is singular
+	 */
+	static int[][] invert(int[][] m) {
+		int n = m.length;
+		int[][] a = new int[n][];
+		int[][] res = new int[n][n];
+		for (int i = 0; i < n; i++) {
+			a[i] = m[i].clone();
+			res[i][i] = 1;
+		}
+		for (int col = 0; col < n; col++) {
+			int pivot = col;
+			while (pivot < n && 0 == a[pivot][col])
+				pivot++;
+			if (pivot == n)
+				throw new IllegalArgumentException("Singular matrix");
+			int[] t = a[pivot];
+			a[pivot] = a[col];
+			a[col] = t;
+			t = res[pivot];
+			res[pivot] = res[col];
+			res[col] = t;
+			int f = inv(a[col][col]);
+			for (int j = 0; j < n; j++) {
+				a[col][j] = mul(a[col][j], f);
+				res[col][j] = mul(res[col][j], f);
+			}
+			for (int i = 0; i < n; i++) {
+				if (i == col || 0 == a[i][col])
+					continue;
+				int c = a[i][col];
+				for (int j = 0; j < n; j++) {
+					a[i][j] ^= mul(c, a[col][j]);
+					res[i][j] ^= mul(c, res[col][j]);
+				}
+			}
+		}
+		return res;
+	}
+}
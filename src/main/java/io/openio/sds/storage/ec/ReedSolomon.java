@@ -0,0 +1,184 @@
+package io.openio.sds.storage.ec;
+
+import static io.openio.sds.common.Check.checkArgument;
+
+import java.util.Arrays;
+
+/**
+ * Systematic Reed-Solomon codes over GF(2^8), with the coding matrices of
+ * the ISA-L backends of liberasurecode.
+ * <p>
+ * The coding matrix has {@code k + m} rows and {@code k} columns: its first
+ * {@code k} rows are the identity (fragment {@code i < k} is the slice
+ * {@code i} of the data), the next {@code m} rows give the parity
+ * fragments.
+ */
+public class ReedSolomon {
+
+	/**
+	 * ISA-L Vandermonde matrix.
+	 */
+	public static final String ISA_L_RS_VAND = "isa_l_rs_vand";
+
+	/**
+	 * ISA-L Cauchy matrix.
+	 */
+	public static final String ISA_L_RS_CAUCHY = "isa_l_rs_cauchy";
+
+	// liberasurecode backend identifiers, written in the fragment headers
+	private static final int BACKEND_ISA_L_RS_VAND = 4;
+	private static final int BACKEND_ISA_L_RS_CAUCHY = 7;
+	// version of ISA-L declared by the liberasurecode backends, 2.13.0
+	private static final int ISA_L_VERSION = 0x020d00;
+
+	private final int k;
+	private final int m;
+	private final int backendId;
+	private final int[][] matrix;
+
+	private int[] cachedAvailable;
+	private int[][] cachedInverse;
+
+	public ReedSolomon(String algo, int k, int m) {
+		checkArgument(supports(algo), "Unsupported EC algorithm " + algo);
+		checkArgument(0 < k && 0 <= m && k + m <= 256,
+				"Invalid EC parameters");
+		this.k = k;
+		this.m = m;
+		boolean vand = ISA_L_RS_VAND.equals(algo);
+		this.backendId = vand ? BACKEND_ISA_L_RS_VAND : BACKEND_ISA_L_RS_CAUCHY;
+		this.matrix = vand ? vandermonde(k, m) : cauchy(k, m);
+	}
+
+	/**
+	 * @param algo
+	 *            the {@code algo} parameter of an EC chunk method
+	 * @return true if the algorithm can be handled by this class
+	 */
+	public static boolean supports(String algo) {
+		return ISA_L_RS_VAND.equals(algo) || ISA_L_RS_CAUCHY.equals(algo);
+	}
+
+	public int k() {
+		return k;
+	}
+
+	public int m() {
+		return m;
+	}
+
+	/**
+	 * @return the liberasurecode identifier of the backend
+	 */
+	int backendId() {
+		return backendId;
+	}
+
+	/**
+	 * @return the backend version written in the fragment headers
+	 */
+	int backendVersion() {
+		return ISA_L_VERSION;
+	}
+
+	/**
+	 * Computes the {@code m} parity fragments of the {@code k} data
+	 * fragments.
+	 *
+	 * @param frags
+	 *            the {@code k + m} fragments, the data ones first
+	 * @param off
+	 *            the offset of the fragment data in each buffer
+	 * @param len
+	 *            the size of the fragments
+	 */
+	public void encode(byte[][] frags, int off, int len) {
+		checkArgument(frags.length == k + m, "Need exactly k + m fragments");
+		for (int i = k; i < k + m; i++) {
+			Arrays.fill(frags[i], off, off + len, (byte) 0);
+			for (int j = 0; j < k; j++)
+				GaloisField.mulAdd(matrix[i][j], frags[j], off, frags[i], off,
+						len);
+		}
+	}
+
+	/**
+	 * Computes the fragments {@code wanted} from the fragments
+	 * {@code available}.
+	 *
+	 * @param available
+	 *            the indexes of {@code k} distinct fragments
+	 * @param inputs
+	 *            the data of these fragments
+	 * @param wanted
+	 *            the indexes of the fragments to compute
+	 * @param outputs
+	 *            the buffers to fill, at least {@code len} bytes each
+	 * @param len
+	 *            the size of the fragments
+	 */
+	public void decode(int[] available, byte[][] inputs, int[] wanted,
+			byte[][] outputs, int len) {
+		checkArgument(available.length == k, "Need exactly k fragments");
+		int[][] inverse = inverse(available);
+		for (int w = 0; w < wanted.length; w++) {
+			Arrays.fill(outputs[w], 0, len, (byte) 0);
+			int[] row = matrix[wanted[w]];
+			// coefficients of the wanted fragment over the available ones
+			for (int j = 0; j < k; j++) {
+				int c = 0;
+				for (int l = 0; l < k; l++)
+					c ^= GaloisField.mul(row[l], inverse[l][j]);
+				GaloisField.mulAdd(c, inputs[j], 0, outputs[w], 0, len);
+			}
+		}
+	}
+
+	/* -- INTERNALS -- */
+
+	private synchronized int[][] inverse(int[] available) {
+		if (Arrays.equals(available, cachedAvailable))
+			return cachedInverse;
+		int[][] sub = new int[k][];
+		for (int i = 0; i < k; i++)
+			sub[i] = matrix[available[i]];
+		cachedInverse = GaloisField.invert(sub);
+		cachedAvailable = available.clone();
+		return cachedInverse;
+	}
+
+	/**
+	 * Same as ISA-L {@code gf_gen_rs_matrix}.
+	 */
+	static int[][] vandermonde(int k, int m) {
+		int[][] a = identity(k, m);
+		int gen = 1;
+		for (int i = k; i < k + m; i++) {
+			int p = 1;
+			for (int j = 0; j < k; j++) {
+				a[i][j] = p;
+				p = GaloisField.mul(p, gen);
+			}
+			gen = GaloisField.mul(gen, 2);
+		}
+		return a;
+	}
+
+	/**
+	 * Same as ISA-L {@code gf_gen_cauchy1_matrix}.
+	 */
+	static int[][] cauchy(int k, int m) {
+		int[][] a = identity(k, m);
+		for (int i = k; i < k + m; i++)
+			for (int j = 0; j < k; j++)
+				a[i][j] = GaloisField.inv(i ^ j);
+		return a;
+	}
+
+	private static int[][] identity(int k, int m) {
+		int[][] a = new int[k + m][k];
+		for (int i = 0; i < k; i++)
+			a[i][i] = 1;
+		return a;
+	}
+}
@@ -0,0 +1,204 @@
+package io.openio.sds.storage.ec;
+
+import static io.openio.sds.http.Verifiers.RAWX_VERIFIER;
+import static java.lang.String.format;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+import io.openio.sds.RequestContext;
+import io.openio.sds.common.OioConstants;
+import io.openio.sds.exceptions.OioException;
+import io.openio.sds.http.OioHttp;
+import io.openio.sds.http.OioHttpResponse;
+import io.openio.sds.logging.SdsLogger;
+import io.openio.sds.logging.SdsLoggerFactory;
+import io.openio.sds.models.ChunkInfo;
+import io.openio.sds.models.ObjectInfo;
+import io.openio.sds.models.Range;
+
+/**
+ * Reads a range of an erasure-coded object from its data fragments only.
+ * <p>
+ * The codes handled by {@link ReedSolomon} are systematic: the data
+ * fragments of a segment are the plain slices of the segment. Knowing the
+ * segment size, each byte of the object maps to a byte of a data subchunk,
+ * so a range is read with one ranged request per fragment it covers, like
+ * a replicated object, without any decoding.
+ * <p>
+ * The layout is checked on the first request to each metachunk: the length
+ * of the subchunk returned by rawx must match the one computed from the
+ * segment size. If it does not, or if a data subchunk cannot be read, the
+ * rest of the range is decoded from all the fragments.
+ */
+class SystematicInputStream extends InputStream {
+
+	private static final SdsLogger logger = SdsLoggerFactory
+			.getLogger(SystematicInputStream.class);
+
+	private final ObjectInfo oinf;
+	private final EcClient decoder;
+	private final OioHttp http;
+	private final RequestContext reqCtx;
+	private final int segmentSize;
+	private final int k;
+	private final long to;
+
+	private long position;
+	private int checked = -1;
+	private OioHttpResponse current;
+	private long currentRemaining;
+	private InputStream fallback;
+	private final byte[] single = new byte[1];
+
+	/**
+	 * @param oinf
+	 *            the object to read
+	 * @param from
+	 *            the first byte to read
+	 * @param to
+	 *            the end of the range, exclusive
+	 * @param segmentSize
+	 *            the size of the segments of the object
+	 * @param decoder
+	 *            the client decoding the range if the data fragments cannot
+	 *            be read
+	 */
+	SystematicInputStream(ObjectInfo oinf, long from, long to,
+			int segmentSize, EcClient decoder, OioHttp http,
+			RequestContext reqCtx) {
+		this.oinf = oinf;
+		this.position = from;
+		this.to = to;
+		this.segmentSize = segmentSize;
+		this.decoder = decoder;
+		this.http = http;
+		this.reqCtx = reqCtx;
+		this.k = oinf.ecinfo().k();
+	}
+
+	@Override
+	public int read() throws IOException {
+		int read = read(single, 0, 1);
+		return read < 0 ? -1 : single[0] & 0xFF;
+	}
+
+	@Override
+	public int read(byte[] buf, int offset, int length) throws IOException {
+		if (0 >= length)
+			return 0;
+		if (null != fallback)
+			return fallback.read(buf, offset, length);
+		if (position >= to)
+			return -1;
+		try {
+			if (null == current)
+				next();
+			int read = current.body().read(buf, offset,
+					(int) Math.min(length, currentRemaining));
+			if (-1 == read)
+				throw new EOFException("Unexpected end of fragment");
+			position += read;
+			currentRemaining -= read;
+			if (0 == currentRemaining)
+				release();
+			return read;
+		} catch (IOException e) {
+			fallback(e);
+		} catch (OioException e) {
+			fallback(e);
+		}
+		return fallback.read(buf, offset, length);
+	}
+
+	@Override
+	public void close() throws IOException {
+		release();
+		position = to;
+		if (null != fallback)
+			fallback.close();
+	}
+
+	/* -- INTERNALS -- */
+
+	/**
+	 * Opens the data fragment holding the byte at the current position, up
+	 * to the end of the fragment or of the range.
+	 */
+	private void next() throws IOException {
+		int pos = oinf.chunkAt(position);
+		long mcStart = oinf.chunkOffset(pos);
+		long mcSize = oinf.chunkOffset(pos + 1) - mcStart;
+		long x = position - mcStart;
+		long segment = x / segmentSize;
+		int segLen = (int) Math.min(segmentSize, mcSize - segment * segmentSize);
+		int size = EcEncoder.fragmentSize(segLen, k);
+		int inSegment = (int) (x - segment * segmentSize);
+		int idx = inSegment / size;
+		int inFragment = inSegment % size;
+		long len = Math.min(
+				Math.min(size, segLen - (long) idx * size) - inFragment,
+				to - position);
+		long start = segment * (Fragment.HEADER_SIZE
+				+ EcEncoder.fragmentSize(segmentSize, k))
+				+ Fragment.HEADER_SIZE + inFragment;
+
+		ChunkInfo ci = dataChunk(pos, idx);
+		if (logger.isDebugEnabled())
+			logger.debug("download from " + ci.finalUrl());
+		current = http.get(ci.finalUrl())
+				.header(OioConstants.RANGE_HEADER,
+						Range.between(start, start + len).headerValue())
+				.verifier(RAWX_VERIFIER)
+				.withRequestContext(reqCtx)
+				.execute();
+		currentRemaining = len;
+		if (checked != pos) {
+			long expected = EcEncoder.subchunkSize(mcSize, segmentSize, k);
+			if (expected != total(current.header(
+					OioConstants.CONTENT_RANGE_HEADER)))
+				throw new IOException(format(
+						"Unexpected layout of subchunk %s", ci.url()));
+			checked = pos;
+		}
+	}
+
+	private ChunkInfo dataChunk(int pos, int idx) {
+		for (ChunkInfo ci : oinf.sortedChunks().get(pos))
+			if (idx == ci.pos().sub())
+				return ci;
+		throw new OioException(format(
+				"Data subchunk %d.%d not found", pos, idx));
+	}
+
+	/**
+	 * @return the complete length in a {@code Content-Range} header, or -1
+	 */
+	private static long total(String contentRange) {
+		if (null == contentRange)
+			return -1L;
+		int slash = contentRange.lastIndexOf('/');
+		try {
+			return Long.parseLong(contentRange.substring(slash + 1).trim());
+		} catch (NumberFormatException e) {
+			return -1L;
+		}
+	}
+
+	private void fallback(Exception cause) {
+		release();
+		logger.warn(format(
+				"Unable to read data fragments of %s at offset %d, decoding",
+				oinf.url(), position), cause);
+		fallback = decoder.decode(oinf, Range.between(position, to), reqCtx);
+	}
+
+	private void release() {
+		if (null == current)
+			return;
+		// the connection is reusable only if the fragment was read entirely
+		current.close(0 == currentRemaining);
+		current = null;
+	}
+}
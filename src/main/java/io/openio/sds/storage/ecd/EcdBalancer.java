@@ -0,0 +1,225 @@
+package io.openio.sds.storage.ecd;
+
+import static java.lang.String.format;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import io.openio.sds.exceptions.OioException;
+import io.openio.sds.exceptions.OioSystemException;
+import io.openio.sds.http.OioHttp.RequestBuilder;
+import io.openio.sds.http.OioHttpResponse;
+import io.openio.sds.logging.SdsLogger;
+import io.openio.sds.logging.SdsLoggerFactory;
+
+/**
+ * Spreads the requests to ecd across all the configured hosts.
+ * <p>
+ * Each request goes to the host currently serving the fewest requests from
+ * this client, ties being broken randomly. A host failing with network
+ * errors too many times in a row is ejected for a while: it is then tried
+ * only once all the other hosts have failed. Once the ejection is over, the
+ * host is used again, and a single new failure ejects it again.
+ */
+class EcdBalancer {
+
+	private static final SdsLogger logger = SdsLoggerFactory
+			.getLogger(EcdBalancer.class);
+
+	private final List<Host> hosts;
+	private final int maxFailures;
+	private final long ejectionNanos;
+
+	/**
+	 * @param addrs
+	 *            the ecd hosts
+	 * @param maxFailures
+	 *            the number of consecutive failures ejecting a host
+	 * @param ejectionMillis
+	 *            how long an ejected host is avoided
+	 */
+	EcdBalancer(List<InetSocketAddress> addrs, int maxFailures,
+			long ejectionMillis) {
+		List<Host> l = new ArrayList<Host>(addrs.size());
+		for (InetSocketAddress addr : addrs)
+			l.add(new Host(addr));
+		this.hosts = Collections.unmodifiableList(l);
+		this.maxFailures = Math.max(1, maxFailures);
+		this.ejectionNanos = TimeUnit.MILLISECONDS.toNanos(ejectionMillis);
+	}
+
+	/**
+	 * Sends the specified request to the best host, then to the next ones
+	 * while they fail with network errors.
+	 *
+	 * @param builder
+	 *            the request to send
+	 * @return the exchange with the host which answered, to
+	 *         {@link Call#end(boolean) end} once the response is consumed
+	 * @throws OioException
+	 *             if the request fails, or if all the hosts are unreachable
+	 */
+	Call execute(RequestBuilder builder) throws OioException {
+		OioException lastExc = null;
+		for (Host host : order()) {
+			if (null != lastExc)
+				logger.info("Retrying on " + host.addr);
+			host.inFlight.incrementAndGet();
+			try {
+				return new Call(host, builder.execute(host.addr));
+			} catch (OioException e) {
+				host.inFlight.decrementAndGet();
+				// the host answered, or the request itself is wrong
+				if (!(e.getCause() instanceof IOException))
+					throw e;
+				logger.warn(format("Failed to perform request on %s",
+						host.addr), e);
+				failure(host);
+				lastExc = e;
+			}
+		}
+		throw new OioSystemException("HTTP request execution error", lastExc);
+	}
+
+	/**
+	 * @return the addresses of the hosts, in the order they would be tried
+	 *         by the next request
+	 */
+	List<InetSocketAddress> addresses() {
+		List<InetSocketAddress> res = new ArrayList<InetSocketAddress>();
+		for (Host host : order())
+			res.add(host.addr);
+		return res;
+	}
+
+	/* -- INTERNALS -- */
+
+	/**
+	 * Sorts the hosts, the available ones first by number of requests in
+	 * flight, then the ejected ones by end of ejection.
+	 */
+	private List<Host> order() {
+		final long now = System.nanoTime();
+		List<Candidate> candidates = new ArrayList<Candidate>(hosts.size());
+		for (Host host : hosts)
+			candidates.add(new Candidate(host, now));
+		Collections.shuffle(candidates, ThreadLocalRandom.current());
+		Collections.sort(candidates, new Comparator<Candidate>() {
+
+			@Override
+			public int compare(Candidate c1, Candidate c2) {
+				if (c1.ejected != c2.ejected)
+					return c1.ejected ? 1 : -1;
+				return c1.ejected
+						? Long.compare(c1.ejectedFor, c2.ejectedFor)
+						: Integer.compare(c1.inFlight, c2.inFlight);
+			}
+		});
+		List<Host> res = new ArrayList<Host>(candidates.size());
+		for (Candidate c : candidates)
+			res.add(c.host);
+		return res;
+	}
+
+	private void failure(Host host) {
+		synchronized (host) {
+			host.failures++;
+			if (host.failures < maxFailures)
+				return;
+			host.ejectedUntil = System.nanoTime() + ejectionNanos;
+			host.ejected = true;
+		}
+		logger.warn(format("ecd host %s ejected for %d ms after %d failures",
+				host.addr, TimeUnit.NANOSECONDS.toMillis(ejectionNanos),
+				maxFailures));
+	}
+
+	private static void success(Host host) {
+		synchronized (host) {
+			host.failures = 0;
+			host.ejected = false;
+		}
+	}
+
+	/**
+	 * A request sent to one of the hosts.
+	 */
+	class Call {
+
+		private final Host host;
+		private final OioHttpResponse response;
+		private boolean ended = false;
+
+		private Call(Host host, OioHttpResponse response) {
+			this.host = host;
+			this.response = response;
+		}
+
+		InetSocketAddress host() {
+			return host.addr;
+		}
+
+		OioHttpResponse response() {
+			return response;
+		}
+
+		/**
+		 * Signals the response has been consumed, or that its body could not
+		 * be read. Further calls are ignored.
+		 *
+		 * @param failed
+		 *            true if the transfer failed with a network error
+		 */
+		void end(boolean failed) {
+			if (ended)
+				return;
+			ended = true;
+			host.inFlight.decrementAndGet();
+			if (failed)
+				failure(host);
+			else
+				success(host);
+		}
+	}
+
+	private static class Host {
+
+		private final InetSocketAddress addr;
+		private final AtomicInteger inFlight = new AtomicInteger();
+		private int failures = 0;
+		private boolean ejected = false;
+		private long ejectedUntil = 0;
+
+		private Host(InetSocketAddress addr) {
+			this.addr = addr;
+		}
+	}
+
+	/**
+	 * The state of a host when the hosts are sorted, so the order does not
+	 * change while sorting.
+	 */
+	private static class Candidate {
+
+		private final Host host;
+		private final int inFlight;
+		private final boolean ejected;
+		private final long ejectedFor;
+
+		private Candidate(Host host, long now) {
+			this.host = host;
+			this.inFlight = host.inFlight.get();
+			synchronized (host) {
+				this.ejectedFor = host.ejectedUntil - now;
+				this.ejected = host.ejected && ejectedFor > 0;
+			}
+		}
+	}
+}
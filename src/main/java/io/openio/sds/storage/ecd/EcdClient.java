@@ -20,7 +20,15 @@ import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 import io.openio.sds.RequestContext;
 import io.openio.sds.common.Hex;
@@ -35,6 +43,8 @@ import io.openio.sds.models.ChunkInfo;
 import io.openio.sds.models.ObjectInfo;
 import io.openio.sds.models.Range;
 import io.openio.sds.storage.DownloadHelper;
+import io.openio.sds.storage.FileDownloader;
+import io.openio.sds.storage.RangeReader;
 import io.openio.sds.storage.StorageClient;
 import io.openio.sds.storage.Target;
 import io.openio.sds.storage.rawx.RawxClient;
@@ -46,17 +56,37 @@ public class EcdClient implements StorageClient {
 	private static final SdsLogger logger = SdsLoggerFactory
 	        .getLogger(RawxClient.class);
 
+	private static final int MIN_WORKERS = 1;
+	private static final int MAX_WORKERS = 100;
+	private static final int IDLE_THREAD_KEEP_ALIVE = 30; // in seconds
+
 	final OioHttp http;
 	private final RawxSettings settings;
 	private final String ecdUrl;
-	private final List<InetSocketAddress> ecdHosts;
+	private final EcdBalancer balancer;
+	private final ExecutorService executors;
 
 	public EcdClient(OioHttp http, RawxSettings settings, List<InetSocketAddress> ecdHosts) {
 		this.http = http;
 		this.settings = settings;
-		this.ecdHosts = ecdHosts;
+		this.balancer = new EcdBalancer(ecdHosts, settings.ecdMaxFailures(),
+		        settings.ecdEjectionMillis());
 		this.ecdUrl = String.format("http://%1$s:%2$d",
 		        ecdHosts.get(0).getHostString(), ecdHosts.get(0).getPort());
+		this.executors = new ThreadPoolExecutor(MIN_WORKERS,
+		        MAX_WORKERS,
+		        IDLE_THREAD_KEEP_ALIVE,
+		        TimeUnit.SECONDS,
+		        new SynchronousQueue<Runnable>(),
+		        new ThreadFactory() {
+
+			        @Override
+			        public Thread newThread(Runnable r) {
+				        Thread t = new Thread(r);
+				        t.setName("EcdClient-Worker");
+				        return t;
+			        }
+		        });
 	}
 
 	@Override
@@ -141,7 +171,44 @@ public class EcdClient implements StorageClient {
         checkArgument(null != oinf);
         List<Target> targets = DownloadHelper.loadTargets(oinf, range);
         return new EcdInputStream(ecdUrl, targets, oinf.chunkMethod(), http, reqCtx)
-                .alternativeHosts(ecdHosts);
+                .balancer(balancer)
+                .prefetch(executors, settings.ecdPrefetch(),
+                        settings.ecdPrefetchBufferSize());
+    }
+
+    /**
+     * Downloads the specified object to the specified file, one metachunk
+     * after the other.
+     *
+     * @param oinf
+     *            the object to download
+     * @param dst
+     *            the file to write, created or truncated
+     * @param reqCtx
+     *            common parameters to all requests
+     * @return the number of bytes written
+     */
+    public long downloadObjectToFile(ObjectInfo oinf, Path dst,
+            RequestContext reqCtx) {
+        return new FileDownloader(this, null, 1).download(oinf, dst, reqCtx);
+    }
+
+    /**
+     * Reads several ranges of the specified object. Close ranges are merged,
+     * and the downloads are done one after the other in the calling thread.
+     *
+     * @param oinf
+     *            the object to read
+     * @param ranges
+     *            the ranges to read
+     * @param reqCtx
+     *            common parameters to all requests
+     * @return one future per range, in the same order as {@code ranges}
+     */
+    public List<Future<ByteBuffer>> readRanges(ObjectInfo oinf,
+            List<Range> ranges, RequestContext reqCtx) {
+        return new RangeReader(this, null, settings.rangeMergeGap())
+                .read(oinf, ranges, reqCtx);
     }
 
 	/* --- INTERNALS --- */
@@ -175,7 +242,6 @@ public class EcdClient implements StorageClient {
 		        .header(OioConstants.CHUNK_META_FULL_PATH, oinf.fullpath())
 		        .header(OioConstants.CHUNK_META_OIO_VERSION, "4")
 		        .body(data, size)
-		        .hosts(ecdHosts)
 		        .verifier(RAWX_VERIFIER)
 		        .withRequestContext(reqCtx);
 
@@ -187,8 +253,12 @@ public class EcdClient implements StorageClient {
 
 		// TODO chunks hash
 
-		builder.execute()
-		        .close(false);
+		EcdBalancer.Call call = balancer.execute(builder);
+		try {
+			call.response().close(false);
+		} finally {
+			call.end(false);
+		}
 		return oinf;
 	}
 }
@@ -2,10 +2,19 @@ package io.openio.sds.storage.ecd;
 
 import static io.openio.sds.http.Verifiers.RAWX_VERIFIER;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.SequenceInputStream;
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
 
 import io.openio.sds.RequestContext;
 import io.openio.sds.common.OioConstants;
@@ -20,6 +29,11 @@ import io.openio.sds.storage.Target;
 
 /**
  * For not rained items only
+ * <p>
+ * Metachunks are requested one after the other. With an executor, the
+ * requests of the next metachunks are sent before the current one is
+ * consumed, and the first bytes of their decoded data are buffered, so
+ * ecd decodes them while the current one is read.
  * 
  * @author Christopher Dedeurwaerder
  *
@@ -32,13 +46,23 @@ public class EcdInputStream extends InputStream {
 	private OioHttp http;
 	private List<Target> targets;
 	private int pos = 0;
-	private OioHttpResponse current;
+	private Part current;
 	private RequestContext reqCtx;
 	private String ecdUrl;
 	private List<InetSocketAddress> ecdHosts = null;
+	private EcdBalancer balancer = null;
 	private String chunkMethod;
 	private boolean eof = false;
 
+	private ExecutorService executors = null;
+	private int prefetch = 0;
+	private int bufferSize = 0;
+	private final LinkedList<Future<Part>> pending = new LinkedList<Future<Part>>();
+	private final List<Part> prefetched = new ArrayList<Part>();
+	private int submitted = 0;
+	private boolean closed = false;
+	private boolean failed = false;
+
 	public EcdInputStream(String ecdUrl,
 	        List<Target> targets,
 	        String chunkMethod,
@@ -56,10 +80,49 @@ public class EcdInputStream extends InputStream {
 	    return this;
 	}
 
+	/**
+	 * Sends the requests through the specified balancer, instead of trying
+	 * the {@link #alternativeHosts(List) alternative hosts} in order.
+	 */
+	EcdInputStream balancer(EcdBalancer balancer) {
+		this.balancer = balancer;
+		return this;
+	}
+
+	/**
+	 * Requests the next metachunks in the background, before they are read.
+	 *
+	 * @param executors
+	 *            the executor sending the requests
+	 * @param prefetch
+	 *            the number of metachunks requested ahead of the one being
+	 *            read, 0 to disable prefetching
+	 * @param bufferSize
+	 *            the number of bytes buffered for each metachunk requested
+	 *            ahead
+	 * @return {@code this}
+	 */
+	public EcdInputStream prefetch(ExecutorService executors, int prefetch,
+	        int bufferSize) {
+		this.executors = executors;
+		this.prefetch = null == executors ? 0 : Math.max(0, prefetch);
+		this.bufferSize = Math.max(0, bufferSize);
+		return this;
+	}
+
 	@Override
 	public void close() {
 		if (null != current)
-			current.close();
+			current.close(false);
+		current = null;
+		// parts still being requested are closed by their task
+		synchronized (prefetched) {
+			closed = true;
+			for (Part part : prefetched)
+				part.close(false);
+			prefetched.clear();
+		}
+		pending.clear();
 		pos = targets.size() + 1;
 	}
 
@@ -77,6 +140,8 @@ public class EcdInputStream extends InputStream {
 
 	@Override
 	public int read(byte[] buf, int offset, int length) throws IOException {
+		if (failed)
+			throw new IOException("Unable to read past a failed metachunk");
 		if (0 >= length)
 			return 0;
 		int totRead = 0;
@@ -86,16 +151,23 @@ public class EcdInputStream extends InputStream {
 					return 0 == totRead ? -1 : totRead;
 				next();
 			}
-			int read = current.body().read(buf, offset + totRead,
-			        Math.min(length - totRead,
-			                buf.length - offset + totRead));
+			int read;
+			try {
+				read = current.body.read(buf, offset + totRead,
+				        Math.min(length - totRead,
+				                buf.length - offset + totRead));
+			} catch (IOException e) {
+				failed = true;
+				current.close(true);
+				throw e;
+			}
 			if (logger.isTraceEnabled())
 				logger.trace("At offset 0+" + totRead + " of " + buf
 				        + ", read byte " + buf[0] + " and length " + read
-				        + " from " + current.body());
+				        + " from " + current.body);
 			if (-1 == read) {
 				eof = true;
-				current.close();
+				current.close(false);
 				current = null;
 			} else {
 				totRead += Math.max(0, read);
@@ -104,7 +176,83 @@ public class EcdInputStream extends InputStream {
 		return totRead;
 	}
 
-	private void next() {
+	/* -- INTERNALS -- */
+
+	private void next() throws IOException {
+		Future<Part> f = pending.peek();
+		if (null == f) {
+			current = open(pos);
+			submitted = pos + 1;
+		} else {
+			try {
+				current = get(f);
+			} catch (IOException e) {
+				// the metachunk is lost, the following ones must not be read
+				failed = true;
+				throw e;
+			} catch (RuntimeException e) {
+				failed = true;
+				throw e;
+			}
+			pending.remove();
+			synchronized (prefetched) {
+				prefetched.remove(current);
+			}
+		}
+		eof = false;
+		pos++;
+		schedule();
+	}
+
+	/**
+	 * Requests in the background the metachunks following the one being
+	 * read, up to the prefetch limit.
+	 */
+	private void schedule() {
+		while (submitted < targets.size() && submitted < pos + prefetch) {
+			final int p = submitted;
+			try {
+				pending.add(executors.submit(new Callable<Part>() {
+
+					@Override
+					public Part call() throws IOException {
+						Part part = open(p).buffer(bufferSize);
+						synchronized (prefetched) {
+							if (!closed) {
+								prefetched.add(part);
+								return part;
+							}
+						}
+						part.close(false);
+						return part;
+					}
+				}));
+			} catch (RejectedExecutionException e) {
+				logger.debug("No worker available to prefetch metachunks");
+				return;
+			}
+			submitted++;
+		}
+	}
+
+	private Part get(Future<Part> f) throws IOException {
+		try {
+			return f.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new OioException("Interrupted while prefetching metachunk",
+			        e);
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof OioException)
+				throw (OioException) e.getCause();
+			if (e.getCause() instanceof IOException)
+				throw (IOException) e.getCause();
+			throw new OioException("Unable to prefetch metachunk",
+			        e.getCause());
+		}
+	}
+
+	private Part open(int p) {
 		if (logger.isDebugEnabled())
 			logger.debug("dl from " + ecdUrl);
 
@@ -113,35 +261,86 @@ public class EcdInputStream extends InputStream {
 			        .header(OioConstants.CHUNK_META_CONTENT_CHUNK_METHOD,
 			                chunkMethod)
 			        .verifier(RAWX_VERIFIER)
-			        .withRequestContext(reqCtx)
-			        .hosts(ecdHosts);
-			for (ChunkInfo ci : targets.get(pos).getChunk()) {
+			        .withRequestContext(reqCtx);
+			for (ChunkInfo ci : targets.get(p).getChunk()) {
 				builder.header(
 				        OioConstants.CHUNK_META_CHUNK_PREFIX + ci.pos().sub(),
 				        ci.finalUrl());
 			}
 
 			builder.header(OioConstants.CHUNK_META_CHUNK_SIZE,
-			        targets.get(pos).getChunk().get(0).size().toString());
+			        targets.get(p).getChunk().get(0).size().toString());
 
-			if (null != targets.get(pos).getRange()) {
+			if (null != targets.get(p).getRange()) {
 				if(logger.isTraceEnabled())
-					logger.trace("Setting range : " + targets.get(pos).getRange().headerValue());
+					logger.trace("Setting range : " + targets.get(p).getRange().headerValue());
 				builder.header(OioConstants.RANGE_HEADER,
-				        targets.get(pos).getRange().headerValue());
+				        targets.get(p).getRange().headerValue());
 			}
 
-			current = builder.execute();
-
-			eof = false;
-			pos++;
+			if (null == balancer)
+				return new Part(builder.hosts(ecdHosts).execute(), null);
+			EcdBalancer.Call call = balancer.execute(builder);
+			return new Part(call.response(), call);
 		} catch (OioException e) {
 			logger.warn(String.format(
 			        "Error while trying to download pos %d from %s",
-			        pos,
+			        p,
 			        ecdUrl),
 			        e);
 			throw e;
 		}
 	}
+
+	/**
+	 * The response of ecd for one metachunk.
+	 */
+	private static class Part {
+
+		private final OioHttpResponse response;
+		private final EcdBalancer.Call call;
+		private InputStream body;
+		private boolean done = false;
+
+		private Part(OioHttpResponse response, EcdBalancer.Call call) {
+			this.response = response;
+			this.call = call;
+			this.body = response.body();
+		}
+
+		/**
+		 * Reads the first bytes of the body, so ecd keeps decoding while they
+		 * wait to be read.
+		 */
+		private Part buffer(int size) throws IOException {
+			if (0 >= size)
+				return this;
+			byte[] head = new byte[(int) Math.min(size,
+			        Math.max(0, response.length()))];
+			int filled = 0;
+			try {
+				while (filled < head.length) {
+					int read = body.read(head, filled, head.length - filled);
+					if (-1 == read)
+						break;
+					filled += read;
+				}
+			} catch (IOException e) {
+				close(true);
+				throw e;
+			}
+			body = new SequenceInputStream(
+			        new ByteArrayInputStream(head, 0, filled), body);
+			return this;
+		}
+
+		private synchronized void close(boolean failed) {
+			if (done)
+				return;
+			done = true;
+			response.close();
+			if (null != call)
+				call.end(failed);
+		}
+	}
 }
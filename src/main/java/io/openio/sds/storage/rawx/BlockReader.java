@@ -0,0 +1,132 @@
+package io.openio.sds.storage.rawx;
+
+import static java.lang.String.format;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.openio.sds.RequestContext;
+import io.openio.sds.cache.BlockCache;
+import io.openio.sds.common.ByteBuffers;
+import io.openio.sds.exceptions.OioException;
+import io.openio.sds.models.ObjectInfo;
+import io.openio.sds.models.Range;
+
+/**
+ * Serves ranges of replicated objects from a {@link BlockCache}.
+ * <p>
+ * Each chunk is divided in fixed-size blocks, keyed by the content id, the
+ * chunk position and the block index, so all the replicas of a chunk share
+ * the same blocks. Missing blocks are downloaded, consecutive ones with a
+ * single ranged request, and added to the cache.
+ */
+class BlockReader {
+
+	private final RawxClient rawx;
+	private final BlockCache cache;
+	private final int blockSize;
+
+	BlockReader(RawxClient rawx, BlockCache cache, int blockSize) {
+		this.rawx = rawx;
+		this.cache = cache;
+		this.blockSize = blockSize;
+	}
+
+	/**
+	 * Reads the specified range of an object, which must be in the object.
+	 *
+	 * @return a stream over the data of the range
+	 */
+	InputStream read(ObjectInfo oinf, long from, long to,
+			RequestContext reqCtx) {
+		List<ByteBuffer> parts = new ArrayList<ByteBuffer>();
+		int pos = oinf.chunkAt(from);
+		long offset = from;
+		while (offset < to) {
+			long chunkStart = oinf.chunkOffset(pos);
+			long chunkEnd = oinf.chunkOffset(pos + 1);
+			if (chunkEnd <= offset) {
+				pos++;
+				continue;
+			}
+			long end = Math.min(to, chunkEnd);
+			int first = (int) ((offset - chunkStart) / blockSize);
+			int last = (int) ((end - 1 - chunkStart) / blockSize);
+			ByteBuffer[] blocks = blocks(oinf, pos, chunkStart, chunkEnd,
+					first, last, reqCtx);
+			for (int b = first; b <= last; b++) {
+				long blockStart = chunkStart + (long) b * blockSize;
+				ByteBuffer view = blocks[b - first].duplicate();
+				view.limit((int) (Math.min(end, blockStart + view.capacity())
+						- blockStart));
+				view.position((int) (Math.max(offset, blockStart) - blockStart));
+				parts.add(view.slice());
+			}
+			offset = end;
+			pos++;
+		}
+		return ByteBuffers.stream(parts.toArray(new ByteBuffer[parts.size()]));
+	}
+
+	/* -- INTERNALS -- */
+
+	private ByteBuffer[] blocks(ObjectInfo oinf, int pos, long chunkStart,
+			long chunkEnd, int first, int last, RequestContext reqCtx) {
+		ByteBuffer[] res = new ByteBuffer[last - first + 1];
+		for (int b = first; b <= last; b++)
+			res[b - first] = cache.get(key(oinf, pos, b));
+		int b = first;
+		while (b <= last) {
+			if (null != res[b - first]) {
+				b++;
+				continue;
+			}
+			int missFrom = b;
+			while (b <= last && null == res[b - first])
+				b++;
+			fetch(oinf, pos, chunkStart, chunkEnd, missFrom, b - 1, res,
+					first, reqCtx);
+		}
+		return res;
+	}
+
+	private void fetch(ObjectInfo oinf, int pos, long chunkStart,
+			long chunkEnd, int from, int to, ByteBuffer[] res, int first,
+			RequestContext reqCtx) {
+		long start = chunkStart + (long) from * blockSize;
+		long end = Math.min(chunkStart + (long) (to + 1) * blockSize, chunkEnd);
+		byte[] data = new byte[(int) (end - start)];
+		InputStream in = rawx.fetch(oinf, Range.between(start, end),
+				null == reqCtx ? new RequestContext()
+						: new RequestContext(reqCtx));
+		try {
+			int read = ByteBuffers.readFully(in, ByteBuffer.wrap(data));
+			if (read < data.length)
+				throw new OioException(format(
+						"Unexpected end of chunk %d (%d bytes read, %d expected)",
+						pos, read, data.length));
+		} catch (IOException e) {
+			throw new OioException("Failed to read chunk " + pos, e);
+		} finally {
+			try {
+				in.close();
+			} catch (IOException e) {
+				// ignore
+			}
+		}
+		for (int b = from; b <= to; b++) {
+			int off = (b - from) * blockSize;
+			ByteBuffer block = ByteBuffer.wrap(data, off,
+					Math.min(blockSize, data.length - off)).slice();
+			cache.put(key(oinf, pos, b), block);
+			res[b - first] = block;
+		}
+	}
+
+	private static String key(ObjectInfo oinf, int pos, int block) {
+		return oinf.oid() + "/" + pos + "/" + block;
+	}
+}
@@ -0,0 +1,22 @@
+package io.openio.sds.storage.rawx;
+
+import java.io.IOException;
+import java.util.List;
+
+import io.openio.sds.common.FeedableInputStream;
+
+/**
+ * Writes the data of the chunks of a position, once their uploads are
+ * started.
+ */
+public interface ChunkFeeder {
+
+	/**
+	 * @param bodies
+	 *            the bodies of the chunk uploads, in the order of the chunks
+	 *            of the position
+	 * @throws IOException
+	 *             if the data cannot be read
+	 */
+	void feed(List<FeedableInputStream> bodies) throws IOException;
+}
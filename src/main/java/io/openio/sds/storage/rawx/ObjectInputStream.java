@@ -1,6 +1,7 @@
 package io.openio.sds.storage.rawx;
 
 import io.openio.sds.RequestContext;
+import io.openio.sds.common.Hex;
 import io.openio.sds.common.OioConstants;
 import io.openio.sds.exceptions.OioException;
 import io.openio.sds.http.OioHttp;
@@ -9,17 +10,32 @@ import io.openio.sds.http.OioHttpResponse;
 import io.openio.sds.logging.SdsLogger;
 import io.openio.sds.logging.SdsLoggerFactory;
 import io.openio.sds.models.ChunkInfo;
+import io.openio.sds.models.Range;
+import io.openio.sds.storage.ReplicaSelector;
 import io.openio.sds.storage.Target;
 
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.List;
 
 import static io.openio.sds.http.Verifiers.RAWX_VERIFIER;
 import static java.lang.String.format;
 
 /**
- * For replicated policies only
+ * For replicated policies only.
+ * <p>
+ * If a chunk stream breaks before its end, the download is resumed on the
+ * next replica of the same chunk, starting at the first byte not yet
+ * delivered to the caller.
+ * <p>
+ * When checksum verification is enabled, the MD5 of each chunk read from its
+ * first to its last byte is computed on the fly and compared to the hash of
+ * the chunk. On a mismatch, the chunk is read again from another replica:
+ * the data already returned to the caller is checked against this replica,
+ * and the data of the last read is replaced by the one of this replica.
  *
  * @author Christopher Dedeurwaerder
  */
@@ -28,32 +44,104 @@ public class ObjectInputStream extends InputStream {
 	private static final SdsLogger logger = SdsLoggerFactory
 			.getLogger(ObjectInputStream.class);
 
+	/**
+	 * Forward skips up to this size are done by reading and discarding the
+	 * data from the current connection, larger ones reopen the chunk with a
+	 * new range.
+	 */
+	public static final int SKIP_IN_PLACE_MAX = 65536;
+
 	private OioHttp http;
 	private List<Target> targets;
 	private int pos = 0;
 	private long currentRemaining;
+	private Target currentTarget;
 	private ChunkInfo currentChunk;
+	private int replica;
+	private long delivered;
 	private OioHttpResponse current;
 	private RequestContext reqCtx;
+	private ReplicaSelector selector;
+	private boolean verify = false;
+	private MessageDigest digest;
+	private final byte[] single = new byte[1];
+	private byte[] discard;
 
 	public ObjectInputStream(List<Target> targets, OioHttp http, RequestContext reqCtx) {
+		this(targets, http, reqCtx, null);
+	}
+
+	public ObjectInputStream(List<Target> targets, OioHttp http,
+			RequestContext reqCtx, ReplicaSelector selector) {
 		this.targets = targets;
 		this.http = http;
 		this.reqCtx = reqCtx;
+		this.selector = selector;
+	}
+
+	/**
+	 * Enables or disables the verification of the checksum of the chunks
+	 * fully read.
+	 *
+	 * @param verify
+	 *            true to verify the checksums
+	 * @return {@code this}
+	 */
+	public ObjectInputStream verifyChecksum(boolean verify) {
+		this.verify = verify;
+		return this;
 	}
 
 	@Override
 	public void close() {
 		if (null != current)
-			current.close();
+			release(true);
 		pos = targets.size() + 1;
 	}
 
 	@Override
 	public int read() throws IOException {
-		byte[] b = new byte[1];
-		int read = read(b, 0, 1);
-		return read < 0 ? -1 : b[0];
+		int read = read(single, 0, 1);
+		return read < 0 ? -1 : single[0] & 0xFF;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		long left = n;
+		while (left > 0) {
+			if (null == current || 0 >= currentRemaining) {
+				if (pos >= targets.size())
+					break;
+				currentTarget = targets.get(pos++);
+				long len = length(currentTarget);
+				if (left >= len) {
+					left -= len;
+					continue;
+				}
+				delivered = left;
+				left = 0;
+				digest = null;
+				next(0);
+			} else if (left >= currentRemaining) {
+				left -= currentRemaining;
+				digest = null;
+				release(false);
+			} else if (left > SKIP_IN_PLACE_MAX) {
+				digest = null;
+				release(false);
+				delivered += left;
+				left = 0;
+				next(replica);
+			} else {
+				if (null == discard)
+					discard = new byte[(int) Math.min(SKIP_IN_PLACE_MAX, left)];
+				int read = read(discard, 0, (int) Math.min(discard.length, left));
+				if (read < 0)
+					break;
+				left -= read;
+			}
+		}
+		return n - left;
 	}
 
 	@Override
@@ -66,37 +154,52 @@ public class ObjectInputStream extends InputStream {
 		if (0 >= length)
 			return 0;
 		int totRead = 0;
+		// first byte of the current chunk in this call
+		int chunkFrom = 0;
 
 		while (totRead < length) {
 			if (null == current || 0 >= currentRemaining) {
 				if (pos >= targets.size())
 					return 0 == totRead ? -1 : totRead;
+				currentTarget = targets.get(pos++);
+				delivered = 0;
 				next(0);
+				digest = digest(currentTarget);
+				chunkFrom = totRead;
 			}
 
-			int read = current.body().read(buf, offset + totRead,
-					Math.min(remaining(),
-							Math.min(length - totRead,
-									buf.length - offset + totRead)));
+			int read;
+			try {
+				read = current.body().read(buf, offset + totRead,
+						Math.min(remaining(), length - totRead));
+			} catch (IOException e) {
+				resume(e);
+				continue;
+			}
 
 			if (currentRemaining != 0) {
 				if (-1 == read) {
-					throw new IOException(
+					resume(new IOException(
 							format(
 									"Error during download, unexpected end of chunk stream (url: %s, read: %d, size: %d)",
 									currentChunk.url(),
-									currentChunk.size() - currentRemaining,
-									currentChunk.size()));
+									delivered,
+									delivered + currentRemaining)));
+					continue;
 				}
 
 				currentRemaining -= read;
+				delivered += read;
 			}
+			totRead += Math.max(0, read);
 			if (0 == currentRemaining) {
-				current.close();
-				current = null;
+				release(true);
+				if (null != digest)
+					verify(buf, offset + chunkFrom, totRead - chunkFrom);
 			}
-			totRead += Math.max(0, read);
 		}
+		if (null != digest)
+			digest.update(buf, offset + chunkFrom, totRead - chunkFrom);
 		return totRead;
 	}
 
@@ -104,8 +207,164 @@ public class ObjectInputStream extends InputStream {
 		return currentRemaining > Integer.MAX_VALUE ? Integer.MAX_VALUE : (int) currentRemaining;
 	}
 
+	/**
+	 * Reopens the current target on the next replica, asking only for the
+	 * bytes which have not been delivered yet.
+	 */
+	private void resume(IOException cause) throws IOException {
+		if (null != selector)
+			selector.failure(currentChunk);
+		release(false);
+		if (replica + 1 >= currentTarget.getChunk().size())
+			throw cause;
+		logger.warn(format("Chunk stream broken after %d bytes (url: %s), resuming on another replica",
+				delivered, currentChunk.url()), cause);
+		next(replica + 1);
+	}
+
+	/**
+	 * Checks the checksum of the chunk just read, the last {@code len} bytes
+	 * of which are in {@code buf}, and reads it again from the next replicas
+	 * on a mismatch.
+	 */
+	private void verify(byte[] buf, int off, int len) throws IOException {
+		MessageDigest prefix = copy(digest);
+		digest.update(buf, off, len);
+		boolean valid = matches(digest);
+		digest = null;
+		if (valid)
+			return;
+
+		long size = delivered;
+		long prefixLen = size - len;
+		IOException cause = new IOException(format(
+				"Checksum mismatch for chunk %s", currentChunk.url()));
+		logger.warn(cause.getMessage() + ", trying another replica");
+		if (null != selector)
+			selector.failure(currentChunk);
+		byte[] prefixHash = null == prefix ? null : prefix.digest();
+		while ((0 == prefixLen || null != prefixHash)
+				&& replica + 1 < currentTarget.getChunk().size()) {
+			delivered = 0;
+			try {
+				next(replica + 1);
+			} catch (OioException e) {
+				break;
+			}
+			try {
+				boolean ok = reread(buf, off, len, prefixLen, prefixHash);
+				release(ok);
+				if (ok) {
+					delivered = size;
+					return;
+				}
+				cause = new IOException(format(
+						"Checksum mismatch for chunk %s", currentChunk.url()));
+			} catch (IOException e) {
+				release(false);
+				cause = e;
+			}
+			if (null != selector)
+				selector.failure(currentChunk);
+		}
+		delivered = size;
+		throw cause;
+	}
+
+	private boolean reread(byte[] buf, int off, int len, long prefixLen,
+			byte[] prefixHash) throws IOException {
+		MessageDigest md = md5();
+		InputStream body = current.body();
+		if (0 < prefixLen) {
+			byte[] b = new byte[(int) Math.min(SKIP_IN_PLACE_MAX, prefixLen)];
+			long left = prefixLen;
+			while (left > 0) {
+				int read = body.read(b, 0, (int) Math.min(b.length, left));
+				if (-1 == read)
+					throw new EOFException("Unexpected end of chunk stream");
+				md.update(b, 0, read);
+				left -= read;
+			}
+			if (!MessageDigest.isEqual(prefixHash, copy(md).digest()))
+				throw new IOException(format(
+						"Data already read differs between replicas of chunk %s",
+						currentChunk.url()));
+		}
+		int done = 0;
+		while (done < len) {
+			int read = body.read(buf, off + done, len - done);
+			if (-1 == read)
+				throw new EOFException("Unexpected end of chunk stream");
+			done += read;
+		}
+		md.update(buf, off, len);
+		currentRemaining = 0;
+		return matches(md);
+	}
+
+	/**
+	 * @return a new digest if the specified target is a whole chunk with
+	 *         an MD5 hash to check, null otherwise
+	 */
+	private MessageDigest digest(Target t) {
+		if (!verify)
+			return null;
+		ChunkInfo ci = t.getChunk().get(0);
+		if (null == ci.hash() || 32 != ci.hash().length())
+			return null;
+		Range r = t.getRange();
+		if (null != r && (0 != r.from() || r.to() != ci.size()))
+			return null;
+		return md5();
+	}
+
+	private boolean matches(MessageDigest md) {
+		return currentTarget.getChunk().get(0).hash()
+				.equalsIgnoreCase(Hex.toHex(md.digest()));
+	}
+
+	private static MessageDigest md5() {
+		try {
+			return MessageDigest.getInstance("MD5");
+		} catch (NoSuchAlgorithmException e) {
+			logger.warn("Unable to compute MD5", e);
+			return null;
+		}
+	}
+
+	private static MessageDigest copy(MessageDigest md) {
+		try {
+			return (MessageDigest) md.clone();
+		} catch (CloneNotSupportedException e) {
+			return null;
+		}
+	}
+
+	private void release(boolean reuse) {
+		current.close(reuse);
+		current = null;
+		if (null != selector)
+			selector.end(currentChunk);
+	}
+
+	private long length(Target t) {
+		return null != t.getRange()
+				? t.getRange().to() - t.getRange().from()
+				: t.getChunk().get(0).size();
+	}
+
+	private Range currentRange() {
+		Range range = currentTarget.getRange();
+		if (0 == delivered)
+			return range;
+		return null == range
+				? Range.from(delivered)
+				: Range.between(range.from() + delivered, range.to());
+	}
+
 	private void next(int offset) {
-		Target t = targets.get(pos);
+		Target t = currentTarget;
+		replica = offset;
 		currentChunk = t.getChunk().get(offset);
 		if (logger.isDebugEnabled())
 			logger.debug("download from " + currentChunk.finalUrl());
@@ -114,20 +373,28 @@ public class ObjectInputStream extends InputStream {
 					.verifier(RAWX_VERIFIER)
 					.withRequestContext(this.reqCtx);
 
-			if (null != targets.get(pos).getRange())
-				builder.header(OioConstants.RANGE_HEADER,
-						targets.get(pos).getRange().headerValue());
+			Range range = currentRange();
+			if (null != range)
+				builder.header(OioConstants.RANGE_HEADER, range.headerValue());
 
-			current = builder.execute();
+			long start = null == selector ? 0L : selector.begin(currentChunk);
+			try {
+				current = builder.execute();
+			} catch (OioException e) {
+				if (null != selector) {
+					selector.failure(currentChunk);
+					selector.end(currentChunk);
+				}
+				throw e;
+			}
+			if (null != selector)
+				selector.success(currentChunk, start);
 
-			currentRemaining = null != targets.get(pos).getRange()
-					? t.getRange().to() - t.getRange().from()
-					: currentChunk.size().intValue();
-			pos++;
+			currentRemaining = length(t) - delivered;
 		} catch (OioException e) {
-			if (offset + 1 >= targets.get(pos).getChunk().size())
+			if (offset + 1 >= t.getChunk().size())
 				throw new OioException(
-						"Definitely failed to download chunk at pos " + pos, e);
+						"Definitely failed to download chunk at pos " + (pos - 1), e);
 			logger.warn("Error while trying to download " + currentChunk.url(),
 					e);
 			next(offset + 1);
@@ -1,6 +1,8 @@
 package io.openio.sds.storage.rawx;
 
 import io.openio.sds.RequestContext;
+import io.openio.sds.cache.BlockCache;
+import io.openio.sds.common.ByteBuffers;
 import io.openio.sds.common.FeedableInputStream;
 import io.openio.sds.common.Hex;
 import io.openio.sds.common.Strings;
@@ -13,6 +15,9 @@ import io.openio.sds.models.ChunkInfo;
 import io.openio.sds.models.ObjectInfo;
 import io.openio.sds.models.Range;
 import io.openio.sds.storage.DownloadHelper;
+import io.openio.sds.storage.FileDownloader;
+import io.openio.sds.storage.RangeReader;
+import io.openio.sds.storage.ReplicaSelector;
 import io.openio.sds.storage.StorageClient;
 import io.openio.sds.storage.Target;
 
@@ -23,8 +28,14 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.Path;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
@@ -69,10 +80,19 @@ public class RawxClient implements StorageClient {
 	final OioHttp http;
 	private final ExecutorService executors;
 	private final RawxSettings settings;
+	private final ReplicaSelector selector;
+	private final BlockReader blockReader;
 
 	public RawxClient(OioHttp http, RawxSettings settings) {
 		this.http = http;
 		this.settings = settings;
+		this.selector = settings.replicaSelection() ? new ReplicaSelector() : null;
+		this.blockReader = 0 < settings.blockCacheSize()
+				? new BlockReader(this,
+						new BlockCache(settings.blockCacheSize(),
+								settings.blockSize()),
+						settings.blockSize())
+				: null;
 		this.executors = new ThreadPoolExecutor(MIN_WORKERS,
 				MAX_WORKERS,
 				IDLE_THREAD_KEEP_ALIVE,
@@ -96,6 +116,14 @@ public class RawxClient implements StorageClient {
 		return new RawxClient(http, settings);
 	}
 
+	/**
+	 * @return the selector ordering the replicas to read from, or
+	 *         {@code null} if replica selection is disabled
+	 */
+	public ReplicaSelector replicaSelector() {
+		return selector;
+	}
+
 	public int getActiveUploadCount() {
 		return ((ThreadPoolExecutor) this.executors).getActiveCount();
 	}
@@ -180,6 +208,39 @@ public class RawxClient implements StorageClient {
 		return uploadChunks(oinf, new ByteArrayInputStream(data), reqCtx);
 	}
 
+	/**
+	 * Uploads the chunks of the specified {@code ObjectInfo} from the
+	 * remaining bytes of the specified buffers. Each chunk is sent to its
+	 * replicas from views of the buffers, without any copy of the data.
+	 *
+	 * @param oinf  the ObjectInfo to deal with
+	 * @param data  the data to upload, heap or direct buffers
+	 * @param reqCtx Common parameters to all requests
+	 * @return {@code oinf}
+	 */
+	public ObjectInfo uploadChunks(ObjectInfo oinf, ByteBuffer[] data,
+			RequestContext reqCtx) {
+		checkArgument(ByteBuffers.remaining(data) >= oinf.size(),
+				"Not enough data for the object size");
+		long offset = 0;
+		long remaining = oinf.size();
+		for (int pos = 0; pos < oinf.nbchunks(); pos++) {
+			long csize = Math.min(remaining, oinf.chunksize(pos));
+			if (csize == 0 && pos != 0)
+				throw new OioException("Too many chunks prepared");
+			uploadPosition(oinf, pos, csize,
+					ByteBuffers.slice(data, offset, csize), reqCtx);
+			offset += csize;
+			remaining -= csize;
+		}
+		MessageDigest md5 = md5();
+		if (null == md5)
+			return oinf;
+		for (ByteBuffer b : ByteBuffers.slice(data, 0, oinf.size()))
+			md5.update(b);
+		return oinf.hash(Hex.toHex(md5.digest()));
+	}
+
 	public InputStream downloadObject(ObjectInfo oinf) {
 		return downloadObject(oinf, new RequestContext());
 	}
@@ -194,8 +255,126 @@ public class RawxClient implements StorageClient {
 
 	public InputStream downloadObject(ObjectInfo oinf, Range range, RequestContext reqCtx) {
 		checkArgument(null != oinf);
+		if (null != blockReader && null != range && null != oinf.oid()) {
+			long to = 0 > range.to() ? oinf.size() : range.to();
+			if (range.from() < to && to <= oinf.size()
+					&& to - range.from() <= settings.blockCacheMaxRange())
+				return blockReader.read(oinf, range.from(), to, reqCtx);
+		}
+		return fetch(oinf, range, reqCtx);
+	}
+
+	/**
+	 * Downloads the specified range of an object, without going through the
+	 * block cache.
+	 */
+	InputStream fetch(ObjectInfo oinf, Range range, RequestContext reqCtx) {
 		List<Target> targets = DownloadHelper.loadTargets(oinf, range);
-		return new ObjectInputStream(targets, http, reqCtx);
+		if (null != selector)
+			selector.reorder(targets);
+		return new ObjectInputStream(targets, http, reqCtx, selector)
+				.verifyChecksum(settings.verifyChecksum());
+	}
+
+	/**
+	 * Starts the download of the specified object in the background, and
+	 * reads its first bytes.
+	 *
+	 * @param oinf
+	 *            the object to download
+	 * @param len
+	 *            the number of bytes to read in advance
+	 * @param reqCtx
+	 *            common parameters to all requests
+	 * @return the future stream over the whole object
+	 * @throws RejectedExecutionException
+	 *             if no worker is available
+	 * @see #readAhead(ObjectInfo, int, RequestContext)
+	 */
+	public Future<InputStream> prefetch(final ObjectInfo oinf, final int len,
+			final RequestContext reqCtx) {
+		return executors.submit(new Callable<InputStream>() {
+
+			@Override
+			public InputStream call() throws IOException {
+				return readAhead(oinf, len, reqCtx);
+			}
+		});
+	}
+
+	/**
+	 * Opens a stream over the specified object and reads its first bytes
+	 * right away, so a missing or broken chunk is reported by this call
+	 * instead of the first read of the stream.
+	 *
+	 * @param oinf
+	 *            the object to download
+	 * @param len
+	 *            the number of bytes to read in advance
+	 * @param reqCtx
+	 *            common parameters to all requests
+	 * @return a stream over the whole object
+	 * @throws IOException
+	 *             if the first bytes cannot be read
+	 */
+	public InputStream readAhead(ObjectInfo oinf, int len,
+			RequestContext reqCtx) throws IOException {
+		InputStream in = downloadObject(oinf, reqCtx);
+		byte[] head = new byte[(int) Math.min(len, oinf.size())];
+		int done = 0;
+		try {
+			while (done < head.length) {
+				int read = in.read(head, done, head.length - done);
+				if (-1 == read)
+					break;
+				done += read;
+			}
+		} catch (IOException e) {
+			in.close();
+			throw e;
+		} catch (OioException e) {
+			in.close();
+			throw e;
+		}
+		return new SequenceInputStream(
+				new ByteArrayInputStream(head, 0, done), in);
+	}
+
+	/**
+	 * Downloads the specified object to the specified file, several chunks
+	 * at a time.
+	 *
+	 * @param oinf
+	 *            the object to download
+	 * @param dst
+	 *            the file to write, created or truncated
+	 * @param reqCtx
+	 *            common parameters to all requests
+	 * @return the number of bytes written
+	 */
+	public long downloadObjectToFile(ObjectInfo oinf, Path dst,
+			RequestContext reqCtx) {
+		return new FileDownloader(this, executors,
+				settings.fileDownloadParallelism()).download(oinf, dst, reqCtx);
+	}
+
+	/**
+	 * Reads several ranges of the specified object at once. Close ranges
+	 * are merged, and the downloads run in parallel on the upload workers
+	 * (or in the calling thread when none is available).
+	 *
+	 * @param oinf
+	 *            the object to read
+	 * @param ranges
+	 *            the ranges to read
+	 * @param reqCtx
+	 *            common parameters to all requests
+	 * @return one future per range, in the same order as {@code ranges}
+	 */
+	public List<Future<ByteBuffer>> readRanges(ObjectInfo oinf,
+			List<Range> ranges, RequestContext reqCtx) {
+		return new RangeReader(this, executors, settings.rangeMergeGap())
+				.read(oinf, ranges, reqCtx);
 	}
 
 	public void deleteChunks(List<ChunkInfo> l) {
@@ -240,17 +419,43 @@ public class RawxClient implements StorageClient {
 	}
 
 	private ObjectInfo uploadPosition(final ObjectInfo oinf, final int pos, final Long size,
-									  InputStream data, final RequestContext reqCtx) {
+									  final InputStream data, final RequestContext reqCtx) {
+		uploadPosition(oinf, pos, size, quorum(oinf.sortedChunks().get(pos)),
+				null, null, new ChunkFeeder() {
+
+					@Override
+					public void feed(List<FeedableInputStream> bodies)
+							throws IOException {
+						consume(data, size, bodies);
+					}
+				}, reqCtx);
+		return oinf;
+	}
+
+	/**
+	 * Uploads the chunks of the specified position, each one from its own
+	 * stream. The uploads are started, then {@code feeder} is called in the
+	 * calling thread to write the data of the chunks.
+	 *
+	 * @param oinf    the ObjectInfo to deal with
+	 * @param pos     the position to upload
+	 * @param size    the size of each chunk of the position
+	 * @param quorum  the minimum number of chunks to write
+	 * @param headers additional headers to send with each chunk, or null
+	 * @param trailers trailers to send after the data of each chunk, read
+	 *                once the data is sent, or null
+	 * @param feeder  writes the data of the chunks, in the order of
+	 *                {@code oinf.sortedChunks().get(pos)}
+	 * @param reqCtx  Common parameters to all requests
+	 */
+	public void uploadPosition(final ObjectInfo oinf, final int pos,
+			final long size, int quorum, final Map<String, String> headers,
+			final Map<String, String> trailers, ChunkFeeder feeder,
+			final RequestContext reqCtx) {
 		List<ChunkInfo> cil = oinf.sortedChunks().get(pos);
 		final List<FeedableInputStream> gens = size == 0 ? null : feedableBodies(cil.size(), size);
 		List<Future<UploadResult>> futures = new ArrayList<Future<UploadResult>>();
 
-		int quorum;
-		if (!settings.quorumWrite())
-			quorum = cil.size();
-		else
-			quorum = (cil.size() + 1) / 2;
-
 		for (int i = 0; i < cil.size(); i++) {
 			final ChunkInfo ci = cil.get(i);
 			final FeedableInputStream in = null == gens ? null : gens.get(i);
@@ -261,71 +466,32 @@ public class RawxClient implements StorageClient {
 				public UploadResult call() {
 					UploadResult result = new UploadResult(ci);
 					try {
-						RequestBuilder builder = http
-								.put(ci.finalUrl())
-								.header(CHUNK_META_CONTAINER_ID, oinf.url().cid())
-								.header(CHUNK_META_CONTENT_ID, oinf.oid())
-								.header(CHUNK_META_CONTENT_VERSION, String.valueOf(oinf.version()))
-								.header(CHUNK_META_CONTENT_POLICY, oinf.policy())
-								.header(CHUNK_META_CONTENT_MIME_TYPE, oinf.mimeType())
-								.header(CHUNK_META_CONTENT_CHUNK_METHOD, oinf.chunkMethod())
-								.header(CHUNK_META_CONTENT_CHUNKSNB,
-										String.valueOf(oinf.nbchunks()))
-								.header(CHUNK_META_CONTENT_SIZE, String.valueOf(oinf.size()))
-								.header(CHUNK_META_CONTENT_PATH, Strings.quote(oinf.url().object()))
-								.header(CHUNK_META_CHUNK_ID, ci.id())
-								.header(CHUNK_META_CHUNK_POS, ci.pos().toString())
-								.header(CHUNK_META_FULL_PATH, oinf.fullpath())
-								.header(CHUNK_META_OIO_VERSION, "4")
-								.verifier(RAWX_VERIFIER)
-								.withRequestContext(reqCtx);
+						RequestBuilder builder = chunkRequest(oinf, ci, reqCtx);
+						if (null != headers)
+							for (Map.Entry<String, String> h : headers.entrySet())
+								builder.header(h.getKey(), h.getValue());
 						if (null == gens)
 							builder.body("");
 						else
 							builder.body(in, size);
+						if (null != trailers)
+							builder.trailers(trailers);
 						ci.size(size);
 						ci.hash(builder.execute().close(false).header(CHUNK_META_CHUNK_HASH));
 					} catch (OioException e) {
-						in.setFailed(true);
+						if (null != in)
+							in.setFailed(true);
 						result.exception(e);
 					}
 					return result;
 				}
 			};
-			int retry = 0;
 			try {
-				while (true) {
-					try {
-						Future<UploadResult> upload = executors.submit(uploader);
-						futures.add(upload);
-						break;
-					} catch (RejectedExecutionException ree) {
-						if (retry < 5) {
-							int delay = 1 << retry;
-							logger.warn("Failed to start chunk upload, retry in " + delay + "s",
-									ree);
-							try {
-								Thread.sleep(delay * 1000);
-							} catch (InterruptedException e) {
-								UploadResult result = new UploadResult(ci);
-								OioException exc = new OioException(
-										"Failed to retry chunk upload", e);
-								result.exception(exc);
-								throw exc;
-							}
-						} else {
-							UploadResult result = new UploadResult(ci);
-							OioException exc = new OioException(
-									"Failed to schedule chunk upload", ree);
-							result.exception(exc);
-							throw exc;
-						}
-						retry++;
-					}
-				}
+				futures.add(submit(uploader, ci));
 			} catch (RuntimeException e) {
 				try {
-					in.close();
+					if (null != in)
+						in.close();
 				} catch (IOException e1) {
 					logger.warn(e1);
 				}
@@ -338,12 +504,112 @@ public class RawxClient implements StorageClient {
 						"Too many failures to schedule chunk uploads");
 		}
 
-		try {
-			consume(data, size, gens, futures);
-		} catch (Exception e) {
-			cancelTasks(futures, e, "Stream read error");
+		if (null != gens) {
+			try {
+				feeder.feed(gens);
+			} catch (Exception e) {
+				cancelTasks(futures, e, "Stream read error");
+			}
 		}
 
+		awaitQuorum(pos, quorum, futures);
+	}
+
+	private ObjectInfo uploadPosition(final ObjectInfo oinf, final int pos,
+			final long size, final ByteBuffer[] data,
+			final RequestContext reqCtx) {
+		List<ChunkInfo> cil = oinf.sortedChunks().get(pos);
+		List<Future<UploadResult>> futures = new ArrayList<Future<UploadResult>>();
+		int quorum = quorum(cil);
+
+		for (final ChunkInfo ci : cil) {
+			Callable<UploadResult> uploader = new Callable<UploadResult>() {
+
+				@Override
+				public UploadResult call() {
+					UploadResult result = new UploadResult(ci);
+					try {
+						RequestBuilder builder = chunkRequest(oinf, ci, reqCtx);
+						if (0 == size)
+							builder.body("");
+						else
+							builder.body(data);
+						ci.size(size);
+						ci.hash(builder.execute().close(false).header(CHUNK_META_CHUNK_HASH));
+					} catch (OioException e) {
+						result.exception(e);
+					}
+					return result;
+				}
+			};
+			futures.add(submit(uploader, ci));
+		}
+		awaitQuorum(pos, quorum, futures);
+		return oinf;
+	}
+
+	private int quorum(List<ChunkInfo> cil) {
+		if (!settings.quorumWrite())
+			return cil.size();
+		return (cil.size() + 1) / 2;
+	}
+
+	private RequestBuilder chunkRequest(ObjectInfo oinf, ChunkInfo ci,
+			RequestContext reqCtx) {
+		return http
+				.put(ci.finalUrl())
+				.header(CHUNK_META_CONTAINER_ID, oinf.url().cid())
+				.header(CHUNK_META_CONTENT_ID, oinf.oid())
+				.header(CHUNK_META_CONTENT_VERSION, String.valueOf(oinf.version()))
+				.header(CHUNK_META_CONTENT_POLICY, oinf.policy())
+				.header(CHUNK_META_CONTENT_MIME_TYPE, oinf.mimeType())
+				.header(CHUNK_META_CONTENT_CHUNK_METHOD, oinf.chunkMethod())
+				.header(CHUNK_META_CONTENT_CHUNKSNB,
+						String.valueOf(oinf.nbchunks()))
+				.header(CHUNK_META_CONTENT_SIZE, String.valueOf(oinf.size()))
+				.header(CHUNK_META_CONTENT_PATH, Strings.quote(oinf.url().object()))
+				.header(CHUNK_META_CHUNK_ID, ci.id())
+				.header(CHUNK_META_CHUNK_POS, ci.pos().toString())
+				.header(CHUNK_META_FULL_PATH, oinf.fullpath())
+				.header(CHUNK_META_OIO_VERSION, "4")
+				.verifier(RAWX_VERIFIER)
+				.withRequestContext(reqCtx);
+	}
+
+	private Future<UploadResult> submit(Callable<UploadResult> uploader,
+			ChunkInfo ci) {
+		int retry = 0;
+		while (true) {
+			try {
+				return executors.submit(uploader);
+			} catch (RejectedExecutionException ree) {
+				if (retry < 5) {
+					int delay = 1 << retry;
+					logger.warn("Failed to start chunk upload, retry in " + delay + "s",
+							ree);
+					try {
+						Thread.sleep(delay * 1000);
+					} catch (InterruptedException e) {
+						UploadResult result = new UploadResult(ci);
+						OioException exc = new OioException(
+								"Failed to retry chunk upload", e);
+						result.exception(exc);
+						throw exc;
+					}
+				} else {
+					UploadResult result = new UploadResult(ci);
+					OioException exc = new OioException(
+							"Failed to schedule chunk upload", ree);
+					result.exception(exc);
+					throw exc;
+				}
+				retry++;
+			}
+		}
+	}
+
+	private void awaitQuorum(int pos, int quorum,
+			List<Future<UploadResult>> futures) {
 		try {
 			List<UploadResult> successes = new ArrayList<UploadResult>();
 			for (Future<UploadResult> future : futures) {
@@ -361,15 +627,13 @@ public class RawxClient implements StorageClient {
 		} catch (ExecutionException e) {
 			throw new OioException("Execution exception", e.getCause());
 		}
-		return oinf;
 	}
 
 	private void consume(InputStream data, Long size,
-						 List<FeedableInputStream> gens,
-						 List<Future<UploadResult>> futures) throws IOException {
-		int done = 0;
+						 List<FeedableInputStream> gens) throws IOException {
+		long done = 0;
 		while (done < size) {
-			byte[] b = new byte[Math.min(size.intValue() - done,
+			byte[] b = new byte[(int) Math.min(size - done,
 					settings.http().receiveBufferSize())];
 			done += fill(b, data);
 			for (FeedableInputStream in : gens) {
@@ -390,6 +654,15 @@ public class RawxClient implements StorageClient {
 		return done;
 	}
 
+	private static MessageDigest md5() {
+		try {
+			return MessageDigest.getInstance("MD5");
+		} catch (NoSuchAlgorithmException e) {
+			logger.warn("Unable to compute MD5", e);
+			return null;
+		}
+	}
+
 	private List<FeedableInputStream> feedableBodies(int count,
 													 long size) {
 		ArrayList<FeedableInputStream> res = new ArrayList<FeedableInputStream>();
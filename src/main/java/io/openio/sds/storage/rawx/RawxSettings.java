@@ -1,6 +1,8 @@
 package io.openio.sds.storage.rawx;
 
 import io.openio.sds.http.OioHttpSettings;
+import io.openio.sds.storage.FileDownloader;
+import io.openio.sds.storage.RangeReader;
 
 /**
  * @author Christopher Dedeurwaerder
@@ -11,6 +13,32 @@ public class RawxSettings {
 
 	private boolean quorumWrite = false;
 
+	private boolean replicaSelection = true;
+
+	private boolean verifyChecksum = false;
+
+	private long rangeMergeGap = RangeReader.DEFAULT_MAX_GAP;
+
+	private int fileDownloadParallelism = FileDownloader.DEFAULT_PARALLELISM;
+
+	private long blockCacheSize = 0;
+
+	private int blockSize = 65536;
+
+	private long blockCacheMaxRange = 1048576;
+
+	private int ecSegmentSize = 1048576;
+
+	private long ecDirectMaxRange = 1048576;
+
+	private int ecdMaxFailures = 3;
+
+	private long ecdEjectionMillis = 30000;
+
+	private int ecdPrefetch = 2;
+
+	private int ecdPrefetchBufferSize = 1048576;
+
 	public RawxSettings() {
 	}
 
@@ -31,4 +59,211 @@ public class RawxSettings {
 	public boolean quorumWrite() {
 		return quorumWrite;
 	}
-}
\ No newline at end of file
+
+	/**
+	 * Should the replicas of each chunk be reordered, before a download,
+	 * according to the observed latency, error rate and load of the rawx
+	 * services? When false, the order returned by the proxy is kept.
+	 *
+	 * @return true when replica selection is enabled
+	 */
+	public boolean replicaSelection() {
+		return replicaSelection;
+	}
+
+	public RawxSettings replicaSelection(boolean replicaSelection) {
+		this.replicaSelection = replicaSelection;
+		return this;
+	}
+
+	/**
+	 * Maximum number of unrequested bytes downloaded between two ranges
+	 * to read them with a single request, when reading several ranges of
+	 * an object at once.
+	 *
+	 * @return the maximum gap, in bytes
+	 */
+	public long rangeMergeGap() {
+		return rangeMergeGap;
+	}
+
+	public RawxSettings rangeMergeGap(long rangeMergeGap) {
+		this.rangeMergeGap = rangeMergeGap;
+		return this;
+	}
+
+	/**
+	 * Should the MD5 of chunks read from their first to their last byte be
+	 * checked against their hash? On a mismatch, the chunk is read again
+	 * from another replica. Disabled by default: the MD5 bounds the download
+	 * of a chunk to the MD5 throughput of one core (about 300 MiB/s in
+	 * ChecksumBenchmark), below the speed of a 10 GbE link.
+	 *
+	 * @return true when checksums are verified
+	 */
+	public boolean verifyChecksum() {
+		return verifyChecksum;
+	}
+
+	public RawxSettings verifyChecksum(boolean verifyChecksum) {
+		this.verifyChecksum = verifyChecksum;
+		return this;
+	}
+
+	/**
+	 * Number of chunks downloaded at the same time when downloading an
+	 * object to a file.
+	 *
+	 * @return the number of parallel chunk downloads
+	 */
+	public int fileDownloadParallelism() {
+		return fileDownloadParallelism;
+	}
+
+	public RawxSettings fileDownloadParallelism(int fileDownloadParallelism) {
+		this.fileDownloadParallelism = fileDownloadParallelism;
+		return this;
+	}
+
+	/**
+	 * Number of bytes of object data kept off-heap to serve range reads.
+	 * 0 disables the block cache. Otherwise it must be at least
+	 * {@link #blockSize()}.
+	 *
+	 * @return the capacity of the block cache, in bytes
+	 */
+	public long blockCacheSize() {
+		return blockCacheSize;
+	}
+
+	public RawxSettings blockCacheSize(long blockCacheSize) {
+		this.blockCacheSize = blockCacheSize;
+		return this;
+	}
+
+	/**
+	 * Size of the blocks of the block cache. Chunks are divided in blocks of
+	 * this size, cache misses are downloaded by whole blocks.
+	 *
+	 * @return the size of the blocks, in bytes
+	 */
+	public int blockSize() {
+		return blockSize;
+	}
+
+	public RawxSettings blockSize(int blockSize) {
+		this.blockSize = blockSize;
+		return this;
+	}
+
+	/**
+	 * Largest range read through the block cache. Larger ranges and whole
+	 * object downloads are streamed without caching.
+	 *
+	 * @return the maximum length of cached ranges, in bytes
+	 */
+	public long blockCacheMaxRange() {
+		return blockCacheMaxRange;
+	}
+
+	public RawxSettings blockCacheMaxRange(long blockCacheMaxRange) {
+		this.blockCacheMaxRange = blockCacheMaxRange;
+		return this;
+	}
+
+	/**
+	 * Size of the segments erasure-coded objects are split into when they
+	 * are encoded by the client. Each segment gives one fragment per
+	 * subchunk.
+	 *
+	 * @return the segment size, in bytes
+	 */
+	public int ecSegmentSize() {
+		return ecSegmentSize;
+	}
+
+	public RawxSettings ecSegmentSize(int ecSegmentSize) {
+		this.ecSegmentSize = ecSegmentSize;
+		return this;
+	}
+
+	/**
+	 * Largest range of an erasure-coded object read from the data fragments
+	 * only, without decoding. Larger ranges are streamed from {@code k}
+	 * subchunks of each metachunk. Direct reads expect the objects to be
+	 * written with {@link #ecSegmentSize()}, and fall back to decoding when
+	 * they are not.
+	 *
+	 * @return the maximum length of direct reads, in bytes, 0 to disable
+	 *         them
+	 */
+	public long ecDirectMaxRange() {
+		return ecDirectMaxRange;
+	}
+
+	public RawxSettings ecDirectMaxRange(long ecDirectMaxRange) {
+		this.ecDirectMaxRange = ecDirectMaxRange;
+		return this;
+	}
+
+	/**
+	 * Number of consecutive network errors after which an ecd host is
+	 * ejected, i.e. tried only when all the other ecd hosts fail.
+	 *
+	 * @return the number of failures ejecting an ecd host
+	 */
+	public int ecdMaxFailures() {
+		return ecdMaxFailures;
+	}
+
+	public RawxSettings ecdMaxFailures(int ecdMaxFailures) {
+		this.ecdMaxFailures = ecdMaxFailures;
+		return this;
+	}
+
+	/**
+	 * How long an ejected ecd host is avoided. Once this delay is over, the
+	 * host gets requests again, and is ejected again on its next failure.
+	 *
+	 * @return the duration of ejections, in milliseconds
+	 */
+	public long ecdEjectionMillis() {
+		return ecdEjectionMillis;
+	}
+
+	public RawxSettings ecdEjectionMillis(long ecdEjectionMillis) {
+		this.ecdEjectionMillis = ecdEjectionMillis;
+		return this;
+	}
+
+	/**
+	 * Number of metachunks of an erasure-coded object requested to ecd
+	 * ahead of the one being read, so ecd decodes them in the meantime.
+	 * 0 disables prefetching.
+	 *
+	 * @return the number of metachunks requested in advance
+	 */
+	public int ecdPrefetch() {
+		return ecdPrefetch;
+	}
+
+	public RawxSettings ecdPrefetch(int ecdPrefetch) {
+		this.ecdPrefetch = ecdPrefetch;
+		return this;
+	}
+
+	/**
+	 * Number of bytes buffered for each metachunk requested in advance. A
+	 * download holds at most {@link #ecdPrefetch()} such buffers.
+	 *
+	 * @return the size of the prefetch buffers, in bytes
+	 */
+	public int ecdPrefetchBufferSize() {
+		return ecdPrefetchBufferSize;
+	}
+
+	public RawxSettings ecdPrefetchBufferSize(int ecdPrefetchBufferSize) {
+		this.ecdPrefetchBufferSize = ecdPrefetchBufferSize;
+		return this;
+	}
+}
@@ -0,0 +1,195 @@
+/*
+ * Generates the subchunks used by the EC tests, independently from the
+ * Java codec.
+ *
+ * The fragments follow the liberasurecode encoding path for the ISA-L
+ * backends: packed fragment_header_t written in front of each payload,
+ * data split in k zero-padded fragments aligned on k bytes (w = 8), parity
+ * computed as ec_encode_data() does with the matrix of gf_gen_rs_matrix()
+ * or gf_gen_cauchy1_matrix() over GF(2^8) with the polynomial 0x11d, and
+ * the metadata checksum computed with zlib crc32(). Each subchunk is the
+ * concatenation of the fragments of one index for every segment, as oio
+ * stores them.
+ *
+ * It reproduces liberasurecode, it is not liberasurecode: the fixtures
+ * should be replaced by subchunks written by pyeclib or ecd when they are
+ * available.
+ *
+ * Build from this directory, and run from src/test/resources/ec:
+ *   cc -o /tmp/make_fragments make_fragments.c -lz
+ *   cd ../resources/ec && /tmp/make_fragments
+ */
+#include <stdint.h>
+#include <stdio.h>
+#include <stdlib.h>
+#include <string.h>
+#include <zlib.h>
+
+#define _VERSION(x, y, z) ((x << 16) | (y << 8) | (z))
+#define LIBERASURECODE_VERSION _VERSION(1, 6, 2)
+#define LIBERASURECODE_FRAG_HEADER_MAGIC 0xb0c5ecc
+#define LIBERASURECODE_MAX_CHECKSUM_LEN 8
+#define CHKSUM_NONE 1
+#define EC_BACKEND_ISA_L_RS_VAND 4
+#define EC_BACKEND_ISA_L_RS_CAUCHY 7
+#define ISA_L_BACKEND_VERSION _VERSION(2, 13, 0)
+
+typedef struct __attribute__((__packed__)) fragment_metadata {
+	uint32_t idx;
+	uint32_t size;
+	uint32_t frag_backend_metadata_size;
+	uint64_t orig_data_size;
+	uint8_t chksum_type;
+	uint32_t chksum[LIBERASURECODE_MAX_CHECKSUM_LEN];
+	uint8_t chksum_mismatch;
+	uint8_t backend_id;
+	uint32_t backend_version;
+} fragment_metadata_t;
+
+typedef struct __attribute__((__packed__)) fragment_header_s {
+	fragment_metadata_t meta;
+	uint32_t magic;
+	uint32_t libec_version;
+	uint32_t metadata_chksum;
+	uint8_t padding[9];
+} fragment_header_t;
+
+#define DATA_SIZE 2500
+#define SEGMENT_SIZE 1024
+#define MAX_FRAGS 16
+
+static unsigned char gf_mul(unsigned char a, unsigned char b)
+{
+	unsigned int x = a, r = 0;
+	while (b) {
+		if (b & 1)
+			r ^= x;
+		x <<= 1;
+		if (x & 0x100)
+			x ^= 0x11d;
+		b >>= 1;
+	}
+	return r;
+}
+
+static unsigned char gf_inv(unsigned char a)
+{
+	int b;
+	for (b = 1; b < 256; b++)
+		if (1 == gf_mul(a, b))
+			return b;
+	return 0;
+}
+
+static void gf_gen_rs_matrix(unsigned char *a, int m, int k)
+{
+	int i, j;
+	unsigned char p, gen = 1;
+
+	memset(a, 0, k * m);
+	for (i = 0; i < k; i++)
+		a[k * i + i] = 1;
+	for (i = k; i < m; i++) {
+		p = 1;
+		for (j = 0; j < k; j++) {
+			a[k * i + j] = p;
+			p = gf_mul(p, gen);
+		}
+		gen = gf_mul(gen, 2);
+	}
+}
+
+static void gf_gen_cauchy1_matrix(unsigned char *a, int m, int k)
+{
+	int i, j;
+	unsigned char *p;
+
+	memset(a, 0, k * m);
+	for (i = 0; i < k; i++)
+		a[k * i + i] = 1;
+	p = &a[k * k];
+	for (i = k; i < m; i++)
+		for (j = 0; j < k; j++)
+			*p++ = gf_inv(i ^ j);
+}
+
+static void write_fragment(FILE *out, int idx, const unsigned char *payload,
+		int blocksize, int orig_data_size, int backend_id)
+{
+	fragment_header_t h;
+
+	memset(&h, 0, sizeof(h));
+	h.meta.idx = idx;
+	h.meta.size = blocksize;
+	h.meta.frag_backend_metadata_size = 0;
+	h.meta.orig_data_size = orig_data_size;
+	h.meta.chksum_type = CHKSUM_NONE;
+	h.meta.chksum_mismatch = 0;
+	h.meta.backend_id = backend_id;
+	h.meta.backend_version = ISA_L_BACKEND_VERSION;
+	h.magic = LIBERASURECODE_FRAG_HEADER_MAGIC;
+	h.libec_version = LIBERASURECODE_VERSION;
+	h.metadata_chksum = crc32(0, (unsigned char *) &h.meta,
+			sizeof(fragment_metadata_t));
+	fwrite(&h, sizeof(h), 1, out);
+	fwrite(payload, blocksize, 1, out);
+}
+
+static void generate(const char *algo, int backend_id, int k, int m,
+		const unsigned char *data)
+{
+	unsigned char matrix[MAX_FRAGS * MAX_FRAGS];
+	FILE *outs[MAX_FRAGS];
+	char name[64];
+	int i, j, off;
+
+	if (EC_BACKEND_ISA_L_RS_VAND == backend_id)
+		gf_gen_rs_matrix(matrix, k + m, k);
+	else
+		gf_gen_cauchy1_matrix(matrix, k + m, k);
+	for (i = 0; i < k + m; i++) {
+		snprintf(name, sizeof(name), "%s-%d-%d.%d", algo, k, m, i);
+		outs[i] = fopen(name, "wb");
+	}
+	for (off = 0; off < DATA_SIZE; off += SEGMENT_SIZE) {
+		int len = DATA_SIZE - off < SEGMENT_SIZE ? DATA_SIZE - off
+				: SEGMENT_SIZE;
+		/* get_aligned_data_size(): w = 8, aligned on k bytes */
+		int blocksize = ((len + k - 1) / k * k) / k;
+		unsigned char *frags = calloc(k + m, blocksize);
+		int x;
+
+		memcpy(frags, data + off, len);
+		/* ec_encode_data() */
+		for (i = 0; i < m; i++)
+			for (j = 0; j < k; j++)
+				for (x = 0; x < blocksize; x++)
+					frags[(k + i) * blocksize + x] ^= gf_mul(
+							matrix[(k + i) * k + j],
+							frags[j * blocksize + x]);
+		for (i = 0; i < k + m; i++)
+			write_fragment(outs[i], i, frags + i * blocksize, blocksize,
+					len, backend_id);
+		free(frags);
+	}
+	for (i = 0; i < k + m; i++)
+		fclose(outs[i]);
+}
+
+int main(void)
+{
+	unsigned char data[DATA_SIZE];
+	FILE *out;
+	int i;
+
+	if (80 != sizeof(fragment_header_t))
+		return 1;
+	for (i = 0; i < DATA_SIZE; i++)
+		data[i] = (unsigned char) (i * 31 + 7 + (i >> 8));
+	out = fopen("data", "wb");
+	fwrite(data, DATA_SIZE, 1, out);
+	fclose(out);
+	generate("isa_l_rs_vand", EC_BACKEND_ISA_L_RS_VAND, 4, 2, data);
+	generate("isa_l_rs_cauchy", EC_BACKEND_ISA_L_RS_CAUCHY, 3, 3, data);
+	return 0;
+}
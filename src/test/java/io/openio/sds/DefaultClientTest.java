@@ -0,0 +1,224 @@
+package io.openio.sds;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import io.openio.sds.cache.CacheSettings;
+import io.openio.sds.common.OioConstants;
+import io.openio.sds.common.SocketProvider;
+import io.openio.sds.http.OioHttp;
+import io.openio.sds.http.OioHttpSettings;
+import io.openio.sds.models.ObjectData;
+import io.openio.sds.models.OioUrl;
+import io.openio.sds.proxy.ProxyClient;
+import io.openio.sds.proxy.ProxySettings;
+import io.openio.sds.storage.rawx.RawxClient;
+import io.openio.sds.storage.rawx.RawxSettings;
+
+public class DefaultClientTest {
+
+    private static final OioUrl URL = OioUrl.url("TEST", "TEST", "TEST");
+
+    /**
+     * Serves one object, whose description and chunk can be changed between
+     * requests. Rawx requests are answered from the chunk id in their path.
+     */
+    private static class FakeCluster implements SocketProvider {
+
+        private final List<FakeSocket> rawxSockets = new ArrayList<FakeSocket>();
+        private volatile long version = 1;
+        private volatile String chunk = "AAAA";
+        private volatile CountDownLatch rawxRequested = null;
+
+        @Override
+        public Socket getSocket(String host, int port) {
+            return getSocket(new InetSocketAddress(host, port));
+        }
+
+        @Override
+        public Socket getSocket(InetSocketAddress addr) {
+            return new FakeSocket(addr.getPort());
+        }
+
+        @Override
+        public boolean reusableSocket() {
+            return false;
+        }
+
+        /**
+         * Makes the next proxy request wait until a rawx request is sent.
+         */
+        private void holdProxy() {
+            rawxRequested = new CountDownLatch(1);
+        }
+
+        private synchronized List<FakeSocket> rawxSockets() {
+            return new ArrayList<FakeSocket>(rawxSockets);
+        }
+
+        private byte[] respond(FakeSocket sock, String request)
+                throws IOException {
+            String path = request.substring(request.indexOf(' ') + 1,
+                    request.indexOf(' ', request.indexOf(' ') + 1));
+            if (8080 == sock.port)
+                return proxyResponse();
+            synchronized (this) {
+                rawxSockets.add(sock);
+            }
+            sock.chunk = path.substring(1);
+            CountDownLatch latch = rawxRequested;
+            if (null != latch)
+                latch.countDown();
+            String data = "AAAA".equals(sock.chunk) ? "0123456789"
+                    : "abcdefghij";
+            return TestHelper.toByteArray(
+                    TestHelper.response("200 OK", data));
+        }
+
+        private byte[] proxyResponse() throws IOException {
+            CountDownLatch latch = rawxRequested;
+            if (null != latch) {
+                try {
+                    assertTrue(latch.await(5, TimeUnit.SECONDS));
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                rawxRequested = null;
+            }
+            String body = "[{\"url\": \"http://127.0.0.1:6010/" + chunk
+                    + "\", \"size\": 10, \"hash\": \"00\", \"pos\": \"0\"}]";
+            return TestHelper.toByteArray(TestHelper.response("200 OK",
+                    body.getBytes(),
+                    OioConstants.CONTENT_META_ID_HEADER + ": 0123456789ABCDEF",
+                    OioConstants.CONTENT_META_LENGTH_HEADER + ": 10",
+                    OioConstants.CONTENT_META_CTIME_HEADER + ": 1",
+                    OioConstants.CONTENT_META_CHUNK_METHOD_HEADER
+                            + ": plain/nb_copy=1",
+                    OioConstants.CONTENT_META_POLICY_HEADER + ": SINGLE",
+                    OioConstants.CONTENT_META_VERSION_HEADER + ": " + version));
+        }
+
+        private class FakeSocket extends Socket {
+
+            private final int port;
+            private final ByteArrayOutputStream request = new ByteArrayOutputStream();
+            private volatile String chunk;
+            private volatile boolean closed = false;
+
+            private FakeSocket(int port) {
+                this.port = port;
+            }
+
+            @Override
+            public OutputStream getOutputStream() {
+                return request;
+            }
+
+            @Override
+            public InputStream getInputStream() throws IOException {
+                return new ByteArrayInputStream(
+                        respond(this, new String(request.toByteArray())));
+            }
+
+            @Override
+            public void shutdownInput() {
+            }
+
+            @Override
+            public synchronized void close() throws IOException {
+                closed = true;
+                super.close();
+            }
+        }
+    }
+
+    private static DefaultClient client(FakeCluster cluster,
+            CacheSettings cache) {
+        OioHttp http = OioHttp.http(new OioHttpSettings(), cluster);
+        ProxySettings settings = new ProxySettings();
+        settings.url("http://127.0.0.1:8080");
+        settings.ns("OPENIO");
+        return new DefaultClient(new ProxyClient(http, settings),
+                new RawxClient(http, new RawxSettings()), null, cache);
+    }
+
+    private static DefaultClient client(FakeCluster cluster) {
+        return client(cluster, new CacheSettings().locationsSize(16));
+    }
+
+    private static String read(ObjectData data) throws IOException {
+        try {
+            return new String(TestHelper.toByteArray(data.stream()));
+        } finally {
+            data.close();
+        }
+    }
+
+    @Test
+    public void speculativeDownloadUsed() throws IOException {
+        FakeCluster cluster = new FakeCluster();
+        DefaultClient client = client(cluster);
+        assertEquals("0123456789", read(client.getObject(URL)));
+        assertEquals(1, cluster.rawxSockets().size());
+
+        cluster.holdProxy();
+        assertEquals("0123456789", read(client.getObject(URL)));
+        // the chunk was read once, by the speculative download
+        assertEquals(2, cluster.rawxSockets().size());
+        for (FakeCluster.FakeSocket sock : cluster.rawxSockets())
+            assertTrue(sock.closed);
+    }
+
+    @Test
+    public void noLocationsByDefault() throws IOException {
+        FakeCluster cluster = new FakeCluster();
+        DefaultClient client = client(cluster, new CacheSettings());
+        assertEquals("0123456789", read(client.getObject(URL)));
+
+        cluster.version = 2;
+        cluster.chunk = "BBBB";
+        assertEquals("abcdefghij", read(client.getObject(URL)));
+        // no speculative download of the old chunk
+        List<FakeCluster.FakeSocket> sockets = cluster.rawxSockets();
+        assertEquals(2, sockets.size());
+        assertEquals("BBBB", sockets.get(1).chunk);
+    }
+
+    @Test
+    public void speculativeDownloadDiscarded() throws IOException {
+        FakeCluster cluster = new FakeCluster();
+        DefaultClient client = client(cluster);
+        assertEquals("0123456789", read(client.getObject(URL)));
+
+        // the object is overwritten, the old chunk is still readable
+        cluster.version = 2;
+        cluster.chunk = "BBBB";
+        cluster.holdProxy();
+        ObjectData data = client.getObject(URL);
+        assertEquals(Long.valueOf(2), data.info().version());
+        List<FakeCluster.FakeSocket> sockets = cluster.rawxSockets();
+        assertEquals(2, sockets.size());
+        assertEquals("AAAA", sockets.get(1).chunk);
+        // the losing download was closed before getObject returned
+        assertTrue(sockets.get(1).closed);
+
+        assertEquals("abcdefghij", read(data));
+        sockets = cluster.rawxSockets();
+        assertEquals(3, sockets.size());
+        assertEquals("BBBB", sockets.get(2).chunk);
+    }
+}
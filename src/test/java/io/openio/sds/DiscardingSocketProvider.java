@@ -0,0 +1,124 @@
+package io.openio.sds;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+import io.openio.sds.common.SocketProvider;
+
+/**
+ * Gives sockets which keep the head of the requests but only count the
+ * bytes of their bodies, and answer each request with the same response,
+ * whose body is synthetic. Made for requests and responses larger than the
+ * memory.
+ */
+public class DiscardingSocketProvider implements SocketProvider {
+
+    private final byte[] head;
+    private final long bodySize;
+    private final List<Request> requests = new ArrayList<Request>();
+
+    /**
+     * @param head
+     *            the status line and headers of the responses, blank line
+     *            included
+     * @param bodySize
+     *            the size of the body of the responses
+     */
+    public DiscardingSocketProvider(String head, long bodySize) {
+        this.head = head.getBytes();
+        this.bodySize = bodySize;
+    }
+
+    /**
+     * @return the requests received, in the order of the sockets
+     */
+    public synchronized List<Request> requests() {
+        return new ArrayList<Request>(requests);
+    }
+
+    @Override
+    public Socket getSocket(String host, int port) {
+        return getSocket(new InetSocketAddress(host, port));
+    }
+
+    @Override
+    public Socket getSocket(InetSocketAddress addr) {
+        final Request request = new Request();
+        final InputStream response = new SequenceInputStream(
+                new ByteArrayInputStream(head),
+                new SyntheticInputStream(bodySize));
+        synchronized (this) {
+            requests.add(request);
+        }
+        return new Socket() {
+
+            @Override
+            public OutputStream getOutputStream() {
+                return request;
+            }
+
+            @Override
+            public InputStream getInputStream() {
+                return response;
+            }
+
+            @Override
+            public void shutdownInput() {
+            }
+        };
+    }
+
+    @Override
+    public boolean reusableSocket() {
+        return false;
+    }
+
+    /**
+     * A request: its head, up to the blank line, then the number of bytes
+     * sent after it.
+     */
+    public static class Request extends OutputStream {
+
+        private final ByteArrayOutputStream head = new ByteArrayOutputStream();
+        private int matched = 0;
+        private volatile long bodySize = 0;
+
+        @Override
+        public void write(int b) {
+            write(new byte[] { (byte) b }, 0, 1);
+        }
+
+        @Override
+        public synchronized void write(byte[] b, int off, int len) {
+            while (4 > matched && 0 < len) {
+                head.write(b[off]);
+                matched = "\r\n\r\n".charAt(matched) == b[off] ? matched + 1
+                        : ('\r' == b[off] ? 1 : 0);
+                off++;
+                len--;
+            }
+            bodySize += len;
+        }
+
+        /**
+         * @return the request line and headers
+         */
+        public synchronized String head() {
+            return new String(head.toByteArray());
+        }
+
+        /**
+         * @return the number of bytes sent after the head
+         */
+        public long bodySize() {
+            return bodySize;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package io.openio.sds;
+
+import java.io.InputStream;
+
+/**
+ * {@link InputStream} of the specified size, without any actual data: the
+ * buffers given to {@link #read(byte[], int, int)} are left untouched.
+ */
+public class SyntheticInputStream extends InputStream {
+
+    private long remaining;
+
+    /**
+     * @param size
+     *            the number of bytes to deliver
+     */
+    public SyntheticInputStream(long size) {
+        this.remaining = size;
+    }
+
+    @Override
+    public int read() {
+        if (0 == remaining)
+            return -1;
+        remaining--;
+        return 0;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) {
+        if (0 == len)
+            return 0;
+        if (0 == remaining)
+            return -1;
+        int res = (int) Math.min(len, remaining);
+        remaining -= res;
+        return res;
+    }
+}
@@ -2,6 +2,7 @@ package io.openio.sds;
 
 import static java.lang.String.format;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
@@ -103,6 +104,46 @@ public class TestHelper {
         return info;
     }
 
+    /**
+     * Builds a raw HTTP response, to be served by a
+     * {@link TestSocketProvider}.
+     *
+     * @param status
+     *            the status code and reason, e.g. {@code "200 OK"}
+     * @param data
+     *            the body of the response
+     * @return the response
+     */
+    public static ByteArrayInputStream response(String status, String data) {
+        return response(status, data.getBytes());
+    }
+
+    /**
+     * Builds a raw HTTP response, to be served by a
+     * {@link TestSocketProvider}.
+     *
+     * @param status
+     *            the status code and reason, e.g. {@code "200 OK"}
+     * @param body
+     *            the body of the response
+     * @param headers
+     *            additional headers, e.g. {@code "Content-Range: bytes 0-9/20"}
+     * @return the response
+     */
+    public static ByteArrayInputStream response(String status, byte[] body,
+            String... headers) {
+        StringBuilder head = new StringBuilder("HTTP/1.1 ").append(status)
+                .append("\r\nContent-Length: ").append(body.length)
+                .append("\r\n");
+        for (String h : headers)
+            head.append(h).append("\r\n");
+        byte[] b = head.append("\r\n").toString().getBytes();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(b, 0, b.length);
+        out.write(body, 0, body.length);
+        return new ByteArrayInputStream(out.toByteArray());
+    }
+
     public static byte[] toByteArray(InputStream is) throws IOException {
         ByteArrayOutputStream out = new ByteArrayOutputStream();
         byte[] buf = new byte[1024];
@@ -0,0 +1,86 @@
+package io.openio.sds.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.nio.ByteBuffer;
+
+import org.junit.Test;
+
+public class BlockCacheTest {
+
+    private static ByteBuffer block(int len, int value) {
+        ByteBuffer b = ByteBuffer.allocate(len);
+        while (b.hasRemaining())
+            b.put((byte) value);
+        b.flip();
+        return b;
+    }
+
+    @Test
+    public void putGet() {
+        BlockCache cache = new BlockCache(1024, 16, 1);
+        ByteBuffer src = block(16, 7);
+        cache.put("a", src);
+        assertEquals(0, src.position());
+
+        ByteBuffer b = cache.get("a");
+        assertNotNull(b);
+        assertTrue(b.isDirect());
+        assertTrue(b.isReadOnly());
+        assertEquals(16, b.remaining());
+        assertEquals(7, b.get(15));
+        assertNull(cache.get("b"));
+        assertEquals(16, cache.size());
+    }
+
+    @Test
+    public void byteBudget() {
+        BlockCache cache = new BlockCache(64, 16, 1);
+        for (int i = 0; i < 10; i++)
+            cache.put("k" + i, block(16, i));
+        assertEquals(64, cache.size());
+        assertNull(cache.get("k0"));
+        assertNotNull(cache.get("k9"));
+    }
+
+    @Test
+    public void tooLarge() {
+        BlockCache cache = new BlockCache(64, 16, 1);
+        cache.put("a", block(65, 0));
+        assertNull(cache.get("a"));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void scanResistant() {
+        BlockCache cache = new BlockCache(80, 16, 1);
+        cache.put("hot", block(16, 1));
+        // a second access promotes the block to the protected area
+        assertNotNull(cache.get("hot"));
+        for (int i = 0; i < 20; i++)
+            cache.put("scan" + i, block(16, i));
+        assertNotNull(cache.get("hot"));
+        assertFalse(80 < cache.size());
+    }
+
+    @Test
+    public void smallCapacity() {
+        // too small for one block per default segment
+        BlockCache cache = new BlockCache(100, 16);
+        assertEquals(6, cache.segments());
+        for (int i = 0; i < 32; i++) {
+            cache.put("k" + i, block(16, i));
+            assertNotNull(cache.get("k" + i));
+        }
+        assertFalse(100 < cache.size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void smallerThanOneBlock() {
+        new BlockCache(15, 16);
+    }
+}
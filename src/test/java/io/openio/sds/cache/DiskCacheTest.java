@@ -0,0 +1,115 @@
+package io.openio.sds.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import org.junit.Test;
+
+import io.openio.sds.TestHelper;
+import io.openio.sds.common.Hash;
+
+public class DiskCacheTest {
+
+    private static String md5(String data) {
+        return Hash.md5().hashBytes(data.getBytes()).toString();
+    }
+
+    private static void store(DiskCache cache, String key, String data,
+            String md5) throws IOException {
+        InputStream in = cache.store(key,
+                new ByteArrayInputStream(data.getBytes()), data.length(), md5);
+        assertEquals(data, new String(TestHelper.toByteArray(in)));
+        in.close();
+    }
+
+    private static String read(ByteBuffer b) {
+        byte[] res = new byte[b.remaining()];
+        b.get(res);
+        return new String(res);
+    }
+
+    private static void clean(Path dir) throws IOException {
+        DirectoryStream<Path> ds = Files.newDirectoryStream(dir);
+        try {
+            for (Path p : ds)
+                Files.delete(p);
+        } finally {
+            ds.close();
+        }
+        Files.delete(dir);
+    }
+
+    @Test
+    public void storeAndGet() throws IOException {
+        Path dir = Files.createTempDirectory("oio");
+        try {
+            DiskCache cache = new DiskCache(dir, 1024);
+            assertNull(cache.get("a"));
+            store(cache, "a", "0123456789", md5("0123456789"));
+            ByteBuffer b = cache.get("a");
+            assertNotNull(b);
+            assertEquals("0123456789", read(b));
+            assertEquals(10, cache.size());
+        } finally {
+            clean(dir);
+        }
+    }
+
+    @Test
+    public void checksumMismatch() throws IOException {
+        Path dir = Files.createTempDirectory("oio");
+        try {
+            DiskCache cache = new DiskCache(dir, 1024);
+            store(cache, "a", "0123456789", md5("0123456780"));
+            assertNull(cache.get("a"));
+            assertEquals(0, cache.size());
+        } finally {
+            clean(dir);
+        }
+    }
+
+    @Test
+    public void partialRead() throws IOException {
+        Path dir = Files.createTempDirectory("oio");
+        try {
+            DiskCache cache = new DiskCache(dir, 1024);
+            InputStream in = cache.store("a",
+                    new ByteArrayInputStream("0123456789".getBytes()), 10,
+                    null);
+            in.read(new byte[4]);
+            in.close();
+            assertNull(cache.get("a"));
+        } finally {
+            clean(dir);
+        }
+    }
+
+    @Test
+    public void evictAndReload() throws IOException {
+        Path dir = Files.createTempDirectory("oio");
+        try {
+            DiskCache cache = new DiskCache(dir, 20);
+            store(cache, "a", "0123456789", null);
+            store(cache, "b", "abcdefghij", null);
+            store(cache, "c", "ABCDEFGHIJ", null);
+            assertEquals(20, cache.size());
+            assertNull(cache.get("a"));
+
+            DiskCache reloaded = new DiskCache(dir, 20);
+            assertEquals(20, reloaded.size());
+            assertEquals("abcdefghij", read(reloaded.get("b")));
+            assertEquals("ABCDEFGHIJ", read(reloaded.get("c")));
+        } finally {
+            clean(dir);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package io.openio.sds.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import io.openio.sds.models.OioUrl;
+
+public class NotFoundCacheTest {
+
+    private static OioUrl url(String object) {
+        return OioUrl.url("testaccount", "testcontainer", object);
+    }
+
+    @Test
+    public void missing() {
+        NotFoundCache cache = new NotFoundCache(8, 60000L);
+        assertNull(cache.get(url("a")));
+        cache.put(url("a"), "Object not found");
+        assertEquals("Object not found", cache.get(url("a")));
+        assertNull(cache.get(url("b")));
+    }
+
+    @Test
+    public void expired() {
+        NotFoundCache cache = new NotFoundCache(8, 0L);
+        cache.put(url("a"), "Object not found");
+        assertNull(cache.get(url("a")));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void bounded() {
+        NotFoundCache cache = new NotFoundCache(2, 60000L);
+        cache.put(url("a"), "a");
+        cache.put(url("b"), "b");
+        cache.put(url("c"), "c");
+        assertEquals(2, cache.size());
+        assertNull(cache.get(url("a")));
+        assertEquals("c", cache.get(url("c")));
+    }
+
+    @Test
+    public void invalidate() {
+        NotFoundCache cache = new NotFoundCache(8, 60000L);
+        cache.put(url("a"), "Object not found");
+        cache.invalidate(url("a"));
+        assertNull(cache.get(url("a")));
+    }
+}
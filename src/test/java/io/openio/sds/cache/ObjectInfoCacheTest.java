@@ -0,0 +1,96 @@
+package io.openio.sds.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import io.openio.sds.TestHelper;
+import io.openio.sds.models.ObjectInfo;
+import io.openio.sds.models.OioUrl;
+
+public class ObjectInfoCacheTest {
+
+    private static OioUrl url(String object) {
+        return OioUrl.url("testaccount", "testcontainer", object);
+    }
+
+    @Test
+    public void getCopy() {
+        ObjectInfoCache cache = new ObjectInfoCache(8, 60000L);
+        ObjectInfo oinf = TestHelper.newTestObjectInfo(url("a"), 10);
+        cache.put(url("a"), null, true, oinf);
+
+        ObjectInfo res = cache.get(url("a"), null, true);
+        assertNotNull(res);
+        assertNotSame(oinf, res);
+        assertEquals(oinf.oid(), res.oid());
+        assertEquals(oinf.chunks(), res.chunks());
+        // also cached under its own version
+        assertNotNull(cache.get(url("a"), oinf.version(), false));
+        assertNull(cache.get(url("a"), 1L, false));
+    }
+
+    @Test
+    public void withoutProperties() {
+        ObjectInfoCache cache = new ObjectInfoCache(8, 60000L);
+        cache.put(url("a"), null, false,
+                TestHelper.newTestObjectInfo(url("a"), 10));
+        assertNotNull(cache.get(url("a"), null, false));
+        assertNull(cache.get(url("a"), null, true));
+    }
+
+    @Test
+    public void expired() {
+        ObjectInfoCache cache = new ObjectInfoCache(8, 0L);
+        ObjectInfo oinf = TestHelper.newTestObjectInfo(url("a"), 10);
+        cache.put(url("a"), null, true, oinf);
+        assertNull(cache.get(url("a"), null, true));
+        assertNull(cache.get(url("a"), oinf.version(), true));
+        // still known as the last location of the object
+        assertEquals(1, cache.size());
+        ObjectInfo last = cache.last(url("a"));
+        assertNotNull(last);
+        assertNotSame(oinf, last);
+        assertEquals(oinf.chunks(), last.chunks());
+    }
+
+    @Test
+    public void lastOfUnknownObject() {
+        ObjectInfoCache cache = new ObjectInfoCache(8, 60000L);
+        assertNull(cache.last(url("a")));
+        // only lookups of the latest version tell where the object is
+        ObjectInfo oinf = TestHelper.newTestObjectInfo(url("a"), 10);
+        cache.put(url("a"), oinf.version(), true, oinf);
+        assertNull(cache.last(url("a")));
+    }
+
+    @Test
+    public void evictLeastRecentlyUsed() {
+        ObjectInfoCache cache = new ObjectInfoCache(2, 60000L);
+        cache.put(url("a"), null, true,
+                TestHelper.newTestObjectInfo(url("a"), 10));
+        cache.put(url("b"), null, true,
+                TestHelper.newTestObjectInfo(url("b"), 10));
+        assertNotNull(cache.get(url("a"), null, true));
+        cache.put(url("c"), null, true,
+                TestHelper.newTestObjectInfo(url("c"), 10));
+        assertEquals(2, cache.size());
+        assertNotNull(cache.get(url("a"), null, true));
+        assertNull(cache.get(url("b"), null, true));
+        assertNotNull(cache.get(url("c"), null, true));
+    }
+
+    @Test
+    public void invalidate() {
+        ObjectInfoCache cache = new ObjectInfoCache(8, 60000L);
+        ObjectInfo oinf = TestHelper.newTestObjectInfo(url("a"), 10);
+        cache.put(url("a"), null, true, oinf);
+        cache.invalidate(url("a"));
+        assertNull(cache.get(url("a"), null, true));
+        assertNull(cache.get(url("a"), oinf.version(), true));
+        assertNull(cache.last(url("a")));
+    }
+}
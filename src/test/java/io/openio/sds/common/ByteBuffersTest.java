@@ -0,0 +1,66 @@
+package io.openio.sds.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+
+import org.junit.Test;
+
+public class ByteBuffersTest {
+
+    private static ByteArrayInputStream data() {
+        return new ByteArrayInputStream("0123456789".getBytes());
+    }
+
+    private static String string(ByteBuffer buf) {
+        buf.flip();
+        byte[] b = new byte[buf.remaining()];
+        buf.get(b);
+        return new String(b);
+    }
+
+    @Test
+    public void readFullyHeap() throws IOException {
+        ByteBuffer dst = ByteBuffer.allocate(16);
+        dst.position(2);
+        assertEquals(10, ByteBuffers.readFully(data(), dst));
+        assertEquals(12, dst.position());
+        assertEquals("0123456789", new String(dst.array(), 2, 10));
+    }
+
+    @Test
+    public void readFullyDirect() throws IOException {
+        ByteBuffer dst = ByteBuffer.allocateDirect(4);
+        assertEquals(4, ByteBuffers.readFully(data(), dst));
+        assertEquals("0123", string(dst));
+    }
+
+    @Test
+    public void channel() throws IOException {
+        ReadableByteChannel channel = ByteBuffers.channel(data());
+        ByteBuffer dst = ByteBuffer.allocateDirect(16);
+        while (-1 != channel.read(dst))
+            ;
+        assertEquals("0123456789", string(dst));
+        channel.close();
+        assertFalse(channel.isOpen());
+    }
+
+    @Test
+    public void slice() throws IOException {
+        ByteBuffer[] data = { ByteBuffer.wrap("0123".getBytes()),
+                ByteBuffer.wrap("456".getBytes()),
+                ByteBuffer.wrap("789".getBytes()) };
+        ByteBuffer[] slices = ByteBuffers.slice(data, 2, 6);
+        assertEquals(3, slices.length);
+        assertEquals(6, ByteBuffers.remaining(slices));
+        ByteBuffer dst = ByteBuffer.allocate(16);
+        ByteBuffers.readFully(ByteBuffers.stream(slices), dst);
+        assertEquals("234567", string(dst));
+        assertEquals(0, data[0].position());
+    }
+}
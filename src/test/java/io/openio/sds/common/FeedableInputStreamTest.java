@@ -0,0 +1,19 @@
+package io.openio.sds.common;
+
+import static java.nio.ByteBuffer.wrap;
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class FeedableInputStreamTest {
+
+    @Test
+    public void readAcrossParts() {
+        FeedableInputStream in = new FeedableInputStream(4, 100);
+        in.feed(wrap("0123".getBytes()), false);
+        in.feed(wrap("456".getBytes()), true);
+        byte[] b = new byte[10];
+        assertEquals(7, in.read(b, 0, 10));
+        assertEquals("0123456", new String(b, 0, 7));
+    }
+}
@@ -0,0 +1,89 @@
+package io.openio.sds.common;
+
+import static io.openio.sds.common.JsonUtils.gson;
+import static io.openio.sds.common.JsonUtils.gsonForObject;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.google.gson.reflect.TypeToken;
+
+import io.openio.sds.models.ChunkInfo;
+import io.openio.sds.models.NamespaceInfo;
+import io.openio.sds.models.Position;
+import io.openio.sds.models.ProxyError;
+
+public class JsonUtilsTest {
+
+    @Test
+    public void sharedInstances() {
+        assertSame(gson(), gson());
+        assertSame(gsonForObject(), gsonForObject());
+        // building the null-serializing instance must not affect the other
+        gsonForObject();
+        assertEquals("{}", gson().toJson(new ChunkInfo()));
+    }
+
+    @Test
+    public void chunks() {
+        String json = "[{\"url\": \"http://127.0.0.1:6010/AAAA\","
+                + " \"real_url\": \"http://127.0.0.1:6010/AAAA\","
+                + " \"size\": \"1024\", \"hash\": \"00FF\", \"pos\": \"0.1\","
+                + " \"score\": 92}]";
+        List<ChunkInfo> chunks = gson().fromJson(json,
+                new TypeToken<List<ChunkInfo>>() {
+                }.getType());
+        assertEquals(1, chunks.size());
+        ChunkInfo ci = chunks.get(0);
+        assertEquals("http://127.0.0.1:6010/AAAA", ci.url());
+        assertEquals("http://127.0.0.1:6010/AAAA", ci.real_url());
+        assertEquals(Long.valueOf(1024), ci.size());
+        assertEquals("00FF", ci.hash());
+        assertEquals(Position.composed(0, 1).toString(), ci.pos().toString());
+    }
+
+    @Test
+    public void chunksToJson() {
+        ChunkInfo ci = new ChunkInfo().url("http://127.0.0.1:6010/AAAA")
+                .size(12L).pos(Position.simple(2));
+        assertEquals("[{\"url\":\"http://127.0.0.1:6010/AAAA\",\"size\":12,"
+                + "\"pos\":\"2\"}]", gson().toJson(Arrays.asList(ci)));
+        assertEquals("[{\"url\":\"http://127.0.0.1:6010/AAAA\","
+                + "\"real_url\":null,\"size\":12,\"hash\":null,\"pos\":\"2\"}]",
+                gsonForObject().toJson(Arrays.asList(ci)));
+    }
+
+    @Test
+    public void namespaceInfo() {
+        String json = "{\"ns\": \"OPENIO\", \"chunksize\": 1048576,"
+                + " \"options\": {\"flat_bitlength\": 17},"
+                + " \"storage_policy\": {\"SINGLE\": \"NONE:NONE\"},"
+                + " \"storage_class\": {}, \"data_security\": null,"
+                + " \"service_pools\": {\"rawx\": \"1,rawx\"}}";
+        NamespaceInfo ni = gson().fromJson(json, NamespaceInfo.class);
+        assertEquals("OPENIO", ni.ns());
+        assertEquals(Long.valueOf(1048576), ni.chunksize());
+        assertEquals("17", ni.options().get("flat_bitlength"));
+        assertEquals("NONE:NONE", ni.storagePolicies().get("SINGLE"));
+        assertTrue(ni.storageClasses().isEmpty());
+        assertNull(ni.dataSecurities());
+        assertNull(ni.dataTreatments());
+    }
+
+    @Test
+    public void proxyError() {
+        ProxyError err = gson().fromJson(
+                "{\"status\": 420, \"message\": \"No such container\"}",
+                ProxyError.class);
+        assertEquals(Integer.valueOf(420), err.status());
+        assertEquals("No such container", err.message());
+        assertFalse(gson().toJson(new ProxyError()).contains("status"));
+    }
+}
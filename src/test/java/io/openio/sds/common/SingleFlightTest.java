@@ -0,0 +1,119 @@
+package io.openio.sds.common;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import io.openio.sds.RequestContext;
+import io.openio.sds.exceptions.DeadlineReachedException;
+import io.openio.sds.exceptions.ObjectNotFoundException;
+
+public class SingleFlightTest {
+
+    private static class BlockingCall implements Callable<Object> {
+
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger calls = new AtomicInteger();
+        final Object result = new Object();
+
+        @Override
+        public Object call() throws Exception {
+            calls.incrementAndGet();
+            started.countDown();
+            release.await(10, TimeUnit.SECONDS);
+            return result;
+        }
+    }
+
+    private static Future<Object> leader(ExecutorService pool,
+            final SingleFlight<Object> flights, final BlockingCall call)
+            throws InterruptedException {
+        Future<Object> res = pool.submit(new Callable<Object>() {
+
+            @Override
+            public Object call() {
+                return flights.execute("key", call, null);
+            }
+        });
+        call.started.await(10, TimeUnit.SECONDS);
+        return res;
+    }
+
+    @Test
+    public void shared() throws Exception {
+        final SingleFlight<Object> flights = new SingleFlight<Object>();
+        final BlockingCall call = new BlockingCall();
+        ExecutorService pool = Executors.newFixedThreadPool(2);
+        try {
+            Future<Object> first = leader(pool, flights, call);
+            Future<Object> second = pool.submit(new Callable<Object>() {
+
+                @Override
+                public Object call() {
+                    return flights.execute("key", call, null);
+                }
+            });
+            // let the second caller join the flight
+            Thread.sleep(100);
+            call.release.countDown();
+            assertSame(call.result, first.get());
+            assertSame(call.result, second.get());
+            assertEquals(1, call.calls.get());
+            assertEquals(0, flights.running());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    public void failureShared() {
+        SingleFlight<Object> flights = new SingleFlight<Object>();
+        try {
+            flights.execute("key", new Callable<Object>() {
+
+                @Override
+                public Object call() {
+                    throw new ObjectNotFoundException("missing");
+                }
+            }, null);
+            fail("Expected ObjectNotFoundException");
+        } catch (ObjectNotFoundException e) {
+            assertEquals("missing", e.getMessage());
+        }
+        assertEquals(0, flights.running());
+    }
+
+    @Test
+    public void followerDeadline() throws Exception {
+        SingleFlight<Object> flights = new SingleFlight<Object>();
+        BlockingCall call = new BlockingCall();
+        ExecutorService pool = Executors.newFixedThreadPool(1);
+        try {
+            Future<Object> first = leader(pool, flights, call);
+            RequestContext reqCtx = new RequestContext().withTimeout(50);
+            reqCtx.startTiming().computeDeadline();
+            try {
+                flights.execute("key", call, reqCtx);
+                fail("Expected DeadlineReachedException");
+            } catch (DeadlineReachedException e) {
+                // expected
+            }
+            call.release.countDown();
+            assertSame(call.result, first.get());
+            assertEquals(1, call.calls.get());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+}
@@ -15,10 +15,13 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 public class OioHttpTest {
@@ -100,6 +103,32 @@ public class OioHttpTest {
         assertEquals(new String(output.toByteArray()), expectedOutput);
     }
 
+    @Test
+    public void chunkedTrailers() {
+        List<ByteArrayInputStream> inputs = new ArrayList<ByteArrayInputStream>();
+        inputs.add(new ByteArrayInputStream("HTTP/1.0 200 OK\r\nContent-Length: 0\r\n\r\n"
+                .getBytes()));
+
+        TestSocketProvider socketProvider = new TestSocketProvider(inputs);
+        OioHttp http = OioHttp.http(new OioHttpSettings(), socketProvider);
+
+        OioHttp.RequestBuilder req = http.post("http://127.0.0.1:8080/testPath");
+        Map<String, String> trailers = new LinkedHashMap<String, String>();
+        req.trailers(trailers);
+
+        byte[] data = "test".getBytes();
+        req.body(new ByteArrayInputStream(data), (long) data.length);
+        // the trailers are read after the body is sent
+        trailers.put("X-test-size", "4");
+        trailers.put("X-test-hash", "00FF");
+        req.execute();
+
+        String output = new String(socketProvider.outputs().get(0).toByteArray());
+        assertTrue(output.contains("Transfer-Encoding: chunked\r\n"));
+        assertTrue(output.endsWith("\r\n\r\n4\r\ntest\r\n0\r\n"
+                + "X-test-size: 4\r\nX-test-hash: 00FF\r\n\r\n"));
+    }
+
     @Test
     public void stream() {
         List<ByteArrayInputStream> inputs = new ArrayList<ByteArrayInputStream>();
@@ -0,0 +1,84 @@
+package io.openio.sds.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+
+import org.junit.Test;
+
+import io.openio.sds.DiscardingSocketProvider;
+import io.openio.sds.SyntheticInputStream;
+
+public class StreamTest {
+
+    private static final long SIZE = 3L * 1024L * 1024L * 1024L + 5;
+
+    private static long count(InputStream in) throws IOException {
+        byte[] buf = new byte[1024 * 1024];
+        long total = 0;
+        int read;
+        while (-1 != (read = in.read(buf, 0, buf.length)))
+            total += read;
+        return total;
+    }
+
+    @Test
+    public void largeStream() throws IOException {
+        Stream in = new Stream(new SyntheticInputStream(SIZE + 10), SIZE);
+        assertEquals(SIZE, count(in));
+        assertEquals(-1, in.read());
+    }
+
+    @Test
+    public void largeChunkedStream() throws IOException {
+        InputStream chunked = new SequenceInputStream(
+                new SequenceInputStream(
+                        new ByteArrayInputStream(
+                                (Long.toHexString(SIZE) + "\r\n").getBytes()),
+                        new SyntheticInputStream(SIZE)),
+                new ByteArrayInputStream("\r\n0\r\n\r\n".getBytes()));
+        assertEquals(SIZE, count(new ChunkedStream(chunked)));
+    }
+
+    @Test
+    public void largeUpload() {
+        OioHttpSettings settings = new OioHttpSettings();
+        DiscardingSocketProvider socketProvider = new DiscardingSocketProvider(
+                "HTTP/1.1 200 OK\r\nContent-Length: 0\r\n\r\n", 0L);
+        OioHttp.http(settings, socketProvider)
+                .put("http://127.0.0.1:6000/large")
+                .body(new SyntheticInputStream(SIZE), SIZE)
+                .execute()
+                .close();
+        DiscardingSocketProvider.Request req = socketProvider.requests().get(0);
+        assertTrue(req.head().contains("Content-Length: " + SIZE + "\r\n"));
+        assertEquals(SIZE, req.bodySize());
+    }
+
+    @Test
+    public void largeChunkedUpload() {
+        OioHttpSettings settings = new OioHttpSettings();
+        DiscardingSocketProvider socketProvider = new DiscardingSocketProvider(
+                "HTTP/1.1 200 OK\r\nContent-Length: 0\r\n\r\n", 0L);
+        OioHttp.http(settings, socketProvider)
+                .put("http://127.0.0.1:6000/large")
+                .body(new SyntheticInputStream(SIZE), SIZE)
+                .chunked()
+                .execute()
+                .close();
+        // one chunk per send buffer, then the last chunk and the empty one
+        long buf = settings.sendBufferSize();
+        long last = SIZE % buf;
+        long expected = (SIZE / buf)
+                * (Long.toHexString(buf).length() + 4 + buf)
+                + (0 == last ? 0 : Long.toHexString(last).length() + 4 + last)
+                + "0\r\n\r\n".length();
+        DiscardingSocketProvider.Request req = socketProvider.requests().get(0);
+        assertTrue(req.head().contains("Transfer-Encoding: chunked\r\n"));
+        assertEquals(expected, req.bodySize());
+    }
+}
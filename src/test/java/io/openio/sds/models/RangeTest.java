@@ -95,6 +95,13 @@ public class RangeTest {
         Assert.assertEquals(20, r.to());
     }
 
+    @Test
+    public void parseHigherThanInteger() {
+        Range r = Range.parse("4294967296-8589934592");
+        Assert.assertEquals(4294967296L, r.from());
+        Assert.assertEquals(8589934592L, r.to());
+    }
+
     @Test(expected = IllegalArgumentException.class)
     public void parseInvalid1() {
         Range.parse("azuhepoaizeuh");
@@ -108,7 +115,7 @@ public class RangeTest {
     @Test
     public void stringify() {
         Range r = Range.between(10, 20);
-        Assert.assertEquals("bytes=10-20", r.headerValue());
+        Assert.assertEquals("bytes=10-19", r.headerValue());
         Assert.assertEquals("10-20", r.rangeValue());
         Assert.assertNotNull(r.toString());
 
@@ -117,8 +124,19 @@ public class RangeTest {
         Assert.assertEquals("10-", r.rangeValue());
 
         r = Range.upTo(20);
-        Assert.assertEquals("bytes=0-20", r.headerValue());
+        Assert.assertEquals("bytes=0-19", r.headerValue());
         Assert.assertEquals("0-20", r.rangeValue());
     }
 
+    @Test
+    public void parseRangeValue() {
+        Range r = Range.parse(Range.between(10, 20).rangeValue());
+        Assert.assertEquals(10, r.from());
+        Assert.assertEquals(20, r.to());
+        Assert.assertEquals("bytes=10-19", r.headerValue());
+        r = Range.parse("4294967296-");
+        Assert.assertEquals("4294967296-", r.rangeValue());
+        Assert.assertEquals("bytes=4294967296-", r.headerValue());
+    }
+
 }
@@ -0,0 +1,95 @@
+package io.openio.sds.proxy;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.openio.sds.models.ObjectList;
+import io.openio.sds.models.ObjectList.ObjectView;
+
+public class ObjectListParserTest {
+
+    private static final String LISTING = "{\"prefixes\": [\"dir/\"],"
+            + " \"properties\": {\"sys.user.name\": \"test\"},"
+            + " \"objects\": ["
+            + "{\"name\": \"obj1\", \"ver\": 1500000000000000, \"ctime\": 1500000000,"
+            + " \"deleted\": false, \"policy\": \"SINGLE\", \"hash\": \"ABCD\","
+            + " \"size\": 42, \"mime-type\": \"text/plain\", \"sysmd\": null},"
+            + "{\"name\": \"obj2\", \"deleted\": true, \"properties\": [1, {}]}"
+            + "]}";
+
+    private static class Collector implements ObjectHandler {
+
+        private final List<ObjectView> objects = new ArrayList<ObjectView>();
+
+        @Override
+        public void handle(ObjectView object) {
+            objects.add(object);
+        }
+    }
+
+    @Test
+    public void streaming() throws IOException {
+        Collector c = new Collector();
+        ObjectList l = ObjectListParser.parse(
+                new ByteArrayInputStream(LISTING.getBytes()), c);
+        assertNull(l.objects());
+        assertEquals(Arrays.asList("dir/"), l.prefixes());
+        assertEquals(2, c.objects.size());
+
+        ObjectView o = c.objects.get(0);
+        assertEquals("obj1", o.name());
+        assertEquals("1500000000000000", o.version());
+        assertEquals("1500000000", o.ctime());
+        assertFalse(o.deleted());
+        assertEquals("SINGLE", o.policy());
+        assertEquals("ABCD", o.hash());
+        assertEquals(Long.valueOf(42), o.size());
+        assertNull(o.sysmd());
+
+        o = c.objects.get(1);
+        assertEquals("obj2", o.name());
+        assertTrue(o.deleted());
+        assertNull(o.size());
+    }
+
+    @Test
+    public void wholePage() throws IOException {
+        ObjectList l = ObjectListParser.parse(
+                new ByteArrayInputStream(LISTING.getBytes()));
+        assertEquals(2, l.objects().size());
+        assertEquals("obj2", l.objects().get(1).name());
+    }
+
+    @Test
+    public void objectsBeforeTheEnd() {
+        String broken = LISTING.substring(0, LISTING.indexOf("{\"name\": \"obj2\""))
+                + "{\"name\": ";
+        Collector c = new Collector();
+        try {
+            ObjectListParser.parse(new ByteArrayInputStream(broken.getBytes()),
+                    c);
+            fail("the listing is incomplete");
+        } catch (IOException e) {
+            assertEquals(1, c.objects.size());
+        }
+    }
+
+    @Test
+    public void emptyBody() throws IOException {
+        ObjectList l = ObjectListParser.parse(
+                new ByteArrayInputStream(new byte[0]));
+        assertTrue(l.objects().isEmpty());
+        assertFalse(l.truncated());
+    }
+}
@@ -0,0 +1,105 @@
+package io.openio.sds.proxy;
+
+import static io.openio.sds.common.JsonUtils.gson;
+import static io.openio.sds.common.OioConstants.LIST_MARKER_HEADER;
+import static io.openio.sds.common.OioConstants.LIST_TRUNCATED_HEADER;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.openio.sds.TestSocketProvider;
+import io.openio.sds.http.OioHttp;
+import io.openio.sds.http.OioHttpSettings;
+import io.openio.sds.models.ListOptions;
+import io.openio.sds.models.ObjectList;
+import io.openio.sds.models.ObjectList.ObjectView;
+import io.openio.sds.models.OioUrl;
+
+public class ObjectListingTest {
+
+    private static ByteArrayInputStream page(String marker, String... names) {
+        List<ObjectView> objects = new ArrayList<ObjectView>();
+        for (String name : names)
+            objects.add(new ObjectView().name(name));
+        String data = gson().toJson(new ObjectList().objects(objects));
+        String input = "HTTP/1.1 200 OK\r\nContent-Length: " + data.length()
+                + "\r\n";
+        if (null != marker)
+            input += LIST_TRUNCATED_HEADER + ": true\r\n"
+                    + LIST_MARKER_HEADER + ": " + marker + "\r\n";
+        return new ByteArrayInputStream((input + "\r\n" + data).getBytes());
+    }
+
+    private static ProxyClient proxy(TestSocketProvider socketProvider) {
+        ProxySettings settings = new ProxySettings();
+        settings.url("http://127.0.0.1:8080");
+        settings.ns("OPENIO");
+        return new ProxyClient(
+                OioHttp.http(new OioHttpSettings(), socketProvider), settings);
+    }
+
+    private static List<String> names(Iterable<ObjectView> objects) {
+        List<String> res = new ArrayList<String>();
+        for (ObjectView o : objects)
+            res.add(o.name());
+        return res;
+    }
+
+    private static String requestLine(TestSocketProvider socketProvider,
+            int i) {
+        String req = new String(socketProvider.outputs().get(i).toByteArray());
+        return req.substring(0, req.indexOf("\r\n"));
+    }
+
+    @Test
+    public void allPages() {
+        List<ByteArrayInputStream> inputs = new ArrayList<ByteArrayInputStream>();
+        inputs.add(page("b", "a", "b"));
+        inputs.add(page("d", "c", "d"));
+        inputs.add(page(null, "e"));
+        TestSocketProvider socketProvider = new TestSocketProvider(inputs);
+        Iterable<ObjectView> objects = proxy(socketProvider).listAll(
+                OioUrl.url("ACCOUNT", "CONTAINER"),
+                new ListOptions().limit(2), null);
+
+        List<String> expected = new ArrayList<String>();
+        for (String name : new String[] { "a", "b", "c", "d", "e" })
+            expected.add(name);
+        assertEquals(expected, names(objects));
+        assertEquals(3, socketProvider.outputs().size());
+        assertTrue(requestLine(socketProvider, 1).contains("&marker=b"));
+        assertTrue(requestLine(socketProvider, 1).contains("&max=2"));
+        assertTrue(requestLine(socketProvider, 2).contains("&marker=d"));
+    }
+
+    @Test
+    public void emptyContainer() {
+        List<ByteArrayInputStream> inputs = new ArrayList<ByteArrayInputStream>();
+        inputs.add(page(null));
+        TestSocketProvider socketProvider = new TestSocketProvider(inputs);
+        Iterator<ObjectView> it = proxy(socketProvider).listAll(
+                OioUrl.url("ACCOUNT", "CONTAINER"), new ListOptions(), null)
+                .iterator();
+        assertFalse(it.hasNext());
+        assertEquals(1, socketProvider.outputs().size());
+    }
+
+    @Test
+    public void markerNotMoving() {
+        List<ByteArrayInputStream> inputs = new ArrayList<ByteArrayInputStream>();
+        inputs.add(page("a", "a"));
+        inputs.add(page("a"));
+        TestSocketProvider socketProvider = new TestSocketProvider(inputs);
+        Iterable<ObjectView> objects = proxy(socketProvider).listAll(
+                OioUrl.url("ACCOUNT", "CONTAINER"), new ListOptions(), null);
+        assertEquals(1, names(objects).size());
+        assertEquals(2, socketProvider.outputs().size());
+    }
+}
@@ -1,10 +1,14 @@
 package io.openio.sds.proxy;
 
 import io.openio.sds.RequestContext;
+import io.openio.sds.TestHelper;
 import io.openio.sds.TestSocketProvider;
+import io.openio.sds.common.OioConstants;
+import io.openio.sds.common.SocketProvider;
 import io.openio.sds.http.OioHttp;
 import io.openio.sds.http.OioHttpSettings;
 import io.openio.sds.models.ListOptions;
+import io.openio.sds.models.ObjectInfo;
 import io.openio.sds.models.ObjectList;
 import io.openio.sds.models.OioUrl;
 import io.openio.sds.models.ReferenceInfo;
@@ -15,15 +19,27 @@ import org.mockito.Mockito;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static io.openio.sds.common.JsonUtils.gson;
 import static io.openio.sds.common.OioConstants.LIST_TRUNCATED_HEADER;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 public class ProxyClientTest {
 
@@ -187,4 +203,105 @@ public class ProxyClientTest {
         ObjectList objectList = proxy.listObjects(url, new ListOptions(), null);
         Assert.assertTrue(objectList.truncated());
     }
+
+    /**
+     * Answers every request with the same object description, once the
+     * release latch is opened.
+     */
+    static class BlockingProxy implements SocketProvider {
+
+        final AtomicInteger requests = new AtomicInteger();
+        final CountDownLatch received = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+
+        @Override
+        public Socket getSocket(String host, int port) {
+            return new Socket() {
+
+                @Override
+                public OutputStream getOutputStream() {
+                    return new ByteArrayOutputStream();
+                }
+
+                @Override
+                public InputStream getInputStream() throws IOException {
+                    requests.incrementAndGet();
+                    received.countDown();
+                    try {
+                        release.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        throw new IOException(e);
+                    }
+                    String body = "[{\"url\": \"http://127.0.0.1:6010/AAAA\","
+                            + " \"size\": 10, \"hash\": \"00\", \"pos\": \"0\"}]";
+                    return TestHelper.response("200 OK", body.getBytes(),
+                            OioConstants.CONTENT_META_ID_HEADER + ": 0123456789ABCDEF",
+                            OioConstants.CONTENT_META_LENGTH_HEADER + ": 10",
+                            OioConstants.CONTENT_META_CTIME_HEADER + ": 1",
+                            OioConstants.CONTENT_META_CHUNK_METHOD_HEADER
+                                    + ": plain/nb_copy=1",
+                            OioConstants.CONTENT_META_POLICY_HEADER + ": SINGLE",
+                            OioConstants.CONTENT_META_VERSION_HEADER + ": 1");
+                }
+
+                @Override
+                public void shutdownInput() {
+                }
+            };
+        }
+
+        @Override
+        public Socket getSocket(InetSocketAddress addr) {
+            return getSocket(addr.getHostString(), addr.getPort());
+        }
+
+        @Override
+        public boolean reusableSocket() {
+            return false;
+        }
+    }
+
+    @Test
+    public void getObjectInfoSharedKeepsRequestContext() throws Exception {
+        BlockingProxy socketProvider = new BlockingProxy();
+        OioHttp http = OioHttp.http(new OioHttpSettings(), socketProvider);
+        final ProxyClient proxy = newTestProxyClient(http);
+        final OioUrl url = newObjectOioUrl();
+        final RequestContext ctx1 = new RequestContext();
+        final RequestContext ctx2 = new RequestContext();
+        final AtomicReference<ObjectInfo> r1 = new AtomicReference<ObjectInfo>();
+        final AtomicReference<ObjectInfo> r2 = new AtomicReference<ObjectInfo>();
+
+        Thread leader = new Thread() {
+
+            @Override
+            public void run() {
+                r1.set(proxy.getObjectInfo(url, null, ctx1, false));
+            }
+        };
+        Thread follower = new Thread() {
+
+            @Override
+            public void run() {
+                r2.set(proxy.getObjectInfo(url, null, ctx2, false));
+            }
+        };
+        leader.start();
+        assertTrue(socketProvider.received.await(10, TimeUnit.SECONDS));
+        follower.start();
+        // let the second caller join the flight
+        long deadline = System.currentTimeMillis() + 10000L;
+        while (Thread.State.WAITING != follower.getState()
+                && Thread.State.TIMED_WAITING != follower.getState()
+                && System.currentTimeMillis() < deadline)
+            Thread.sleep(10);
+        socketProvider.release.countDown();
+        leader.join(10000L);
+        follower.join(10000L);
+
+        assertEquals(1, socketProvider.requests.get());
+        assertSame(ctx1, r1.get().requestContext());
+        assertSame(ctx2, r2.get().requestContext());
+        assertNotSame(r1.get(), r2.get());
+    }
 }
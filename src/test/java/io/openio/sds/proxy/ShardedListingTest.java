@@ -0,0 +1,194 @@
+package io.openio.sds.proxy;
+
+import static io.openio.sds.common.JsonUtils.gson;
+import static io.openio.sds.common.OioConstants.LIST_MARKER_HEADER;
+import static io.openio.sds.common.OioConstants.LIST_TRUNCATED_HEADER;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.URLDecoder;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import io.openio.sds.common.SocketProvider;
+import io.openio.sds.http.OioHttp;
+import io.openio.sds.http.OioHttpSettings;
+import io.openio.sds.models.ListOptions;
+import io.openio.sds.models.ObjectList;
+import io.openio.sds.models.ObjectList.ObjectView;
+import io.openio.sds.models.OioUrl;
+
+public class ShardedListingTest {
+
+    private static final List<String> NAMES = Arrays.asList("a", "b", "c",
+            "d", "e", "f", "g", "h");
+
+    /**
+     * Answers listing requests from {@link #NAMES}, whatever the order of
+     * the requests.
+     */
+    private static class ListingSocketProvider implements SocketProvider {
+
+        @Override
+        public Socket getSocket(String host, int port) {
+            return getSocket(new InetSocketAddress(host, port));
+        }
+
+        @Override
+        public Socket getSocket(InetSocketAddress addr) {
+            return new Socket() {
+
+                private final ByteArrayOutputStream request = new ByteArrayOutputStream();
+
+                @Override
+                public OutputStream getOutputStream() {
+                    return request;
+                }
+
+                @Override
+                public InputStream getInputStream() {
+                    return new ByteArrayInputStream(
+                            respond(new String(request.toByteArray())));
+                }
+            };
+        }
+
+        @Override
+        public boolean reusableSocket() {
+            return false;
+        }
+    }
+
+    private static byte[] respond(String request) {
+        Map<String, String> params = new HashMap<String, String>();
+        String line = request.substring(0, request.indexOf("\r\n"));
+        String query = line.substring(line.indexOf('?') + 1,
+                line.lastIndexOf(' '));
+        try {
+            for (String param : query.split("&")) {
+                String[] kv = param.split("=", 2);
+                params.put(kv[0], URLDecoder.decode(kv[1], "UTF-8"));
+            }
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+        String marker = params.get("marker");
+        String end = params.get("end");
+        String prefix = params.get("prefix");
+        int max = params.containsKey("max")
+                ? Integer.parseInt(params.get("max")) : 1000;
+        List<ObjectView> objects = new ArrayList<ObjectView>();
+        boolean truncated = false;
+        for (String name : NAMES) {
+            if ((null != marker && name.compareTo(marker) <= 0)
+                    || (null != end && name.compareTo(end) >= 0)
+                    || (null != prefix && !name.startsWith(prefix)))
+                continue;
+            if (objects.size() == max) {
+                truncated = true;
+                break;
+            }
+            objects.add(new ObjectView().name(name));
+        }
+        String data = gson().toJson(new ObjectList().objects(objects));
+        String res = "HTTP/1.1 200 OK\r\nContent-Length: " + data.length()
+                + "\r\n";
+        if (truncated)
+            res += LIST_TRUNCATED_HEADER + ": true\r\n" + LIST_MARKER_HEADER
+                    + ": " + objects.get(objects.size() - 1).name() + "\r\n";
+        return (res + "\r\n" + data).getBytes();
+    }
+
+    private static ProxyClient proxy() {
+        ProxySettings settings = new ProxySettings();
+        settings.url("http://127.0.0.1:8080");
+        settings.ns("OPENIO");
+        return new ProxyClient(OioHttp.http(new OioHttpSettings(),
+                new ListingSocketProvider()), settings);
+    }
+
+    private static List<String> names(Iterable<ObjectView> objects) {
+        List<String> res = new ArrayList<String>();
+        for (ObjectView o : objects)
+            res.add(o.name());
+        return res;
+    }
+
+    @Test
+    public void ordered() {
+        Iterable<ObjectView> objects = proxy().listAll(
+                OioUrl.url("ACCOUNT", "CONTAINER"), new ListOptions().limit(2),
+                Arrays.asList("c", "f"), 3, true, null);
+        assertEquals(NAMES, names(objects));
+    }
+
+    @Test
+    public void unordered() {
+        Iterable<ObjectView> objects = proxy().listAll(
+                OioUrl.url("ACCOUNT", "CONTAINER"), new ListOptions().limit(2),
+                Arrays.asList("bb", "e", "zz"), 2, false, null);
+        List<String> res = names(objects);
+        Collections.sort(res);
+        assertEquals(NAMES, res);
+    }
+
+    @Test
+    public void withinMarkerAndEnd() {
+        Iterable<ObjectView> objects = proxy().listAll(
+                OioUrl.url("ACCOUNT", "CONTAINER"),
+                new ListOptions().marker("a").end("g").limit(1),
+                Arrays.asList("d"), 2, true, null);
+        assertEquals(NAMES.subList(1, 6), names(objects));
+    }
+
+    /**
+     * Reads the first object, then waits while the workers of the other
+     * ranges are blocked on their full queues: none of them may give up.
+     */
+    private static List<String> slowlyRead(Iterable<ObjectView> objects)
+            throws InterruptedException {
+        List<String> res = new ArrayList<String>();
+        Iterator<ObjectView> it = objects.iterator();
+        res.add(it.next().name());
+        Thread.sleep(2500);
+        while (it.hasNext())
+            res.add(it.next().name());
+        return res;
+    }
+
+    @Test(timeout = 30000)
+    public void slowReaderOrdered() throws InterruptedException {
+        List<String> res = slowlyRead(proxy().listAll(
+                OioUrl.url("ACCOUNT", "CONTAINER"), new ListOptions().limit(1),
+                Arrays.asList("c", "f"), 3, true, null));
+        assertEquals(NAMES, res);
+    }
+
+    @Test(timeout = 30000)
+    public void slowReaderUnordered() throws InterruptedException {
+        List<String> res = slowlyRead(proxy().listAll(
+                OioUrl.url("ACCOUNT", "CONTAINER"), new ListOptions().limit(1),
+                Arrays.asList("c", "f"), 3, false, null));
+        Collections.sort(res);
+        assertEquals(NAMES, res);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unsortedBoundaries() {
+        proxy().listAll(OioUrl.url("ACCOUNT", "CONTAINER"), new ListOptions(),
+                Arrays.asList("f", "c"), 2, true, null);
+    }
+}
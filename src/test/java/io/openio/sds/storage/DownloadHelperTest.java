@@ -0,0 +1,112 @@
+package io.openio.sds.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.openio.sds.models.ChunkInfo;
+import io.openio.sds.models.ObjectInfo;
+import io.openio.sds.models.OioUrl;
+import io.openio.sds.models.Position;
+import io.openio.sds.models.Range;
+
+public class DownloadHelperTest {
+
+    /**
+     * @return an object made of 3 chunks of 4 bytes each
+     */
+    static ObjectInfo objectInfo() {
+        List<ChunkInfo> l = new ArrayList<ChunkInfo>();
+        for (int pos = 0; pos < 3; pos++) {
+            l.add(new ChunkInfo().pos(Position.simple(pos)).size(4L)
+                    .url("http://127.0.0.1:6010/" + pos));
+        }
+        return new ObjectInfo()
+                .url(OioUrl.url("testaccount", "testcontainer", "testobject"))
+                .size(12L).chunks(l);
+    }
+
+    private static void assertTarget(Target t, int pos, long from, long to) {
+        assertEquals(pos, t.getChunk().get(0).pos().meta());
+        assertEquals(from, t.getRange().from());
+        assertEquals(to, t.getRange().to());
+    }
+
+    @Test
+    public void noRange() {
+        List<Target> targets = DownloadHelper.loadTargets(objectInfo(), null);
+        assertEquals(3, targets.size());
+        for (int pos = 0; pos < 3; pos++) {
+            assertEquals(pos, targets.get(pos).getChunk().get(0).pos().meta());
+            assertTrue(null == targets.get(pos).getRange());
+        }
+    }
+
+    @Test
+    public void insideChunk() {
+        List<Target> targets = DownloadHelper.loadTargets(objectInfo(),
+                Range.between(5, 7));
+        assertEquals(1, targets.size());
+        assertTarget(targets.get(0), 1, 1, 3);
+    }
+
+    @Test
+    public void chunkBoundaries() {
+        List<Target> targets = DownloadHelper.loadTargets(objectInfo(),
+                Range.between(4, 8));
+        assertEquals(1, targets.size());
+        assertTarget(targets.get(0), 1, 0, 4);
+    }
+
+    @Test
+    public void acrossChunks() {
+        List<Target> targets = DownloadHelper.loadTargets(objectInfo(),
+                Range.between(2, 10));
+        assertEquals(3, targets.size());
+        assertTarget(targets.get(0), 0, 2, 4);
+        assertTarget(targets.get(1), 1, 0, 4);
+        assertTarget(targets.get(2), 2, 0, 2);
+    }
+
+    @Test
+    public void toTheEnd() {
+        List<Target> targets = DownloadHelper.loadTargets(objectInfo(),
+                Range.from(3));
+        assertEquals(3, targets.size());
+        assertTarget(targets.get(0), 0, 3, 4);
+        assertTarget(targets.get(2), 2, 0, 4);
+    }
+
+    @Test
+    public void largeChunks() {
+        long gib = 1024L * 1024L * 1024L;
+        List<ChunkInfo> l = new ArrayList<ChunkInfo>();
+        for (int pos = 0; pos < 3; pos++) {
+            l.add(new ChunkInfo().pos(Position.simple(pos)).size(5 * gib)
+                    .url("http://127.0.0.1:6010/" + pos));
+        }
+        ObjectInfo oinf = new ObjectInfo()
+                .url(OioUrl.url("testaccount", "testcontainer", "testobject"))
+                .size(15 * gib).chunks(l);
+        assertEquals(10 * gib, oinf.chunkOffset(2));
+        assertEquals(1, oinf.chunkAt(10 * gib - 1));
+        assertEquals(2, oinf.chunkAt(10 * gib));
+        assertEquals(-1, oinf.chunkAt(15 * gib));
+
+        List<Target> targets = DownloadHelper.loadTargets(oinf,
+                Range.between(4 * gib, 11 * gib));
+        assertEquals(3, targets.size());
+        assertTarget(targets.get(0), 0, 4 * gib, 5 * gib);
+        assertTarget(targets.get(1), 1, 0, 5 * gib);
+        assertTarget(targets.get(2), 2, 0, gib);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void beyondEnd() {
+        DownloadHelper.loadTargets(objectInfo(), Range.from(12));
+    }
+}
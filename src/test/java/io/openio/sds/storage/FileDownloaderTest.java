@@ -0,0 +1,75 @@
+package io.openio.sds.storage;
+
+import static io.openio.sds.TestHelper.response;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.openio.sds.RequestContext;
+import io.openio.sds.TestSocketProvider;
+import io.openio.sds.exceptions.OioException;
+import io.openio.sds.http.OioHttp;
+import io.openio.sds.http.OioHttpRequest;
+import io.openio.sds.http.OioHttpSettings;
+import io.openio.sds.storage.rawx.RawxClient;
+import io.openio.sds.storage.rawx.RawxSettings;
+
+public class FileDownloaderTest {
+
+    private static RawxClient client(TestSocketProvider socketProvider) {
+        return new RawxClient(
+                OioHttp.http(new OioHttpSettings(), socketProvider),
+                new RawxSettings());
+    }
+
+    @Test
+    public void download() throws IOException {
+        List<ByteArrayInputStream> inputs = new ArrayList<ByteArrayInputStream>();
+        inputs.add(response("206 Partial Content", "0123"));
+        inputs.add(response("206 Partial Content", "4567"));
+        inputs.add(response("206 Partial Content", "89ab"));
+        TestSocketProvider socketProvider = new TestSocketProvider(inputs);
+        File dst = File.createTempFile("oio", ".bin");
+        try {
+            long size = new FileDownloader(client(socketProvider), null, 4)
+                    .download(DownloadHelperTest.objectInfo(), dst.toPath(),
+                            new RequestContext());
+            assertEquals(12, size);
+            assertEquals("0123456789ab",
+                    new String(Files.readAllBytes(dst.toPath())));
+            assertEquals(3, socketProvider.outputs().size());
+            assertEquals("bytes=0-3", OioHttpRequest.build(
+                    new ByteArrayInputStream(socketProvider.outputs().get(1)
+                            .toByteArray())).header("Range"));
+        } finally {
+            dst.delete();
+        }
+    }
+
+    @Test
+    public void truncatedChunk() throws IOException {
+        List<ByteArrayInputStream> inputs = new ArrayList<ByteArrayInputStream>();
+        inputs.add(response("206 Partial Content", "0123"));
+        inputs.add(response("206 Partial Content", "45"));
+        TestSocketProvider socketProvider = new TestSocketProvider(inputs);
+        File dst = File.createTempFile("oio", ".bin");
+        try {
+            new FileDownloader(client(socketProvider), null, 4).download(
+                    DownloadHelperTest.objectInfo(), dst.toPath(),
+                    new RequestContext());
+            fail("Expected OioException");
+        } catch (OioException e) {
+            // expected
+        } finally {
+            dst.delete();
+        }
+    }
+}
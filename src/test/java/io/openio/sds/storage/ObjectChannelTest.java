@@ -0,0 +1,106 @@
+package io.openio.sds.storage;
+
+import static io.openio.sds.TestHelper.response;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SeekableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.openio.sds.RequestContext;
+import io.openio.sds.TestHelper;
+import io.openio.sds.TestSocketProvider;
+import io.openio.sds.http.OioHttp;
+import io.openio.sds.http.OioHttpRequest;
+import io.openio.sds.http.OioHttpSettings;
+import io.openio.sds.models.ObjectInfo;
+import io.openio.sds.models.OioUrl;
+import io.openio.sds.storage.rawx.RawxClient;
+import io.openio.sds.storage.rawx.RawxSettings;
+
+public class ObjectChannelTest {
+
+    private static String read(SeekableByteChannel channel, int len)
+            throws IOException {
+        ByteBuffer dst = ByteBuffer.allocate(len);
+        while (dst.hasRemaining() && -1 != channel.read(dst))
+            ;
+        return new String(dst.array(), 0, dst.position());
+    }
+
+    private static String rangeOf(TestSocketProvider socketProvider, int i)
+            throws IOException {
+        return OioHttpRequest.build(new ByteArrayInputStream(
+                socketProvider.outputs().get(i).toByteArray())).header("Range");
+    }
+
+    @Test
+    public void seek() throws IOException {
+        List<ByteArrayInputStream> inputs = new ArrayList<ByteArrayInputStream>();
+        inputs.add(response("200 OK", "0123456789"));
+        inputs.add(response("206 Partial Content", "23456789"));
+        TestSocketProvider socketProvider = new TestSocketProvider(inputs);
+        RawxClient client = new RawxClient(
+                OioHttp.http(new OioHttpSettings(), socketProvider),
+                new RawxSettings());
+        ObjectInfo oinf = TestHelper.newTestObjectInfo(
+                OioUrl.url("testaccount", "testcontainer", "testobject"), 10);
+
+        SeekableByteChannel channel = new ObjectChannel(client, oinf,
+                new RequestContext());
+        assertEquals(10, channel.size());
+        assertEquals(0, socketProvider.outputs().size());
+
+        assertEquals("0123", read(channel, 4));
+        // small forward seek, same connection
+        channel.position(6);
+        assertEquals("6789", read(channel, 4));
+        assertEquals(1, socketProvider.outputs().size());
+        assertEquals(-1, channel.read(ByteBuffer.allocate(1)));
+
+        // backward seek, new ranged request
+        channel.position(2);
+        assertEquals("23456789", read(channel, 16));
+        assertEquals(2, socketProvider.outputs().size());
+        assertTrue(null == rangeOf(socketProvider, 0));
+        assertEquals("bytes=2-9", rangeOf(socketProvider, 1));
+        assertEquals(10, channel.position());
+
+        channel.close();
+        try {
+            channel.position();
+            assertTrue("Expected ClosedChannelException", false);
+        } catch (ClosedChannelException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void farForwardSeek() throws IOException {
+        List<ByteArrayInputStream> inputs = new ArrayList<ByteArrayInputStream>();
+        inputs.add(response("200 OK", "0123456789"));
+        inputs.add(response("206 Partial Content", "89"));
+        TestSocketProvider socketProvider = new TestSocketProvider(inputs);
+        RawxClient client = new RawxClient(
+                OioHttp.http(new OioHttpSettings(), socketProvider),
+                new RawxSettings());
+        ObjectInfo oinf = TestHelper.newTestObjectInfo(
+                OioUrl.url("testaccount", "testcontainer", "testobject"), 10);
+
+        SeekableByteChannel channel = new ObjectChannel(client, oinf,
+                new RequestContext(), 4);
+        assertEquals("01", read(channel, 2));
+        channel.position(8);
+        assertEquals("89", read(channel, 2));
+        assertEquals(2, socketProvider.outputs().size());
+        assertEquals("bytes=8-9", rangeOf(socketProvider, 1));
+        channel.close();
+    }
+}
@@ -0,0 +1,90 @@
+package io.openio.sds.storage;
+
+import static io.openio.sds.TestHelper.response;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+import io.openio.sds.RequestContext;
+import io.openio.sds.TestHelper;
+import io.openio.sds.TestSocketProvider;
+import io.openio.sds.http.OioHttp;
+import io.openio.sds.http.OioHttpRequest;
+import io.openio.sds.http.OioHttpSettings;
+import io.openio.sds.models.ObjectInfo;
+import io.openio.sds.models.OioUrl;
+import io.openio.sds.models.Range;
+import io.openio.sds.storage.rawx.RawxClient;
+import io.openio.sds.storage.rawx.RawxSettings;
+
+public class RangeReaderTest {
+
+    private static String string(Future<ByteBuffer> f)
+            throws InterruptedException, ExecutionException {
+        ByteBuffer buf = f.get();
+        byte[] b = new byte[buf.remaining()];
+        buf.get(b);
+        return new String(b);
+    }
+
+    private static String rangeOf(TestSocketProvider socketProvider, int i)
+            throws IOException {
+        return OioHttpRequest.build(new ByteArrayInputStream(
+                socketProvider.outputs().get(i).toByteArray())).header("Range");
+    }
+
+    private static RawxClient client(TestSocketProvider socketProvider) {
+        return new RawxClient(
+                OioHttp.http(new OioHttpSettings(), socketProvider),
+                new RawxSettings());
+    }
+
+    @Test
+    public void coalesce() throws Exception {
+        List<ByteArrayInputStream> inputs = new ArrayList<ByteArrayInputStream>();
+        inputs.add(response("206 Partial Content", "0123"));
+        inputs.add(response("206 Partial Content", "67"));
+        TestSocketProvider socketProvider = new TestSocketProvider(inputs);
+        ObjectInfo oinf = TestHelper.newTestObjectInfo(
+                OioUrl.url("testaccount", "testcontainer", "testobject"), 10);
+
+        List<Future<ByteBuffer>> res = new RangeReader(client(socketProvider),
+                null, 0).read(oinf, Arrays.asList(Range.between(6, 8),
+                        Range.between(0, 2), Range.between(1, 4)),
+                new RequestContext());
+        assertEquals(3, res.size());
+        assertEquals("67", string(res.get(0)));
+        assertEquals("01", string(res.get(1)));
+        assertEquals("123", string(res.get(2)));
+        assertEquals(2, socketProvider.outputs().size());
+        assertEquals("bytes=0-3", rangeOf(socketProvider, 0));
+        assertEquals("bytes=6-7", rangeOf(socketProvider, 1));
+    }
+
+    @Test
+    public void coalesceAcrossGap() throws Exception {
+        List<ByteArrayInputStream> inputs = new ArrayList<ByteArrayInputStream>();
+        inputs.add(response("206 Partial Content", "2345678"));
+        TestSocketProvider socketProvider = new TestSocketProvider(inputs);
+        ObjectInfo oinf = TestHelper.newTestObjectInfo(
+                OioUrl.url("testaccount", "testcontainer", "testobject"), 10);
+
+        List<Future<ByteBuffer>> res = new RangeReader(client(socketProvider),
+                null, 4).read(oinf, Arrays.asList(Range.between(2, 4),
+                        Range.between(7, 9)),
+                new RequestContext());
+        assertEquals("23", string(res.get(0)));
+        assertEquals("78", string(res.get(1)));
+        assertEquals(1, socketProvider.outputs().size());
+        assertEquals("bytes=2-8", rangeOf(socketProvider, 0));
+    }
+}
@@ -0,0 +1,105 @@
+package io.openio.sds.storage;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import io.openio.sds.models.ChunkInfo;
+import io.openio.sds.models.Position;
+import io.openio.sds.models.ServiceInfo;
+
+public class ReplicaSelectorTest {
+
+    private static ChunkInfo chunk(int port) {
+        return new ChunkInfo().pos(Position.simple(0)).size(4L)
+                .url("http://127.0.0.1:" + port + "/0123456789ABCDEF");
+    }
+
+    private static List<ChunkInfo> replicas() {
+        return Arrays.asList(chunk(6010), chunk(6011), chunk(6012));
+    }
+
+    @Test
+    public void failingReplicaLast() {
+        ReplicaSelector selector = new ReplicaSelector();
+        List<ChunkInfo> l = replicas();
+        for (int i = 0; i < 3; i++) {
+            selector.begin(l.get(0));
+            selector.failure(l.get(0));
+            selector.end(l.get(0));
+        }
+        for (int i = 0; i < 10; i++)
+            assertEquals(6010, port(selector.reorderChunks(l).get(2)));
+    }
+
+    @Test
+    public void failedReplicaTriedAgain() throws InterruptedException {
+        ReplicaSelector selector = new ReplicaSelector(20);
+        List<ChunkInfo> l = replicas();
+        for (int i = 0; i < 3; i++) {
+            selector.begin(l.get(0));
+            selector.failure(l.get(0));
+            selector.end(l.get(0));
+        }
+        assertEquals(6010, port(selector.reorderChunks(l).get(2)));
+        // no request goes to the failed replica, only time makes it usable
+        Thread.sleep(300);
+        boolean first = false;
+        for (int i = 0; i < 100 && !first; i++)
+            first = 6010 == port(selector.reorderChunks(l).get(0));
+        assertTrue(first);
+    }
+
+    @Test
+    public void busyReplicaLast() {
+        ReplicaSelector selector = new ReplicaSelector();
+        List<ChunkInfo> l = replicas();
+        // same latency everywhere, a scheduling hiccup must not matter
+        long start = System.nanoTime() - TimeUnit.SECONDS.toNanos(1);
+        for (ChunkInfo ci : l) {
+            selector.begin(ci);
+            selector.success(ci, start);
+        }
+        for (ChunkInfo ci : l)
+            selector.end(ci);
+        selector.begin(l.get(1));
+        selector.begin(l.get(1));
+        for (int i = 0; i < 10; i++)
+            assertEquals(6011, port(selector.reorderChunks(l).get(2)));
+    }
+
+    @Test
+    public void conscienceScore() {
+        ReplicaSelector selector = new ReplicaSelector();
+        List<ServiceInfo> services = new ArrayList<ServiceInfo>();
+        services.add(new ServiceInfo().addr("127.0.0.1:6010").score(90));
+        services.add(new ServiceInfo().addr("127.0.0.1:6011").score(0));
+        services.add(new ServiceInfo().addr("127.0.0.1:6012").score(90));
+        selector.seed(services);
+        for (int i = 0; i < 10; i++)
+            assertEquals(6011, port(selector.reorderChunks(replicas()).get(2)));
+    }
+
+    @Test
+    public void sourceListUntouched() {
+        ReplicaSelector selector = new ReplicaSelector();
+        List<ChunkInfo> l = new ArrayList<ChunkInfo>(replicas());
+        List<Target> targets = new ArrayList<Target>();
+        targets.add(new Target().setChunk(l));
+        selector.reorder(targets);
+        assertEquals(3, targets.get(0).getChunk().size());
+        assertEquals(6010, port(l.get(0)));
+        assertEquals(6011, port(l.get(1)));
+        assertEquals(6012, port(l.get(2)));
+    }
+
+    private static int port(ChunkInfo ci) {
+        return Integer.parseInt(ReplicaSelector.address(ci).split(":")[1]);
+    }
+}
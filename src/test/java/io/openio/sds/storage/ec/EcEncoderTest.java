@@ -0,0 +1,159 @@
+package io.openio.sds.storage.ec;
+
+import static io.openio.sds.TestHelper.response;
+import static io.openio.sds.common.OioConstants.CHUNK_META_METACHUNK_HASH;
+import static io.openio.sds.common.OioConstants.CHUNK_META_METACHUNK_SIZE;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.openio.sds.RequestContext;
+import io.openio.sds.TestHelper;
+import io.openio.sds.TestSocketProvider;
+import io.openio.sds.common.FeedableInputStream;
+import io.openio.sds.common.Hex;
+import io.openio.sds.http.OioHttp;
+import io.openio.sds.http.OioHttpSettings;
+import io.openio.sds.models.ChunkInfo;
+import io.openio.sds.models.ObjectInfo;
+import io.openio.sds.models.OioUrl;
+import io.openio.sds.models.Position;
+import io.openio.sds.storage.DownloadHelper;
+
+public class EcEncoderTest {
+
+	private static final String DATA = "0123456789ABCDEFG";
+
+	private final ReedSolomon rs = new ReedSolomon(
+			ReedSolomon.ISA_L_RS_CAUCHY, 2, 1);
+	private ExecutorService executors;
+
+	@Before
+	public void setup() {
+		executors = Executors.newSingleThreadExecutor();
+	}
+
+	@After
+	public void teardown() {
+		executors.shutdown();
+	}
+
+	private byte[][] encode(EcEncoder encoder) throws IOException {
+		return encode(encoder, DATA.getBytes(), 3, null);
+	}
+
+	private static byte[][] encode(EcEncoder encoder, byte[] data, int count,
+			Map<String, String> trailers) throws IOException {
+		FeedableInputStream[] outs = new FeedableInputStream[count];
+		for (int i = 0; i < outs.length; i++)
+			outs[i] = new FeedableInputStream(16, 100);
+		encoder.encode(new ByteArrayInputStream(data), data.length, outs,
+				trailers);
+		int len = (int) encoder.subchunkSize(data.length);
+		byte[][] res = new byte[count][len];
+		for (int i = 0; i < outs.length; i++) {
+			int done = 0;
+			while (done < len)
+				done += outs[i].read(res[i], done, len - done);
+		}
+		return res;
+	}
+
+	/**
+	 * Compares the subchunks with the fixtures of
+	 * {@code src/test/resources/ec}, byte for byte, headers included.
+	 */
+	private void knownAnswer(String algo, int k, int m) throws IOException {
+		EcEncoder encoder = new EcEncoder(new ReedSolomon(algo, k, m), 1024,
+				executors);
+		byte[][] subchunks = encode(encoder,
+				EcInputStreamTest.resource("data"), k + m, null);
+		for (int i = 0; i < k + m; i++)
+			assertArrayEquals(algo + " subchunk " + i,
+					EcInputStreamTest
+							.resource(algo + "-" + k + "-" + m + "." + i),
+					subchunks[i]);
+	}
+
+	@Test
+	public void fragments() throws IOException {
+		EcEncoder encoder = new EcEncoder(rs, 10, executors);
+		// one 10 bytes segment, then one 7 bytes segment
+		assertEquals((80 + 5) + (80 + 4), encoder.subchunkSize(17));
+		byte[][] subchunks = encode(encoder);
+
+		Fragment f = Fragment.parse(subchunks[1]);
+		assertEquals(1, f.idx());
+		assertEquals(5, f.size());
+		assertEquals(10, f.origDataSize());
+		assertEquals("56789", new String(subchunks[1], 80, 5));
+		f = Fragment.parse(Arrays.copyOfRange(subchunks[0], 85, 165));
+		assertEquals(0, f.idx());
+		assertEquals(4, f.size());
+		assertEquals(7, f.origDataSize());
+		assertEquals("ABCD", new String(subchunks[0], 165, 4));
+	}
+
+	@Test
+	public void knownAnswer() throws IOException {
+		knownAnswer(ReedSolomon.ISA_L_RS_VAND, 4, 2);
+		knownAnswer(ReedSolomon.ISA_L_RS_CAUCHY, 3, 3);
+	}
+
+	@Test
+	public void trailers() throws Exception {
+		Map<String, String> trailers = new HashMap<String, String>();
+		encode(new EcEncoder(rs, 10, executors), DATA.getBytes(), 3,
+				trailers);
+		assertEquals("17", trailers.get(CHUNK_META_METACHUNK_SIZE));
+		assertEquals(Hex.toHex(MessageDigest.getInstance("MD5")
+				.digest(DATA.getBytes())),
+				trailers.get(CHUNK_META_METACHUNK_HASH));
+	}
+
+	@Test
+	public void decodeWithParity() throws IOException {
+		byte[][] subchunks = encode(new EcEncoder(rs, 10, executors));
+		List<ChunkInfo> chunks = new ArrayList<ChunkInfo>();
+		for (int i = 0; i < 3; i++)
+			chunks.add(new ChunkInfo().pos(Position.composed(0, i))
+					.size((long) subchunks[i].length)
+					.url("http://127.0.0.1:6010/" + i));
+		ObjectInfo oinf = new ObjectInfo()
+				.url(OioUrl.url("TEST", "TEST", "TEST"))
+				.oid("0123456789ABCDEF")
+				.size((long) DATA.length())
+				.chunkMethod("ec/algo=isa_l_rs_cauchy,k=2,m=1")
+				.chunks(chunks);
+
+		List<ByteArrayInputStream> inputs = new ArrayList<ByteArrayInputStream>();
+		inputs.add(response("200 OK", subchunks[0]));
+		inputs.add(response("404 Not Found", new byte[0]));
+		inputs.add(response("200 OK", subchunks[2]));
+		OioHttp http = OioHttp.http(new OioHttpSettings(),
+				new TestSocketProvider(inputs));
+		InputStream in = new EcInputStream(
+				DownloadHelper.loadTargets(oinf, null), rs, http,
+				new RequestContext(), executors);
+		try {
+			assertEquals(DATA, new String(TestHelper.toByteArray(in)));
+		} finally {
+			in.close();
+		}
+	}
+}
@@ -0,0 +1,226 @@
+package io.openio.sds.storage.ec;
+
+import static io.openio.sds.TestHelper.response;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.openio.sds.RequestContext;
+import io.openio.sds.TestHelper;
+import io.openio.sds.common.SocketProvider;
+import io.openio.sds.http.OioHttp;
+import io.openio.sds.http.OioHttpSettings;
+import io.openio.sds.models.ChunkInfo;
+import io.openio.sds.models.ObjectInfo;
+import io.openio.sds.models.OioUrl;
+import io.openio.sds.models.Position;
+import io.openio.sds.models.Range;
+import io.openio.sds.storage.DownloadHelper;
+
+/**
+ * Decodes the subchunks of {@code src/test/resources/ec}, generated by
+ * {@code src/test/c/make_fragments.c} independently from {@link ReedSolomon}:
+ * 2500 bytes in 1024 bytes segments, with ISA-L Vandermonde (k=4, m=2) and
+ * Cauchy (k=3, m=3) matrices. The generator follows liberasurecode but is
+ * not liberasurecode: pyeclib or ecd output may replace the files as is.
+ */
+public class EcInputStreamTest {
+
+	private static final String VAND = "isa_l_rs_vand";
+	private static final String CAUCHY = "isa_l_rs_cauchy";
+
+	private ExecutorService executors;
+
+	@Before
+	public void setup() {
+		executors = Executors.newSingleThreadExecutor();
+	}
+
+	@After
+	public void teardown() {
+		executors.shutdown();
+	}
+
+	static byte[] resource(String name) throws IOException {
+		InputStream in = EcInputStreamTest.class
+				.getResourceAsStream("/ec/" + name);
+		try {
+			return TestHelper.toByteArray(in);
+		} finally {
+			in.close();
+		}
+	}
+
+	/**
+	 * Serves the subchunk {@code i} at the path {@code /i}, or a 404 if it
+	 * is missing.
+	 */
+	private static class Subchunks implements SocketProvider {
+
+		private static final Pattern RANGE = Pattern
+				.compile("Range: bytes=(\\d+)-(\\d*)");
+
+		private final byte[][] subchunks;
+		private final Set<Integer> missing;
+
+		private Subchunks(byte[][] subchunks, Set<Integer> missing) {
+			this.subchunks = subchunks;
+			this.missing = missing;
+		}
+
+		@Override
+		public Socket getSocket(String host, int port) {
+			return new Socket() {
+
+				private final ByteArrayOutputStream request = new ByteArrayOutputStream();
+
+				@Override
+				public OutputStream getOutputStream() {
+					return request;
+				}
+
+				@Override
+				public InputStream getInputStream() {
+					return respond(new String(request.toByteArray()));
+				}
+
+				@Override
+				public void shutdownInput() {
+				}
+			};
+		}
+
+		@Override
+		public Socket getSocket(InetSocketAddress addr) {
+			return getSocket(addr.getHostString(), addr.getPort());
+		}
+
+		@Override
+		public boolean reusableSocket() {
+			return false;
+		}
+
+		private ByteArrayInputStream respond(String request) {
+			int idx = Integer.parseInt(request.substring(
+					request.indexOf('/') + 1, request.indexOf(' ',
+							request.indexOf('/'))));
+			if (missing.contains(idx))
+				return response("404 Not Found", new byte[0]);
+			Matcher m = RANGE.matcher(request);
+			if (!m.find())
+				return response("200 OK", subchunks[idx]);
+			int from = Integer.parseInt(m.group(1));
+			int to = m.group(2).isEmpty() ? subchunks[idx].length
+					: Integer.parseInt(m.group(2)) + 1;
+			return response("206 Partial Content",
+					Arrays.copyOfRange(subchunks[idx], from, to));
+		}
+	}
+
+	private String read(String algo, int k, int m, Range range,
+			Integer... missing) throws IOException {
+		byte[][] subchunks = new byte[k + m][];
+		List<ChunkInfo> chunks = new ArrayList<ChunkInfo>();
+		for (int i = 0; i < k + m; i++) {
+			subchunks[i] = resource(algo + "-" + k + "-" + m + "." + i);
+			chunks.add(new ChunkInfo().pos(Position.composed(0, i))
+					.size((long) subchunks[i].length)
+					.url("http://127.0.0.1:6010/" + i));
+		}
+		int size = resource("data").length;
+		ObjectInfo oinf = new ObjectInfo()
+				.url(OioUrl.url("TEST", "TEST", "TEST"))
+				.oid("0123456789ABCDEF")
+				.size((long) size)
+				.chunkMethod("ec/algo=" + algo + ",k=" + k + ",m=" + m)
+				.chunks(chunks);
+		OioHttp http = OioHttp.http(new OioHttpSettings(), new Subchunks(
+				subchunks, new HashSet<Integer>(Arrays.asList(missing))));
+		InputStream in = new EcInputStream(
+				DownloadHelper.loadTargets(oinf, range),
+				new ReedSolomon(algo, k, m), http, new RequestContext(),
+				executors);
+		try {
+			return hex(TestHelper.toByteArray(in));
+		} finally {
+			in.close();
+		}
+	}
+
+	private static String expected(int from, int to) throws IOException {
+		return hex(Arrays.copyOfRange(resource("data"), from, to));
+	}
+
+	private static String hex(byte[] b) {
+		StringBuilder sb = new StringBuilder();
+		for (byte x : b)
+			sb.append(String.format("%02x", x));
+		return sb.toString();
+	}
+
+	@Test
+	public void dataFragments() throws IOException {
+		assertEquals(expected(0, 2500), read(VAND, 4, 2, null));
+		assertEquals(expected(0, 2500), read(CAUCHY, 3, 3, null));
+	}
+
+	@Test
+	public void vandMissingDataFragments() throws IOException {
+		assertEquals(expected(0, 2500), read(VAND, 4, 2, null, 0, 2));
+		assertEquals(expected(0, 2500), read(VAND, 4, 2, null, 1, 3));
+	}
+
+	@Test
+	public void vandMissingDataAndParityFragments() throws IOException {
+		assertEquals(expected(0, 2500), read(VAND, 4, 2, null, 3, 4));
+		assertEquals(expected(0, 2500), read(VAND, 4, 2, null, 0, 5));
+	}
+
+	@Test
+	public void cauchyMissingDataFragments() throws IOException {
+		assertEquals(expected(0, 2500), read(CAUCHY, 3, 3, null, 0, 1, 2));
+		assertEquals(expected(0, 2500), read(CAUCHY, 3, 3, null, 1, 5));
+	}
+
+	@Test
+	public void range() throws IOException {
+		assertEquals(expected(1000, 2100),
+				read(VAND, 4, 2, Range.between(1000, 2100), 0, 2));
+		assertEquals(expected(3, 13),
+				read(CAUCHY, 3, 3, Range.between(3, 13), 0, 1));
+	}
+
+	@Test
+	public void fixtures() throws IOException {
+		// the fixtures are readable as documented in Fragment
+		byte[] sc = resource(CAUCHY + "-3-3.4");
+		Fragment f = Fragment.parse(sc);
+		assertEquals(4, f.idx());
+		assertEquals(342, f.size());
+		assertEquals(1024, f.origDataSize());
+		assertEquals(3 * Fragment.HEADER_SIZE + 342 + 342 + 151, sc.length);
+		assertArrayEquals(Arrays.copyOfRange(resource("data"), 342, 684),
+				Arrays.copyOfRange(resource(CAUCHY + "-3-3.1"),
+						Fragment.HEADER_SIZE, Fragment.HEADER_SIZE + 342));
+	}
+}
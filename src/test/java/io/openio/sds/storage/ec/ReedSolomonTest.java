@@ -0,0 +1,81 @@
+package io.openio.sds.storage.ec;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+public class ReedSolomonTest {
+
+	private static void roundTrip(String algo, int k, int m) {
+		ReedSolomon rs = new ReedSolomon(algo, k, m);
+		int len = 64;
+		Random rand = new Random(k * 31 + m);
+		byte[][] frags = new byte[k + m][len];
+		int[] data = new int[k];
+		for (int i = 0; i < k; i++) {
+			rand.nextBytes(frags[i]);
+			data[i] = i;
+		}
+		int[] parity = new int[m];
+		byte[][] outputs = new byte[m][];
+		for (int i = 0; i < m; i++) {
+			parity[i] = k + i;
+			outputs[i] = frags[k + i];
+		}
+		rs.decode(data, frags, parity, outputs, len);
+
+		// lose each possible set of fragments, up to m of them
+		for (int lost = 0; lost < 1 << (k + m); lost++) {
+			if (Integer.bitCount(lost) != m)
+				continue;
+			int[] available = new int[k];
+			byte[][] inputs = new byte[k][];
+			int[] wanted = new int[m];
+			for (int i = 0, a = 0, w = 0; i < k + m; i++) {
+				if (0 != (lost & (1 << i))) {
+					wanted[w++] = i;
+				} else {
+					available[a] = i;
+					inputs[a++] = frags[i];
+				}
+			}
+			byte[][] rebuilt = new byte[m][len];
+			rs.decode(available, inputs, wanted, rebuilt, len);
+			for (int w = 0; w < m; w++)
+				assertArrayEquals(frags[wanted[w]], rebuilt[w]);
+		}
+	}
+
+	@Test
+	public void vandermonde() {
+		roundTrip(ReedSolomon.ISA_L_RS_VAND, 6, 3);
+		roundTrip(ReedSolomon.ISA_L_RS_VAND, 4, 2);
+	}
+
+	@Test
+	public void cauchy() {
+		roundTrip(ReedSolomon.ISA_L_RS_CAUCHY, 6, 3);
+		roundTrip(ReedSolomon.ISA_L_RS_CAUCHY, 9, 3);
+	}
+
+	@Test
+	public void field() {
+		for (int a = 1; a < 256; a++)
+			assertEquals(1, GaloisField.mul(a, GaloisField.inv(a)));
+		// x^8 = x^4 + x^3 + x^2 + 1
+		assertEquals(0x1d, GaloisField.mul(0x80, 2));
+	}
+
+	@Test
+	public void supports() {
+		assertTrue(ReedSolomon.supports("isa_l_rs_vand"));
+		assertTrue(ReedSolomon.supports("isa_l_rs_cauchy"));
+		assertFalse(ReedSolomon.supports("liberasurecode_rs_vand"));
+		assertFalse(ReedSolomon.supports("jerasure_rs_vand"));
+	}
+}
@@ -0,0 +1,144 @@
+package io.openio.sds.storage.ec;
+
+import static io.openio.sds.TestHelper.response;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.openio.sds.RequestContext;
+import io.openio.sds.TestHelper;
+import io.openio.sds.TestSocketProvider;
+import io.openio.sds.common.FeedableInputStream;
+import io.openio.sds.http.OioHttp;
+import io.openio.sds.http.OioHttpRequest;
+import io.openio.sds.http.OioHttpSettings;
+import io.openio.sds.models.ChunkInfo;
+import io.openio.sds.models.ObjectInfo;
+import io.openio.sds.models.OioUrl;
+import io.openio.sds.models.Position;
+import io.openio.sds.models.Range;
+import io.openio.sds.storage.rawx.RawxClient;
+import io.openio.sds.storage.rawx.RawxSettings;
+
+public class SystematicInputStreamTest {
+
+	private static final String DATA = "0123456789ABCDEFG";
+
+	private final ReedSolomon rs = new ReedSolomon(ReedSolomon.ISA_L_RS_VAND,
+			2, 1);
+	private ExecutorService executors;
+	private byte[][] subchunks;
+
+	@Before
+	public void setup() throws IOException {
+		executors = Executors.newSingleThreadExecutor();
+		// one 10 bytes segment, then one 7 bytes segment
+		EcEncoder encoder = new EcEncoder(rs, 10, executors);
+		FeedableInputStream[] outs = new FeedableInputStream[3];
+		for (int i = 0; i < outs.length; i++)
+			outs[i] = new FeedableInputStream(16, 100);
+		encoder.encode(new ByteArrayInputStream(DATA.getBytes()),
+				DATA.length(), outs, null);
+		int len = (int) encoder.subchunkSize(DATA.length());
+		subchunks = new byte[3][len];
+		for (int i = 0; i < outs.length; i++) {
+			int done = 0;
+			while (done < len)
+				done += outs[i].read(subchunks[i], done, len - done);
+		}
+	}
+
+	@After
+	public void teardown() {
+		executors.shutdown();
+	}
+
+	private ObjectInfo objectInfo() {
+		List<ChunkInfo> chunks = new ArrayList<ChunkInfo>();
+		for (int i = 0; i < 3; i++)
+			chunks.add(new ChunkInfo().pos(Position.composed(0, i))
+					.size((long) subchunks[i].length)
+					.url("http://127.0.0.1:6010/" + i));
+		return new ObjectInfo()
+				.url(OioUrl.url("TEST", "TEST", "TEST"))
+				.oid("0123456789ABCDEF")
+				.size((long) DATA.length())
+				.chunkMethod("ec/algo=isa_l_rs_vand,k=2,m=1")
+				.chunks(chunks);
+	}
+
+	private static ByteArrayInputStream partial(byte[] body, int from,
+			int to, int total) {
+		return response("206 Partial Content",
+				Arrays.copyOfRange(body, from, to), "Content-Range: bytes "
+						+ from + "-" + (to - 1) + "/" + total);
+	}
+
+	private String read(TestSocketProvider socketProvider, Range range)
+			throws IOException {
+		OioHttp http = OioHttp.http(new OioHttpSettings(), socketProvider);
+		RawxSettings settings = new RawxSettings().ecSegmentSize(10);
+		EcClient client = new EcClient(http, new RawxClient(http, settings),
+				settings);
+		InputStream in = client.downloadObject(objectInfo(), range,
+				new RequestContext());
+		try {
+			return new String(TestHelper.toByteArray(in));
+		} finally {
+			in.close();
+		}
+	}
+
+	private static String rangeHeader(TestSocketProvider socketProvider,
+			int i) throws IOException {
+		return OioHttpRequest.build(new ByteArrayInputStream(
+				socketProvider.outputs().get(i).toByteArray()))
+				.header("Range");
+	}
+
+	@Test
+	public void dataFragmentsOnly() throws IOException {
+		int total = subchunks[0].length;
+		List<ByteArrayInputStream> inputs = new ArrayList<ByteArrayInputStream>();
+		// "34" from the first data fragment, "567" from the second one
+		inputs.add(partial(subchunks[0], 83, 85, total));
+		inputs.add(partial(subchunks[1], 80, 83, total));
+		TestSocketProvider socketProvider = new TestSocketProvider(inputs);
+		assertEquals("34567", read(socketProvider, Range.between(3, 8)));
+		assertEquals(2, socketProvider.outputs().size());
+		assertEquals("bytes=83-84", rangeHeader(socketProvider, 0));
+		assertEquals("bytes=80-82", rangeHeader(socketProvider, 1));
+	}
+
+	@Test
+	public void secondSegment() throws IOException {
+		int total = subchunks[0].length;
+		List<ByteArrayInputStream> inputs = new ArrayList<ByteArrayInputStream>();
+		// "CD" from the first data fragment, "EFG" from the second one
+		inputs.add(partial(subchunks[0], 167, 169, total));
+		inputs.add(partial(subchunks[1], 165, 168, total));
+		TestSocketProvider socketProvider = new TestSocketProvider(inputs);
+		assertEquals("CDEFG", read(socketProvider, Range.from(12)));
+	}
+
+	@Test
+	public void unexpectedLayout() throws IOException {
+		List<ByteArrayInputStream> inputs = new ArrayList<ByteArrayInputStream>();
+		inputs.add(partial(subchunks[0], 83, 85, 999));
+		inputs.add(response("200 OK", subchunks[0]));
+		inputs.add(response("200 OK", subchunks[1]));
+		TestSocketProvider socketProvider = new TestSocketProvider(inputs);
+		assertEquals("34567", read(socketProvider, Range.between(3, 8)));
+	}
+}
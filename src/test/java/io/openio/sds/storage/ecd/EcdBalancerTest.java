@@ -0,0 +1,140 @@
+package io.openio.sds.storage.ecd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import io.openio.sds.TestSocketProvider;
+import io.openio.sds.exceptions.OioSystemException;
+import io.openio.sds.http.OioHttp;
+import io.openio.sds.http.OioHttp.RequestBuilder;
+import io.openio.sds.http.OioHttpSettings;
+
+public class EcdBalancerTest {
+
+	private static final InetSocketAddress HOST1 = new InetSocketAddress(
+			"127.0.0.1", 6001);
+	private static final InetSocketAddress HOST2 = new InetSocketAddress(
+			"127.0.0.1", 6002);
+
+	/**
+	 * Answers on all the hosts but the dead ones, which fail with a network
+	 * error.
+	 */
+	private static class DeadHostProvider extends TestSocketProvider {
+
+		private final List<InetSocketAddress> dead = new ArrayList<InetSocketAddress>();
+		private final List<InetSocketAddress> tried = new ArrayList<InetSocketAddress>();
+
+		DeadHostProvider(int responses) {
+			super(responses(responses));
+		}
+
+		@Override
+		public Socket getSocket(InetSocketAddress addr) {
+			tried.add(addr);
+			if (dead.contains(addr))
+				return new Socket();
+			return super.getSocket(addr);
+		}
+	}
+
+	private static List<ByteArrayInputStream> responses(int count) {
+		List<ByteArrayInputStream> res = new ArrayList<ByteArrayInputStream>();
+		for (int i = 0; i < count; i++)
+			res.add(new ByteArrayInputStream(
+					"HTTP/1.1 200 OK\r\nContent-Length: 0\r\n\r\n".getBytes()));
+		return res;
+	}
+
+	private static RequestBuilder request(OioHttp http) {
+		return http.get("http://127.0.0.1:6001/");
+	}
+
+	private static InetSocketAddress other(InetSocketAddress addr) {
+		return HOST1.equals(addr) ? HOST2 : HOST1;
+	}
+
+	@Test
+	public void leastOutstandingRequests() {
+		OioHttp http = OioHttp.http(new OioHttpSettings(),
+				new DeadHostProvider(2));
+		EcdBalancer balancer = new EcdBalancer(Arrays.asList(HOST1, HOST2),
+				3, 60000);
+		EcdBalancer.Call busy = balancer.execute(request(http));
+		assertEquals(other(busy.host()), balancer.addresses().get(0));
+		EcdBalancer.Call call = balancer.execute(request(http));
+		assertEquals(other(busy.host()), call.host());
+		call.end(false);
+		busy.end(false);
+	}
+
+	@Test
+	public void failoverAndEjection() {
+		DeadHostProvider provider = new DeadHostProvider(2);
+		OioHttp http = OioHttp.http(new OioHttpSettings(), provider);
+		EcdBalancer balancer = new EcdBalancer(Arrays.asList(HOST1, HOST2),
+				1, 60000);
+		EcdBalancer.Call busy = balancer.execute(request(http));
+		InetSocketAddress alive = busy.host();
+		provider.dead.add(other(alive));
+		provider.tried.clear();
+		// the dead host is idle, so it is tried first
+		EcdBalancer.Call call = balancer.execute(request(http));
+		assertEquals(Arrays.asList(other(alive), alive), provider.tried);
+		assertEquals(alive, call.host());
+		call.end(false);
+		busy.end(false);
+		// both hosts are idle, the ejected one comes last
+		for (int i = 0; i < 10; i++)
+			assertEquals(alive, balancer.addresses().get(0));
+	}
+
+	@Test
+	public void ejectionExpires() throws InterruptedException {
+		DeadHostProvider provider = new DeadHostProvider(3);
+		OioHttp http = OioHttp.http(new OioHttpSettings(), provider);
+		EcdBalancer balancer = new EcdBalancer(Arrays.asList(HOST1, HOST2),
+				1, 10);
+		EcdBalancer.Call busy = balancer.execute(request(http));
+		InetSocketAddress alive = busy.host();
+		provider.dead.add(other(alive));
+		balancer.execute(request(http)).end(false);
+		assertEquals(alive, balancer.addresses().get(0));
+		Thread.sleep(50);
+		// back in the rotation, and idle
+		provider.dead.clear();
+		EcdBalancer.Call call = balancer.execute(request(http));
+		assertEquals(other(alive), call.host());
+		call.end(false);
+		busy.end(false);
+	}
+
+	@Test
+	public void allHostsDown() {
+		DeadHostProvider provider = new DeadHostProvider(0);
+		provider.dead.add(HOST1);
+		provider.dead.add(HOST2);
+		OioHttp http = OioHttp.http(new OioHttpSettings(), provider);
+		EcdBalancer balancer = new EcdBalancer(Arrays.asList(HOST1, HOST2),
+				1, 60000);
+		for (int i = 0; i < 2; i++) {
+			provider.tried.clear();
+			try {
+				balancer.execute(request(http));
+				fail("all hosts are down");
+			} catch (OioSystemException e) {
+				// ejected hosts are still tried as a last resort
+				assertEquals(2, provider.tried.size());
+			}
+		}
+	}
+}
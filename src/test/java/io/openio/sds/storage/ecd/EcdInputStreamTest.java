@@ -0,0 +1,160 @@
+package io.openio.sds.storage.ecd;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import io.openio.sds.RequestContext;
+import io.openio.sds.TestHelper;
+import io.openio.sds.TestSocketProvider;
+import io.openio.sds.exceptions.OioException;
+import io.openio.sds.http.OioHttp;
+import io.openio.sds.http.OioHttpSettings;
+import io.openio.sds.models.ChunkInfo;
+import io.openio.sds.models.Position;
+import io.openio.sds.storage.Target;
+
+public class EcdInputStreamTest {
+
+	private static final String[] METACHUNKS = { "0123", "4567", "89" };
+
+	private ExecutorService executors;
+	private TestSocketProvider socketProvider;
+
+	@Before
+	public void setup() {
+		executors = Executors.newSingleThreadExecutor();
+		socketProvider = responses(-1);
+	}
+
+	/**
+	 * @param failing
+	 *            the metachunk ecd is unable to decode, -1 for none
+	 */
+	private static TestSocketProvider responses(int failing) {
+		List<ByteArrayInputStream> inputs = new ArrayList<ByteArrayInputStream>();
+		for (int i = 0; i < METACHUNKS.length; i++)
+			inputs.add(i == failing
+					? TestHelper.response("500 Internal Error", "")
+					: TestHelper.response("200 OK", METACHUNKS[i]));
+		return new TestSocketProvider(inputs);
+	}
+
+	@After
+	public void teardown() {
+		executors.shutdown();
+	}
+
+	private EcdInputStream stream() {
+		List<Target> targets = new ArrayList<Target>();
+		for (int i = 0; i < METACHUNKS.length; i++)
+			targets.add(new Target().setChunk(Arrays.asList(new ChunkInfo()
+					.pos(Position.composed(i, 0))
+					.size((long) METACHUNKS[i].length())
+					.url("http://127.0.0.1:6010/" + i))));
+		return new EcdInputStream("http://127.0.0.1:6789", targets,
+				"ec/algo=jerasure,k=6,m=3",
+				OioHttp.http(new OioHttpSettings(), socketProvider),
+				new RequestContext());
+	}
+
+	/**
+	 * Waits for the tasks already submitted to the executor.
+	 */
+	private void sync() throws InterruptedException, ExecutionException {
+		executors.submit(new Runnable() {
+
+			@Override
+			public void run() {
+			}
+		}).get();
+	}
+
+	@Test
+	public void prefetchNextMetachunks() throws Exception {
+		EcdInputStream in = stream().prefetch(executors, 2, 16);
+		try {
+			assertEquals('0', in.read());
+			sync();
+			// the following metachunks are requested and buffered
+			assertEquals(3, socketProvider.outputs().size());
+			assertEquals("123456789",
+					new String(TestHelper.toByteArray(in)));
+		} finally {
+			in.close();
+		}
+	}
+
+	@Test
+	public void prefetchLimit() throws Exception {
+		EcdInputStream in = stream().prefetch(executors, 1, 16);
+		try {
+			assertEquals('0', in.read());
+			sync();
+			assertEquals(2, socketProvider.outputs().size());
+			assertEquals("12345", new String(readN(in, 5)));
+			sync();
+			assertEquals(3, socketProvider.outputs().size());
+			assertEquals("6789", new String(TestHelper.toByteArray(in)));
+		} finally {
+			in.close();
+		}
+	}
+
+	@Test
+	public void noPrefetch() throws IOException {
+		EcdInputStream in = stream();
+		try {
+			assertEquals('0', in.read());
+			assertEquals(1, socketProvider.outputs().size());
+			assertEquals("123456789",
+					new String(TestHelper.toByteArray(in)));
+		} finally {
+			in.close();
+		}
+	}
+
+	@Test
+	public void prefetchFailure() throws Exception {
+		socketProvider = responses(1);
+		EcdInputStream in = stream().prefetch(executors, 2, 16);
+		try {
+			assertEquals("0123", new String(readN(in, 4)));
+			try {
+				in.read();
+				fail("the failed metachunk was skipped");
+			} catch (OioException e) {
+				// expected
+			}
+			// the following metachunk must not be read instead
+			try {
+				in.read();
+				fail("the failed metachunk was skipped");
+			} catch (IOException e) {
+				// expected
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	private static byte[] readN(EcdInputStream in, int n) throws IOException {
+		byte[] b = new byte[n];
+		int done = 0;
+		while (done < n)
+			done += in.read(b, done, n - done);
+		return b;
+	}
+}
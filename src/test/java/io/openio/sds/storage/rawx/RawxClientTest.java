@@ -1,14 +1,19 @@
 package io.openio.sds.storage.rawx;
 
+import io.openio.sds.DiscardingSocketProvider;
 import io.openio.sds.RequestContext;
+import io.openio.sds.SyntheticInputStream;
 import io.openio.sds.TestHelper;
 import io.openio.sds.TestSocketProvider;
+import io.openio.sds.common.Hash;
 import io.openio.sds.exceptions.OioException;
 import io.openio.sds.http.OioHttp;
 import io.openio.sds.http.OioHttpRequest;
 import io.openio.sds.http.OioHttpSettings;
+import io.openio.sds.models.ChunkInfo;
 import io.openio.sds.models.ObjectInfo;
 import io.openio.sds.models.OioUrl;
+import io.openio.sds.models.Range;
 import org.junit.Test;
 
 import java.io.ByteArrayInputStream;
@@ -16,9 +21,11 @@ import java.io.ByteArrayOutputStream;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
+import static io.openio.sds.TestHelper.response;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
@@ -78,6 +85,102 @@ public class RawxClientTest {
 		// TODO verify PUT requests
 	}
 
+	@Test
+	public void uploadBuffers() throws IOException {
+		List<ByteArrayInputStream> inputs = new ArrayList<ByteArrayInputStream>();
+		for (int i = 0; i < 3; i++)
+			inputs.add(new ByteArrayInputStream("HTTP/1.0 200 OK\r\nContent-Length: 0\r\n\r\n".getBytes()));
+		TestSocketProvider socketProvider = new TestSocketProvider(inputs);
+		RawxClient client = new RawxClient(
+				OioHttp.http(new OioHttpSettings(), socketProvider),
+				new RawxSettings());
+
+		ByteBuffer direct = ByteBuffer.allocateDirect(4);
+		direct.put("st!".getBytes());
+		direct.flip();
+		ByteBuffer[] data = { ByteBuffer.wrap("xte".getBytes(), 1, 2), direct };
+		ObjectInfo objectInfo = TestHelper.newTestObjectInfo(newObjectOioUrl(), 4);
+		client.uploadChunks(objectInfo, data, new RequestContext());
+
+		assertEquals(1, data[0].position());
+		assertEquals(0, data[1].position());
+		assertEquals(3, socketProvider.outputs().size());
+		for (ByteArrayOutputStream output : socketProvider.outputs()) {
+			String req = new String(output.toByteArray());
+			OioHttpRequest put = OioHttpRequest.build(
+					new ByteArrayInputStream(output.toByteArray()));
+			assertEquals("PUT", put.method());
+			assertEquals("4", put.header("Content-Length"));
+			assertTrue(req.endsWith("\r\n\r\ntest"));
+		}
+		assertEquals(Hash.md5().hashBytes("test".getBytes()).toString(),
+				objectInfo.hash());
+	}
+
+	@Test
+	public void largeUpload() {
+		long size = (1L << 31) + 5;
+		DiscardingSocketProvider socketProvider = new DiscardingSocketProvider(
+				"HTTP/1.0 200 OK\r\nContent-Length: 0\r\n\r\n", 0L);
+		RawxClient client = new RawxClient(
+				OioHttp.http(new OioHttpSettings(), socketProvider),
+				new RawxSettings());
+		ObjectInfo objectInfo = TestHelper.newTestObjectInfo(newObjectOioUrl(),
+				size);
+		client.uploadChunks(objectInfo, new SyntheticInputStream(size),
+				new RequestContext());
+
+		assertEquals(3, socketProvider.requests().size());
+		for (DiscardingSocketProvider.Request req : socketProvider.requests()) {
+			assertTrue(req.head().startsWith("PUT "));
+			assertTrue(req.head().contains("Content-Length: " + size + "\r\n"));
+			assertEquals(size, req.bodySize());
+		}
+	}
+
+	@Test
+	public void largeDownload() throws IOException {
+		long size = (1L << 31) + 5;
+		DiscardingSocketProvider socketProvider = new DiscardingSocketProvider(
+				"HTTP/1.1 200 OK\r\nContent-Length: " + size + "\r\n\r\n",
+				size);
+		RawxClient client = new RawxClient(
+				OioHttp.http(new OioHttpSettings(), socketProvider),
+				new RawxSettings());
+		ObjectInfo objectInfo = TestHelper.newTestObjectInfo(newObjectOioUrl(),
+				size);
+		InputStream in = client.downloadObject(objectInfo, new RequestContext());
+
+		byte[] buf = new byte[1024 * 1024];
+		long total = 0;
+		int read;
+		while (-1 != (read = in.read(buf, 0, buf.length)))
+			total += read;
+		in.close();
+		assertEquals(size, total);
+		assertEquals(1, socketProvider.requests().size());
+	}
+
+	@Test
+	public void largeDownloadRange() throws IOException {
+		long size = (1L << 32) + 5;
+		DiscardingSocketProvider socketProvider = new DiscardingSocketProvider(
+				"HTTP/1.1 206 Partial Content\r\nContent-Length: 10\r\n"
+						+ "Content-Range: bytes " + (size - 10) + "-" + (size - 1)
+						+ "/" + size + "\r\n\r\n", 10L);
+		RawxClient client = new RawxClient(
+				OioHttp.http(new OioHttpSettings(), socketProvider),
+				new RawxSettings());
+		ObjectInfo objectInfo = TestHelper.newTestObjectInfo(newObjectOioUrl(),
+				size);
+		InputStream in = client.downloadObject(objectInfo,
+				Range.from(size - 10), new RequestContext());
+
+		assertEquals(10, TestHelper.toByteArray(in).length);
+		assertTrue(socketProvider.requests().get(0).head().contains(
+				"Range: bytes=" + (size - 10) + "-"));
+	}
+
 	@Test
 	public void shortRead() {
 		final List<ByteArrayInputStream> inputs = new ArrayList<ByteArrayInputStream>();
@@ -168,4 +271,182 @@ public class RawxClientTest {
 
 		verifyGetRequests(socketProvider, objectInfo, reqCtx);
 	}
+
+	@Test
+	public void prefetch() throws Exception {
+		final List<ByteArrayInputStream> inputs = new ArrayList<ByteArrayInputStream>();
+		inputs.add(response("200 OK", "0123456789"));
+		TestSocketProvider socketProvider = new TestSocketProvider(inputs);
+		RawxClient client = new RawxClient(
+				OioHttp.http(new OioHttpSettings(), socketProvider),
+				new RawxSettings());
+		ObjectInfo objectInfo = TestHelper.newTestObjectInfo(newObjectOioUrl(), 10);
+
+		InputStream stream = client.prefetch(objectInfo, 4,
+				new RequestContext()).get();
+		assertEquals("0123456789",
+				new String(TestHelper.toByteArray(stream)));
+		assertEquals(1, socketProvider.outputs().size());
+	}
+
+	@Test
+	public void blockCache() throws IOException {
+		final List<ByteArrayInputStream> inputs = new ArrayList<ByteArrayInputStream>();
+		inputs.add(new ByteArrayInputStream(
+				"HTTP/1.0 206 Partial Content\r\nContent-Length: 8\r\n\r\n01234567".getBytes()));
+		TestSocketProvider socketProvider = new TestSocketProvider(inputs);
+		RawxClient client = new RawxClient(
+				OioHttp.http(new OioHttpSettings(), socketProvider),
+				new RawxSettings().blockCacheSize(1024).blockSize(4));
+		ObjectInfo objectInfo = TestHelper.newTestObjectInfo(newObjectOioUrl(), 10);
+
+		InputStream stream = client.downloadObject(objectInfo,
+				Range.between(2, 6), new RequestContext());
+		assertEquals("2345", new String(TestHelper.toByteArray(stream)));
+		// served from the cached blocks
+		stream = client.downloadObject(objectInfo, Range.between(5, 8),
+				new RequestContext());
+		assertEquals("567", new String(TestHelper.toByteArray(stream)));
+
+		List<ByteArrayOutputStream> outputs = socketProvider.outputs();
+		assertEquals(1, outputs.size());
+		OioHttpRequest req = OioHttpRequest.build(
+				new ByteArrayInputStream(outputs.get(0).toByteArray()));
+		assertEquals("bytes=0-7", req.header("Range"));
+	}
+
+	@Test
+	public void downloadResumeOnOtherReplica() throws IOException {
+		final List<ByteArrayInputStream> inputs = new ArrayList<ByteArrayInputStream>();
+		inputs.add(new ByteArrayInputStream("HTTP/1.0 200 OK\r\nContent-Length: 4\r\n\r\nte".getBytes()));
+		inputs.add(new ByteArrayInputStream("HTTP/1.0 206 Partial Content\r\nContent-Length: 2\r\n\r\nst".getBytes()));
+
+		TestSocketProvider socketProvider = new TestSocketProvider(inputs);
+
+		OioHttp http = OioHttp.http(new OioHttpSettings(), socketProvider);
+
+		RawxClient client = new RawxClient(http, new RawxSettings());
+
+		ObjectInfo objectInfo = TestHelper.newTestObjectInfo(newObjectOioUrl(), 4);
+
+		InputStream stream = client.downloadObject(objectInfo, new RequestContext());
+		assertEquals("test", new String(TestHelper.toByteArray(stream)));
+
+		List<ByteArrayOutputStream> outputs = socketProvider.outputs();
+		assertEquals(2, outputs.size());
+		OioHttpRequest first = OioHttpRequest.build(
+				new ByteArrayInputStream(outputs.get(0).toByteArray()));
+		OioHttpRequest second = OioHttpRequest.build(
+				new ByteArrayInputStream(outputs.get(1).toByteArray()));
+		assertTrue(!first.header("Host").equals(second.header("Host")));
+		assertTrue(null == first.header("Range"));
+		assertEquals("bytes=2-", second.header("Range"));
+	}
+
+	@Test
+	public void downloadAllReplicasBroken() {
+		final List<ByteArrayInputStream> inputs = new ArrayList<ByteArrayInputStream>();
+		for (int i = 0; i < 3; i++)
+			inputs.add(new ByteArrayInputStream("HTTP/1.0 200 OK\r\nContent-Length: 4\r\n\r\nt".getBytes()));
+
+		TestSocketProvider socketProvider = new TestSocketProvider(inputs);
+
+		OioHttp http = OioHttp.http(new OioHttpSettings(), socketProvider);
+
+		RawxClient client = new RawxClient(http, new RawxSettings());
+
+		ObjectInfo objectInfo = TestHelper.newTestObjectInfo(newObjectOioUrl(), 4);
+
+		InputStream stream = client.downloadObject(objectInfo, new RequestContext());
+		try {
+			TestHelper.toByteArray(stream);
+			fail("Expected IOException");
+		} catch (IOException e) {
+			assertTrue(e.getMessage().contains("unexpected end of chunk stream"));
+		}
+		assertEquals(3, socketProvider.outputs().size());
+	}
+
+	private ObjectInfo hashedObjectInfo(String data) {
+		ObjectInfo objectInfo = TestHelper.newTestObjectInfo(newObjectOioUrl(),
+				data.length());
+		String hash = Hash.md5().hashBytes(data.getBytes()).toString();
+		for (ChunkInfo ci : objectInfo.chunks())
+			ci.hash(hash);
+		return objectInfo;
+	}
+
+	@Test
+	public void downloadChecksumMismatch() throws IOException {
+		final List<ByteArrayInputStream> inputs = new ArrayList<ByteArrayInputStream>();
+		inputs.add(response("200 OK", "0123456780"));
+		inputs.add(response("200 OK", "0123456789"));
+		TestSocketProvider socketProvider = new TestSocketProvider(inputs);
+		RawxClient client = new RawxClient(
+				OioHttp.http(new OioHttpSettings(), socketProvider),
+				new RawxSettings().verifyChecksum(true));
+
+		InputStream stream = client.downloadObject(
+				hashedObjectInfo("0123456789"), new RequestContext());
+		assertEquals("0123456789", new String(TestHelper.toByteArray(stream)));
+		assertEquals(2, socketProvider.outputs().size());
+	}
+
+	@Test
+	public void downloadChecksumMismatchAfterPartialRead() throws IOException {
+		final List<ByteArrayInputStream> inputs = new ArrayList<ByteArrayInputStream>();
+		inputs.add(response("200 OK", "0123456780"));
+		inputs.add(response("200 OK", "0123456789"));
+		TestSocketProvider socketProvider = new TestSocketProvider(inputs);
+		RawxClient client = new RawxClient(
+				OioHttp.http(new OioHttpSettings(), socketProvider),
+				new RawxSettings().verifyChecksum(true));
+
+		InputStream stream = client.downloadObject(
+				hashedObjectInfo("0123456789"), new RequestContext());
+		byte[] buf = new byte[10];
+		assertEquals(4, stream.read(buf, 0, 4));
+		assertEquals(6, stream.read(buf, 4, 6));
+		assertEquals(-1, stream.read(buf, 0, 10));
+		assertEquals("0123456789", new String(buf));
+		assertEquals(2, socketProvider.outputs().size());
+		OioHttpRequest second = OioHttpRequest.build(new ByteArrayInputStream(
+				socketProvider.outputs().get(1).toByteArray()));
+		assertTrue(null == second.header("Range"));
+	}
+
+	@Test
+	public void downloadChecksumMismatchEverywhere() {
+		final List<ByteArrayInputStream> inputs = new ArrayList<ByteArrayInputStream>();
+		for (int i = 0; i < 3; i++)
+			inputs.add(response("200 OK", "0123456780"));
+		TestSocketProvider socketProvider = new TestSocketProvider(inputs);
+		RawxClient client = new RawxClient(
+				OioHttp.http(new OioHttpSettings(), socketProvider),
+				new RawxSettings().verifyChecksum(true));
+
+		InputStream stream = client.downloadObject(
+				hashedObjectInfo("0123456789"), new RequestContext());
+		try {
+			TestHelper.toByteArray(stream);
+			fail("Expected IOException");
+		} catch (IOException e) {
+			assertTrue(e.getMessage().contains("Checksum mismatch"));
+		}
+		assertEquals(3, socketProvider.outputs().size());
+	}
+
+	@Test
+	public void downloadChecksumNotVerified() throws IOException {
+		final List<ByteArrayInputStream> inputs = new ArrayList<ByteArrayInputStream>();
+		inputs.add(response("200 OK", "0123456780"));
+		TestSocketProvider socketProvider = new TestSocketProvider(inputs);
+		RawxClient client = new RawxClient(
+				OioHttp.http(new OioHttpSettings(), socketProvider),
+				new RawxSettings());
+
+		InputStream stream = client.downloadObject(
+				hashedObjectInfo("0123456789"), new RequestContext());
+		assertEquals("0123456780", new String(TestHelper.toByteArray(stream)));
+	}
 }